@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+
+import com.github.christophersmith.summer.mqtt.core.service.MqttClientService;
+
+/**
+ * The aggregate result of a batch publish made through
+ * {@link MqttClientService#publishAll(java.util.Collection)}.
+ * <p>
+ * Each {@link Message} in the batch has a {@link CompletableFuture} at the same position in
+ * {@link #getResults()}, which is completed with the Message Identifier once delivered, or
+ * completed exceptionally if the {@link Message} could not be published or delivered.
+ */
+public final class MqttBatchPublishResult
+{
+    private transient final List<CompletableFuture<Integer>> results;
+    private transient final int                              submittedCount;
+
+    /**
+     * The default constructor.
+     * 
+     * @param results the {@link CompletableFuture} values, in the same order as the batch
+     * @param submittedCount the number of messages that were accepted for delivery
+     * 
+     * @throws IllegalArgumentException if the {@code results} value is null
+     */
+    public MqttBatchPublishResult(final List<CompletableFuture<Integer>> results,
+        final int submittedCount)
+    {
+        Assert.notNull(results, "'results' must be set!");
+        this.results = Collections.unmodifiableList(results);
+        this.submittedCount = submittedCount;
+    }
+
+    /**
+     * Returns the per-message results, in the same order as the messages that were provided.
+     * 
+     * @return an unmodifiable {@link List} of {@link CompletableFuture} values
+     */
+    public List<CompletableFuture<Integer>> getResults()
+    {
+        return results;
+    }
+
+    /**
+     * Returns the number of messages in the batch.
+     * 
+     * @return the number of messages in the batch
+     */
+    public int getMessageCount()
+    {
+        return results.size();
+    }
+
+    /**
+     * Returns the number of messages that were accepted for delivery, either handed to the MQTT
+     * Client straight away or queued until the MQTT Client can take them.
+     * 
+     * @return the number of submitted messages
+     */
+    public int getSubmittedCount()
+    {
+        return submittedCount;
+    }
+
+    /**
+     * Returns the number of messages that were not accepted for delivery.
+     * 
+     * @return the number of failed messages
+     */
+    public int getFailedCount()
+    {
+        return results.size() - submittedCount;
+    }
+
+    /**
+     * Returns a {@link CompletableFuture} that completes once every message in the batch has
+     * either been delivered or failed.
+     * 
+     * @return a {@link CompletableFuture} for the whole batch
+     */
+    public CompletableFuture<Void> allCompleted()
+    {
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[results.size()]))
+            .handle((value, throwable) -> null);
+    }
+}
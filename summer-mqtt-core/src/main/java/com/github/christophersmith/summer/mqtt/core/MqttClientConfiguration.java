@@ -13,8 +13,16 @@
  */
 package com.github.christophersmith.summer.mqtt.core;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import org.springframework.util.Assert;
 
+import com.github.christophersmith.summer.mqtt.core.converter.MqttPayloadConverter;
+import com.github.christophersmith.summer.mqtt.core.converter.MqttPayloadConverterRegistry;
 import com.github.christophersmith.summer.mqtt.core.service.MqttClientService;
 
 /**
@@ -23,11 +31,46 @@ import com.github.christophersmith.summer.mqtt.core.service.MqttClientService;
  */
 public final class MqttClientConfiguration
 {
-    private MqttQualityOfService                defaultQualityOfService                 = MqttQualityOfService.QOS_0;
-    private long                                subscribeWaitMilliseconds               = 30000;
-    private long                                topicUnsubscribeWaitTimeoutMilliseconds = 30000;
-    private long                                disconnectWaitMilliseconds              = 60000;
-    private MqttClientConnectionStatusPublisher mqttClientConnectionStatusPublisher;
+    private MqttQualityOfService                  defaultQualityOfService                 = MqttQualityOfService.QOS_0;
+    private long                                  subscribeWaitMilliseconds               = 30000;
+    private long                                  topicUnsubscribeWaitTimeoutMilliseconds = 30000;
+    private long                                  disconnectWaitMilliseconds              = 60000;
+    private MqttClientConnectionStatusPublisher   mqttClientConnectionStatusPublisher;
+    private final MqttPayloadConverterRegistry    payloadConverterRegistry                = new MqttPayloadConverterRegistry();
+    private int                                   maxInFlightMessages;
+    private MqttInFlightOverflowStrategy          inFlightOverflowStrategy                = MqttInFlightOverflowStrategy.BLOCK;
+    private long                                  inFlightWaitMilliseconds                = 30000;
+    private int                                   inFlightQueueCapacity                   = 1000;
+    private final List<String>                    conflatedTopicFilters                   = new CopyOnWriteArrayList<String>();
+    private long                                  conflationIntervalMilliseconds          = 100;
+    private volatile Map<String, MqttCompression> compressedTopicFilters                  = Collections.emptyMap();
+    private boolean                               inboundDecompression;
+    private int                                   inboundDecompressionMaxBytes            = 16777216;
+    private MqttInboundPayloadMode                inboundPayloadMode                      = MqttInboundPayloadMode.COPY;
+    private MqttMessageIdGeneration               inboundMessageIdGeneration              = MqttMessageIdGeneration.RANDOM;
+    private MqttRateLimit                         clientRateLimit;
+    private volatile Map<String, MqttRateLimit>   topicRateLimits                         = Collections.emptyMap();
+    private MqttRateLimitBehavior                 rateLimitBehavior                       = MqttRateLimitBehavior.WAIT;
+    private long                                  rateLimitWaitMilliseconds               = 30000;
+    private int                                   priorityLaneCount                       = 1;
+    private MqttPriorityScheduling                priorityScheduling                      = MqttPriorityScheduling.STRICT;
+    private int[]                                 priorityLaneWeights;
+    private MqttEventDispatchMode                 eventDispatchMode                       = MqttEventDispatchMode.SYNCHRONOUS;
+    private int                                   eventBufferCapacity                     = 1024;
+    private MqttEventOverflowBehavior             eventOverflowBehavior                   = MqttEventOverflowBehavior.DROP;
+    private volatile int                          disabledMessageEventTypes;
+    private int                                   messageEventSampleRate                  = 1;
+    private int                                   inboundDispatchThreads;
+    private int                                   inboundQueueCapacity                    = 1000;
+    private MqttInboundOverflowStrategy           inboundOverflowStrategy                 = MqttInboundOverflowStrategy.BLOCK;
+    private final List<String>                    batchedTopicFilters                     = new CopyOnWriteArrayList<String>();
+    private int                                   inboundBatchMaxMessages                 = 100;
+    private int                                   inboundBatchMaxBytes                    = 1048576;
+    private long                                  inboundBatchLingerMilliseconds          = 100;
+    private boolean                               inboundBatchAdaptiveLinger              = true;
+    private MqttDuplicateKeyExtractor             duplicateKeyExtractor;
+    private long                                  duplicateExpiryMilliseconds             = 60000;
+    private int                                   duplicateCacheCapacity                  = 131072;
 
     /**
      * The default constructor.
@@ -161,4 +204,1037 @@ public final class MqttClientConfiguration
     {
         this.mqttClientConnectionStatusPublisher = mqttClientConnectionStatusPublisher;
     }
+
+    /**
+     * Returns the {@link MqttPayloadConverterRegistry} used to convert out-going message payloads.
+     * <p>
+     * By default, converters for {@code byte[]}, {@link java.nio.ByteBuffer} and
+     * {@link CharSequence} payloads are registered.
+     * 
+     * @return the {@link MqttPayloadConverterRegistry} for this instance
+     */
+    public MqttPayloadConverterRegistry getPayloadConverterRegistry()
+    {
+        return payloadConverterRegistry;
+    }
+
+    /**
+     * Registers a {@link MqttPayloadConverter} for out-going message payloads, replacing any
+     * converter that was registered for the same payload type.
+     * 
+     * @param payloadConverter the {@link MqttPayloadConverter} to register
+     * @throws IllegalArgumentException if the parameter {@code payloadConverter} is null
+     */
+    public void addPayloadConverter(MqttPayloadConverter<?> payloadConverter)
+    {
+        payloadConverterRegistry.addPayloadConverter(payloadConverter);
+    }
+
+    /**
+     * Returns the maximum number of out-going messages that may be in-flight at once, meaning
+     * handed to the MQTT Client and not yet reported as delivered or failed.
+     * <p>
+     * A value of 0 disables the in-flight window. The default value is 0.
+     * 
+     * @return the maximum number of in-flight messages
+     */
+    public int getMaxInFlightMessages()
+    {
+        return maxInFlightMessages;
+    }
+
+    /**
+     * Sets the maximum number of out-going messages that may be in-flight at once. Once reached,
+     * new messages are handled by the {@link MqttInFlightOverflowStrategy}.
+     * <p>
+     * A value of 0 disables the in-flight window.
+     * 
+     * @param maxInFlightMessages the maximum number of in-flight messages
+     * @throws IllegalArgumentException if the {@code maxInFlightMessages} is less than 0
+     */
+    public void setMaxInFlightMessages(int maxInFlightMessages)
+    {
+        Assert.isTrue(maxInFlightMessages >= 0, "'maxInFlightMessages' must be 0 or greater!");
+        this.maxInFlightMessages = maxInFlightMessages;
+    }
+
+    /**
+     * Returns the {@link MqttInFlightOverflowStrategy} that's applied when the in-flight window is
+     * full.
+     * <p>
+     * The default value is {@link MqttInFlightOverflowStrategy#BLOCK}.
+     * 
+     * @return a {@link MqttInFlightOverflowStrategy} value
+     */
+    public MqttInFlightOverflowStrategy getInFlightOverflowStrategy()
+    {
+        return inFlightOverflowStrategy;
+    }
+
+    /**
+     * Sets the {@link MqttInFlightOverflowStrategy} that's applied when the in-flight window is
+     * full.
+     * 
+     * @param inFlightOverflowStrategy the {@link MqttInFlightOverflowStrategy}
+     * @throws IllegalArgumentException if the parameter {@code inFlightOverflowStrategy} is null
+     */
+    public void setInFlightOverflowStrategy(MqttInFlightOverflowStrategy inFlightOverflowStrategy)
+    {
+        Assert.notNull(inFlightOverflowStrategy, "'inFlightOverflowStrategy' must be set!");
+        this.inFlightOverflowStrategy = inFlightOverflowStrategy;
+    }
+
+    /**
+     * Returns the wait time, in milliseconds, a caller is blocked for a free slot in the in-flight
+     * window when using {@link MqttInFlightOverflowStrategy#BLOCK}.
+     * <p>
+     * The default value is 30,000 milliseconds.
+     * 
+     * @return the In-Flight Wait Time in Milliseconds
+     */
+    public long getInFlightWaitMilliseconds()
+    {
+        return inFlightWaitMilliseconds;
+    }
+
+    /**
+     * Sets the wait time, in milliseconds, a caller is blocked for a free slot in the in-flight
+     * window when using {@link MqttInFlightOverflowStrategy#BLOCK}.
+     * 
+     * @param inFlightWaitMilliseconds the In-Flight Wait Time in Milliseconds
+     * @throws IllegalArgumentException if the {@code inFlightWaitMilliseconds} is less than 0
+     */
+    public void setInFlightWaitMilliseconds(long inFlightWaitMilliseconds)
+    {
+        Assert.isTrue(inFlightWaitMilliseconds >= 0,
+            "'inFlightWaitMilliseconds' must be 0 or greater!");
+        this.inFlightWaitMilliseconds = inFlightWaitMilliseconds;
+    }
+
+    /**
+     * Returns the maximum number of messages held in the pending queue when using
+     * {@link MqttInFlightOverflowStrategy#QUEUE} or
+     * {@link MqttInFlightOverflowStrategy#DROP_OLDEST_QOS_0}.
+     * <p>
+     * The default value is 1,000.
+     * 
+     * @return the In-Flight Queue Capacity
+     */
+    public int getInFlightQueueCapacity()
+    {
+        return inFlightQueueCapacity;
+    }
+
+    /**
+     * Sets the maximum number of messages held in the pending queue when using
+     * {@link MqttInFlightOverflowStrategy#QUEUE} or
+     * {@link MqttInFlightOverflowStrategy#DROP_OLDEST_QOS_0}.
+     * 
+     * @param inFlightQueueCapacity the In-Flight Queue Capacity
+     * @throws IllegalArgumentException if the {@code inFlightQueueCapacity} is less than 0
+     */
+    public void setInFlightQueueCapacity(int inFlightQueueCapacity)
+    {
+        Assert.isTrue(inFlightQueueCapacity >= 0, "'inFlightQueueCapacity' must be 0 or greater!");
+        this.inFlightQueueCapacity = inFlightQueueCapacity;
+    }
+
+    /**
+     * Returns the Topic Filters whose QoS 0 messages are conflated.
+     * <p>
+     * While a QoS 0 message for a Topic that matches one of these Topic Filters is waiting to be
+     * published, a newer message for the same Topic replaces it, so only the latest value is
+     * published. The default value is an empty list.
+     * 
+     * @return an unmodifiable {@link List} of Topic Filters
+     */
+    public List<String> getConflatedTopicFilters()
+    {
+        return Collections.unmodifiableList(conflatedTopicFilters);
+    }
+
+    /**
+     * Adds a Topic Filter whose QoS 0 messages are conflated, keeping only the latest pending
+     * message per Topic.
+     * 
+     * @param topicFilter the Topic Filter, which can include wildcards
+     * @throws IllegalArgumentException if the parameter {@code topicFilter} is null or empty
+     */
+    public void addConflatedTopicFilter(String topicFilter)
+    {
+        Assert.hasText(topicFilter, "'topicFilter' must be set!");
+        if (!conflatedTopicFilters.contains(topicFilter))
+        {
+            conflatedTopicFilters.add(topicFilter);
+        }
+    }
+
+    /**
+     * Removes a Topic Filter whose QoS 0 messages are conflated.
+     * 
+     * @param topicFilter the Topic Filter to remove
+     */
+    public void removeConflatedTopicFilter(String topicFilter)
+    {
+        conflatedTopicFilters.remove(topicFilter);
+    }
+
+    /**
+     * Returns the interval, in milliseconds, at which conflated messages are published. Conflated
+     * messages are also published as soon as a slot in the in-flight window is freed.
+     * <p>
+     * The default value is 100 milliseconds.
+     * 
+     * @return the Conflation Interval in Milliseconds
+     */
+    public long getConflationIntervalMilliseconds()
+    {
+        return conflationIntervalMilliseconds;
+    }
+
+    /**
+     * Sets the interval, in milliseconds, at which conflated messages are published.
+     * 
+     * @param conflationIntervalMilliseconds the Conflation Interval in Milliseconds
+     * @throws IllegalArgumentException if the {@code conflationIntervalMilliseconds} isn't greater
+     *             than 0
+     */
+    public void setConflationIntervalMilliseconds(long conflationIntervalMilliseconds)
+    {
+        Assert.isTrue(conflationIntervalMilliseconds > 0,
+            "'conflationIntervalMilliseconds' must be greater than 0!");
+        this.conflationIntervalMilliseconds = conflationIntervalMilliseconds;
+    }
+
+    /**
+     * Returns the Topic Filters whose out-going message payloads are compressed, and the
+     * {@link MqttCompression} codec for each, in the order they were added.
+     * <p>
+     * The first Topic Filter that matches the Topic of a message decides its codec, unless the
+     * message has a
+     * {@link com.github.christophersmith.summer.mqtt.core.util.MqttHeaderHelper#COMPRESSION}
+     * header. The default value is an empty map.
+     * 
+     * @return an unmodifiable {@link Map} of Topic Filters to {@link MqttCompression} codecs
+     */
+    public Map<String, MqttCompression> getCompressedTopicFilters()
+    {
+        return compressedTopicFilters;
+    }
+
+    /**
+     * Adds a Topic Filter whose out-going message payloads are compressed with the
+     * {@code compression} codec, replacing the codec if the Topic Filter was already added.
+     * 
+     * @param topicFilter the Topic Filter, which can include wildcards
+     * @param compression the {@link MqttCompression} codec
+     * @throws IllegalArgumentException if the parameter {@code topicFilter} is null or empty, or
+     *             the parameter {@code compression} is null
+     */
+    public synchronized void addCompressedTopicFilter(String topicFilter,
+        MqttCompression compression)
+    {
+        Assert.hasText(topicFilter, "'topicFilter' must be set!");
+        Assert.notNull(compression, "'compression' must be set!");
+        final Map<String, MqttCompression> records = new LinkedHashMap<String, MqttCompression>(
+            compressedTopicFilters);
+        records.put(topicFilter, compression);
+        compressedTopicFilters = Collections.unmodifiableMap(records);
+    }
+
+    /**
+     * Removes a Topic Filter whose out-going message payloads are compressed.
+     * 
+     * @param topicFilter the Topic Filter to remove
+     */
+    public synchronized void removeCompressedTopicFilter(String topicFilter)
+    {
+        final Map<String, MqttCompression> records = new LinkedHashMap<String, MqttCompression>(
+            compressedTopicFilters);
+        records.remove(topicFilter);
+        compressedTopicFilters = Collections.unmodifiableMap(records);
+    }
+
+    /**
+     * Returns whether in-coming payloads that start with the compression framing marker are
+     * decompressed before they are sent to the in-bound
+     * {@link org.springframework.messaging.MessageChannel}.
+     * <p>
+     * The default value is false.
+     * 
+     * @return whether in-coming payloads are decompressed
+     * @see com.github.christophersmith.summer.mqtt.core.compression.MqttPayloadCompression
+     */
+    public boolean isInboundDecompression()
+    {
+        return inboundDecompression;
+    }
+
+    /**
+     * Sets whether in-coming payloads that start with the compression framing marker are
+     * decompressed.
+     * 
+     * @param inboundDecompression whether in-coming payloads are decompressed
+     */
+    public void setInboundDecompression(boolean inboundDecompression)
+    {
+        this.inboundDecompression = inboundDecompression;
+    }
+
+    /**
+     * Returns the maximum length, in bytes, an in-coming payload is decompressed to. A payload
+     * whose framing marker states a larger length is sent as received, without allocating memory
+     * for it.
+     * <p>
+     * The default value is 16,777,216 (16 MiB).
+     * 
+     * @return the Inbound Decompression Max Bytes
+     */
+    public int getInboundDecompressionMaxBytes()
+    {
+        return inboundDecompressionMaxBytes;
+    }
+
+    /**
+     * Sets the maximum length, in bytes, an in-coming payload is decompressed to.
+     * 
+     * @param inboundDecompressionMaxBytes the Inbound Decompression Max Bytes
+     * @throws IllegalArgumentException if the {@code inboundDecompressionMaxBytes} isn't greater
+     *             than 0
+     */
+    public void setInboundDecompressionMaxBytes(int inboundDecompressionMaxBytes)
+    {
+        Assert.isTrue(inboundDecompressionMaxBytes > 0,
+            "'inboundDecompressionMaxBytes' must be greater than 0!");
+        this.inboundDecompressionMaxBytes = inboundDecompressionMaxBytes;
+    }
+
+    /**
+     * Returns the {@link MqttInboundPayloadMode} that defines how the payload of an in-coming
+     * message is sent to the in-bound {@link org.springframework.messaging.MessageChannel}.
+     * <p>
+     * The default value is {@link MqttInboundPayloadMode#COPY}.
+     * 
+     * @return a {@link MqttInboundPayloadMode} value
+     */
+    public MqttInboundPayloadMode getInboundPayloadMode()
+    {
+        return inboundPayloadMode;
+    }
+
+    /**
+     * Sets the {@link MqttInboundPayloadMode} that defines how the payload of an in-coming message
+     * is sent to the in-bound {@link org.springframework.messaging.MessageChannel}.
+     * <p>
+     * {@link MqttInboundPayloadMode#SHARED} and {@link MqttInboundPayloadMode#READ_ONLY_BUFFER}
+     * avoid copying every payload, which matters for large payloads.
+     * 
+     * @param inboundPayloadMode the {@link MqttInboundPayloadMode}
+     * @throws IllegalArgumentException if the parameter {@code inboundPayloadMode} is null
+     */
+    public void setInboundPayloadMode(MqttInboundPayloadMode inboundPayloadMode)
+    {
+        Assert.notNull(inboundPayloadMode, "'inboundPayloadMode' must be set!");
+        this.inboundPayloadMode = inboundPayloadMode;
+    }
+
+    /**
+     * Returns the {@link MqttMessageIdGeneration} that defines how the
+     * {@link org.springframework.messaging.MessageHeaders#ID} header of an in-coming message is
+     * generated.
+     * <p>
+     * The default value is {@link MqttMessageIdGeneration#RANDOM}.
+     * 
+     * @return a {@link MqttMessageIdGeneration} value
+     */
+    public MqttMessageIdGeneration getInboundMessageIdGeneration()
+    {
+        return inboundMessageIdGeneration;
+    }
+
+    /**
+     * Sets the {@link MqttMessageIdGeneration} that defines how the
+     * {@link org.springframework.messaging.MessageHeaders#ID} header of an in-coming message is
+     * generated.
+     * 
+     * @param inboundMessageIdGeneration the {@link MqttMessageIdGeneration}
+     * @throws IllegalArgumentException if the parameter {@code inboundMessageIdGeneration} is null
+     */
+    public void setInboundMessageIdGeneration(MqttMessageIdGeneration inboundMessageIdGeneration)
+    {
+        Assert.notNull(inboundMessageIdGeneration, "'inboundMessageIdGeneration' must be set!");
+        this.inboundMessageIdGeneration = inboundMessageIdGeneration;
+    }
+
+    /**
+     * Returns the {@link MqttRateLimit} for all out-going messages of the MQTT Client.
+     * <p>
+     * The default value is {@literal null}, meaning there's no limit.
+     * 
+     * @return a {@link MqttRateLimit}, or null if undefined
+     */
+    public MqttRateLimit getClientRateLimit()
+    {
+        return clientRateLimit;
+    }
+
+    /**
+     * Sets the {@link MqttRateLimit} for all out-going messages of the MQTT Client, or null to
+     * remove the limit.
+     * 
+     * @param clientRateLimit the {@link MqttRateLimit}, or null if undefined
+     */
+    public void setClientRateLimit(MqttRateLimit clientRateLimit)
+    {
+        this.clientRateLimit = clientRateLimit;
+    }
+
+    /**
+     * Returns the Topic Filters with their own {@link MqttRateLimit}, in the order they were added.
+     * <p>
+     * The first Topic Filter that matches the Topic of a message applies, and is shared by all
+     * Topics it matches. A message must be within both this limit and the client limit. The
+     * default value is an empty map.
+     * 
+     * @return an unmodifiable {@link Map} of Topic Filters to {@link MqttRateLimit} values
+     */
+    public Map<String, MqttRateLimit> getTopicRateLimits()
+    {
+        return topicRateLimits;
+    }
+
+    /**
+     * Adds a Topic Filter with its own {@link MqttRateLimit}, replacing the limit if the Topic
+     * Filter was already added.
+     * 
+     * @param topicFilter the Topic Filter, which can include wildcards
+     * @param rateLimit the {@link MqttRateLimit}
+     * @throws IllegalArgumentException if the parameter {@code topicFilter} is null or empty, or
+     *             the parameter {@code rateLimit} is null
+     */
+    public synchronized void addTopicRateLimit(String topicFilter, MqttRateLimit rateLimit)
+    {
+        Assert.hasText(topicFilter, "'topicFilter' must be set!");
+        Assert.notNull(rateLimit, "'rateLimit' must be set!");
+        final Map<String, MqttRateLimit> records = new LinkedHashMap<String, MqttRateLimit>(
+            topicRateLimits);
+        records.put(topicFilter, rateLimit);
+        topicRateLimits = Collections.unmodifiableMap(records);
+    }
+
+    /**
+     * Removes a Topic Filter with its own {@link MqttRateLimit}.
+     * 
+     * @param topicFilter the Topic Filter to remove
+     */
+    public synchronized void removeTopicRateLimit(String topicFilter)
+    {
+        final Map<String, MqttRateLimit> records = new LinkedHashMap<String, MqttRateLimit>(
+            topicRateLimits);
+        records.remove(topicFilter);
+        topicRateLimits = Collections.unmodifiableMap(records);
+    }
+
+    /**
+     * Returns the {@link MqttRateLimitBehavior} that's applied when a message exceeds a rate
+     * limit.
+     * <p>
+     * The default value is {@link MqttRateLimitBehavior#WAIT}.
+     * 
+     * @return a {@link MqttRateLimitBehavior} value
+     */
+    public MqttRateLimitBehavior getRateLimitBehavior()
+    {
+        return rateLimitBehavior;
+    }
+
+    /**
+     * Sets the {@link MqttRateLimitBehavior} that's applied when a message exceeds a rate limit.
+     * 
+     * @param rateLimitBehavior the {@link MqttRateLimitBehavior}
+     * @throws IllegalArgumentException if the parameter {@code rateLimitBehavior} is null
+     */
+    public void setRateLimitBehavior(MqttRateLimitBehavior rateLimitBehavior)
+    {
+        Assert.notNull(rateLimitBehavior, "'rateLimitBehavior' must be set!");
+        this.rateLimitBehavior = rateLimitBehavior;
+    }
+
+    /**
+     * Returns the maximum time, in milliseconds, a caller is blocked to stay within a rate limit
+     * when using {@link MqttRateLimitBehavior#WAIT}.
+     * <p>
+     * The default value is 30,000 milliseconds.
+     * 
+     * @return the Rate Limit Wait Time in Milliseconds
+     */
+    public long getRateLimitWaitMilliseconds()
+    {
+        return rateLimitWaitMilliseconds;
+    }
+
+    /**
+     * Sets the maximum time, in milliseconds, a caller is blocked to stay within a rate limit when
+     * using {@link MqttRateLimitBehavior#WAIT}.
+     * 
+     * @param rateLimitWaitMilliseconds the Rate Limit Wait Time in Milliseconds
+     * @throws IllegalArgumentException if the {@code rateLimitWaitMilliseconds} is less than 0
+     */
+    public void setRateLimitWaitMilliseconds(long rateLimitWaitMilliseconds)
+    {
+        Assert.isTrue(rateLimitWaitMilliseconds >= 0,
+            "'rateLimitWaitMilliseconds' must be 0 or greater!");
+        this.rateLimitWaitMilliseconds = rateLimitWaitMilliseconds;
+    }
+
+    /**
+     * Returns the number of priority lanes for out-going messages that are waiting for a slot in
+     * the in-flight window.
+     * <p>
+     * A message is placed in the lane of its
+     * {@link com.github.christophersmith.summer.mqtt.core.util.MqttHeaderHelper#PRIORITY} header,
+     * where lane 0 has the highest priority. Messages without the header, or with a higher value
+     * than the last lane, are placed in the last lane. Lanes only apply while the in-flight window
+     * is full, so a {@link #setMaxInFlightMessages(int)} value greater than 0 is required. The
+     * default value is 1, meaning all messages wait in a single lane.
+     * 
+     * @return the Priority Lane Count
+     */
+    public int getPriorityLaneCount()
+    {
+        return priorityLaneCount;
+    }
+
+    /**
+     * Sets the number of priority lanes for out-going messages that are waiting for a slot in the
+     * in-flight window.
+     * 
+     * @param priorityLaneCount the Priority Lane Count
+     */
+    public void setPriorityLaneCount(int priorityLaneCount)
+    {
+        this.priorityLaneCount = priorityLaneCount;
+    }
+
+    /**
+     * Returns the {@link MqttPriorityScheduling} that decides which priority lane receives a freed
+     * slot in the in-flight window.
+     * <p>
+     * The default value is {@link MqttPriorityScheduling#STRICT}.
+     * 
+     * @return a {@link MqttPriorityScheduling} value
+     */
+    public MqttPriorityScheduling getPriorityScheduling()
+    {
+        return priorityScheduling;
+    }
+
+    /**
+     * Sets the {@link MqttPriorityScheduling} that decides which priority lane receives a freed
+     * slot in the in-flight window.
+     * 
+     * @param priorityScheduling the {@link MqttPriorityScheduling}
+     * @throws IllegalArgumentException if the parameter {@code priorityScheduling} is null
+     */
+    public void setPriorityScheduling(MqttPriorityScheduling priorityScheduling)
+    {
+        Assert.notNull(priorityScheduling, "'priorityScheduling' must be set!");
+        this.priorityScheduling = priorityScheduling;
+    }
+
+    /**
+     * Returns the weight of the priority {@code lane} when using
+     * {@link MqttPriorityScheduling#WEIGHTED_FAIR}.
+     * <p>
+     * Unless set through {@link #setPriorityLaneWeights(int...)}, lane 0 has a weight equal to the
+     * Priority Lane Count and each following lane one less, down to 1 for the last lane. A lane
+     * without a configured weight has a weight of 1.
+     * 
+     * @param lane the priority lane, starting at 0
+     * @return the Priority Lane Weight
+     */
+    public int getPriorityLaneWeight(int lane)
+    {
+        final int[] weights = priorityLaneWeights;
+        int weight = 1;
+        if (weights == null)
+        {
+            weight = Math.max(1, priorityLaneCount - lane);
+        }
+        else if (lane < weights.length)
+        {
+            weight = weights[lane];
+        }
+        return weight;
+    }
+
+    /**
+     * Sets the weights of the priority lanes when using
+     * {@link MqttPriorityScheduling#WEIGHTED_FAIR}, starting with lane 0, or null to use the
+     * default weights.
+     * 
+     * @param priorityLaneWeights the Priority Lane Weights, each greater than 0
+     * @throws IllegalArgumentException if a weight isn't greater than 0
+     */
+    public void setPriorityLaneWeights(int... priorityLaneWeights)
+    {
+        if (priorityLaneWeights != null)
+        {
+            for (final int weight : priorityLaneWeights)
+            {
+                Assert.isTrue(weight > 0, "'priorityLaneWeights' must be greater than 0!");
+            }
+        }
+        this.priorityLaneWeights = priorityLaneWeights == null
+            ? null
+            : priorityLaneWeights.clone();
+    }
+
+    /**
+     * Returns the {@link MqttEventDispatchMode} of the Events of the MQTT Client.
+     * <p>
+     * The default value is {@link MqttEventDispatchMode#SYNCHRONOUS}.
+     * 
+     * @return a {@link MqttEventDispatchMode} value
+     */
+    public MqttEventDispatchMode getEventDispatchMode()
+    {
+        return eventDispatchMode;
+    }
+
+    /**
+     * Sets the {@link MqttEventDispatchMode} of the Events of the MQTT Client.
+     * 
+     * @param eventDispatchMode the {@link MqttEventDispatchMode}
+     * @throws IllegalArgumentException if the parameter {@code eventDispatchMode} is null
+     */
+    public void setEventDispatchMode(MqttEventDispatchMode eventDispatchMode)
+    {
+        Assert.notNull(eventDispatchMode, "'eventDispatchMode' must be set!");
+        this.eventDispatchMode = eventDispatchMode;
+    }
+
+    /**
+     * Returns the maximum number of Events waiting to be published when using
+     * {@link MqttEventDispatchMode#ASYNCHRONOUS}, which is rounded up to a power of two.
+     * <p>
+     * The capacity is read when the first Event is dispatched. The default value is 1,024.
+     * 
+     * @return the Event Buffer Capacity
+     */
+    public int getEventBufferCapacity()
+    {
+        return eventBufferCapacity;
+    }
+
+    /**
+     * Sets the maximum number of Events waiting to be published when using
+     * {@link MqttEventDispatchMode#ASYNCHRONOUS}.
+     * 
+     * @param eventBufferCapacity the Event Buffer Capacity
+     * @throws IllegalArgumentException if the {@code eventBufferCapacity} isn't greater than 0
+     */
+    public void setEventBufferCapacity(int eventBufferCapacity)
+    {
+        Assert.isTrue(eventBufferCapacity > 0, "'eventBufferCapacity' must be greater than 0!");
+        this.eventBufferCapacity = eventBufferCapacity;
+    }
+
+    /**
+     * Returns the {@link MqttEventOverflowBehavior} that's applied when the buffer of an
+     * {@link MqttEventDispatchMode#ASYNCHRONOUS} dispatch is full.
+     * <p>
+     * The default value is {@link MqttEventOverflowBehavior#DROP}.
+     * 
+     * @return a {@link MqttEventOverflowBehavior} value
+     */
+    public MqttEventOverflowBehavior getEventOverflowBehavior()
+    {
+        return eventOverflowBehavior;
+    }
+
+    /**
+     * Sets the {@link MqttEventOverflowBehavior} that's applied when the buffer of an
+     * {@link MqttEventDispatchMode#ASYNCHRONOUS} dispatch is full.
+     * 
+     * @param eventOverflowBehavior the {@link MqttEventOverflowBehavior}
+     * @throws IllegalArgumentException if the parameter {@code eventOverflowBehavior} is null
+     */
+    public void setEventOverflowBehavior(MqttEventOverflowBehavior eventOverflowBehavior)
+    {
+        Assert.notNull(eventOverflowBehavior, "'eventOverflowBehavior' must be set!");
+        this.eventOverflowBehavior = eventOverflowBehavior;
+    }
+
+    /**
+     * Returns whether Events of the {@code messageEventType} are published.
+     * <p>
+     * By default, every type is published. Connection Status Events are always published.
+     * 
+     * @param messageEventType the {@link MqttMessageEventType}
+     * @return whether the Events are published
+     */
+    public boolean isMessageEventEnabled(MqttMessageEventType messageEventType)
+    {
+        return (disabledMessageEventTypes & (1 << messageEventType.ordinal())) == 0;
+    }
+
+    /**
+     * Sets whether Events of the {@code messageEventType} are published. A disabled type isn't
+     * even created, so it costs nothing when no listener needs it.
+     * 
+     * @param messageEventType the {@link MqttMessageEventType}
+     * @param enabled whether the Events are published
+     * @throws IllegalArgumentException if the parameter {@code messageEventType} is null
+     */
+    public synchronized void setMessageEventEnabled(MqttMessageEventType messageEventType,
+        boolean enabled)
+    {
+        Assert.notNull(messageEventType, "'messageEventType' must be set!");
+        if (enabled)
+        {
+            disabledMessageEventTypes &= ~(1 << messageEventType.ordinal());
+        }
+        else
+        {
+            disabledMessageEventTypes |= 1 << messageEventType.ordinal();
+        }
+    }
+
+    /**
+     * Returns N, where 1 in N of the {@link MqttMessageEventType#PUBLISHED} and
+     * {@link MqttMessageEventType#DELIVERED} Events is published, picked at random.
+     * <p>
+     * The default value is 1, which publishes every Event.
+     * 
+     * @return the Message Event Sample Rate
+     */
+    public int getMessageEventSampleRate()
+    {
+        return messageEventSampleRate;
+    }
+
+    /**
+     * Sets N, where 1 in N of the {@link MqttMessageEventType#PUBLISHED} and
+     * {@link MqttMessageEventType#DELIVERED} Events is published, picked at random.
+     * 
+     * @param messageEventSampleRate the Message Event Sample Rate
+     * @throws IllegalArgumentException if the {@code messageEventSampleRate} isn't greater than 0
+     */
+    public void setMessageEventSampleRate(int messageEventSampleRate)
+    {
+        Assert.isTrue(messageEventSampleRate > 0,
+            "'messageEventSampleRate' must be greater than 0!");
+        this.messageEventSampleRate = messageEventSampleRate;
+    }
+
+    /**
+     * Returns the number of worker threads that send in-coming messages to the in-bound
+     * {@link org.springframework.messaging.MessageChannel}, or 0 to send them on the MQTT Client's
+     * callback thread.
+     * <p>
+     * Messages are assigned to a worker by the hash of their Topic, so messages of the same Topic
+     * are sent in the order they arrived, while different Topics are sent in parallel. The value
+     * is read when the first message arrives. The default value is 0.
+     * 
+     * @return the Inbound Dispatch Threads
+     */
+    public int getInboundDispatchThreads()
+    {
+        return inboundDispatchThreads;
+    }
+
+    /**
+     * Sets the number of worker threads that send in-coming messages to the in-bound
+     * {@link org.springframework.messaging.MessageChannel}, or 0 to send them on the MQTT Client's
+     * callback thread.
+     * 
+     * @param inboundDispatchThreads the Inbound Dispatch Threads
+     * @throws IllegalArgumentException if the {@code inboundDispatchThreads} is less than 0
+     */
+    public void setInboundDispatchThreads(int inboundDispatchThreads)
+    {
+        Assert.isTrue(inboundDispatchThreads >= 0,
+            "'inboundDispatchThreads' must be 0 or greater!");
+        this.inboundDispatchThreads = inboundDispatchThreads;
+    }
+
+    /**
+     * Returns the maximum number of in-coming messages waiting for each inbound worker thread.
+     * <p>
+     * The default value is 1,000.
+     * 
+     * @return the Inbound Queue Capacity
+     */
+    public int getInboundQueueCapacity()
+    {
+        return inboundQueueCapacity;
+    }
+
+    /**
+     * Sets the maximum number of in-coming messages waiting for each inbound worker thread.
+     * 
+     * @param inboundQueueCapacity the Inbound Queue Capacity
+     * @throws IllegalArgumentException if the {@code inboundQueueCapacity} isn't greater than 0
+     */
+    public void setInboundQueueCapacity(int inboundQueueCapacity)
+    {
+        Assert.isTrue(inboundQueueCapacity > 0, "'inboundQueueCapacity' must be greater than 0!");
+        this.inboundQueueCapacity = inboundQueueCapacity;
+    }
+
+    /**
+     * Returns the {@link MqttInboundOverflowStrategy} that's applied when the queue of an inbound
+     * worker thread is full.
+     * <p>
+     * The default value is {@link MqttInboundOverflowStrategy#BLOCK}.
+     * 
+     * @return a {@link MqttInboundOverflowStrategy} value
+     */
+    public MqttInboundOverflowStrategy getInboundOverflowStrategy()
+    {
+        return inboundOverflowStrategy;
+    }
+
+    /**
+     * Sets the {@link MqttInboundOverflowStrategy} that's applied when the queue of an inbound
+     * worker thread is full.
+     * 
+     * @param inboundOverflowStrategy the {@link MqttInboundOverflowStrategy}
+     * @throws IllegalArgumentException if the parameter {@code inboundOverflowStrategy} is null
+     */
+    public void setInboundOverflowStrategy(MqttInboundOverflowStrategy inboundOverflowStrategy)
+    {
+        Assert.notNull(inboundOverflowStrategy, "'inboundOverflowStrategy' must be set!");
+        this.inboundOverflowStrategy = inboundOverflowStrategy;
+    }
+
+    /**
+     * Returns the Topic Filters whose in-coming messages are sent to the in-bound
+     * {@link org.springframework.messaging.MessageChannel} in batches.
+     * <p>
+     * The messages of a Topic that matches one of these Topic Filters are collected per Topic
+     * Filter, and sent as one {@link org.springframework.messaging.Message} with a {@link List} of
+     * the messages as its payload, once the Inbound Batch Max Messages, Inbound Batch Max Bytes or
+     * Inbound Batch Linger Milliseconds is reached. The default value is an empty list.
+     * 
+     * @return an unmodifiable {@link List} of Topic Filters
+     * @see com.github.christophersmith.summer.mqtt.core.util.MqttHeaderHelper#TOPIC_FILTER
+     */
+    public List<String> getBatchedTopicFilters()
+    {
+        return Collections.unmodifiableList(batchedTopicFilters);
+    }
+
+    /**
+     * Adds a Topic Filter whose in-coming messages are sent in batches.
+     * 
+     * @param topicFilter the Topic Filter, which can include wildcards
+     * @throws IllegalArgumentException if the parameter {@code topicFilter} is null or empty
+     */
+    public void addBatchedTopicFilter(String topicFilter)
+    {
+        Assert.hasText(topicFilter, "'topicFilter' must be set!");
+        if (!batchedTopicFilters.contains(topicFilter))
+        {
+            batchedTopicFilters.add(topicFilter);
+        }
+    }
+
+    /**
+     * Removes a Topic Filter whose in-coming messages are sent in batches.
+     * 
+     * @param topicFilter the Topic Filter to remove
+     */
+    public void removeBatchedTopicFilter(String topicFilter)
+    {
+        batchedTopicFilters.remove(topicFilter);
+    }
+
+    /**
+     * Returns the number of messages at which a batch is sent.
+     * <p>
+     * The default value is 100.
+     * 
+     * @return the Inbound Batch Max Messages
+     */
+    public int getInboundBatchMaxMessages()
+    {
+        return inboundBatchMaxMessages;
+    }
+
+    /**
+     * Sets the number of messages at which a batch is sent.
+     * 
+     * @param inboundBatchMaxMessages the Inbound Batch Max Messages
+     * @throws IllegalArgumentException if the {@code inboundBatchMaxMessages} isn't greater than 0
+     */
+    public void setInboundBatchMaxMessages(int inboundBatchMaxMessages)
+    {
+        Assert.isTrue(inboundBatchMaxMessages > 0,
+            "'inboundBatchMaxMessages' must be greater than 0!");
+        this.inboundBatchMaxMessages = inboundBatchMaxMessages;
+    }
+
+    /**
+     * Returns the total payload size, in bytes, at which a batch is sent.
+     * <p>
+     * The default value is 1,048,576 (1 MiB).
+     * 
+     * @return the Inbound Batch Max Bytes
+     */
+    public int getInboundBatchMaxBytes()
+    {
+        return inboundBatchMaxBytes;
+    }
+
+    /**
+     * Sets the total payload size, in bytes, at which a batch is sent.
+     * 
+     * @param inboundBatchMaxBytes the Inbound Batch Max Bytes
+     * @throws IllegalArgumentException if the {@code inboundBatchMaxBytes} isn't greater than 0
+     */
+    public void setInboundBatchMaxBytes(int inboundBatchMaxBytes)
+    {
+        Assert.isTrue(inboundBatchMaxBytes > 0, "'inboundBatchMaxBytes' must be greater than 0!");
+        this.inboundBatchMaxBytes = inboundBatchMaxBytes;
+    }
+
+    /**
+     * Returns the longest time, in milliseconds, the first message of a batch waits before the
+     * batch is sent.
+     * <p>
+     * The default value is 100 milliseconds.
+     * 
+     * @return the Inbound Batch Linger Milliseconds
+     * @see #isInboundBatchAdaptiveLinger()
+     */
+    public long getInboundBatchLingerMilliseconds()
+    {
+        return inboundBatchLingerMilliseconds;
+    }
+
+    /**
+     * Sets the longest time, in milliseconds, the first message of a batch waits before the batch
+     * is sent.
+     * 
+     * @param inboundBatchLingerMilliseconds the Inbound Batch Linger Milliseconds
+     * @throws IllegalArgumentException if the {@code inboundBatchLingerMilliseconds} isn't greater
+     *             than 0
+     */
+    public void setInboundBatchLingerMilliseconds(long inboundBatchLingerMilliseconds)
+    {
+        Assert.isTrue(inboundBatchLingerMilliseconds > 0,
+            "'inboundBatchLingerMilliseconds' must be greater than 0!");
+        this.inboundBatchLingerMilliseconds = inboundBatchLingerMilliseconds;
+    }
+
+    /**
+     * Returns whether the linger time of a batch adapts to the load.
+     * <p>
+     * When batches are sent because the linger time passed, before they were full, the linger
+     * time of the next batch shrinks towards 1/16 of the Inbound Batch Linger Milliseconds, as
+     * waiting longer only adds latency. When batches fill up again, it grows back. The default
+     * value is true.
+     * 
+     * @return whether the linger time adapts to the load
+     */
+    public boolean isInboundBatchAdaptiveLinger()
+    {
+        return inboundBatchAdaptiveLinger;
+    }
+
+    /**
+     * Sets whether the linger time of a batch adapts to the load.
+     * 
+     * @param inboundBatchAdaptiveLinger whether the linger time adapts to the load
+     */
+    public void setInboundBatchAdaptiveLinger(boolean inboundBatchAdaptiveLinger)
+    {
+        this.inboundBatchAdaptiveLinger = inboundBatchAdaptiveLinger;
+    }
+
+    /**
+     * Returns the {@link MqttDuplicateKeyExtractor} used to recognize in-coming QoS 1 messages
+     * that were already received, such as the redeliveries that follow a reconnect.
+     * <p>
+     * Only the first message with a key is sent to the in-bound
+     * {@link org.springframework.messaging.MessageChannel}; later messages with the same key are
+     * dropped until the Duplicate Expiry Milliseconds have passed. With
+     * {@link MqttDuplicateKeyExtractor#MESSAGE_ID}, only messages with the DUP flag set are
+     * dropped. The default value is {@literal null}, meaning duplicates aren't suppressed.
+     * 
+     * @return a {@link MqttDuplicateKeyExtractor}, or null if undefined
+     */
+    public MqttDuplicateKeyExtractor getDuplicateKeyExtractor()
+    {
+        return duplicateKeyExtractor;
+    }
+
+    /**
+     * Sets the {@link MqttDuplicateKeyExtractor} used to recognize in-coming QoS 1 messages that
+     * were already received.
+     * 
+     * @param duplicateKeyExtractor the {@link MqttDuplicateKeyExtractor}, or null to not suppress
+     *            duplicates
+     */
+    public void setDuplicateKeyExtractor(MqttDuplicateKeyExtractor duplicateKeyExtractor)
+    {
+        this.duplicateKeyExtractor = duplicateKeyExtractor;
+    }
+
+    /**
+     * Returns the minimum time, in milliseconds, the key of an in-coming message is remembered.
+     * <p>
+     * The value is read when the first QoS 1 message arrives. The default value is 60,000
+     * milliseconds.
+     * 
+     * @return the Duplicate Expiry Milliseconds
+     */
+    public long getDuplicateExpiryMilliseconds()
+    {
+        return duplicateExpiryMilliseconds;
+    }
+
+    /**
+     * Sets the minimum time, in milliseconds, the key of an in-coming message is remembered.
+     * 
+     * @param duplicateExpiryMilliseconds the Duplicate Expiry Milliseconds
+     * @throws IllegalArgumentException if the {@code duplicateExpiryMilliseconds} isn't greater
+     *             than 0
+     */
+    public void setDuplicateExpiryMilliseconds(long duplicateExpiryMilliseconds)
+    {
+        Assert.isTrue(duplicateExpiryMilliseconds > 0,
+            "'duplicateExpiryMilliseconds' must be greater than 0!");
+        this.duplicateExpiryMilliseconds = duplicateExpiryMilliseconds;
+    }
+
+    /**
+     * Returns the number of keys that are remembered, which fixes the memory used to between 16
+     * and 32 bytes per key.
+     * <p>
+     * If more messages arrive within the Duplicate Expiry Milliseconds than this capacity, the
+     * oldest keys are forgotten early. The value is read when the first QoS 1 message arrives. The
+     * default value is 131,072.
+     * 
+     * @return the Duplicate Cache Capacity
+     */
+    public int getDuplicateCacheCapacity()
+    {
+        return duplicateCacheCapacity;
+    }
+
+    /**
+     * Sets the number of keys that are remembered.
+     * 
+     * @param duplicateCacheCapacity the Duplicate Cache Capacity
+     * @throws IllegalArgumentException if the {@code duplicateCacheCapacity} isn't greater than 0
+     */
+    public void setDuplicateCacheCapacity(int duplicateCacheCapacity)
+    {
+        Assert.isTrue(duplicateCacheCapacity > 0,
+            "'duplicateCacheCapacity' must be greater than 0!");
+        this.duplicateCacheCapacity = duplicateCacheCapacity;
+    }
 }
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core;
+
+/**
+ * The codecs that can be used to compress the payloads of out-going messages.
+ * 
+ * @see com.github.christophersmith.summer.mqtt.core.compression.MqttPayloadCompression
+ */
+public enum MqttCompression
+{
+        /**
+         * The payload isn't compressed.
+         */
+        NONE(0),
+        /**
+         * The payload is compressed with raw Deflate, which gives the best compression ratio.
+         */
+        DEFLATE(1),
+        /**
+         * The payload is compressed with a byte-oriented LZ77 codec in the style of LZ4, which is
+         * several times faster than Deflate at a lower compression ratio.
+         */
+        LZ(2);
+
+    private transient final int codecIdentifier;
+
+    MqttCompression(final int codecIdentifier)
+    {
+        this.codecIdentifier = codecIdentifier;
+    }
+
+    /**
+     * Returns the identifier written to the framing marker of a compressed payload.
+     * 
+     * @return the Codec Identifier
+     */
+    public int getCodecIdentifier()
+    {
+        return codecIdentifier;
+    }
+
+    /**
+     * Finds the {@link MqttCompression} instance that matches the {@code codecIdentifier} value.
+     * 
+     * @param codecIdentifier the Codec Identifier to search by
+     * @return a {@link MqttCompression} value, or null if there isn't a match
+     */
+    public static final MqttCompression findByCodecIdentifier(final int codecIdentifier)
+    {
+        MqttCompression record = null;
+        for (MqttCompression value : values())
+        {
+            if (value.getCodecIdentifier() == codecIdentifier)
+            {
+                record = value;
+                break;
+            }
+        }
+        return record;
+    }
+}
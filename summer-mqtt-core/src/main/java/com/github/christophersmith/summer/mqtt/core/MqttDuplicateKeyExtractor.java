@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core;
+
+/**
+ * Extracts the key by which in-coming QoS 1 messages are recognized as duplicates.
+ * <p>
+ * Two messages with the same key, received within the Duplicate Expiry Milliseconds of each
+ * other, are considered the same message, and only the first is sent to the in-bound
+ * {@link org.springframework.messaging.MessageChannel}. An application that carries its own
+ * message identifier inside the payload can implement this interface to read it.
+ * 
+ * @see MqttClientConfiguration#setDuplicateKeyExtractor(MqttDuplicateKeyExtractor)
+ */
+public interface MqttDuplicateKeyExtractor
+{
+    /**
+     * Keys a message by its Topic and the Message ID set by the Broker.
+     * <p>
+     * A Broker reuses a Message ID as soon as the message is acknowledged, so with this extractor
+     * only a message with the DUP flag set, which the Broker sends when it redelivers, is dropped
+     * if its key was seen. A message without the DUP flag is always sent on, and its key is
+     * recorded for the redeliveries that follow it.
+     */
+    MqttDuplicateKeyExtractor MESSAGE_ID   = (topic, messageId, payload) -> {
+        return ((long) topic.hashCode() << 32) | (messageId & 0xFFFFFFFFL);
+    };
+    /**
+     * Keys a message by a 64-bit FNV-1a hash of its Topic and payload, so a message that was
+     * published twice with the same content is also recognized.
+     */
+    MqttDuplicateKeyExtractor PAYLOAD_HASH = (topic, messageId, payload) -> {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < topic.length(); i++)
+        {
+            hash = (hash ^ topic.charAt(i)) * 0x100000001B3L;
+        }
+        for (final byte value : payload)
+        {
+            hash = (hash ^ (value & 0xFF)) * 0x100000001B3L;
+        }
+        return hash;
+    };
+
+    /**
+     * Returns the key of an in-coming message.
+     * 
+     * @param topic the Topic the message was received from
+     * @param messageId the Message ID set by the Broker
+     * @param payload the payload as received, which must not be changed
+     * @return the key
+     */
+    long extractKey(String topic, int messageId, byte[] payload);
+}
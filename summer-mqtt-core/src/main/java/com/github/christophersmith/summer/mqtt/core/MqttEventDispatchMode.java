@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core;
+
+/**
+ * Defines on which thread the Events of a MQTT Client are published to the
+ * {@link org.springframework.context.ApplicationEventPublisher}.
+ * 
+ * @see MqttClientConfiguration#setEventDispatchMode(MqttEventDispatchMode)
+ */
+public enum MqttEventDispatchMode
+{
+        /**
+         * Events are published on the thread that raised them, which is often the callback thread
+         * of the MQTT Client, so a slow listener delays the acknowledgments of the connection.
+         */
+        SYNCHRONOUS,
+        /**
+         * Events are placed in a bounded buffer and published in order by a separate thread, so a
+         * slow listener only delays other Events.
+         */
+        ASYNCHRONOUS;
+}
@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core;
+
+/**
+ * Defines what happens to a Message Status Event that is raised while the buffer of an
+ * {@link MqttEventDispatchMode#ASYNCHRONOUS} dispatch is full.
+ * <p>
+ * Connection Status Events are never dropped or coalesced, and wait for room in the buffer, so
+ * they are always published in the order they were raised in.
+ * 
+ * @see MqttClientConfiguration#setEventOverflowBehavior(MqttEventOverflowBehavior)
+ */
+public enum MqttEventOverflowBehavior
+{
+        /**
+         * The Event is dropped, and counted as dropped.
+         */
+        DROP,
+        /**
+         * The caller is blocked until there is room in the buffer.
+         */
+        BLOCK,
+        /**
+         * The Event is held aside as the latest Event of its type, and published once the buffer
+         * is drained. An Event it replaces is counted as dropped.
+         */
+        COALESCE;
+}
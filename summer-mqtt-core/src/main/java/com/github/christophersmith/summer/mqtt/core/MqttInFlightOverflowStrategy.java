@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core;
+
+/**
+ * Defines what happens to an out-going message when the in-flight window of the MQTT Client is
+ * full.
+ * 
+ * @see MqttClientConfiguration#setMaxInFlightMessages(int)
+ */
+public enum MqttInFlightOverflowStrategy
+{
+        /**
+         * The caller is blocked until a slot in the in-flight window is freed, or until the
+         * in-flight wait time has passed, after which the message fails.
+         */
+        BLOCK,
+        /**
+         * The message fails immediately.
+         */
+        FAIL,
+        /**
+         * The message is added to a bounded pending queue and published once a slot is freed. When
+         * the pending queue is full, the oldest pending QoS 0 message is dropped to make room; if
+         * there isn't one, the message fails.
+         */
+        DROP_OLDEST_QOS_0,
+        /**
+         * The message is added to a bounded pending queue and published once a slot is freed. When
+         * the pending queue is full, the message fails.
+         */
+        QUEUE;
+}
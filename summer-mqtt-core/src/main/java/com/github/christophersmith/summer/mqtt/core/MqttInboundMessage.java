@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.util.Assert;
+import org.springframework.util.IdGenerator;
+
+import com.github.christophersmith.summer.mqtt.core.util.MqttHeaderHelper;
+
+/**
+ * A {@link Message} for an in-coming MQTT message, that holds the Topic, QoS and flags in fields.
+ * <p>
+ * Unlike a {@link Message} created by a
+ * {@link org.springframework.messaging.support.MessageBuilder}, the {@link MessageHeaders} are only
+ * created when {@link #getHeaders()} is first called, and hold the same {@link MqttHeaderHelper}
+ * keys. Applications, and the {@link MqttHeaderHelper} methods, can read the values through the
+ * getters of this class instead, which doesn't create the {@link MessageHeaders} at all.
+ *
+ * @param <T> the payload type
+ */
+public final class MqttInboundMessage<T> implements Message<T>
+{
+    private final T                       payload;
+    private final String                  topic;
+    private final int                     messageId;
+    private final MqttQualityOfService    qualityOfService;
+    private final boolean                 retained;
+    private final boolean                 duplicate;
+    private final MqttCompression         compression;
+    private final MqttMessageIdGeneration idGeneration;
+    private final IdGenerator             idGenerator;
+    private final long                    timestamp = System.currentTimeMillis();
+    private volatile MessageHeaders       headers;
+
+    /**
+     * Creates a new instance.
+     * 
+     * @param payload the payload
+     * @param topic the Topic the message was received from
+     * @param messageId the Message ID set by the MQTT Client
+     * @param qualityOfService the {@link MqttQualityOfService} the message was received as
+     * @param retained whether the message was retained
+     * @param duplicate whether the message is likely a duplicate
+     * @param compression the {@link MqttCompression} the payload was decompressed from, or null
+     * @param idGeneration the {@link MqttMessageIdGeneration} for the
+     *            {@link MessageHeaders#ID} header
+     * @param idGenerator the {@link IdGenerator} used for
+     *            {@link MqttMessageIdGeneration#SEQUENTIAL}, otherwise ignored
+     * 
+     * @throws IllegalArgumentException if the {@code payload}, {@code topic},
+     *             {@code qualityOfService} or {@code idGeneration} is null
+     */
+    public MqttInboundMessage(T payload, String topic, int messageId,
+        MqttQualityOfService qualityOfService, boolean retained, boolean duplicate,
+        MqttCompression compression, MqttMessageIdGeneration idGeneration,
+        IdGenerator idGenerator)
+    {
+        Assert.notNull(payload, "'payload' must be set!");
+        Assert.notNull(topic, "'topic' must be set!");
+        Assert.notNull(qualityOfService, "'qualityOfService' must be set!");
+        Assert.notNull(idGeneration, "'idGeneration' must be set!");
+        this.payload = payload;
+        this.topic = topic;
+        this.messageId = messageId;
+        this.qualityOfService = qualityOfService;
+        this.retained = retained;
+        this.duplicate = duplicate;
+        this.compression = compression;
+        this.idGeneration = idGeneration;
+        this.idGenerator = idGenerator;
+    }
+
+    @Override
+    public T getPayload()
+    {
+        return payload;
+    }
+
+    /**
+     * Returns the {@link MessageHeaders}, which are created on the first call.
+     * <p>
+     * The headers hold the {@link MqttHeaderHelper#TOPIC}, {@link MqttHeaderHelper#ID},
+     * {@link MqttHeaderHelper#QOS}, {@link MqttHeaderHelper#RETAINED},
+     * {@link MqttHeaderHelper#DUPLICATE} and, if set, {@link MqttHeaderHelper#COMPRESSION} values,
+     * along with the {@link MessageHeaders#ID} and {@link MessageHeaders#TIMESTAMP}.
+     */
+    @Override
+    public MessageHeaders getHeaders()
+    {
+        MessageHeaders value = headers;
+        if (value == null)
+        {
+            final Map<String, Object> values = new HashMap<String, Object>(16);
+            values.put(MqttHeaderHelper.TOPIC, topic);
+            values.put(MqttHeaderHelper.ID, messageId);
+            values.put(MqttHeaderHelper.QOS, qualityOfService);
+            values.put(MqttHeaderHelper.RETAINED, retained);
+            values.put(MqttHeaderHelper.DUPLICATE, duplicate);
+            if (compression != null)
+            {
+                values.put(MqttHeaderHelper.COMPRESSION, compression);
+            }
+            synchronized (this)
+            {
+                value = headers;
+                if (value == null)
+                {
+                    value = new InboundMessageHeaders(values, createId(), timestamp);
+                    headers = value;
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the Topic the message was received from.
+     * 
+     * @return the Topic
+     */
+    public String getTopic()
+    {
+        return topic;
+    }
+
+    /**
+     * Returns the Message ID set by the MQTT Client.
+     * 
+     * @return the Message ID
+     */
+    public int getMessageId()
+    {
+        return messageId;
+    }
+
+    /**
+     * Returns the {@link MqttQualityOfService} the message was received as.
+     * 
+     * @return a {@link MqttQualityOfService} value
+     */
+    public MqttQualityOfService getQualityOfService()
+    {
+        return qualityOfService;
+    }
+
+    /**
+     * Returns whether the message was retained.
+     * 
+     * @return whether the message was retained
+     */
+    public boolean isRetained()
+    {
+        return retained;
+    }
+
+    /**
+     * Returns whether the message is likely a duplicate.
+     * 
+     * @return whether the message is likely a duplicate
+     */
+    public boolean isDuplicate()
+    {
+        return duplicate;
+    }
+
+    /**
+     * Returns the {@link MqttCompression} the payload was decompressed from.
+     * 
+     * @return a {@link MqttCompression} value, or null if the payload wasn't compressed
+     */
+    public MqttCompression getCompression()
+    {
+        return compression;
+    }
+
+    /**
+     * Returns the time the message was created, in milliseconds since the epoch.
+     * 
+     * @return the time the message was created
+     */
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("MqttInboundMessage [payload=");
+        if (payload instanceof byte[])
+        {
+            builder.append("byte[").append(((byte[]) payload).length).append(']');
+        }
+        else
+        {
+            builder.append(payload);
+        }
+        builder.append(", topic=").append(topic);
+        builder.append(", messageId=").append(messageId);
+        builder.append(", qualityOfService=").append(qualityOfService);
+        builder.append(", retained=").append(retained);
+        builder.append(", duplicate=").append(duplicate);
+        builder.append(", compression=").append(compression);
+        builder.append("]");
+        return builder.toString();
+    }
+
+    private UUID createId()
+    {
+        UUID id = null;
+        if (MqttMessageIdGeneration.NONE == idGeneration)
+        {
+            id = MessageHeaders.ID_VALUE_NONE;
+        }
+        else if (MqttMessageIdGeneration.SEQUENTIAL == idGeneration
+            && idGenerator != null)
+        {
+            id = idGenerator.generateId();
+        }
+        // a null ID has MessageHeaders use Spring's configured ID generator
+        return id;
+    }
+
+    private static final class InboundMessageHeaders extends MessageHeaders
+    {
+        private static final long serialVersionUID = 1L;
+
+        private InboundMessageHeaders(final Map<String, Object> headers, final UUID id,
+            final long timestamp)
+        {
+            super(headers, id, timestamp);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core;
+
+/**
+ * Defines what happens to an in-coming message when the queue of the inbound worker it's assigned
+ * to is full.
+ * <p>
+ * While the MQTT Client's callback thread waits, it doesn't read or acknowledge further messages,
+ * which slows down the Broker for this connection rather than losing messages.
+ * 
+ * @see MqttClientConfiguration#setInboundDispatchThreads(int)
+ */
+public enum MqttInboundOverflowStrategy
+{
+        /**
+         * The MQTT Client's callback thread waits until there is room in the queue.
+         */
+        BLOCK,
+        /**
+         * A QoS 0 message is dropped. QoS 1 and QoS 2 messages are handled as with {@link #BLOCK}.
+         */
+        DROP_QOS_0,
+        /**
+         * The message is dropped, whatever its QoS. As the MQTT Client still acknowledges it, a
+         * dropped QoS 1 or QoS 2 message is lost.
+         */
+        DROP;
+}
@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core;
+
+/**
+ * Defines how the payload of an in-coming message is handed to the in-bound
+ * {@link org.springframework.messaging.MessageChannel}.
+ * 
+ * @see MqttClientConfiguration#setInboundPayloadMode(MqttInboundPayloadMode)
+ */
+public enum MqttInboundPayloadMode
+{
+        /**
+         * The payload is a {@code byte[]} copy of the received payload, which the application is
+         * free to change.
+         */
+        COPY,
+        /**
+         * The payload is the {@code byte[]} the MQTT Client received, without a copy. The
+         * application takes ownership of the array, and must not change it if the same
+         * {@link org.springframework.messaging.Message} is handled by more than one subscriber.
+         */
+        SHARED,
+        /**
+         * The payload is a read-only {@link java.nio.ByteBuffer} view of the received payload,
+         * without a copy.
+         */
+        READ_ONLY_BUFFER;
+}
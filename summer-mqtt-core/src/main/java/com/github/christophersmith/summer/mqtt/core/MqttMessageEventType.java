@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core;
+
+/**
+ * Defines the types of Message Status Events a MQTT Client can publish, so each can be disabled or
+ * sampled.
+ * 
+ * @see MqttClientConfiguration#setMessageEventEnabled(MqttMessageEventType, boolean)
+ * @see MqttClientConfiguration#setMessageEventSampleRate(int)
+ */
+public enum MqttMessageEventType
+{
+        /**
+         * The {@link com.github.christophersmith.summer.mqtt.core.event.MqttMessagePublishedEvent},
+         * published for each message and subject to sampling.
+         */
+        PUBLISHED,
+        /**
+         * The
+         * {@link com.github.christophersmith.summer.mqtt.core.event.MqttMessageBatchPublishedEvent},
+         * published for each batch.
+         */
+        BATCH_PUBLISHED,
+        /**
+         * The {@link com.github.christophersmith.summer.mqtt.core.event.MqttMessageDeliveredEvent},
+         * published for each message and subject to sampling.
+         */
+        DELIVERED,
+        /**
+         * The
+         * {@link com.github.christophersmith.summer.mqtt.core.event.MqttMessagePublishFailureEvent},
+         * published for each failure.
+         */
+        PUBLISH_FAILURE;
+}
@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core;
+
+/**
+ * Defines how the {@link org.springframework.messaging.MessageHeaders#ID} header of an in-coming
+ * {@link org.springframework.messaging.Message} is generated.
+ * <p>
+ * The ID is only generated when the headers of the {@link MqttInboundMessage} are first read.
+ * 
+ * @see MqttClientConfiguration#setInboundMessageIdGeneration(MqttMessageIdGeneration)
+ */
+public enum MqttMessageIdGeneration
+{
+        /**
+         * A random ID from Spring's configured ID generator, as for any other
+         * {@link org.springframework.messaging.Message}.
+         */
+        RANDOM,
+        /**
+         * A sequential ID, unique to the MQTT Client, which is cheaper than a random ID.
+         */
+        SEQUENTIAL,
+        /**
+         * No ID header is generated.
+         */
+        NONE;
+}
@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core;
+
+/**
+ * Defines how a pool of MQTT Client connections picks the connection an out-going message is
+ * published through.
+ */
+public enum MqttPoolRoutingStrategy
+{
+        /**
+         * The connection is picked from a hash of the Topic, so all messages for a Topic are
+         * published through the same connection and keep their order.
+         */
+        TOPIC_HASH,
+        /**
+         * The connection is picked from a hash of the
+         * {@link com.github.christophersmith.summer.mqtt.core.util.MqttHeaderHelper#ROUTING_KEY}
+         * header, so all messages with the same key keep their order. Messages without the header
+         * are routed by {@link #TOPIC_HASH}.
+         */
+        ROUTING_KEY,
+        /**
+         * The connected connection with the fewest in-flight and pending messages is picked, which
+         * spreads the load best but doesn't keep any order between messages.
+         */
+        LEAST_IN_FLIGHT;
+}
@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core;
+
+/**
+ * Defines how the priority lanes of out-going messages share free slots in the in-flight window.
+ * 
+ * @see MqttClientConfiguration#setPriorityLaneCount(int)
+ */
+public enum MqttPriorityScheduling
+{
+        /**
+         * A free slot always goes to the highest priority lane with a waiting message, so lower
+         * priority lanes only drain once every higher priority lane is empty.
+         */
+        STRICT,
+        /**
+         * Free slots are shared between the lanes with waiting messages in proportion to their
+         * weights, so lower priority lanes keep draining while higher priority lanes are busy.
+         */
+        WEIGHTED_FAIR;
+}
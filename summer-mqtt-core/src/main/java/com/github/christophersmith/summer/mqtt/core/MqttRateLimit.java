@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core;
+
+import org.springframework.util.Assert;
+
+/**
+ * An immutable rate limit for out-going messages, as a sustained rate and the number of messages
+ * that may be sent at once after a quiet period.
+ */
+public final class MqttRateLimit
+{
+    private transient final double messagesPerSecond;
+    private transient final int    burst;
+
+    /**
+     * The default constructor.
+     * 
+     * @param messagesPerSecond the sustained number of messages per second
+     * @param burst the number of messages that may be sent back to back
+     * @throws IllegalArgumentException if the {@code messagesPerSecond} or the {@code burst} isn't
+     *             greater than 0
+     */
+    public MqttRateLimit(final double messagesPerSecond, final int burst)
+    {
+        Assert.isTrue(messagesPerSecond > 0, "'messagesPerSecond' must be greater than 0!");
+        Assert.isTrue(burst > 0, "'burst' must be greater than 0!");
+        this.messagesPerSecond = messagesPerSecond;
+        this.burst = burst;
+    }
+
+    /**
+     * Returns the sustained number of messages per second.
+     * 
+     * @return the Messages per Second
+     */
+    public double getMessagesPerSecond()
+    {
+        return messagesPerSecond;
+    }
+
+    /**
+     * Returns the number of messages that may be sent back to back.
+     * 
+     * @return the Burst
+     */
+    public int getBurst()
+    {
+        return burst;
+    }
+}
@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core;
+
+/**
+ * Defines what happens to an out-going message that exceeds a rate limit.
+ * 
+ * @see MqttClientConfiguration#setClientRateLimit(MqttRateLimit)
+ * @see MqttClientConfiguration#addTopicRateLimit(String, MqttRateLimit)
+ */
+public enum MqttRateLimitBehavior
+{
+        /**
+         * The caller is blocked until the message is within the rate limit. If that would take
+         * longer than the rate limit wait time, the message fails.
+         */
+        WAIT,
+        /**
+         * The message fails immediately.
+         */
+        REJECT,
+        /**
+         * A QoS 0 message is dropped without an exception, though its
+         * {@link java.util.concurrent.CompletableFuture} fails and a failure Event is published.
+         * QoS 1 and QoS 2 messages are handled as with {@link #WAIT}.
+         */
+        DROP_QOS_0;
+}
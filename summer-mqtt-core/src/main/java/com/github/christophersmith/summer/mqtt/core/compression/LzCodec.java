@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.compression;
+
+import java.util.Arrays;
+
+/**
+ * A byte-oriented LZ77 block codec in the style of LZ4.
+ * <p>
+ * A block is a series of sequences. Each sequence starts with a token whose high nibble is the
+ * literal length and whose low nibble is the match length minus 4, where 15 means more length
+ * bytes follow, each adding up to 255. The literals follow, and then the match as a 2-byte
+ * little-endian offset back into the output. The last sequence only has literals. The decoder is
+ * given the length of the original data, as the framing marker carries it.
+ * <p>
+ * Instances hold a hash table and aren't thread-safe; {@link MqttPayloadCompression} keeps one per
+ * thread.
+ */
+final class LzCodec
+{
+    private static final int MINIMUM_MATCH  = 4;
+    private static final int MAXIMUM_OFFSET = 65535;
+    private static final int HASH_BITS      = 12;
+    private static final int RUN_MASK       = 15;
+    private final int[]      hashTable      = new int[1 << HASH_BITS];
+
+    /**
+     * Returns the largest number of bytes {@link #compress(byte[], int, byte[], int)} can write for
+     * {@code length} bytes of input.
+     */
+    static int maximumCompressedLength(final int length)
+    {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses {@code length} bytes of {@code source} into {@code target} from
+     * {@code targetOffset}, which must have room for {@link #maximumCompressedLength(int)} bytes.
+     * 
+     * @return the offset in {@code target} after the compressed data
+     */
+    int compress(final byte[] source, final int length, final byte[] target,
+        final int targetOffset)
+    {
+        Arrays.fill(hashTable, -1);
+        int position = 0;
+        int anchor = 0;
+        int output = targetOffset;
+        final int limit = length - MINIMUM_MATCH;
+        while (position <= limit)
+        {
+            final int value = readInt(source, position);
+            final int hash = (value * -1640531535) >>> (32 - HASH_BITS);
+            final int reference = hashTable[hash];
+            hashTable[hash] = position;
+            if (reference >= 0
+                && position - reference <= MAXIMUM_OFFSET
+                && readInt(source, reference) == value)
+            {
+                int matchLength = MINIMUM_MATCH;
+                while (position + matchLength < length
+                    && source[reference + matchLength] == source[position + matchLength])
+                {
+                    matchLength++;
+                }
+                output = writeSequence(source, anchor, position - anchor, target, output,
+                    position - reference, matchLength);
+                position += matchLength;
+                anchor = position;
+            }
+            else
+            {
+                position++;
+            }
+        }
+        return writeSequence(source, anchor, length - anchor, target, output, 0, 0);
+    }
+
+    /**
+     * Decompresses {@code sourceLength} bytes of {@code source} from {@code sourceOffset} into a
+     * new array of {@code length} bytes.
+     * 
+     * @throws IllegalArgumentException if the data is malformed
+     */
+    static byte[] decompress(final byte[] source, final int sourceOffset, final int sourceLength,
+        final int length)
+    {
+        final byte[] target = new byte[length];
+        final int end = sourceOffset + sourceLength;
+        int input = sourceOffset;
+        int output = 0;
+        boolean decoding = true;
+        try
+        {
+            while (decoding)
+            {
+                final int token = source[input++] & 0xFF;
+                int literalLength = token >>> 4;
+                if (literalLength == RUN_MASK)
+                {
+                    int value = 255;
+                    while (value == 255)
+                    {
+                        value = source[input++] & 0xFF;
+                        literalLength += value;
+                    }
+                }
+                System.arraycopy(source, input, target, output, literalLength);
+                input += literalLength;
+                output += literalLength;
+                if (output >= length)
+                {
+                    decoding = false;
+                }
+                else
+                {
+                    final int offset = (source[input] & 0xFF) | ((source[input + 1] & 0xFF) << 8);
+                    input += 2;
+                    int matchLength = token & RUN_MASK;
+                    if (matchLength == RUN_MASK)
+                    {
+                        int value = 255;
+                        while (value == 255)
+                        {
+                            value = source[input++] & 0xFF;
+                            matchLength += value;
+                        }
+                    }
+                    matchLength += MINIMUM_MATCH;
+                    if (offset == 0
+                        || offset > output
+                        || output + matchLength > length)
+                    {
+                        throw new IllegalArgumentException("The LZ data is malformed!");
+                    }
+                    // byte by byte, as the match may overlap the bytes it produces
+                    for (int i = 0; i < matchLength; i++)
+                    {
+                        target[output] = target[output - offset];
+                        output++;
+                    }
+                }
+            }
+        }
+        catch (ArrayIndexOutOfBoundsException ex)
+        {
+            throw new IllegalArgumentException("The LZ data is malformed!", ex);
+        }
+        if (input != end)
+        {
+            throw new IllegalArgumentException("The LZ data is malformed!");
+        }
+        return target;
+    }
+
+    private static int writeSequence(final byte[] source, final int literalOffset,
+        final int literalLength, final byte[] target, final int targetOffset, final int offset,
+        final int matchLength)
+    {
+        int output = targetOffset;
+        final int tokenOffset = output++;
+        int token = Math.min(literalLength, RUN_MASK) << 4;
+        output = writeLength(literalLength, target, output);
+        System.arraycopy(source, literalOffset, target, output, literalLength);
+        output += literalLength;
+        if (matchLength > 0)
+        {
+            target[output++] = (byte) offset;
+            target[output++] = (byte) (offset >>> 8);
+            token |= Math.min(matchLength - MINIMUM_MATCH, RUN_MASK);
+            output = writeLength(matchLength - MINIMUM_MATCH, target, output);
+        }
+        target[tokenOffset] = (byte) token;
+        return output;
+    }
+
+    private static int writeLength(final int length, final byte[] target, final int targetOffset)
+    {
+        int output = targetOffset;
+        if (length >= RUN_MASK)
+        {
+            int remaining = length - RUN_MASK;
+            while (remaining >= 255)
+            {
+                target[output++] = (byte) 255;
+                remaining -= 255;
+            }
+            target[output++] = (byte) remaining;
+        }
+        return output;
+    }
+
+    private static int readInt(final byte[] source, final int offset)
+    {
+        return (source[offset] & 0xFF)
+            | ((source[offset + 1] & 0xFF) << 8)
+            | ((source[offset + 2] & 0xFF) << 16)
+            | ((source[offset + 3] & 0xFF) << 24);
+    }
+}
@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.compression;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.springframework.util.Assert;
+
+import com.github.christophersmith.summer.mqtt.core.MqttCompression;
+
+/**
+ * A utility class that compresses and decompresses message payloads.
+ * <p>
+ * A compressed payload starts with a framing marker, so receivers can recognise and decompress it
+ * without any other information. The marker is the four bytes {@code 0x00 'S' 'M' 'Z'}, followed
+ * by the {@link MqttCompression#getCodecIdentifier()} byte and the length of the original payload
+ * as a 4-byte big-endian integer. A payload is only compressed if the result, marker included, is
+ * smaller than the original, so small or incompressible payloads are published as they are.
+ * <p>
+ * As the original length of an in-coming payload can't be trusted, it's checked against the most
+ * the codec can expand the compressed data to, and against a maximum length, before any memory is
+ * allocated for it.
+ * <p>
+ * The {@link Deflater}, {@link Inflater}, LZ hash table and working buffer are kept per thread and
+ * reused, rather than allocated for each message.
+ */
+public final class MqttPayloadCompression
+{
+    private static final byte[]                    MARKER                              = { 0x00, 'S', 'M', 'Z' };
+    private static final int                       FRAME_HEADER_LENGTH                 = MARKER.length + 5;
+    private static final int                       MAXIMUM_BUFFER_SIZE                 = 1024 * 1024;
+    private static final int                       DEFLATE_MAXIMUM_RATIO               = 1032;
+    private static final int                       LZ_MAXIMUM_RATIO                    = 255;
+    /**
+     * The default maximum length of a decompressed payload, of 16 MiB.
+     */
+    public static final int                        DEFAULT_MAXIMUM_DECOMPRESSED_LENGTH = 16 * 1024 * 1024;
+    private static final ThreadLocal<CodecContext> CODEC_CONTEXT                       = ThreadLocal
+        .withInitial(CodecContext::new);
+
+    /**
+     * Compresses the {@code payload} with the {@code compression} codec, and frames it with the
+     * marker.
+     * 
+     * @param payload the payload to compress
+     * @param compression the {@link MqttCompression} codec to use
+     * @return the framed compressed payload, or the {@code payload} itself if the codec is
+     *         {@link MqttCompression#NONE} or compressing doesn't make it smaller
+     * @throws IllegalArgumentException if the {@code payload} or the {@code compression} is null
+     */
+    public static byte[] compress(final byte[] payload, final MqttCompression compression)
+    {
+        Assert.notNull(payload, "'payload' must be set!");
+        Assert.notNull(compression, "'compression' must be set!");
+        byte[] result = payload;
+        if (MqttCompression.NONE != compression
+            && payload.length > FRAME_HEADER_LENGTH)
+        {
+            final CodecContext context = CODEC_CONTEXT.get();
+            int length = -1;
+            byte[] buffer = null;
+            if (MqttCompression.DEFLATE == compression)
+            {
+                // anything that doesn't fit within the original length isn't worth sending
+                buffer = context.getBuffer(payload.length);
+                final Deflater deflater = context.deflater;
+                deflater.reset();
+                deflater.setInput(payload);
+                deflater.finish();
+                final int count = deflater.deflate(buffer, FRAME_HEADER_LENGTH,
+                    payload.length - FRAME_HEADER_LENGTH);
+                if (deflater.finished())
+                {
+                    length = FRAME_HEADER_LENGTH + count;
+                }
+            }
+            else
+            {
+                buffer = context.getBuffer(
+                    FRAME_HEADER_LENGTH + LzCodec.maximumCompressedLength(payload.length));
+                length = context.lzCodec.compress(payload, payload.length, buffer,
+                    FRAME_HEADER_LENGTH);
+            }
+            if (length > 0
+                && length < payload.length)
+            {
+                System.arraycopy(MARKER, 0, buffer, 0, MARKER.length);
+                buffer[MARKER.length] = (byte) compression.getCodecIdentifier();
+                writeInt(buffer, MARKER.length + 1, payload.length);
+                result = Arrays.copyOf(buffer, length);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the {@link MqttCompression} codec the {@code payload} was compressed with, going by
+     * its framing marker.
+     * 
+     * @param payload the payload to inspect
+     * @return the {@link MqttCompression} codec, or {@link MqttCompression#NONE} if the
+     *         {@code payload} isn't framed
+     */
+    public static MqttCompression getCompression(final byte[] payload)
+    {
+        MqttCompression compression = MqttCompression.NONE;
+        if (payload != null
+            && payload.length >= FRAME_HEADER_LENGTH
+            && payload[0] == MARKER[0]
+            && payload[1] == MARKER[1]
+            && payload[2] == MARKER[2]
+            && payload[3] == MARKER[3])
+        {
+            final MqttCompression value = MqttCompression
+                .findByCodecIdentifier(payload[MARKER.length]);
+            if (value != null)
+            {
+                compression = value;
+            }
+        }
+        return compression;
+    }
+
+    /**
+     * Decompresses the {@code payload} if it starts with the framing marker, allowing up to
+     * {@link #DEFAULT_MAXIMUM_DECOMPRESSED_LENGTH} bytes.
+     * <p>
+     * This is a convenience method which calls {@link #decompress(byte[], int)}.
+     * 
+     * @param payload the payload to decompress
+     * @return the decompressed payload, or the {@code payload} itself if it isn't framed
+     * @throws IllegalArgumentException if the {@code payload} is null, or is framed but malformed
+     *             or too large
+     */
+    public static byte[] decompress(final byte[] payload)
+    {
+        return decompress(payload, DEFAULT_MAXIMUM_DECOMPRESSED_LENGTH);
+    }
+
+    /**
+     * Decompresses the {@code payload} if it starts with the framing marker.
+     * 
+     * @param payload the payload to decompress
+     * @param maximumLength the maximum length of the decompressed payload, in bytes
+     * @return the decompressed payload, or the {@code payload} itself if it isn't framed
+     * @throws IllegalArgumentException if the {@code payload} is null, or is framed but malformed,
+     *             or would decompress to more than {@code maximumLength} bytes
+     */
+    public static byte[] decompress(final byte[] payload, final int maximumLength)
+    {
+        Assert.notNull(payload, "'payload' must be set!");
+        final MqttCompression compression = getCompression(payload);
+        byte[] result = payload;
+        if (MqttCompression.NONE != compression)
+        {
+            final int length = readInt(payload, MARKER.length + 1);
+            final long expandableLength = (long) (payload.length - FRAME_HEADER_LENGTH)
+                * (MqttCompression.DEFLATE == compression ? DEFLATE_MAXIMUM_RATIO
+                    : LZ_MAXIMUM_RATIO);
+            if (length < 0
+                || length > expandableLength)
+            {
+                throw new IllegalArgumentException("The compressed payload is malformed!");
+            }
+            if (length > maximumLength)
+            {
+                throw new IllegalArgumentException(String.format(
+                    "The compressed payload exceeds the maximum length of %s bytes!",
+                    maximumLength));
+            }
+            if (MqttCompression.DEFLATE == compression)
+            {
+                result = new byte[length];
+                final Inflater inflater = CODEC_CONTEXT.get().inflater;
+                inflater.reset();
+                inflater.setInput(payload, FRAME_HEADER_LENGTH,
+                    payload.length - FRAME_HEADER_LENGTH);
+                try
+                {
+                    if (inflater.inflate(result) != length)
+                    {
+                        throw new IllegalArgumentException("The compressed payload is malformed!");
+                    }
+                }
+                catch (DataFormatException ex)
+                {
+                    throw new IllegalArgumentException("The compressed payload is malformed!", ex);
+                }
+            }
+            else
+            {
+                result = LzCodec.decompress(payload, FRAME_HEADER_LENGTH,
+                    payload.length - FRAME_HEADER_LENGTH, length);
+            }
+        }
+        return result;
+    }
+
+    private static void writeInt(final byte[] target, final int offset, final int value)
+    {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(final byte[] source, final int offset)
+    {
+        return ((source[offset] & 0xFF) << 24)
+            | ((source[offset + 1] & 0xFF) << 16)
+            | ((source[offset + 2] & 0xFF) << 8)
+            | (source[offset + 3] & 0xFF);
+    }
+
+    private static final class CodecContext
+    {
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final Inflater inflater = new Inflater(true);
+        private final LzCodec  lzCodec  = new LzCodec();
+        private byte[]         buffer   = new byte[0];
+
+        /**
+         * Returns the working buffer with room for at least {@code size} bytes. Buffers beyond
+         * 1 MiB aren't kept, so a single large payload doesn't pin memory to the thread.
+         */
+        private byte[] getBuffer(final int size)
+        {
+            byte[] result = buffer;
+            if (result.length < size)
+            {
+                result = new byte[size];
+                if (size <= MAXIMUM_BUFFER_SIZE)
+                {
+                    buffer = result;
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.converter;
+
+/**
+ * A {@link MqttPayloadConverter} for {@code byte[]} payloads, which are published as is.
+ */
+public final class ByteArrayPayloadConverter implements MqttPayloadConverter<byte[]>
+{
+    @Override
+    public Class<byte[]> getPayloadType()
+    {
+        return byte[].class;
+    }
+
+    @Override
+    public byte[] toBytes(final byte[] payload)
+    {
+        return payload;
+    }
+}
@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.converter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link MqttPayloadConverter} for {@link ByteBuffer} payloads, both heap and direct.
+ * <p>
+ * The remaining bytes of the buffer are published, and the buffer's position is left untouched. A
+ * heap buffer whose remaining bytes span its entire backing array is published without a copy, in
+ * which case that array must not be modified until the message is delivered. Any other buffer is
+ * copied once into an exactly sized array.
+ */
+public final class ByteBufferPayloadConverter implements MqttPayloadConverter<ByteBuffer>
+{
+    @Override
+    public Class<ByteBuffer> getPayloadType()
+    {
+        return ByteBuffer.class;
+    }
+
+    @Override
+    public byte[] toBytes(final ByteBuffer payload)
+    {
+        byte[] value = null;
+        if (payload.hasArray()
+            && payload.arrayOffset() + payload.position() == 0
+            && payload.remaining() == payload.array().length)
+        {
+            value = payload.array();
+        }
+        else
+        {
+            value = new byte[payload.remaining()];
+            payload.duplicate().get(value);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.converter;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A {@link MqttPayloadConverter} that encodes {@link CharSequence} payloads as UTF-8, which is the
+ * encoding the MQTT specification uses for strings.
+ * <p>
+ * A {@link String} is encoded with {@link String#getBytes(java.nio.charset.Charset)}, which the JVM
+ * already optimizes into a single allocation. Any other {@link CharSequence}, such as a
+ * {@link StringBuilder}, is encoded by a per-thread {@link CharsetEncoder} into a per-thread
+ * buffer that is reused between calls, so only the final array is allocated. Malformed or
+ * unmappable characters are replaced, as {@link String#getBytes(java.nio.charset.Charset)} does.
+ */
+public final class CharSequencePayloadConverter implements MqttPayloadConverter<CharSequence>
+{
+    private static final int                       MAXIMUM_POOLED_BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<EncoderState> ENCODER_STATE              = ThreadLocal
+        .withInitial(EncoderState::new);
+
+    @Override
+    public Class<CharSequence> getPayloadType()
+    {
+        return CharSequence.class;
+    }
+
+    @Override
+    public byte[] toBytes(final CharSequence payload)
+    {
+        byte[] value = null;
+        if (payload instanceof String)
+        {
+            value = ((String) payload).getBytes(StandardCharsets.UTF_8);
+        }
+        else
+        {
+            value = ENCODER_STATE.get().encode(payload);
+        }
+        return value;
+    }
+
+    private static final class EncoderState
+    {
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private ByteBuffer           buffer  = ByteBuffer.allocate(1024);
+
+        private byte[] encode(final CharSequence payload)
+        {
+            final int maximumLength = (int) Math
+                .ceil(payload.length() * (double) encoder.maxBytesPerChar());
+            ByteBuffer target = buffer;
+            if (maximumLength > target.capacity())
+            {
+                target = ByteBuffer.allocate(maximumLength);
+                if (maximumLength <= MAXIMUM_POOLED_BUFFER_SIZE)
+                {
+                    buffer = target;
+                }
+            }
+            target.clear();
+            encoder.reset();
+            encoder.encode(CharBuffer.wrap(payload), target, true);
+            encoder.flush(target);
+            return Arrays.copyOf(target.array(), target.position());
+        }
+    }
+}
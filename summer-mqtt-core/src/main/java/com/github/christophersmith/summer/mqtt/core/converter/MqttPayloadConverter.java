@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.converter;
+
+import com.github.christophersmith.summer.mqtt.core.MqttClientConfiguration;
+import com.github.christophersmith.summer.mqtt.core.service.MqttClientService;
+
+/**
+ * Converts an out-going {@link org.springframework.messaging.Message} payload of a specific type
+ * into the bytes that the {@link MqttClientService} will publish.
+ * <p>
+ * Implementations are registered on the {@link MqttClientConfiguration} through
+ * {@link MqttClientConfiguration#addPayloadConverter(MqttPayloadConverter)}, and are selected by
+ * the payload's class. This is the extension point for serializers such as Jackson, CBOR or
+ * Protobuf; registering a converter for {@code Object.class} makes it the fallback for any payload
+ * type that doesn't have a more specific converter.
+ * <p>
+ * Implementations must be thread-safe.
+ *
+ * @param <T> the payload type this converter handles
+ */
+public interface MqttPayloadConverter<T>
+{
+    /**
+     * Returns the payload type this converter handles. Subclasses and implementations of this type
+     * are handled as well, unless a more specific converter is registered.
+     * 
+     * @return the payload type
+     */
+    Class<T> getPayloadType();
+
+    /**
+     * Converts the {@code payload} into the bytes to publish.
+     * <p>
+     * The returned array is handed to the MQTT Client as is, and may be retained by it until the
+     * message is delivered, so it must not be reused or modified afterwards.
+     * 
+     * @param payload the payload, never null
+     * @return the bytes to publish, or null if the {@code payload} could not be converted
+     */
+    byte[] toBytes(T payload);
+}
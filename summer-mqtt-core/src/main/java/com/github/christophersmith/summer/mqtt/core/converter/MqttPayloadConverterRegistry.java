@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.converter;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.util.Assert;
+
+/**
+ * Holds the {@link MqttPayloadConverter} instances and selects one by payload class.
+ * <p>
+ * The converter for a payload class is resolved once, by walking its superclasses and interfaces
+ * for the nearest registered payload type, and then kept in a lookup table keyed by that class.
+ * Each later payload of the same class costs a single map lookup. Registering a converter clears
+ * the lookup table.
+ * <p>
+ * A new instance has converters for {@code byte[]}, {@link java.nio.ByteBuffer} and
+ * {@link CharSequence} registered.
+ */
+public final class MqttPayloadConverterRegistry
+{
+    private static final MqttPayloadConverter<Object>              NO_CONVERTER = new NoPayloadConverter();
+    private transient final Map<Class<?>, MqttPayloadConverter<?>> converters   = new ConcurrentHashMap<Class<?>, MqttPayloadConverter<?>>();
+    private transient final Map<Class<?>, MqttPayloadConverter<?>> resolved     = new ConcurrentHashMap<Class<?>, MqttPayloadConverter<?>>();
+
+    /**
+     * The default constructor, which registers the built-in converters.
+     */
+    public MqttPayloadConverterRegistry()
+    {
+        addPayloadConverter(new ByteArrayPayloadConverter());
+        addPayloadConverter(new ByteBufferPayloadConverter());
+        addPayloadConverter(new CharSequencePayloadConverter());
+    }
+
+    /**
+     * Registers a {@link MqttPayloadConverter}, replacing any converter that was registered for
+     * the same payload type.
+     * 
+     * @param payloadConverter the {@link MqttPayloadConverter} to register
+     * 
+     * @throws IllegalArgumentException if the {@code payloadConverter} or its payload type is null
+     */
+    public void addPayloadConverter(MqttPayloadConverter<?> payloadConverter)
+    {
+        Assert.notNull(payloadConverter, "'payloadConverter' must be set!");
+        Assert.notNull(payloadConverter.getPayloadType(), "'payloadType' must be set!");
+        converters.put(payloadConverter.getPayloadType(), payloadConverter);
+        resolved.clear();
+    }
+
+    /**
+     * Returns the {@link MqttPayloadConverter} that handles the {@code payloadType}.
+     * 
+     * @param payloadType the class of the payload
+     * @return a {@link MqttPayloadConverter}, or null if none handles the {@code payloadType}
+     */
+    public MqttPayloadConverter<?> getPayloadConverter(Class<?> payloadType)
+    {
+        MqttPayloadConverter<?> payloadConverter = resolved.get(payloadType);
+        if (payloadConverter == null)
+        {
+            payloadConverter = resolve(payloadType);
+            resolved.put(payloadType, payloadConverter);
+        }
+        return payloadConverter == NO_CONVERTER ? null : payloadConverter;
+    }
+
+    /**
+     * Converts the {@code payload} with the {@link MqttPayloadConverter} that handles its class.
+     * 
+     * @param payload the payload to convert
+     * @return the bytes to publish, or null if the {@code payload} is null or could not be
+     *         converted
+     */
+    @SuppressWarnings("unchecked")
+    public byte[] convert(Object payload)
+    {
+        byte[] value = null;
+        if (payload != null)
+        {
+            final MqttPayloadConverter<Object> payloadConverter = (MqttPayloadConverter<Object>) getPayloadConverter(
+                payload.getClass());
+            if (payloadConverter != null)
+            {
+                value = payloadConverter.toBytes(payload);
+            }
+        }
+        return value;
+    }
+
+    private MqttPayloadConverter<?> resolve(final Class<?> payloadType)
+    {
+        MqttPayloadConverter<?> payloadConverter = null;
+        // nearest superclass first, then interfaces breadth first
+        for (Class<?> type = payloadType; type != null
+            && payloadConverter == null; type = type.getSuperclass())
+        {
+            if (type != Object.class)
+            {
+                payloadConverter = converters.get(type);
+            }
+        }
+        final Deque<Class<?>> interfaces = new ArrayDeque<Class<?>>();
+        final Set<Class<?>> visited = new HashSet<Class<?>>();
+        for (Class<?> type = payloadType; type != null
+            && payloadConverter == null; type = type.getSuperclass())
+        {
+            for (Class<?> candidate : type.getInterfaces())
+            {
+                interfaces.add(candidate);
+            }
+        }
+        while (payloadConverter == null
+            && !interfaces.isEmpty())
+        {
+            final Class<?> type = interfaces.poll();
+            if (visited.add(type))
+            {
+                payloadConverter = converters.get(type);
+                for (Class<?> candidate : type.getInterfaces())
+                {
+                    interfaces.add(candidate);
+                }
+            }
+        }
+        if (payloadConverter == null)
+        {
+            payloadConverter = converters.get(Object.class);
+        }
+        return payloadConverter == null ? NO_CONVERTER : payloadConverter;
+    }
+
+    private static final class NoPayloadConverter implements MqttPayloadConverter<Object>
+    {
+        @Override
+        public Class<Object> getPayloadType()
+        {
+            return Object.class;
+        }
+
+        @Override
+        public byte[] toBytes(final Object payload)
+        {
+            return null;
+        }
+    }
+}
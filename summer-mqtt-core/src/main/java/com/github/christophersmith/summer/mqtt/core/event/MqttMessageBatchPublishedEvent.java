@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.event;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.util.Assert;
+
+import com.github.christophersmith.summer.mqtt.core.service.MqttClientService;
+
+/**
+ * An Event that is sent once when the {@link MqttClientService} implementation publishes a batch
+ * of Messages to the Broker, in place of a {@link MqttMessagePublishedEvent} per Message.
+ * <p>
+ * This message is only sent if the {@link MqttClientService} has an
+ * {@link ApplicationEventPublisher} instance defined.
+ */
+public class MqttMessageBatchPublishedEvent extends MqttMessageStatusEvent
+{
+    private static final long serialVersionUID = -2519488330414618390L;
+    private int[]             messageIdentifiers;
+    private String[]          correlationIds;
+    private int               failedCount;
+
+    /**
+     * The default constructor.
+     * 
+     * @param clientId the Client ID value
+     * @param messageIdentifiers the Message Identifiers of the published messages
+     * @param correlationIds the Correlation IDs of the published messages, at the same positions
+     *            as the {@code messageIdentifiers}
+     * @param failedCount the number of messages in the batch that could not be published
+     * @param source the {@link Object} that published this event
+     * 
+     * @throws IllegalArgumentException if the {@code clientId} is null or empty, if the
+     *             {@code messageIdentifiers} or {@code correlationIds} are null, or if their
+     *             lengths differ
+     */
+    public MqttMessageBatchPublishedEvent(String clientId, int[] messageIdentifiers,
+        String[] correlationIds, int failedCount, Object source)
+    {
+        super(clientId, source);
+        Assert.notNull(messageIdentifiers, "'messageIdentifiers' must be set!");
+        Assert.notNull(correlationIds, "'correlationIds' must be set!");
+        Assert.isTrue(messageIdentifiers.length == correlationIds.length,
+            "'messageIdentifiers' and 'correlationIds' must be the same length!");
+        this.messageIdentifiers = messageIdentifiers;
+        this.correlationIds = correlationIds;
+        this.failedCount = failedCount;
+    }
+
+    /**
+     * The Message Identifiers for the published messages.
+     * 
+     * @return the Message Identifiers
+     */
+    public int[] getMessageIdentifiers()
+    {
+        return messageIdentifiers;
+    }
+
+    /**
+     * The Correlation IDs for the published messages, at the same positions as
+     * {@link #getMessageIdentifiers()}. A position is null if the sender didn't set one.
+     * 
+     * @return the Correlation IDs
+     */
+    public String[] getCorrelationIds()
+    {
+        return correlationIds;
+    }
+
+    /**
+     * Returns the number of messages in the batch that could not be published.
+     * 
+     * @return the number of failed messages
+     */
+    public int getFailedCount()
+    {
+        return failedCount;
+    }
+}
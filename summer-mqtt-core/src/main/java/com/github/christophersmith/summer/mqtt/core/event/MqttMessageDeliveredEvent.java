@@ -16,6 +16,7 @@ package com.github.christophersmith.summer.mqtt.core.event;
 import org.springframework.context.ApplicationEventPublisher;
 
 import com.github.christophersmith.summer.mqtt.core.service.MqttClientService;
+import com.github.christophersmith.summer.mqtt.core.util.MqttHeaderHelper;
 
 /**
  * An Event that is sent when the {@link MqttClientService} implementation receives confirmation
@@ -26,8 +27,10 @@ import com.github.christophersmith.summer.mqtt.core.service.MqttClientService;
  */
 public class MqttMessageDeliveredEvent extends MqttMessageStatusEvent
 {
-    private static final long serialVersionUID = -6490456656850505283L;
+    private static final long serialVersionUID   = -6490456656850505283L;
     private int               messageIdentifier;
+    private String            correlationId;
+    private long              latencyNanoseconds = -1;
 
     /**
      * The default constructor.
@@ -44,6 +47,27 @@ public class MqttMessageDeliveredEvent extends MqttMessageStatusEvent
         this.messageIdentifier = messageIdentifier;
     }
 
+    /**
+     * A constructor that includes the Correlation ID and the measured delivery latency of the
+     * message.
+     * 
+     * @param clientId the Client ID value
+     * @param messageIdentifier the Message Identifier
+     * @param correlationId the Correlation ID, or null if not set
+     * @param latencyNanoseconds the time between handing the message to the MQTT Client and its
+     *            delivery confirmation, in nanoseconds, or -1 if unknown
+     * @param source the {@link Object} that published this event
+     * 
+     * @throws IllegalArgumentException if the {@code clientId} is null or empty
+     */
+    public MqttMessageDeliveredEvent(String clientId, int messageIdentifier, String correlationId,
+        long latencyNanoseconds, Object source)
+    {
+        this(clientId, messageIdentifier, source);
+        this.correlationId = correlationId;
+        this.latencyNanoseconds = latencyNanoseconds;
+    }
+
     /**
      * The Message Identifier for the delivered message.
      * <p>
@@ -56,4 +80,30 @@ public class MqttMessageDeliveredEvent extends MqttMessageStatusEvent
     {
         return messageIdentifier;
     }
+
+    /**
+     * The Correlation ID for the delivered message.
+     * <p>
+     * This is the same value as the {@link MqttMessagePublishedEvent#getCorrelationId()} of the
+     * message, taken from the {@link MqttHeaderHelper#CORRELATION_ID} Message Header, so the two
+     * Events can be matched without relying on the Message Identifier, which the MQTT Client
+     * reuses.
+     * 
+     * @return the Correlation ID that was set by the sender, or null if not set or unknown
+     */
+    public String getCorrelationId()
+    {
+        return correlationId;
+    }
+
+    /**
+     * The time between handing the message to the MQTT Client and receiving its delivery
+     * confirmation, which depends on the QoS the message was published with.
+     * 
+     * @return the latency in nanoseconds, or -1 if unknown
+     */
+    public long getLatencyNanoseconds()
+    {
+        return latencyNanoseconds;
+    }
 }
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with a fixed memory footprint, for recording values like the time
+ * between publishing a message and its delivery confirmation.
+ * <p>
+ * Values are counted in logarithmic buckets: every power of two range is split into 32 linear
+ * sub-buckets, so a recorded value is reported with a relative error of about 3%, across the full
+ * range of positive {@code long} values. Recording is a few bit operations and an atomic
+ * increment, and never allocates.
+ * <p>
+ * A {@link LatencyHistogramSnapshot} provides the count, mean, maximum and percentiles. A
+ * snapshot taken while values are recorded can be off by those concurrent values, as the buckets
+ * aren't copied atomically as a whole.
+ */
+public final class LatencyHistogram
+{
+    static final int                        SUB_BUCKET_BITS  = 5;
+    static final int                        SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int                        BUCKET_COUNT     = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+    private transient final AtomicLongArray counts           = new AtomicLongArray(BUCKET_COUNT);
+    private transient final LongAdder       sum              = new LongAdder();
+    private transient final AtomicLong      maximum          = new AtomicLong();
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     * 
+     * @param value the value, typically in nanoseconds
+     */
+    public void record(final long value)
+    {
+        final long recorded = Math.max(0, value);
+        counts.incrementAndGet(getBucketIndex(recorded));
+        sum.add(recorded);
+        long current = maximum.get();
+        while (recorded > current
+            && !maximum.compareAndSet(current, recorded))
+        {
+            current = maximum.get();
+        }
+    }
+
+    /**
+     * Returns a {@link LatencyHistogramSnapshot} of the values recorded so far.
+     * 
+     * @return a {@link LatencyHistogramSnapshot}
+     */
+    public LatencyHistogramSnapshot snapshot()
+    {
+        final long[] values = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            values[i] = counts.get(i);
+        }
+        return new LatencyHistogramSnapshot(values, sum.sum(), maximum.get());
+    }
+
+    /**
+     * Returns a {@link LatencyHistogramSnapshot} of the values recorded so far, and resets the
+     * histogram, without losing values recorded in the meantime.
+     * 
+     * @return a {@link LatencyHistogramSnapshot}
+     */
+    public LatencyHistogramSnapshot snapshotAndReset()
+    {
+        final long[] values = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            values[i] = counts.getAndSet(i, 0);
+        }
+        return new LatencyHistogramSnapshot(values, sum.sumThenReset(), maximum.getAndSet(0));
+    }
+
+    /**
+     * Resets the histogram.
+     */
+    public void reset()
+    {
+        snapshotAndReset();
+    }
+
+    /**
+     * Returns the bucket a value is counted in. Values below the sub-bucket count have their own
+     * bucket, and each following power of two range is split into the same number of buckets.
+     */
+    static int getBucketIndex(final long value)
+    {
+        int index = (int) value;
+        if (value >= SUB_BUCKET_COUNT)
+        {
+            final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            index = (shift + 1) * SUB_BUCKET_COUNT + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the highest value that's counted in the bucket.
+     */
+    static long getBucketUpperBound(final int index)
+    {
+        long value = index;
+        if (index >= SUB_BUCKET_COUNT)
+        {
+            final int shift = index / SUB_BUCKET_COUNT - 1;
+            final long subBucket = SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT;
+            value = ((subBucket + 1) << shift) - 1;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.metrics;
+
+import org.springframework.util.Assert;
+
+/**
+ * An immutable copy of the values recorded by a {@link LatencyHistogram}.
+ */
+public final class LatencyHistogramSnapshot
+{
+    private transient final long[] counts;
+    private transient final long   count;
+    private transient final long   sum;
+    private transient final long   maximum;
+
+    LatencyHistogramSnapshot(final long[] counts, final long sum, final long maximum)
+    {
+        long total = 0;
+        for (final long value : counts)
+        {
+            total += value;
+        }
+        this.counts = counts;
+        this.count = total;
+        this.sum = sum;
+        this.maximum = maximum;
+    }
+
+    /**
+     * Returns the number of recorded values.
+     * 
+     * @return the Count
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     * 
+     * @return the Mean, or 0 if no values were recorded
+     */
+    public double getMean()
+    {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Returns the highest recorded value.
+     * 
+     * @return the Maximum, or 0 if no values were recorded
+     */
+    public long getMaximum()
+    {
+        return maximum;
+    }
+
+    /**
+     * Returns the value that the {@code percentile} of the recorded values are at or below, within
+     * the precision of the histogram, and never above the {@link #getMaximum()}.
+     * 
+     * @param percentile the percentile, from 0 to 100, like 99.9
+     * @return the value at the percentile, or 0 if no values were recorded
+     * @throws IllegalArgumentException if the {@code percentile} isn't between 0 and 100
+     */
+    public long getValueAtPercentile(final double percentile)
+    {
+        Assert.isTrue(percentile >= 0
+            && percentile <= 100, "'percentile' must be between 0 and 100!");
+        long value = 0;
+        if (count > 0)
+        {
+            final long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long total = 0;
+            int index = 0;
+            while (index < counts.length - 1
+                && total + counts[index] < target)
+            {
+                total += counts[index];
+                index++;
+            }
+            value = Math.min(LatencyHistogram.getBucketUpperBound(index), maximum);
+        }
+        return value;
+    }
+}
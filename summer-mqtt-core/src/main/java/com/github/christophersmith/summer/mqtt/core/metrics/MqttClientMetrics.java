@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.metrics;
+
+import java.util.function.IntSupplier;
+
+import com.github.christophersmith.summer.mqtt.core.MqttQualityOfService;
+
+/**
+ * Receives the metrics of a MQTT Client service, as the messages and connection state changes
+ * happen.
+ * <p>
+ * The methods are called directly from the publishing, delivery and receiving threads of the MQTT
+ * Client, so an implementation should be cheap and non-blocking, such as a striped counter
+ * increment. Every method has an empty default, so an implementation only needs to override the
+ * metrics it's interested in, and {@link #NONE} is used when no metrics are configured.
+ * <p>
+ * Values that are a current state rather than a count, like the number of in-flight messages, are
+ * registered once as a gauge, and only read by the implementation when it reports them.
+ * <p>
+ * An instance can be given to a single service, or shared by many, in which case it receives the
+ * metrics of all of them.
+ * 
+ * @see SimpleMqttClientMetrics
+ */
+public interface MqttClientMetrics
+{
+    /**
+     * The name of the gauge with the number of out-going messages in-flight.
+     */
+    String GAUGE_IN_FLIGHT      = "in-flight";
+    /**
+     * The name of the gauge with the number of out-going messages waiting for an in-flight slot.
+     */
+    String GAUGE_PENDING        = "pending";
+    /**
+     * The name of the gauge with the number of subscribed Topic Filters.
+     */
+    String GAUGE_SUBSCRIPTIONS  = "subscriptions";
+    /**
+     * The name of the gauge with the number of in-coming messages waiting for an inbound worker.
+     */
+    String GAUGE_INBOUND_QUEUED = "inbound-queued";
+    /**
+     * A {@link MqttClientMetrics} instance that ignores all metrics.
+     */
+    MqttClientMetrics NONE = new MqttClientMetrics()
+    {
+    };
+
+    /**
+     * Called when an out-going message is handed to the MQTT Client.
+     * 
+     * @param qualityOfService the {@link MqttQualityOfService} of the message
+     * @param payloadBytes the size of the payload, in bytes
+     */
+    default void messagePublished(MqttQualityOfService qualityOfService, int payloadBytes)
+    {
+    }
+
+    /**
+     * Called when the MQTT Client reports an out-going message as delivered.
+     * 
+     * @param qualityOfService the {@link MqttQualityOfService} of the message
+     * @param latencyNanoseconds the time between handing the message to the MQTT Client and its
+     *            delivery confirmation, in nanoseconds
+     */
+    default void messageDelivered(MqttQualityOfService qualityOfService, long latencyNanoseconds)
+    {
+    }
+
+    /**
+     * Called when an out-going message could not be published or delivered, including messages
+     * that were rejected or dropped before being handed to the MQTT Client.
+     */
+    default void messagePublishFailed()
+    {
+    }
+
+    /**
+     * Called when an in-bound message is received from the Broker.
+     * 
+     * @param qualityOfService the {@link MqttQualityOfService} of the message
+     * @param payloadBytes the size of the payload, in bytes, as received
+     */
+    default void messageReceived(MqttQualityOfService qualityOfService, int payloadBytes)
+    {
+    }
+
+    /**
+     * Called when the MQTT Client has connected.
+     * 
+     * @param reconnect whether this connection replaces a connection that was lost or failed
+     */
+    default void connected(boolean reconnect)
+    {
+    }
+
+    /**
+     * Called when the MQTT Client has lost the connection.
+     */
+    default void connectionLost()
+    {
+    }
+
+    /**
+     * Registers a gauge, whose current value is read from the {@code value} supplier.
+     * 
+     * @param name the name of the gauge, such as {@link #GAUGE_IN_FLIGHT}
+     * @param value the {@link IntSupplier} of the current value
+     */
+    default void registerGauge(String name, IntSupplier value)
+    {
+    }
+
+    /**
+     * Removes a gauge that was registered through {@link #registerGauge(String, IntSupplier)}.
+     * 
+     * @param name the name of the gauge
+     * @param value the {@link IntSupplier} the gauge was registered with
+     */
+    default void unregisterGauge(String name, IntSupplier value)
+    {
+    }
+}
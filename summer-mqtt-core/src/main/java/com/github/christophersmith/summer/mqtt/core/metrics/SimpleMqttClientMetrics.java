@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+import org.springframework.util.Assert;
+
+import com.github.christophersmith.summer.mqtt.core.MqttQualityOfService;
+
+/**
+ * A {@link MqttClientMetrics} implementation that keeps the metrics in memory, to be read through
+ * its getters or bound to a metrics library.
+ * <p>
+ * Counts are kept in {@link LongAdder} instances, so concurrent updates from many MQTT Client
+ * threads don't contend on a single value, and the delivery latencies in a {@link LatencyHistogram}
+ * per {@link MqttQualityOfService}. When an instance is shared by several services, the counts and
+ * latencies are those of all services, and gauges with the same name are summed.
+ */
+public class SimpleMqttClientMetrics implements MqttClientMetrics
+{
+    private transient final LongAdder                                publishedCount      = new LongAdder();
+    private transient final LongAdder                                deliveredCount      = new LongAdder();
+    private transient final LongAdder                                publishFailedCount  = new LongAdder();
+    private transient final LongAdder                                receivedCount       = new LongAdder();
+    private transient final LongAdder                                bytesOut            = new LongAdder();
+    private transient final LongAdder                                bytesIn             = new LongAdder();
+    private transient final LongAdder                                connectedCount      = new LongAdder();
+    private transient final LongAdder                                reconnectedCount    = new LongAdder();
+    private transient final LongAdder                                connectionLostCount = new LongAdder();
+    private transient final LatencyHistogram[]                       deliveryLatencies   = new LatencyHistogram[] {
+        new LatencyHistogram(), new LatencyHistogram(), new LatencyHistogram() };
+    private transient final ConcurrentMap<String, List<IntSupplier>> gauges              = new ConcurrentHashMap<String, List<IntSupplier>>();
+
+    @Override
+    public void messagePublished(final MqttQualityOfService qualityOfService,
+        final int payloadBytes)
+    {
+        publishedCount.increment();
+        bytesOut.add(payloadBytes);
+    }
+
+    @Override
+    public void messageDelivered(final MqttQualityOfService qualityOfService,
+        final long latencyNanoseconds)
+    {
+        deliveredCount.increment();
+        if (latencyNanoseconds >= 0)
+        {
+            deliveryLatencies[qualityOfService.getLevelIdentifier()].record(latencyNanoseconds);
+        }
+    }
+
+    @Override
+    public void messagePublishFailed()
+    {
+        publishFailedCount.increment();
+    }
+
+    @Override
+    public void messageReceived(final MqttQualityOfService qualityOfService,
+        final int payloadBytes)
+    {
+        receivedCount.increment();
+        bytesIn.add(payloadBytes);
+    }
+
+    @Override
+    public void connected(final boolean reconnect)
+    {
+        connectedCount.increment();
+        if (reconnect)
+        {
+            reconnectedCount.increment();
+        }
+    }
+
+    @Override
+    public void connectionLost()
+    {
+        connectionLostCount.increment();
+    }
+
+    @Override
+    public void registerGauge(final String name, final IntSupplier value)
+    {
+        Assert.hasText(name, "'name' must be set!");
+        Assert.notNull(value, "'value' must be set!");
+        gauges.computeIfAbsent(name, key -> new CopyOnWriteArrayList<IntSupplier>()).add(value);
+    }
+
+    @Override
+    public void unregisterGauge(final String name, final IntSupplier value)
+    {
+        final List<IntSupplier> values = name == null ? null : gauges.get(name);
+        if (values != null)
+        {
+            values.remove(value);
+        }
+    }
+
+    /**
+     * Returns the number of out-going messages handed to the MQTT Client.
+     * 
+     * @return the number of published messages
+     */
+    public long getPublishedCount()
+    {
+        return publishedCount.sum();
+    }
+
+    /**
+     * Returns the number of out-going messages the MQTT Client reported as delivered.
+     * 
+     * @return the number of delivered messages
+     */
+    public long getDeliveredCount()
+    {
+        return deliveredCount.sum();
+    }
+
+    /**
+     * Returns the number of out-going messages that could not be published or delivered.
+     * 
+     * @return the number of failed messages
+     */
+    public long getPublishFailedCount()
+    {
+        return publishFailedCount.sum();
+    }
+
+    /**
+     * Returns the number of in-bound messages received from the Broker.
+     * 
+     * @return the number of received messages
+     */
+    public long getReceivedCount()
+    {
+        return receivedCount.sum();
+    }
+
+    /**
+     * Returns the total payload size of the published messages, in bytes.
+     * 
+     * @return the number of bytes sent
+     */
+    public long getBytesOut()
+    {
+        return bytesOut.sum();
+    }
+
+    /**
+     * Returns the total payload size of the received messages, in bytes.
+     * 
+     * @return the number of bytes received
+     */
+    public long getBytesIn()
+    {
+        return bytesIn.sum();
+    }
+
+    /**
+     * Returns the number of times the MQTT Client connected, including reconnects.
+     * 
+     * @return the number of connects
+     */
+    public long getConnectedCount()
+    {
+        return connectedCount.sum();
+    }
+
+    /**
+     * Returns the number of times the MQTT Client connected after a lost or failed connection.
+     * 
+     * @return the number of reconnects
+     */
+    public long getReconnectedCount()
+    {
+        return reconnectedCount.sum();
+    }
+
+    /**
+     * Returns the number of times the MQTT Client lost the connection.
+     * 
+     * @return the number of lost connections
+     */
+    public long getConnectionLostCount()
+    {
+        return connectionLostCount.sum();
+    }
+
+    /**
+     * Returns the {@link LatencyHistogram} of the delivery latencies, in nanoseconds, of the
+     * messages with the {@code qualityOfService}.
+     * 
+     * @param qualityOfService the {@link MqttQualityOfService} of the messages
+     * @return the {@link LatencyHistogram} for the {@code qualityOfService}
+     * @throws IllegalArgumentException if the {@code qualityOfService} is null
+     */
+    public LatencyHistogram getDeliveryLatencyHistogram(
+        final MqttQualityOfService qualityOfService)
+    {
+        Assert.notNull(qualityOfService, "'qualityOfService' must be set!");
+        return deliveryLatencies[qualityOfService.getLevelIdentifier()];
+    }
+
+    /**
+     * Returns the current value of the gauge with the {@code name}, summed over every service that
+     * registered it, or 0 if no service did.
+     * 
+     * @param name the name of the gauge, such as {@link MqttClientMetrics#GAUGE_IN_FLIGHT}
+     * @return the current value of the gauge
+     */
+    public int getGaugeValue(final String name)
+    {
+        int total = 0;
+        final List<IntSupplier> values = name == null ? null : gauges.get(name);
+        if (values != null)
+        {
+            for (final IntSupplier value : values)
+            {
+                total += value.getAsInt();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns the current value of every registered gauge, keyed and sorted by name.
+     * 
+     * @return a {@link Map} of gauge names to their current value
+     */
+    public Map<String, Integer> getGaugeValues()
+    {
+        final Map<String, Integer> records = new TreeMap<String, Integer>();
+        gauges.keySet().forEach(name -> records.put(name, getGaugeValue(name)));
+        return records;
+    }
+}
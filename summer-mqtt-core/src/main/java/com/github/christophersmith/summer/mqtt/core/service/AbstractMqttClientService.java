@@ -14,12 +14,17 @@
 package com.github.christophersmith.summer.mqtt.core.service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessagingException;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.util.Assert;
 
@@ -27,27 +32,41 @@ import com.github.christophersmith.summer.mqtt.core.MqttClientConfiguration;
 import com.github.christophersmith.summer.mqtt.core.MqttClientConnectionType;
 import com.github.christophersmith.summer.mqtt.core.MqttQualityOfService;
 import com.github.christophersmith.summer.mqtt.core.TopicSubscription;
+import com.github.christophersmith.summer.mqtt.core.metrics.MqttClientMetrics;
 import com.github.christophersmith.summer.mqtt.core.util.MqttClientEventPublisher;
+import com.github.christophersmith.summer.mqtt.core.util.TopicRouter;
 
 /**
  * This class provides common functionality of the {@link MqttClientService} interface, to minimize
  * effort in actual implementations.
+ * <p>
+ * Status notifications are raised through the {@code notify} methods, which call every registered
+ * {@link MqttClientListener} in turn. The first listener is always an adapter that publishes the
+ * notification as an Event through the {@link MqttClientEventPublisher}. A listener that throws is
+ * logged, and doesn't stop the remaining listeners or reach the MQTT Client.
  */
 public abstract class AbstractMqttClientService implements MqttClientService
 {
-    protected transient final ReentrantLock            reentrantLock            = new ReentrantLock(
+    private static final Logger                           LOG                      = LoggerFactory
+        .getLogger(AbstractMqttClientService.class);
+    protected transient final ReentrantLock               reentrantLock            = new ReentrantLock(
         true);
-    protected transient final List<TopicSubscription>  topicSubscriptions       = new ArrayList<TopicSubscription>();
-    protected transient final MqttClientConnectionType connectionType;
-    protected transient final MqttClientConfiguration  mqttClientConfiguration  = new MqttClientConfiguration();
-    protected transient final MqttClientEventPublisher mqttClientEventPublisher = new MqttClientEventPublisher();
-    protected ApplicationEventPublisher                applicationEventPublisher;
-    protected ReconnectService                         reconnectService;
-    protected TaskScheduler                            taskScheduler;
-    protected ScheduledFuture<?>                       scheduledFuture;
-    protected boolean                                  firstStartOccurred;
-    protected boolean                                  started;
-    protected MessageChannel                           inboundMessageChannel;
+    protected transient final List<TopicSubscription>     topicSubscriptions       = new ArrayList<TopicSubscription>();
+    protected transient final MqttClientConnectionType    connectionType;
+    protected transient final MqttClientConfiguration     mqttClientConfiguration  = new MqttClientConfiguration();
+    protected transient final MqttClientEventPublisher    mqttClientEventPublisher = new MqttClientEventPublisher(
+        mqttClientConfiguration);
+    protected transient final TopicRouter<MessageChannel> topicRouter              = new TopicRouter<MessageChannel>();
+    protected volatile MqttClientMetrics                  mqttClientMetrics        = MqttClientMetrics.NONE;
+    private volatile MqttClientListener[]                 mqttClientListeners      = new MqttClientListener[] {
+        new ApplicationEventListener() };
+    protected ApplicationEventPublisher                   applicationEventPublisher;
+    protected ReconnectService                            reconnectService;
+    protected TaskScheduler                               taskScheduler;
+    protected ScheduledFuture<?>                          scheduledFuture;
+    protected boolean                                     firstStartOccurred;
+    protected boolean                                     started;
+    protected MessageChannel                              inboundMessageChannel;
 
     /**
      * The default constructor.
@@ -92,6 +111,125 @@ public abstract class AbstractMqttClientService implements MqttClientService
         this.applicationEventPublisher = applicationEventPublisher;
     }
 
+    /**
+     * Adds a {@link MqttClientListener} that is called with every status notification of this
+     * instance, after the listeners added before it.
+     * <p>
+     * Listeners are held in a copy-on-write array, so adding and removing them is expensive, while
+     * calling them is a plain loop.
+     * 
+     * @param mqttClientListener a {@link MqttClientListener} value
+     * 
+     * @throws IllegalArgumentException if the {@code mqttClientListener} value is null
+     */
+    public synchronized void addMqttClientListener(MqttClientListener mqttClientListener)
+    {
+        Assert.notNull(mqttClientListener, "'mqttClientListener' must be set!");
+        final MqttClientListener[] listeners = Arrays.copyOf(mqttClientListeners,
+            mqttClientListeners.length + 1);
+        listeners[listeners.length - 1] = mqttClientListener;
+        mqttClientListeners = listeners;
+    }
+
+    /**
+     * Removes a {@link MqttClientListener} added through
+     * {@link #addMqttClientListener(MqttClientListener)}.
+     * 
+     * @param mqttClientListener a {@link MqttClientListener} value
+     */
+    public synchronized void removeMqttClientListener(MqttClientListener mqttClientListener)
+    {
+        final List<MqttClientListener> listeners = new ArrayList<MqttClientListener>(
+            Arrays.asList(mqttClientListeners));
+        // the Event adapter at index 0 is never removed
+        final int index = listeners.lastIndexOf(mqttClientListener);
+        if (index > 0)
+        {
+            listeners.remove(index);
+            mqttClientListeners = listeners.toArray(new MqttClientListener[0]);
+        }
+    }
+
+    /**
+     * Sets the {@link Executor} that publishes the Events of this instance when the
+     * {@link MqttClientConfiguration#getEventDispatchMode()} is
+     * {@link com.github.christophersmith.summer.mqtt.core.MqttEventDispatchMode#ASYNCHRONOUS},
+     * which can be shared with other instances.
+     * <p>
+     * If not set, a single daemon thread is started for this instance.
+     * 
+     * @param executor an {@link Executor} value, or null to use the default
+     */
+    public void setEventDispatchExecutor(Executor executor)
+    {
+        mqttClientEventPublisher.setExecutor(executor);
+    }
+
+    /**
+     * Returns the number of Events that were dropped or coalesced because the Event buffer was
+     * full.
+     * 
+     * @return the number of dropped Events
+     */
+    public long getDroppedEventCount()
+    {
+        return mqttClientEventPublisher.getDroppedEventCount();
+    }
+
+    /**
+     * Returns the {@link MqttClientMetrics} this instance reports its metrics to.
+     * <p>
+     * The default value is {@link MqttClientMetrics#NONE}.
+     * 
+     * @return a {@link MqttClientMetrics} value
+     */
+    public MqttClientMetrics getMqttClientMetrics()
+    {
+        return mqttClientMetrics;
+    }
+
+    /**
+     * Sets the {@link MqttClientMetrics} this instance reports its metrics to, which can be shared
+     * with other instances.
+     * <p>
+     * The gauges of this instance are removed from the previous {@link MqttClientMetrics}, and
+     * registered with the new one.
+     * 
+     * @param mqttClientMetrics a {@link MqttClientMetrics} value
+     * 
+     * @throws IllegalArgumentException if the {@code mqttClientMetrics} value is null
+     */
+    public void setMqttClientMetrics(MqttClientMetrics mqttClientMetrics)
+    {
+        Assert.notNull(mqttClientMetrics, "'mqttClientMetrics' must be set!");
+        unregisterGauges(this.mqttClientMetrics);
+        this.mqttClientMetrics = mqttClientMetrics;
+        registerGauges(mqttClientMetrics);
+    }
+
+    /**
+     * Registers the gauges of this instance with the {@code mqttClientMetrics}.
+     * <p>
+     * This implementation does nothing.
+     * 
+     * @param mqttClientMetrics the {@link MqttClientMetrics} to register with
+     */
+    protected void registerGauges(MqttClientMetrics mqttClientMetrics)
+    {
+    }
+
+    /**
+     * Removes the gauges registered through {@link #registerGauges(MqttClientMetrics)} from the
+     * {@code mqttClientMetrics}.
+     * <p>
+     * This implementation does nothing.
+     * 
+     * @param mqttClientMetrics the {@link MqttClientMetrics} to remove from
+     */
+    protected void unregisterGauges(MqttClientMetrics mqttClientMetrics)
+    {
+    }
+
     /**
      * Sets the in-bound {@link MessageChannel} this instance will push messages it receives from
      * the Broker.
@@ -157,4 +295,283 @@ public abstract class AbstractMqttClientService implements MqttClientService
     }
 
     public abstract void subscribe(String topicFilter, MqttQualityOfService qualityOfService);
+
+    @Override
+    public void subscribe(String topicFilter, MessageChannel messageChannel)
+    {
+        subscribe(topicFilter, mqttClientConfiguration.getDefaultQualityOfService(),
+            messageChannel);
+    }
+
+    @Override
+    public void subscribe(String topicFilter, MqttQualityOfService qualityOfService,
+        MessageChannel messageChannel)
+    {
+        Assert.notNull(messageChannel, "'messageChannel' must be set!");
+        // the route is added first, so retained messages sent on subscribing are routed too
+        topicRouter.add(topicFilter, messageChannel);
+        try
+        {
+            subscribe(topicFilter, qualityOfService);
+        }
+        catch (RuntimeException ex)
+        {
+            topicRouter.remove(topicFilter, messageChannel);
+            throw ex;
+        }
+    }
+
+    /**
+     * Notifies every {@link MqttClientListener} that the MQTT Client has connected.
+     * 
+     * @param serverUri the Server URI the MQTT Client is connected to
+     * @param subscribedTopics the Topic Filters the MQTT Client is subscribed to
+     */
+    protected void notifyConnected(String serverUri, String[] subscribedTopics)
+    {
+        final String clientId = getClientId();
+        for (final MqttClientListener listener : mqttClientListeners)
+        {
+            try
+            {
+                listener.onConnected(clientId, serverUri, subscribedTopics);
+            }
+            catch (RuntimeException ex)
+            {
+                logListenerFailure(listener, "onConnected", ex);
+            }
+        }
+    }
+
+    /**
+     * Notifies every {@link MqttClientListener} that the MQTT Client could not connect.
+     * 
+     * @param autoReconnect whether the MQTT Client will automatically reconnect
+     * @param throwable the originating {@link Throwable}
+     */
+    protected void notifyConnectionFailure(boolean autoReconnect, Throwable throwable)
+    {
+        final String clientId = getClientId();
+        for (final MqttClientListener listener : mqttClientListeners)
+        {
+            try
+            {
+                listener.onConnectionFailure(clientId, autoReconnect, throwable);
+            }
+            catch (RuntimeException ex)
+            {
+                logListenerFailure(listener, "onConnectionFailure", ex);
+            }
+        }
+    }
+
+    /**
+     * Notifies every {@link MqttClientListener} that the MQTT Client has lost the connection.
+     * 
+     * @param autoReconnect whether the MQTT Client will automatically reconnect
+     */
+    protected void notifyConnectionLost(boolean autoReconnect)
+    {
+        final String clientId = getClientId();
+        for (final MqttClientListener listener : mqttClientListeners)
+        {
+            try
+            {
+                listener.onConnectionLost(clientId, autoReconnect);
+            }
+            catch (RuntimeException ex)
+            {
+                logListenerFailure(listener, "onConnectionLost", ex);
+            }
+        }
+    }
+
+    /**
+     * Notifies every {@link MqttClientListener} that the MQTT Client has disconnected.
+     */
+    protected void notifyDisconnected()
+    {
+        final String clientId = getClientId();
+        for (final MqttClientListener listener : mqttClientListeners)
+        {
+            try
+            {
+                listener.onDisconnected(clientId);
+            }
+            catch (RuntimeException ex)
+            {
+                logListenerFailure(listener, "onDisconnected", ex);
+            }
+        }
+    }
+
+    /**
+     * Notifies every {@link MqttClientListener} that a message was handed to the MQTT Client.
+     * 
+     * @param messageIdentifier the Message Identifier
+     * @param correlationId the Correlation ID, or null if not set
+     */
+    protected void notifyPublished(int messageIdentifier, String correlationId)
+    {
+        final String clientId = getClientId();
+        for (final MqttClientListener listener : mqttClientListeners)
+        {
+            try
+            {
+                listener.onPublished(clientId, messageIdentifier, correlationId);
+            }
+            catch (RuntimeException ex)
+            {
+                logListenerFailure(listener, "onPublished", ex);
+            }
+        }
+    }
+
+    /**
+     * Notifies every {@link MqttClientListener} that a batch of messages was handed to the MQTT
+     * Client.
+     * 
+     * @param messageIdentifiers the Message Identifiers of the messages handed to the MQTT Client
+     * @param correlationIds the Correlation IDs, in the same order
+     * @param failedCount the number of messages that could not be published
+     */
+    protected void notifyBatchPublished(int[] messageIdentifiers, String[] correlationIds,
+        int failedCount)
+    {
+        final String clientId = getClientId();
+        for (final MqttClientListener listener : mqttClientListeners)
+        {
+            try
+            {
+                listener.onBatchPublished(clientId, messageIdentifiers, correlationIds,
+                    failedCount);
+            }
+            catch (RuntimeException ex)
+            {
+                logListenerFailure(listener, "onBatchPublished", ex);
+            }
+        }
+    }
+
+    /**
+     * Notifies every {@link MqttClientListener} that a message was delivered.
+     * 
+     * @param messageIdentifier the Message Identifier
+     * @param correlationId the Correlation ID, or null if not set or unknown
+     * @param latencyNanoseconds the delivery latency in nanoseconds, or -1 if unknown
+     */
+    protected void notifyDelivered(int messageIdentifier, String correlationId,
+        long latencyNanoseconds)
+    {
+        final String clientId = getClientId();
+        for (final MqttClientListener listener : mqttClientListeners)
+        {
+            try
+            {
+                listener.onDelivered(clientId, messageIdentifier, correlationId,
+                    latencyNanoseconds);
+            }
+            catch (RuntimeException ex)
+            {
+                logListenerFailure(listener, "onDelivered", ex);
+            }
+        }
+    }
+
+    /**
+     * Notifies every {@link MqttClientListener} that a message could not be published or
+     * delivered.
+     * 
+     * @param exception the {@link MessagingException} with the failed message and the cause
+     */
+    protected void notifyPublishFailure(MessagingException exception)
+    {
+        final String clientId = getClientId();
+        for (final MqttClientListener listener : mqttClientListeners)
+        {
+            try
+            {
+                listener.onPublishFailure(clientId, exception);
+            }
+            catch (RuntimeException ex)
+            {
+                logListenerFailure(listener, "onPublishFailure", ex);
+            }
+        }
+    }
+
+    private void logListenerFailure(final MqttClientListener listener, final String notification,
+        final RuntimeException exception)
+    {
+        LOG.error(String.format("Client ID %s: the MqttClientListener %s failed on %s.",
+            getClientId(), listener.getClass().getName(), notification), exception);
+    }
+
+    /**
+     * Publishes every notification as an Event to the current {@link ApplicationEventPublisher},
+     * through the {@link MqttClientEventPublisher}.
+     */
+    private final class ApplicationEventListener implements MqttClientListener
+    {
+        @Override
+        public void onConnected(String clientId, String serverUri, String[] subscribedTopics)
+        {
+            mqttClientEventPublisher.publishConnectedEvent(clientId, serverUri, subscribedTopics,
+                applicationEventPublisher, AbstractMqttClientService.this);
+        }
+
+        @Override
+        public void onConnectionFailure(String clientId, boolean autoReconnect,
+            Throwable throwable)
+        {
+            mqttClientEventPublisher.publishConnectionFailureEvent(clientId, autoReconnect,
+                throwable, applicationEventPublisher, AbstractMqttClientService.this);
+        }
+
+        @Override
+        public void onConnectionLost(String clientId, boolean autoReconnect)
+        {
+            mqttClientEventPublisher.publishConnectionLostEvent(clientId, autoReconnect,
+                applicationEventPublisher, AbstractMqttClientService.this);
+        }
+
+        @Override
+        public void onDisconnected(String clientId)
+        {
+            mqttClientEventPublisher.publishDisconnectedEvent(clientId, applicationEventPublisher,
+                AbstractMqttClientService.this);
+        }
+
+        @Override
+        public void onPublished(String clientId, int messageIdentifier, String correlationId)
+        {
+            mqttClientEventPublisher.publishMessagePublishedEvent(clientId, messageIdentifier,
+                correlationId, applicationEventPublisher, AbstractMqttClientService.this);
+        }
+
+        @Override
+        public void onBatchPublished(String clientId, int[] messageIdentifiers,
+            String[] correlationIds, int failedCount)
+        {
+            mqttClientEventPublisher.publishMessageBatchPublishedEvent(clientId,
+                messageIdentifiers, correlationIds, failedCount, applicationEventPublisher,
+                AbstractMqttClientService.this);
+        }
+
+        @Override
+        public void onDelivered(String clientId, int messageIdentifier, String correlationId,
+            long latencyNanoseconds)
+        {
+            mqttClientEventPublisher.publishMessageDeliveredEvent(clientId, messageIdentifier,
+                correlationId, latencyNanoseconds, applicationEventPublisher,
+                AbstractMqttClientService.this);
+        }
+
+        @Override
+        public void onPublishFailure(String clientId, MessagingException exception)
+        {
+            mqttClientEventPublisher.publishMessagePublishFailureEvent(clientId, exception,
+                applicationEventPublisher, AbstractMqttClientService.this);
+        }
+    }
 }
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.service;
+
+import org.springframework.messaging.MessagingException;
+
+/**
+ * Receives the status notifications of a MQTT Client service as plain method calls, as an
+ * alternative to the Events published to the
+ * {@link org.springframework.context.ApplicationEventPublisher}.
+ * <p>
+ * A listener is called directly, on the thread that raised the notification, without creating an
+ * Event or resolving listeners, so it suits consumers that observe every message. It's often the
+ * callback thread of the MQTT Client, so a listener should return quickly. The Event dispatch mode
+ * and the Message Event enablement and sampling settings only apply to Events, so a listener sees
+ * every notification. A {@link RuntimeException} thrown by a listener is logged, and the remaining
+ * listeners are still called.
+ * <p>
+ * Every method has an empty default, so an implementation only needs to override the
+ * notifications it's interested in.
+ * 
+ * @see AbstractMqttClientService#addMqttClientListener(MqttClientListener)
+ */
+public interface MqttClientListener
+{
+    /**
+     * Called when the MQTT Client has connected, and subscribed to its Topic Filters.
+     * 
+     * @param clientId the Client ID
+     * @param serverUri the Server URI the MQTT Client is connected to
+     * @param subscribedTopics the Topic Filters the MQTT Client is subscribed to
+     */
+    default void onConnected(String clientId, String serverUri, String[] subscribedTopics)
+    {
+    }
+
+    /**
+     * Called when the MQTT Client could not connect.
+     * 
+     * @param clientId the Client ID
+     * @param autoReconnect whether the MQTT Client will automatically reconnect
+     * @param throwable the originating {@link Throwable}
+     */
+    default void onConnectionFailure(String clientId, boolean autoReconnect, Throwable throwable)
+    {
+    }
+
+    /**
+     * Called when the MQTT Client has lost the connection.
+     * 
+     * @param clientId the Client ID
+     * @param autoReconnect whether the MQTT Client will automatically reconnect
+     */
+    default void onConnectionLost(String clientId, boolean autoReconnect)
+    {
+    }
+
+    /**
+     * Called when the MQTT Client has disconnected.
+     * 
+     * @param clientId the Client ID
+     */
+    default void onDisconnected(String clientId)
+    {
+    }
+
+    /**
+     * Called when a message is handed to the MQTT Client.
+     * 
+     * @param clientId the Client ID
+     * @param messageIdentifier the Message Identifier
+     * @param correlationId the Correlation ID, or null if not set
+     */
+    default void onPublished(String clientId, int messageIdentifier, String correlationId)
+    {
+    }
+
+    /**
+     * Called when a batch of messages is handed to the MQTT Client.
+     * 
+     * @param clientId the Client ID
+     * @param messageIdentifiers the Message Identifiers of the messages handed to the MQTT Client
+     * @param correlationIds the Correlation IDs, in the same order
+     * @param failedCount the number of messages that could not be published
+     */
+    default void onBatchPublished(String clientId, int[] messageIdentifiers,
+        String[] correlationIds, int failedCount)
+    {
+    }
+
+    /**
+     * Called when the MQTT Client reports a message as delivered.
+     * 
+     * @param clientId the Client ID
+     * @param messageIdentifier the Message Identifier
+     * @param correlationId the Correlation ID, or null if not set or unknown
+     * @param latencyNanoseconds the delivery latency in nanoseconds, or -1 if unknown
+     */
+    default void onDelivered(String clientId, int messageIdentifier, String correlationId,
+        long latencyNanoseconds)
+    {
+    }
+
+    /**
+     * Called when a message could not be published or delivered.
+     * 
+     * @param clientId the Client ID
+     * @param exception the {@link MessagingException} with the failed message and the cause
+     */
+    default void onPublishFailure(String clientId, MessagingException exception)
+    {
+    }
+}
@@ -13,13 +13,20 @@
  */
 package com.github.christophersmith.summer.mqtt.core.service;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+import org.springframework.util.Assert;
 
+import com.github.christophersmith.summer.mqtt.core.MqttBatchPublishResult;
 import com.github.christophersmith.summer.mqtt.core.MqttClientConnectionType;
 import com.github.christophersmith.summer.mqtt.core.MqttQualityOfService;
 import com.github.christophersmith.summer.mqtt.core.TopicSubscription;
@@ -35,6 +42,8 @@ import com.github.christophersmith.summer.mqtt.core.TopicSubscription;
  * <li>Connection information and state reporting</li>
  * <li>Starting, stopping and closing the underlying MQTT Client connection</li>
  * <li>Subscribing and unsubscribing from Topic Filters</li>
+ * <li>Publishing messages, either through a {@link MessageChannel} or asynchronously via
+ * {@link #publishAsync(Message)} and {@link #publishAll(Collection)}</li>
  * </ul>
  * 
  * For implementations that are configured for receiving in-bound messages, those messages should be
@@ -140,6 +149,72 @@ public interface MqttClientService extends MessageHandler, ApplicationEventPubli
      */
     void subscribe(String topicFilter, MqttQualityOfService qualityOfService);
 
+    /**
+     * Subscribes to the provided {@code topicFilter} using the default {@link MqttQualityOfService}
+     * for this instance, and sends the matching in-coming messages to the {@code messageChannel}.
+     * <p>
+     * This is a convenience method which calls
+     * {@link #subscribe(String, MqttQualityOfService, MessageChannel)}.
+     * <p>
+     * The default implementation has no access to the default {@link MqttQualityOfService} of the
+     * instance, and subscribes with {@link MqttQualityOfService#QOS_0}, which is the default of
+     * {@link com.github.christophersmith.summer.mqtt.core.MqttClientConfiguration}.
+     * 
+     * @see #subscribe(String, MqttQualityOfService, MessageChannel)
+     * 
+     * @param topicFilter the Topic Filter to subscribe to, which can include wildcards
+     * @param messageChannel the {@link MessageChannel} for the matching in-coming messages
+     * 
+     * @throws IllegalArgumentException if the {@code topicFilter} is null or empty, or if the
+     *             {@code messageChannel} is null
+     * @throws IllegalStateException if the MQTT Client is setup as a
+     *             {@link MqttClientConnectionType#PUBLISHER}
+     * @throws UnsupportedOperationException if the implementation doesn't support routing to a
+     *             {@link MessageChannel} per Topic Filter
+     */
+    default void subscribe(String topicFilter, MessageChannel messageChannel)
+    {
+        subscribe(topicFilter, MqttQualityOfService.QOS_0, messageChannel);
+    }
+
+    /**
+     * Subscribes to the provided {@code topicFilter} using the provided {@code qualityOfService},
+     * and sends the matching in-coming messages to the {@code messageChannel}.
+     * <p>
+     * The subscription itself behaves as {@link #subscribe(String, MqttQualityOfService)}. More
+     * than one {@link MessageChannel} can be registered for the same Topic Filter, and a message
+     * is sent to the {@link MessageChannel} of every Topic Filter it matches. Only the messages
+     * that match none are sent to the in-bound {@link MessageChannel} of the implementation.
+     * <p>
+     * {@link #unsubscribe(String)} removes every {@link MessageChannel} of the Topic Filter.
+     * <p>
+     * Routing needs a place to keep the {@link MessageChannel} of each Topic Filter, which this
+     * interface doesn't have, so the default implementation validates the arguments and then
+     * throws an {@link UnsupportedOperationException}, without subscribing. Implementations that
+     * extend {@link AbstractMqttClientService} support routing.
+     * 
+     * @param topicFilter the Topic Filter to subscribe to, which can include wildcards
+     * @param qualityOfService the maximum QoS to use for this Topic Filter
+     * @param messageChannel the {@link MessageChannel} for the matching in-coming messages
+     * 
+     * @throws IllegalArgumentException if the {@code topicFilter} is null or empty, or if the
+     *             {@code qualityOfService} or {@code messageChannel} is null
+     * @throws IllegalStateException if the MQTT Client is setup as a
+     *             {@link MqttClientConnectionType#PUBLISHER}
+     * @throws UnsupportedOperationException if the implementation doesn't support routing to a
+     *             {@link MessageChannel} per Topic Filter
+     */
+    default void subscribe(String topicFilter, MqttQualityOfService qualityOfService,
+        MessageChannel messageChannel)
+    {
+        Assert.hasText(topicFilter, "'topicFilter' must be set!");
+        Assert.notNull(qualityOfService, "'qualityOfService' must be set!");
+        Assert.notNull(messageChannel, "'messageChannel' must be set!");
+        throw new UnsupportedOperationException(String.format(
+            "Client ID %s can't send the messages of a Topic Filter to their own MessageChannel.",
+            getClientId()));
+    }
+
     /**
      * Unsubscribes from the provided {@code topicFilter}.
      * <p>
@@ -156,6 +231,94 @@ public interface MqttClientService extends MessageHandler, ApplicationEventPubli
      */
     void unsubscribe(String topicFilter);
 
+    /**
+     * Publishes a {@link Message} to the MQTT Broker without waiting for its delivery.
+     * <p>
+     * The returned {@link CompletableFuture} is completed with the Message Identifier once the MQTT
+     * Client reports the message as delivered, which depends on the {@link MqttQualityOfService}
+     * the message was published with. If the message could not be published or delivered, the
+     * {@link CompletableFuture} is completed exceptionally with a {@link MessagingException}.
+     * <p>
+     * As with {@link #publishAll(Collection)}, the caller is still blocked while the message waits
+     * for capacity in the in-flight window or a rate limit.
+     * <p>
+     * The default implementation publishes the message through {@link #handleMessage(Message)},
+     * and so waits for it to be handed to the MQTT Client. The returned {@link CompletableFuture}
+     * is already completed, with 0 since the Message Identifier isn't known, or exceptionally if
+     * the message could not be published.
+     * 
+     * @param message the {@link Message} to send
+     * @return a {@link CompletableFuture} that completes with the Message Identifier
+     * 
+     * @throws IllegalArgumentException if the {@code message} is null
+     */
+    default CompletableFuture<Integer> publishAsync(Message<?> message)
+    {
+        Assert.notNull(message, "'message' must be set!");
+        final CompletableFuture<Integer> future = new CompletableFuture<Integer>();
+        try
+        {
+            handleMessage(message);
+            future.complete(0);
+        }
+        catch (RuntimeException ex)
+        {
+            future.completeExceptionally(ex instanceof MessagingException ? ex
+                : new MessagingException(message,
+                    String.format(
+                        "Client ID %s encountered an issue and the message couldn't be sent.",
+                        getClientId()),
+                    ex));
+        }
+        return future;
+    }
+
+    /**
+     * Publishes a batch of {@link Message} objects to the MQTT Broker without waiting for their
+     * delivery.
+     * <p>
+     * The batch is validated once, all payloads are converted in one pass and the messages are
+     * then handed to the MQTT Client back to back. A single
+     * {@link com.github.christophersmith.summer.mqtt.core.event.MqttMessageBatchPublishedEvent} is
+     * published for the batch instead of one Event per message.
+     * <p>
+     * The caller is still blocked while a message waits for capacity, which happens once per
+     * message when the in-flight window is full and its
+     * {@link com.github.christophersmith.summer.mqtt.core.MqttInFlightOverflowStrategy#BLOCK}
+     * strategy is used, or when a rate limit is exceeded and its
+     * {@link com.github.christophersmith.summer.mqtt.core.MqttRateLimitBehavior#WAIT} behavior is
+     * used.
+     * <p>
+     * The default implementation publishes each message through {@link #publishAsync(Message)}
+     * in turn, and doesn't publish a batch Event.
+     * 
+     * @param messages the {@link Message} objects to send
+     * @return a {@link MqttBatchPublishResult} with a result for each message
+     * 
+     * @throws IllegalArgumentException if the {@code messages} value is null, or contains a null
+     */
+    default MqttBatchPublishResult publishAll(Collection<Message<?>> messages)
+    {
+        Assert.notNull(messages, "'messages' must be set!");
+        for (final Message<?> message : messages)
+        {
+            Assert.notNull(message, "'message' must be set!");
+        }
+        final List<CompletableFuture<Integer>> results = new ArrayList<CompletableFuture<Integer>>(
+            messages.size());
+        int submittedCount = 0;
+        for (final Message<?> message : messages)
+        {
+            final CompletableFuture<Integer> future = publishAsync(message);
+            if (!future.isCompletedExceptionally())
+            {
+                submittedCount++;
+            }
+            results.add(future);
+        }
+        return new MqttBatchPublishResult(results, submittedCount);
+    }
+
     /**
      * Disconnects the MQTT Client if it's in a connected state.
      * <p>
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.github.christophersmith.summer.mqtt.core.MqttEventOverflowBehavior;
+import com.github.christophersmith.summer.mqtt.core.event.MqttConnectionStatusEvent;
+
+/**
+ * Publishes Events from an {@link EventRingBuffer} on an {@link Executor}, in the order they were
+ * raised.
+ * <p>
+ * At most one drain task runs at a time, and it's only submitted when the buffer goes from empty
+ * to not empty, so a shared {@link Executor} can serve many dispatchers without any of them
+ * publishing out of order.
+ */
+final class AsyncEventDispatcher
+{
+    private static final Logger                           LOG                   = LoggerFactory
+        .getLogger(AsyncEventDispatcher.class);
+    private static final long                             WAIT_PARK_NANOSECONDS = TimeUnit.MICROSECONDS
+        .toNanos(100);
+    private transient final EventRingBuffer<PendingEvent> buffer;
+    private transient final Map<Class<?>, PendingEvent>   coalescedEvents       = new ConcurrentHashMap<Class<?>, PendingEvent>();
+    private transient final AtomicBoolean                 draining              = new AtomicBoolean();
+    private transient final LongAdder                     droppedCount;
+    private transient final Executor                      executor;
+    private volatile Thread                               drainingThread;
+
+    AsyncEventDispatcher(final int capacity, final Executor executor, final LongAdder droppedCount)
+    {
+        this.buffer = new EventRingBuffer<PendingEvent>(capacity);
+        this.executor = executor;
+        this.droppedCount = droppedCount;
+    }
+
+    /**
+     * Places the {@code event} in the buffer, and makes sure a drain task is running.
+     * 
+     * @param event the Event
+     * @param applicationEventPublisher the {@link ApplicationEventPublisher} to publish it to
+     * @param overflowBehavior the {@link MqttEventOverflowBehavior} if the buffer is full
+     */
+    void dispatch(final ApplicationEvent event, final ApplicationEventPublisher applicationEventPublisher,
+        final MqttEventOverflowBehavior overflowBehavior)
+    {
+        final PendingEvent pendingEvent = new PendingEvent(event, applicationEventPublisher);
+        if (!buffer.offer(pendingEvent))
+        {
+            if (Thread.currentThread() == drainingThread)
+            {
+                // a listener raised this Event, and waiting for itself to drain would never end
+                publish(pendingEvent);
+            }
+            else if (event instanceof MqttConnectionStatusEvent)
+            {
+                waitToOffer(pendingEvent, false);
+            }
+            else if (MqttEventOverflowBehavior.BLOCK == overflowBehavior)
+            {
+                waitToOffer(pendingEvent, true);
+            }
+            else if (MqttEventOverflowBehavior.COALESCE == overflowBehavior)
+            {
+                if (coalescedEvents.put(event.getClass(), pendingEvent) != null)
+                {
+                    droppedCount.increment();
+                }
+            }
+            else
+            {
+                droppedCount.increment();
+            }
+        }
+        scheduleDrain();
+    }
+
+    /**
+     * Returns whether no Events are waiting to be published, which can be out of date by the time
+     * it returns while Events are dispatched.
+     * 
+     * @return whether no Events are waiting to be published
+     */
+    boolean isIdle()
+    {
+        return buffer.isEmpty()
+            && coalescedEvents.isEmpty()
+            && !draining.get();
+    }
+
+    private void waitToOffer(final PendingEvent pendingEvent, final boolean interruptible)
+    {
+        boolean interrupted = false;
+        while (!buffer.offer(pendingEvent))
+        {
+            scheduleDrain();
+            if (Thread.interrupted())
+            {
+                interrupted = true;
+                if (interruptible)
+                {
+                    droppedCount.increment();
+                    break;
+                }
+            }
+            LockSupport.parkNanos(WAIT_PARK_NANOSECONDS);
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void scheduleDrain()
+    {
+        if (draining.compareAndSet(false, true))
+        {
+            try
+            {
+                executor.execute(this::drain);
+            }
+            catch (RejectedExecutionException ex)
+            {
+                // the Executor is shut down, so the remaining Events are published by the caller
+                drain();
+            }
+        }
+    }
+
+    private void drain()
+    {
+        boolean pending = true;
+        while (pending)
+        {
+            drainingThread = Thread.currentThread();
+            try
+            {
+                PendingEvent pendingEvent = buffer.poll();
+                while (pendingEvent != null)
+                {
+                    publish(pendingEvent);
+                    pendingEvent = buffer.poll();
+                }
+                for (final Class<?> eventType : coalescedEvents.keySet())
+                {
+                    pendingEvent = coalescedEvents.remove(eventType);
+                    if (pendingEvent != null)
+                    {
+                        publish(pendingEvent);
+                    }
+                }
+            }
+            finally
+            {
+                // an Error from a listener must not leave the flag set, or no drain would run again
+                drainingThread = null;
+                draining.set(false);
+            }
+            // an Event offered after the last poll found the flag still set, so check again
+            pending = (!buffer.isEmpty()
+                || !coalescedEvents.isEmpty())
+                && draining.compareAndSet(false, true);
+        }
+    }
+
+    private void publish(final PendingEvent pendingEvent)
+    {
+        try
+        {
+            pendingEvent.applicationEventPublisher.publishEvent(pendingEvent.event);
+        }
+        catch (RuntimeException ex)
+        {
+            LOG.error(String.format("The Event %s could not be published.",
+                pendingEvent.event.getClass().getSimpleName()), ex);
+        }
+    }
+
+    private static final class PendingEvent
+    {
+        private final ApplicationEvent          event;
+        private final ApplicationEventPublisher applicationEventPublisher;
+
+        private PendingEvent(final ApplicationEvent event,
+            final ApplicationEventPublisher applicationEventPublisher)
+        {
+            this.event = event;
+            this.applicationEventPublisher = applicationEventPublisher;
+        }
+    }
+}
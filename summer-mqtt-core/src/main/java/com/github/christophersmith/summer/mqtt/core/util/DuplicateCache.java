@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.util.Assert;
+
+/**
+ * A fixed-size set of {@code long} keys that expire after a time, used to recognize in-coming
+ * messages that were already received.
+ * <p>
+ * The keys are held in an open-addressing hash table of a fixed capacity, split in stripes that
+ * are locked independently. Instead of a timestamp per key, time is divided in generations, and
+ * each slot holds the generation it was written in. A key is kept for at least the expiry time,
+ * and at most a quarter longer, after which its slot is reused. When all slots a key can be placed
+ * in hold live keys, the oldest is replaced, so the memory used never grows, at the cost of
+ * forgetting keys early when more keys arrive than the capacity can hold for the expiry time.
+ */
+public final class DuplicateCache
+{
+    private static final int         GENERATIONS      = 5;
+    private static final int         STRIPES          = 16;
+    private static final int         PROBES           = 16;
+    private transient final long     startNanoseconds = System.nanoTime();
+    private transient final long     generationNanoseconds;
+    private transient final int      stripeMask;
+    private transient final long[][] keys;
+    private transient final int[][]  generations;
+
+    /**
+     * Creates a new instance.
+     * 
+     * @param capacity the number of keys the cache can hold
+     * @param expiryMilliseconds the minimum time, in milliseconds, a key is kept
+     * @throws IllegalArgumentException if the {@code capacity} or {@code expiryMilliseconds} isn't
+     *             greater than 0
+     */
+    public DuplicateCache(int capacity, long expiryMilliseconds)
+    {
+        Assert.isTrue(capacity > 0, "'capacity' must be greater than 0!");
+        Assert.isTrue(expiryMilliseconds > 0, "'expiryMilliseconds' must be greater than 0!");
+        // a third more slots than keys keeps the probe sequences short, and the slots are
+        // rounded up to a power of two
+        final int keysPerStripe = Math.max(PROBES, (capacity + STRIPES - 1) / STRIPES * 4 / 3);
+        final int stripeCapacity = Integer.highestOneBit(keysPerStripe * 2 - 1);
+        stripeMask = stripeCapacity - 1;
+        keys = new long[STRIPES][stripeCapacity];
+        generations = new int[STRIPES][stripeCapacity];
+        generationNanoseconds = Math.max(1,
+            TimeUnit.MILLISECONDS.toNanos(expiryMilliseconds) / (GENERATIONS - 1));
+    }
+
+    /**
+     * Adds the {@code key}, unless it was already added and hasn't expired.
+     * 
+     * @param key the key
+     * @return true if the {@code key} was added, or false if it's a duplicate
+     */
+    public boolean add(long key)
+    {
+        return add(key, false);
+    }
+
+    /**
+     * Adds the {@code key}, or restarts its expiry time if it was already added and hasn't expired.
+     * 
+     * @param key the key
+     */
+    public void put(long key)
+    {
+        add(key, true);
+    }
+
+    /**
+     * Returns the number of slots of the cache, which is more than the capacity it was created
+     * with.
+     * 
+     * @return the number of slots
+     */
+    public int getSlotCount()
+    {
+        return STRIPES * (stripeMask + 1);
+    }
+
+    private boolean add(final long key, final boolean refresh)
+    {
+        final long hash = spread(key);
+        // the top four bits pick one of the 16 stripes, the low bits the slot within it
+        final int stripe = (int) (hash >>> 60);
+        final int start = (int) hash & stripeMask;
+        final long[] stripeKeys = keys[stripe];
+        final int[] stripeGenerations = generations[stripe];
+        final int generation = getGeneration();
+        boolean added = true;
+        synchronized (stripeKeys)
+        {
+            int target = start;
+            int targetAge = -1;
+            for (int probe = 0; probe < PROBES && added; probe++)
+            {
+                final int index = (start + probe) & stripeMask;
+                final int age = getAge(stripeGenerations[index], generation);
+                if (age < GENERATIONS
+                    && stripeKeys[index] == key)
+                {
+                    added = false;
+                    if (refresh)
+                    {
+                        stripeGenerations[index] = generation;
+                    }
+                }
+                else if (age > targetAge)
+                {
+                    // an empty or expired slot is the oldest there can be
+                    target = index;
+                    targetAge = age;
+                }
+            }
+            if (added)
+            {
+                stripeKeys[target] = key;
+                stripeGenerations[target] = generation;
+            }
+        }
+        return added;
+    }
+
+    private int getGeneration()
+    {
+        // generation 0 marks an empty slot
+        final int generation = (int) ((System.nanoTime() - startNanoseconds)
+            / generationNanoseconds) + 1;
+        return generation == 0 ? 1 : generation;
+    }
+
+    private static int getAge(final int slotGeneration, final int generation)
+    {
+        final int age = generation - slotGeneration;
+        return slotGeneration == 0
+            || age < 0
+            || age >= GENERATIONS ? Integer.MAX_VALUE : age;
+    }
+
+    private static long spread(final long key)
+    {
+        // the finalizer of MurmurHash3, so keys that only differ in a few bits are spread out
+        long hash = key;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
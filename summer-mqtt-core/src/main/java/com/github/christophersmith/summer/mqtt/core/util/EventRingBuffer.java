@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free ring buffer for many producers and a single consumer.
+ * <p>
+ * Each slot carries a sequence number that tells a producer whether the slot is free for its
+ * position and the consumer whether the slot has been filled, so an offer is a single CAS on the
+ * tail and a poll needs no CAS at all. The capacity is rounded up to a power of two.
+ * 
+ * @param <E> the type of the elements
+ */
+final class EventRingBuffer<E>
+{
+    private transient final AtomicReferenceArray<E> elements;
+    private transient final AtomicLongArray         sequences;
+    private transient final int                     mask;
+    private transient final AtomicLong              tail = new AtomicLong();
+    private volatile long                           head;
+
+    EventRingBuffer(final int capacity)
+    {
+        final int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        elements = new AtomicReferenceArray<E>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++)
+        {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Adds the {@code element}, unless the buffer is full.
+     * 
+     * @param element the element
+     * @return whether the {@code element} was added
+     */
+    boolean offer(final E element)
+    {
+        boolean offered = false;
+        long position = tail.get();
+        while (true)
+        {
+            final int index = (int) position & mask;
+            final long difference = sequences.get(index) - position;
+            if (difference == 0)
+            {
+                if (tail.compareAndSet(position, position + 1))
+                {
+                    elements.lazySet(index, element);
+                    // publishing the sequence makes the element visible to the consumer
+                    sequences.set(index, position + 1);
+                    offered = true;
+                    break;
+                }
+                position = tail.get();
+            }
+            else if (difference < 0)
+            {
+                // the slot still holds the element of the previous lap
+                break;
+            }
+            else
+            {
+                position = tail.get();
+            }
+        }
+        return offered;
+    }
+
+    /**
+     * Removes and returns the oldest element. Must only be called by one thread at a time.
+     * 
+     * @return the oldest element, or null if the buffer is empty
+     */
+    E poll()
+    {
+        E element = null;
+        final long position = head;
+        final int index = (int) position & mask;
+        if (sequences.get(index) == position + 1)
+        {
+            element = elements.get(index);
+            elements.lazySet(index, null);
+            sequences.set(index, position + mask + 1);
+            head = position + 1;
+        }
+        return element;
+    }
+
+    /**
+     * Returns whether the buffer is empty, which can be out of date by the time it returns.
+     * 
+     * @return whether the buffer is empty
+     */
+    boolean isEmpty()
+    {
+        return tail.get() == head;
+    }
+
+    int getCapacity()
+    {
+        return mask + 1;
+    }
+}
@@ -13,13 +13,25 @@
  */
 package com.github.christophersmith.summer.mqtt.core.util;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.messaging.MessagingException;
 
+import com.github.christophersmith.summer.mqtt.core.MqttClientConfiguration;
+import com.github.christophersmith.summer.mqtt.core.MqttEventDispatchMode;
+import com.github.christophersmith.summer.mqtt.core.MqttMessageEventType;
 import com.github.christophersmith.summer.mqtt.core.event.MqttClientConnectedEvent;
 import com.github.christophersmith.summer.mqtt.core.event.MqttClientConnectionFailureEvent;
 import com.github.christophersmith.summer.mqtt.core.event.MqttClientConnectionLostEvent;
 import com.github.christophersmith.summer.mqtt.core.event.MqttClientDisconnectedEvent;
+import com.github.christophersmith.summer.mqtt.core.event.MqttMessageBatchPublishedEvent;
 import com.github.christophersmith.summer.mqtt.core.event.MqttMessageDeliveredEvent;
 import com.github.christophersmith.summer.mqtt.core.event.MqttMessagePublishFailureEvent;
 import com.github.christophersmith.summer.mqtt.core.event.MqttMessagePublishedEvent;
@@ -28,10 +40,95 @@ import com.github.christophersmith.summer.mqtt.core.event.MqttMessagePublishedEv
  * This is a convenience class that facilitates the publishing of Events to an
  * {@link ApplicationEventPublisher} instance.
  * <p>
+ * When created with a {@link MqttClientConfiguration} whose
+ * {@link MqttClientConfiguration#getEventDispatchMode()} is
+ * {@link MqttEventDispatchMode#ASYNCHRONOUS}, Events are placed in a bounded ring buffer and
+ * published in order on a separate thread, so a slow listener doesn't hold up the thread that
+ * raised the Event. The dispatch mode and buffer capacity are read when the first Event is
+ * published asynchronously, after which they're fixed.
+ * <p>
+ * Message Status Events can also be disabled by type, or sampled, through the
+ * {@link MqttClientConfiguration}, in which case they aren't created at all. Connection Status
+ * Events are always published.
+ * <p>
  * This class in only used internally.
  */
 public final class MqttClientEventPublisher
 {
+    private transient final MqttClientConfiguration               mqttClientConfiguration;
+    private transient final LongAdder                             droppedEventCount = new LongAdder();
+    private transient final AtomicReference<AsyncEventDispatcher> dispatcher        = new AtomicReference<AsyncEventDispatcher>();
+    private volatile Executor                                     executor;
+    private volatile ExecutorService                              defaultExecutor;
+
+    /**
+     * Creates an instance that publishes every Event synchronously.
+     */
+    public MqttClientEventPublisher()
+    {
+        this(null);
+    }
+
+    /**
+     * Creates an instance that publishes Events as set by the Event dispatch settings of the
+     * {@code mqttClientConfiguration}.
+     * 
+     * @param mqttClientConfiguration the {@link MqttClientConfiguration}, or null to publish every
+     *            Event synchronously
+     */
+    public MqttClientEventPublisher(MqttClientConfiguration mqttClientConfiguration)
+    {
+        this.mqttClientConfiguration = mqttClientConfiguration;
+    }
+
+    /**
+     * Sets the {@link Executor} that publishes the Events when using
+     * {@link MqttEventDispatchMode#ASYNCHRONOUS}, which can be shared with other instances.
+     * <p>
+     * If not set, a single daemon thread is started for this instance. The {@link Executor} is
+     * read when the first Event is published asynchronously.
+     * 
+     * @param executor an {@link Executor} value, or null to use the default
+     */
+    public void setExecutor(Executor executor)
+    {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the number of Events that were dropped or replaced because the buffer was full.
+     * 
+     * @return the number of dropped Events
+     */
+    public long getDroppedEventCount()
+    {
+        return droppedEventCount.sum();
+    }
+
+    /**
+     * Returns whether no Events are waiting to be published asynchronously.
+     * 
+     * @return whether no Events are waiting to be published
+     */
+    public boolean isIdle()
+    {
+        final AsyncEventDispatcher current = dispatcher.get();
+        return current == null
+            || current.isIdle();
+    }
+
+    /**
+     * Stops the default thread once the Events waiting to be published are published. Events
+     * published afterwards are published by the thread that raised them.
+     */
+    public void close()
+    {
+        final ExecutorService current = defaultExecutor;
+        if (current != null)
+        {
+            current.shutdown();
+        }
+    }
     /**
      * Publishes a {@link MqttClientConnectedEvent} message to the
      * {@link ApplicationEventPublisher}.
@@ -50,8 +147,9 @@ public final class MqttClientEventPublisher
     {
         if (applicationEventPublisher != null)
         {
-            applicationEventPublisher.publishEvent(
-                new MqttClientConnectedEvent(clientId, serverUri, subscribedTopics, source));
+            publish(clientId,
+                new MqttClientConnectedEvent(clientId, serverUri, subscribedTopics, source),
+                applicationEventPublisher);
         }
     }
 
@@ -73,8 +171,9 @@ public final class MqttClientEventPublisher
     {
         if (applicationEventPublisher != null)
         {
-            applicationEventPublisher.publishEvent(
-                new MqttClientConnectionFailureEvent(clientId, autoReconnect, throwable, source));
+            publish(clientId,
+                new MqttClientConnectionFailureEvent(clientId, autoReconnect, throwable, source),
+                applicationEventPublisher);
         }
     }
 
@@ -95,8 +194,8 @@ public final class MqttClientEventPublisher
     {
         if (applicationEventPublisher != null)
         {
-            applicationEventPublisher
-                .publishEvent(new MqttClientConnectionLostEvent(clientId, autoReconnect, source));
+            publish(clientId, new MqttClientConnectionLostEvent(clientId, autoReconnect, source),
+                applicationEventPublisher);
         }
     }
 
@@ -116,8 +215,8 @@ public final class MqttClientEventPublisher
     {
         if (applicationEventPublisher != null)
         {
-            applicationEventPublisher
-                .publishEvent(new MqttClientDisconnectedEvent(clientId, source));
+            publish(clientId, new MqttClientDisconnectedEvent(clientId, source),
+                applicationEventPublisher);
         }
     }
 
@@ -136,10 +235,33 @@ public final class MqttClientEventPublisher
     public void publishMessageDeliveredEvent(String clientId, int messageIdentifier,
         ApplicationEventPublisher applicationEventPublisher, Object source)
     {
-        if (applicationEventPublisher != null)
+        publishMessageDeliveredEvent(clientId, messageIdentifier, null, -1,
+            applicationEventPublisher, source);
+    }
+
+    /**
+     * Publishes a {@link MqttMessageDeliveredEvent} message, with the Correlation ID and delivery
+     * latency of the message, to the {@link ApplicationEventPublisher}.
+     * <p>
+     * If the {@link ApplicationEventPublisher} instance is null, no event message will be
+     * published.
+     * 
+     * @param clientId the Client ID value
+     * @param messageIdentifier the Message Identifier
+     * @param correlationId the Correlation ID, or null if not set
+     * @param latencyNanoseconds the delivery latency in nanoseconds, or -1 if unknown
+     * @param applicationEventPublisher the {@link ApplicationEventPublisher} value
+     * @param source the source that sent this event
+     */
+    public void publishMessageDeliveredEvent(String clientId, int messageIdentifier,
+        String correlationId, long latencyNanoseconds,
+        ApplicationEventPublisher applicationEventPublisher, Object source)
+    {
+        if (applicationEventPublisher != null
+            && isSampled(MqttMessageEventType.DELIVERED))
         {
-            applicationEventPublisher
-                .publishEvent(new MqttMessageDeliveredEvent(clientId, messageIdentifier, source));
+            publish(clientId, new MqttMessageDeliveredEvent(clientId, messageIdentifier,
+                correlationId, latencyNanoseconds, source), applicationEventPublisher);
         }
     }
 
@@ -159,10 +281,38 @@ public final class MqttClientEventPublisher
     public void publishMessagePublishedEvent(String clientId, int messageIdentifier,
         String correlationId, ApplicationEventPublisher applicationEventPublisher, Object source)
     {
-        if (applicationEventPublisher != null)
+        if (applicationEventPublisher != null
+            && isSampled(MqttMessageEventType.PUBLISHED))
+        {
+            publish(clientId,
+                new MqttMessagePublishedEvent(clientId, messageIdentifier, correlationId, source),
+                applicationEventPublisher);
+        }
+    }
+
+    /**
+     * Publishes a {@link MqttMessageBatchPublishedEvent} message to the
+     * {@link ApplicationEventPublisher}.
+     * <p>
+     * If the {@link ApplicationEventPublisher} instance is null, no event message will be
+     * published.
+     * 
+     * @param clientId the Client ID value
+     * @param messageIdentifiers the Message Identifiers
+     * @param correlationIds the Correlation IDs
+     * @param failedCount the number of messages that could not be published
+     * @param applicationEventPublisher the {@link ApplicationEventPublisher} value
+     * @param source the source that sent this event
+     */
+    public void publishMessageBatchPublishedEvent(String clientId, int[] messageIdentifiers,
+        String[] correlationIds, int failedCount,
+        ApplicationEventPublisher applicationEventPublisher, Object source)
+    {
+        if (applicationEventPublisher != null
+            && isEnabled(MqttMessageEventType.BATCH_PUBLISHED))
         {
-            applicationEventPublisher.publishEvent(
-                new MqttMessagePublishedEvent(clientId, messageIdentifier, correlationId, source));
+            publish(clientId, new MqttMessageBatchPublishedEvent(clientId, messageIdentifiers,
+                correlationIds, failedCount, source), applicationEventPublisher);
         }
     }
 
@@ -181,10 +331,84 @@ public final class MqttClientEventPublisher
     public void publishMessagePublishFailureEvent(String clientId, MessagingException exception,
         ApplicationEventPublisher applicationEventPublisher, Object source)
     {
-        if (applicationEventPublisher != null)
+        if (applicationEventPublisher != null
+            && isEnabled(MqttMessageEventType.PUBLISH_FAILURE))
+        {
+            publish(clientId, new MqttMessagePublishFailureEvent(clientId, exception, source),
+                applicationEventPublisher);
+        }
+    }
+
+    private boolean isEnabled(MqttMessageEventType messageEventType)
+    {
+        return mqttClientConfiguration == null
+            || mqttClientConfiguration.isMessageEventEnabled(messageEventType);
+    }
+
+    private boolean isSampled(MqttMessageEventType messageEventType)
+    {
+        boolean sampled = isEnabled(messageEventType);
+        if (sampled
+            && mqttClientConfiguration != null
+            && mqttClientConfiguration.getMessageEventSampleRate() > 1)
+        {
+            // a random pick, rather than a shared counter, keeps the hot path free of contention
+            sampled = ThreadLocalRandom.current()
+                .nextInt(mqttClientConfiguration.getMessageEventSampleRate()) == 0;
+        }
+        return sampled;
+    }
+
+    private void publish(String clientId, ApplicationEvent event,
+        ApplicationEventPublisher applicationEventPublisher)
+    {
+        AsyncEventDispatcher current = dispatcher.get();
+        if (current == null
+            && mqttClientConfiguration != null
+            && MqttEventDispatchMode.ASYNCHRONOUS == mqttClientConfiguration
+                .getEventDispatchMode())
+        {
+            current = getDispatcher(clientId);
+        }
+        if (current == null)
+        {
+            applicationEventPublisher.publishEvent(event);
+        }
+        else
+        {
+            current.dispatch(event, applicationEventPublisher,
+                mqttClientConfiguration.getEventOverflowBehavior());
+        }
+    }
+
+    private AsyncEventDispatcher getDispatcher(String clientId)
+    {
+        AsyncEventDispatcher current = dispatcher.get();
+        if (current == null)
         {
-            applicationEventPublisher
-                .publishEvent(new MqttMessagePublishFailureEvent(clientId, exception, source));
+            synchronized (dispatcher)
+            {
+                current = dispatcher.get();
+                if (current == null)
+                {
+                    Executor dispatchExecutor = executor;
+                    if (dispatchExecutor == null)
+                    {
+                        defaultExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                            final Thread thread = new Thread(runnable,
+                                String.format("%s-events", clientId));
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+                        dispatchExecutor = defaultExecutor;
+                    }
+                    current = new AsyncEventDispatcher(
+                        mqttClientConfiguration.getEventBufferCapacity(), dispatchExecutor,
+                        droppedEventCount);
+                    dispatcher.set(current);
+                }
+            }
         }
+        return current;
     }
 }
@@ -17,6 +17,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.messaging.Message;
 
+import com.github.christophersmith.summer.mqtt.core.MqttCompression;
+import com.github.christophersmith.summer.mqtt.core.MqttInboundMessage;
 import com.github.christophersmith.summer.mqtt.core.MqttQualityOfService;
 
 /**
@@ -69,6 +71,36 @@ public final class MqttHeaderHelper
      * Events back to a specific message.
      */
     public static final String  CORRELATION_ID = "mqtt_correlation_id";
+    /**
+     * The {@link Message} header key for the {@link MqttCompression} codec an out-going message
+     * should be compressed with, or an in-coming message was decompressed from.
+     * <p>
+     * For out-going messages, this takes precedence over the compressed Topic Filters of the MQTT
+     * Client. The value can be a {@link MqttCompression} or its name.
+     */
+    public static final String  COMPRESSION    = "mqtt_compression";
+    /**
+     * The {@link Message} header key for the priority lane of an out-going message, where 0 is the
+     * highest priority.
+     * <p>
+     * The priority decides which message receives a freed slot when the in-flight window of the
+     * MQTT Client is full.
+     */
+    public static final String  PRIORITY       = "mqtt_priority";
+    /**
+     * The {@link Message} header key for the routing key of an out-going message.
+     * <p>
+     * A pool of MQTT Client connections can use this to publish all messages with the same key
+     * through the same connection, so they keep their order.
+     */
+    public static final String  ROUTING_KEY    = "mqtt_routing_key";
+    /**
+     * The {@link Message} header key for the Topic Filter of a batch of in-coming messages.
+     * <p>
+     * This header value is present on the {@link Message} of a batch, whose payload is a
+     * {@link java.util.List} of the in-coming messages of the Topic Filter.
+     */
+    public static final String  TOPIC_FILTER   = "mqtt_topic_filter";
 
     /**
      * Retrieves the {@link #TOPIC} value from the {@code message} parameter.
@@ -82,7 +114,11 @@ public final class MqttHeaderHelper
     public static String getTopicHeaderValue(Message<?> message)
     {
         String value = null;
-        if (message != null
+        if (message instanceof MqttInboundMessage)
+        {
+            value = ((MqttInboundMessage<?>) message).getTopic();
+        }
+        else if (message != null
             && message.getHeaders().containsKey(TOPIC))
         {
             value = message.getHeaders().get(TOPIC, String.class);
@@ -135,7 +171,11 @@ public final class MqttHeaderHelper
         boolean retained = false;
         try
         {
-            if (message != null
+            if (message instanceof MqttInboundMessage)
+            {
+                retained = ((MqttInboundMessage<?>) message).isRetained();
+            }
+            else if (message != null
                 && message.getHeaders().containsKey(RETAINED))
             {
                 retained = message.getHeaders().get(RETAINED, Boolean.class);
@@ -167,4 +207,101 @@ public final class MqttHeaderHelper
         }
         return correlationId;
     }
+
+    /**
+     * Retrieves the {@link #COMPRESSION} value from the {@code message} parameter.
+     * <p>
+     * If the {@code message} parameter is null, doesn't contain the {@link #COMPRESSION} header or
+     * the value isn't a {@link MqttCompression} or the name of one, a null value is returned.
+     * 
+     * @param message a {@link Message} value
+     * @return a {@link MqttCompression} value, or null if not available
+     */
+    public static MqttCompression getCompressionHeaderValue(Message<?> message)
+    {
+        MqttCompression compression = null;
+        if (message instanceof MqttInboundMessage)
+        {
+            compression = ((MqttInboundMessage<?>) message).getCompression();
+        }
+        else if (message != null
+            && message.getHeaders().containsKey(COMPRESSION))
+        {
+            final Object value = message.getHeaders().get(COMPRESSION);
+            if (value instanceof MqttCompression)
+            {
+                compression = (MqttCompression) value;
+            }
+            else if (value != null)
+            {
+                try
+                {
+                    compression = MqttCompression.valueOf(value.toString());
+                }
+                catch (IllegalArgumentException ex)
+                {
+                    LOG.debug("Could not convert the COMPRESSION header value to a MqttCompression!",
+                        ex);
+                }
+            }
+        }
+        return compression;
+    }
+
+    /**
+     * Retrieves the {@link #PRIORITY} value from the {@code message} parameter.
+     * <p>
+     * If the {@code message} parameter is null, doesn't contain the {@link #PRIORITY} header, or
+     * its value isn't an Integer of 0 or greater, the {@code defaultPriority} is returned.
+     * 
+     * @param message a {@link Message} value
+     * @param defaultPriority the priority to use if the header is missing or invalid
+     * @return the Priority
+     */
+    public static int getPriorityHeaderValue(Message<?> message, int defaultPriority)
+    {
+        int priority = defaultPriority;
+        try
+        {
+            if (message != null
+                && message.getHeaders().containsKey(PRIORITY))
+            {
+                final Integer value = message.getHeaders().get(PRIORITY, Integer.class);
+                if (value != null
+                    && value >= 0)
+                {
+                    priority = value;
+                }
+            }
+        }
+        catch (IllegalArgumentException ex)
+        {
+            LOG.debug("Could not convert the PRIORITY header value to an Integer!", ex);
+        }
+        return priority;
+    }
+
+    /**
+     * Retrieves the {@link #ROUTING_KEY} value from the {@code message} parameter, as a String.
+     * <p>
+     * If the {@code message} parameter is null or doesn't contain the {@link #ROUTING_KEY} header,
+     * a null value is returned.
+     * 
+     * @param message a {@link Message} value
+     * @return the Routing Key
+     */
+    public static String getRoutingKeyHeaderValue(Message<?> message)
+    {
+        String routingKey = null;
+        if (message != null
+            && message.getHeaders().containsKey(ROUTING_KEY))
+        {
+            final Object value = message.getHeaders().get(ROUTING_KEY);
+            if (value != null)
+            {
+                routingKey = value.toString();
+            }
+        }
+        return routingKey;
+    }
 }
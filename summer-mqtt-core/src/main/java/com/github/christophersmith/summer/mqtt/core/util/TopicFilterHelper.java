@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.util;
+
+/**
+ * A utility class for matching Topics against Topic Filters, following the wildcard rules of the
+ * MQTT specification.
+ */
+public final class TopicFilterHelper
+{
+    private static final char SEPARATOR              = '/';
+    private static final char SINGLE_LEVEL_WILDCARD  = '+';
+    private static final char MULTI_LEVEL_WILDCARD   = '#';
+    private static final char SYSTEM_TOPIC_INDICATOR = '$';
+
+    /**
+     * Returns whether the {@code topic} matches the {@code topicFilter}.
+     * <p>
+     * A {@code +} in the {@code topicFilter} matches exactly one Topic level, and a trailing
+     * {@code #} matches any number of levels, including the parent level. As in the MQTT
+     * specification, Topics starting with {@code $} are only matched by Topic Filters that start
+     * with {@code $} too. The match is case-sensitive, and doesn't allocate.
+     * 
+     * @param topicFilter the Topic Filter, which can include wildcards
+     * @param topic the Topic to match
+     * @return true if the {@code topic} matches, or false if it doesn't or either value is null
+     */
+    public static boolean matches(final String topicFilter, final String topic)
+    {
+        boolean matches = false;
+        if (topicFilter != null
+            && topic != null
+            && !topicFilter.isEmpty()
+            && !topic.isEmpty()
+            && (topic.charAt(0) != SYSTEM_TOPIC_INDICATOR
+                || topicFilter.charAt(0) == SYSTEM_TOPIC_INDICATOR))
+        {
+            final int filterLength = topicFilter.length();
+            final int topicLength = topic.length();
+            int filterIndex = 0;
+            int topicIndex = 0;
+            boolean matching = true;
+            while (matching
+                && filterIndex < filterLength)
+            {
+                final char character = topicFilter.charAt(filterIndex);
+                if (character == MULTI_LEVEL_WILDCARD)
+                {
+                    // '#' must be the last character, and matches whatever remains
+                    matches = filterIndex == filterLength - 1;
+                    matching = false;
+                }
+                else if (character == SINGLE_LEVEL_WILDCARD)
+                {
+                    while (topicIndex < topicLength
+                        && topic.charAt(topicIndex) != SEPARATOR)
+                    {
+                        topicIndex++;
+                    }
+                    filterIndex++;
+                }
+                else if (topicIndex < topicLength
+                    && topic.charAt(topicIndex) == character)
+                {
+                    filterIndex++;
+                    topicIndex++;
+                }
+                else if (topicIndex == topicLength
+                    && character == SEPARATOR
+                    && filterIndex == filterLength - 2
+                    && topicFilter.charAt(filterLength - 1) == MULTI_LEVEL_WILDCARD)
+                {
+                    // "a/#" also matches the parent level "a"
+                    matches = true;
+                    matching = false;
+                }
+                else
+                {
+                    matching = false;
+                }
+            }
+            if (matching)
+            {
+                matches = topicIndex == topicLength;
+            }
+        }
+        return matches;
+    }
+}
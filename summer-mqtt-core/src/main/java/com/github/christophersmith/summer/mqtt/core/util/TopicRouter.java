@@ -0,0 +1,338 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.springframework.util.Assert;
+
+/**
+ * Routes Topics to the targets registered for the Topic Filters they match, following the wildcard
+ * rules of {@link TopicFilterHelper#matches(String, String)}.
+ * <p>
+ * Topic Filters without wildcards are kept in a {@link Map} keyed by the Topic, and Topic Filters
+ * with wildcards in a trie with a node per Topic level, so all matching targets are found with
+ * one lookup and one walk of the trie, however many Topic Filters are registered.
+ * <p>
+ * Routing doesn't lock and can run concurrently with changes, which are serialized and replace
+ * the target arrays rather than change them.
+ *
+ * @param <T> the target type
+ */
+public final class TopicRouter<T>
+{
+    private static final char                     SEPARATOR              = '/';
+    private static final String                   SINGLE_LEVEL_WILDCARD  = "+";
+    private static final String                   MULTI_LEVEL_WILDCARD   = "#";
+    private static final char                     SYSTEM_TOPIC_INDICATOR = '$';
+    private static final Object[]                 EMPTY                  = new Object[0];
+    private transient final Map<String, Object[]> exactTargets           = new ConcurrentHashMap<String, Object[]>();
+    private transient final Node                  root                   = new Node();
+    private volatile int                          size;
+
+    /**
+     * Registers the {@code target} for the {@code topicFilter}.
+     * <p>
+     * A target that's registered for more than one matching Topic Filter receives a routed Topic
+     * once for each.
+     * 
+     * @param topicFilter the Topic Filter, which can include wildcards
+     * @param target the target
+     * @throws IllegalArgumentException if the {@code topicFilter} is null or empty, or the
+     *             {@code target} is null
+     */
+    public synchronized void add(String topicFilter, T target)
+    {
+        Assert.hasText(topicFilter, "'topicFilter' must be set!");
+        Assert.notNull(target, "'target' must be set!");
+        if (isExact(topicFilter))
+        {
+            exactTargets.put(topicFilter,
+                append(exactTargets.getOrDefault(topicFilter, EMPTY), target));
+        }
+        else
+        {
+            Node node = root;
+            int start = 0;
+            boolean added = false;
+            while (!added)
+            {
+                if (start > topicFilter.length())
+                {
+                    node.targets = append(node.targets, target);
+                    added = true;
+                }
+                else
+                {
+                    final String level = getLevel(topicFilter, start);
+                    if (MULTI_LEVEL_WILDCARD.equals(level))
+                    {
+                        node.multiLevelTargets = append(node.multiLevelTargets, target);
+                        added = true;
+                    }
+                    else
+                    {
+                        node = node.getOrCreateChild(level);
+                        start += level.length() + 1;
+                    }
+                }
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Removes the registration of the {@code target} for the {@code topicFilter}.
+     * 
+     * @param topicFilter the Topic Filter
+     * @param target the target
+     * @return whether the {@code target} was registered for the {@code topicFilter}
+     */
+    public synchronized boolean remove(String topicFilter, T target)
+    {
+        return remove(topicFilter, target, false) > 0;
+    }
+
+    /**
+     * Removes all targets registered for the {@code topicFilter}.
+     * 
+     * @param topicFilter the Topic Filter
+     * @return the number of removed registrations
+     */
+    public synchronized int removeAll(String topicFilter)
+    {
+        return remove(topicFilter, null, true);
+    }
+
+    /**
+     * Passes every target registered for a Topic Filter that matches the {@code topic} to the
+     * {@code consumer}.
+     * 
+     * @param topic the Topic, which can't include wildcards
+     * @param consumer the {@link Consumer} that receives the matching targets
+     * @return the number of targets passed to the {@code consumer}
+     */
+    public int route(String topic, Consumer<? super T> consumer)
+    {
+        int count = 0;
+        if (topic != null
+            && !topic.isEmpty()
+            && size > 0)
+        {
+            count += accept(exactTargets.get(topic), consumer);
+            if (root.hasWildcardTargets())
+            {
+                count += route(root, topic, 0, topic.charAt(0) == SYSTEM_TOPIC_INDICATOR,
+                    consumer);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns whether any target is registered.
+     * 
+     * @return whether any target is registered
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of registrations, which is a target for a Topic Filter.
+     * 
+     * @return the number of registrations
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    private int route(final Node node, final String topic, final int start,
+        final boolean systemLevel, final Consumer<? super T> consumer)
+    {
+        int count = 0;
+        if (!systemLevel)
+        {
+            // "a/#" matches the level "a" itself, as well as every level below it
+            count += accept(node.multiLevelTargets, consumer);
+        }
+        if (start > topic.length())
+        {
+            count += accept(node.targets, consumer);
+        }
+        else
+        {
+            final String level = getLevel(topic, start);
+            final int next = start + level.length() + 1;
+            final Node child = node.children.get(level);
+            if (child != null)
+            {
+                count += route(child, topic, next, false, consumer);
+            }
+            final Node singleLevelChild = node.children.get(SINGLE_LEVEL_WILDCARD);
+            if (singleLevelChild != null
+                && !systemLevel)
+            {
+                count += route(singleLevelChild, topic, next, false, consumer);
+            }
+        }
+        return count;
+    }
+
+    private int remove(final String topicFilter, final T target, final boolean all)
+    {
+        int count = 0;
+        if (topicFilter != null
+            && !topicFilter.isEmpty())
+        {
+            if (isExact(topicFilter))
+            {
+                final Object[] targets = exactTargets.getOrDefault(topicFilter, EMPTY);
+                final Object[] remaining = all ? EMPTY : without(targets, target);
+                count = targets.length - remaining.length;
+                if (remaining.length == 0)
+                {
+                    exactTargets.remove(topicFilter);
+                }
+                else
+                {
+                    exactTargets.put(topicFilter, remaining);
+                }
+            }
+            else
+            {
+                count = remove(root, topicFilter, 0, target, all);
+            }
+            size -= count;
+        }
+        return count;
+    }
+
+    private int remove(final Node node, final String topicFilter, final int start,
+        final T target, final boolean all)
+    {
+        int count = 0;
+        if (start > topicFilter.length())
+        {
+            final Object[] remaining = all ? EMPTY : without(node.targets, target);
+            count = node.targets.length - remaining.length;
+            node.targets = remaining;
+        }
+        else
+        {
+            final String level = getLevel(topicFilter, start);
+            if (MULTI_LEVEL_WILDCARD.equals(level))
+            {
+                final Object[] remaining = all ? EMPTY : without(node.multiLevelTargets, target);
+                count = node.multiLevelTargets.length - remaining.length;
+                node.multiLevelTargets = remaining;
+            }
+            else
+            {
+                final Node child = node.children.get(level);
+                if (child != null)
+                {
+                    count = remove(child, topicFilter, start + level.length() + 1, target, all);
+                    if (child.isEmpty())
+                    {
+                        node.children.remove(level);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int accept(final Object[] targets, final Consumer<? super T> consumer)
+    {
+        int count = 0;
+        if (targets != null)
+        {
+            for (final Object target : targets)
+            {
+                consumer.accept((T) target);
+            }
+            count = targets.length;
+        }
+        return count;
+    }
+
+    private static boolean isExact(final String topicFilter)
+    {
+        return topicFilter.indexOf('+') < 0
+            && topicFilter.indexOf('#') < 0;
+    }
+
+    private static String getLevel(final String value, final int start)
+    {
+        final int end = value.indexOf(SEPARATOR, start);
+        return value.substring(start, end < 0 ? value.length() : end);
+    }
+
+    private static Object[] append(final Object[] targets, final Object target)
+    {
+        final Object[] values = Arrays.copyOf(targets, targets.length + 1);
+        values[targets.length] = target;
+        return values;
+    }
+
+    private static Object[] without(final Object[] targets, final Object target)
+    {
+        Object[] values = targets;
+        int index = 0;
+        while (index < targets.length
+            && !targets[index].equals(target))
+        {
+            index++;
+        }
+        if (index < targets.length)
+        {
+            values = new Object[targets.length - 1];
+            System.arraycopy(targets, 0, values, 0, index);
+            System.arraycopy(targets, index + 1, values, index, targets.length - index - 1);
+        }
+        return values;
+    }
+
+    private static final class Node
+    {
+        private final Map<String, Node> children          = new ConcurrentHashMap<String, Node>();
+        private volatile Object[]       targets           = EMPTY;
+        private volatile Object[]       multiLevelTargets = EMPTY;
+
+        private Node getOrCreateChild(final String level)
+        {
+            return children.computeIfAbsent(level, key -> new Node());
+        }
+
+        private boolean hasWildcardTargets()
+        {
+            return !children.isEmpty()
+                || multiLevelTargets.length > 0;
+        }
+
+        private boolean isEmpty()
+        {
+            return children.isEmpty()
+                && targets.length == 0
+                && multiLevelTargets.length == 0;
+        }
+    }
+}
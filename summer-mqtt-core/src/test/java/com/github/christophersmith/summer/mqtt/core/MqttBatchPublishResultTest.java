@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class MqttBatchPublishResultTest
+{
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void test()
+    {
+        final List<CompletableFuture<Integer>> futures = new ArrayList<CompletableFuture<Integer>>();
+        futures.add(new CompletableFuture<Integer>());
+        futures.add(new CompletableFuture<Integer>());
+        final MqttBatchPublishResult result = new MqttBatchPublishResult(futures, 1);
+        Assert.assertEquals(2, result.getMessageCount());
+        Assert.assertEquals(1, result.getSubmittedCount());
+        Assert.assertEquals(1, result.getFailedCount());
+        final CompletableFuture<Void> allCompleted = result.allCompleted();
+        futures.get(0).complete(1);
+        Assert.assertFalse(allCompleted.isDone());
+        futures.get(1).completeExceptionally(new IllegalStateException());
+        Assert.assertTrue(allCompleted.isDone());
+        Assert.assertFalse(allCompleted.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testResultsUnmodifiable()
+    {
+        final MqttBatchPublishResult result = new MqttBatchPublishResult(
+            new ArrayList<CompletableFuture<Integer>>(), 0);
+        thrown.expect(UnsupportedOperationException.class);
+        result.getResults().add(new CompletableFuture<Integer>());
+    }
+
+    @Test
+    public void testNullResults()
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'results' must be set!");
+        new MqttBatchPublishResult(null, 0);
+    }
+}
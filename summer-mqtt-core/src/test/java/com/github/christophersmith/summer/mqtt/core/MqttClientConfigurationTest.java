@@ -82,6 +82,294 @@ public class MqttClientConfigurationTest
         Assert.assertNotNull(configuration.getMqttClientConnectionStatusPublisher());
         configuration.setMqttClientConnectionStatusPublisher(null);
         Assert.assertNull(configuration.getMqttClientConnectionStatusPublisher());
+        Assert.assertEquals(0, configuration.getMaxInFlightMessages());
+        configuration.setMaxInFlightMessages(10);
+        Assert.assertEquals(10, configuration.getMaxInFlightMessages());
+        Assert.assertEquals(MqttInFlightOverflowStrategy.BLOCK,
+            configuration.getInFlightOverflowStrategy());
+        configuration.setInFlightOverflowStrategy(MqttInFlightOverflowStrategy.QUEUE);
+        Assert.assertEquals(MqttInFlightOverflowStrategy.QUEUE,
+            configuration.getInFlightOverflowStrategy());
+        Assert.assertEquals(VALUE_30000, configuration.getInFlightWaitMilliseconds());
+        configuration.setInFlightWaitMilliseconds(VALUE_60000);
+        Assert.assertEquals(VALUE_60000, configuration.getInFlightWaitMilliseconds());
+        Assert.assertEquals(1000, configuration.getInFlightQueueCapacity());
+        configuration.setInFlightQueueCapacity(10);
+        Assert.assertEquals(10, configuration.getInFlightQueueCapacity());
+        Assert.assertNotNull(configuration.getPayloadConverterRegistry());
+        Assert.assertNotNull(configuration.getPayloadConverterRegistry()
+            .getPayloadConverter(String.class));
+        Assert.assertTrue(configuration.getConflatedTopicFilters().isEmpty());
+        configuration.addConflatedTopicFilter("devices/+/position");
+        configuration.addConflatedTopicFilter("devices/+/position");
+        Assert.assertEquals(1, configuration.getConflatedTopicFilters().size());
+        configuration.removeConflatedTopicFilter("devices/+/position");
+        Assert.assertTrue(configuration.getConflatedTopicFilters().isEmpty());
+        Assert.assertEquals(100, configuration.getConflationIntervalMilliseconds());
+        configuration.setConflationIntervalMilliseconds(VALUE_30000);
+        Assert.assertEquals(VALUE_30000, configuration.getConflationIntervalMilliseconds());
+        Assert.assertTrue(configuration.getCompressedTopicFilters().isEmpty());
+        configuration.addCompressedTopicFilter("devices/#", MqttCompression.LZ);
+        configuration.addCompressedTopicFilter("devices/#", MqttCompression.DEFLATE);
+        Assert.assertEquals(1, configuration.getCompressedTopicFilters().size());
+        Assert.assertEquals(MqttCompression.DEFLATE,
+            configuration.getCompressedTopicFilters().get("devices/#"));
+        configuration.removeCompressedTopicFilter("devices/#");
+        Assert.assertTrue(configuration.getCompressedTopicFilters().isEmpty());
+        Assert.assertFalse(configuration.isInboundDecompression());
+        configuration.setInboundDecompression(true);
+        Assert.assertTrue(configuration.isInboundDecompression());
+        Assert.assertEquals(16777216, configuration.getInboundDecompressionMaxBytes());
+        configuration.setInboundDecompressionMaxBytes(1024);
+        Assert.assertEquals(1024, configuration.getInboundDecompressionMaxBytes());
+        Assert.assertNull(configuration.getClientRateLimit());
+        final MqttRateLimit rateLimit = new MqttRateLimit(100, 10);
+        configuration.setClientRateLimit(rateLimit);
+        Assert.assertSame(rateLimit, configuration.getClientRateLimit());
+        Assert.assertTrue(configuration.getTopicRateLimits().isEmpty());
+        configuration.addTopicRateLimit("devices/#", new MqttRateLimit(1, 1));
+        configuration.addTopicRateLimit("devices/#", rateLimit);
+        Assert.assertEquals(1, configuration.getTopicRateLimits().size());
+        Assert.assertSame(rateLimit, configuration.getTopicRateLimits().get("devices/#"));
+        configuration.removeTopicRateLimit("devices/#");
+        Assert.assertTrue(configuration.getTopicRateLimits().isEmpty());
+        Assert.assertEquals(MqttRateLimitBehavior.WAIT, configuration.getRateLimitBehavior());
+        configuration.setRateLimitBehavior(MqttRateLimitBehavior.DROP_QOS_0);
+        Assert.assertEquals(MqttRateLimitBehavior.DROP_QOS_0,
+            configuration.getRateLimitBehavior());
+        Assert.assertEquals(VALUE_30000, configuration.getRateLimitWaitMilliseconds());
+        configuration.setRateLimitWaitMilliseconds(VALUE_60000);
+        Assert.assertEquals(VALUE_60000, configuration.getRateLimitWaitMilliseconds());
+        Assert.assertEquals(1, configuration.getPriorityLaneCount());
+        configuration.setPriorityLaneCount(3);
+        Assert.assertEquals(3, configuration.getPriorityLaneCount());
+        Assert.assertEquals(MqttPriorityScheduling.STRICT, configuration.getPriorityScheduling());
+        configuration.setPriorityScheduling(MqttPriorityScheduling.WEIGHTED_FAIR);
+        Assert.assertEquals(MqttPriorityScheduling.WEIGHTED_FAIR,
+            configuration.getPriorityScheduling());
+        Assert.assertEquals(3, configuration.getPriorityLaneWeight(0));
+        Assert.assertEquals(1, configuration.getPriorityLaneWeight(2));
+        configuration.setPriorityLaneWeights(8, 4);
+        Assert.assertEquals(8, configuration.getPriorityLaneWeight(0));
+        Assert.assertEquals(4, configuration.getPriorityLaneWeight(1));
+        Assert.assertEquals(1, configuration.getPriorityLaneWeight(2));
+        Assert.assertEquals(MqttEventDispatchMode.SYNCHRONOUS,
+            configuration.getEventDispatchMode());
+        configuration.setEventDispatchMode(MqttEventDispatchMode.ASYNCHRONOUS);
+        Assert.assertEquals(MqttEventDispatchMode.ASYNCHRONOUS,
+            configuration.getEventDispatchMode());
+        Assert.assertEquals(1024, configuration.getEventBufferCapacity());
+        configuration.setEventBufferCapacity(64);
+        Assert.assertEquals(64, configuration.getEventBufferCapacity());
+        Assert.assertEquals(MqttEventOverflowBehavior.DROP,
+            configuration.getEventOverflowBehavior());
+        configuration.setEventOverflowBehavior(MqttEventOverflowBehavior.COALESCE);
+        Assert.assertEquals(MqttEventOverflowBehavior.COALESCE,
+            configuration.getEventOverflowBehavior());
+        Assert.assertTrue(configuration.isMessageEventEnabled(MqttMessageEventType.DELIVERED));
+        configuration.setMessageEventEnabled(MqttMessageEventType.DELIVERED, false);
+        configuration.setMessageEventEnabled(MqttMessageEventType.PUBLISHED, false);
+        Assert.assertFalse(configuration.isMessageEventEnabled(MqttMessageEventType.DELIVERED));
+        Assert.assertTrue(
+            configuration.isMessageEventEnabled(MqttMessageEventType.PUBLISH_FAILURE));
+        configuration.setMessageEventEnabled(MqttMessageEventType.DELIVERED, true);
+        Assert.assertTrue(configuration.isMessageEventEnabled(MqttMessageEventType.DELIVERED));
+        Assert.assertFalse(configuration.isMessageEventEnabled(MqttMessageEventType.PUBLISHED));
+        Assert.assertEquals(1, configuration.getMessageEventSampleRate());
+        configuration.setMessageEventSampleRate(100);
+        Assert.assertEquals(100, configuration.getMessageEventSampleRate());
+        Assert.assertEquals(0, configuration.getInboundDispatchThreads());
+        configuration.setInboundDispatchThreads(4);
+        Assert.assertEquals(4, configuration.getInboundDispatchThreads());
+        Assert.assertEquals(1000, configuration.getInboundQueueCapacity());
+        configuration.setInboundQueueCapacity(50);
+        Assert.assertEquals(50, configuration.getInboundQueueCapacity());
+        Assert.assertEquals(MqttInboundOverflowStrategy.BLOCK,
+            configuration.getInboundOverflowStrategy());
+        configuration.setInboundOverflowStrategy(MqttInboundOverflowStrategy.DROP_QOS_0);
+        Assert.assertEquals(MqttInboundOverflowStrategy.DROP_QOS_0,
+            configuration.getInboundOverflowStrategy());
+        Assert.assertEquals(MqttInboundPayloadMode.COPY, configuration.getInboundPayloadMode());
+        configuration.setInboundPayloadMode(MqttInboundPayloadMode.READ_ONLY_BUFFER);
+        Assert.assertEquals(MqttInboundPayloadMode.READ_ONLY_BUFFER,
+            configuration.getInboundPayloadMode());
+        Assert.assertEquals(MqttMessageIdGeneration.RANDOM,
+            configuration.getInboundMessageIdGeneration());
+        configuration.setInboundMessageIdGeneration(MqttMessageIdGeneration.SEQUENTIAL);
+        Assert.assertEquals(MqttMessageIdGeneration.SEQUENTIAL,
+            configuration.getInboundMessageIdGeneration());
+        Assert.assertTrue(configuration.getBatchedTopicFilters().isEmpty());
+        configuration.addBatchedTopicFilter("devices/+/status");
+        configuration.addBatchedTopicFilter("devices/+/status");
+        Assert.assertEquals(1, configuration.getBatchedTopicFilters().size());
+        configuration.removeBatchedTopicFilter("devices/+/status");
+        Assert.assertTrue(configuration.getBatchedTopicFilters().isEmpty());
+        Assert.assertEquals(100, configuration.getInboundBatchMaxMessages());
+        configuration.setInboundBatchMaxMessages(500);
+        Assert.assertEquals(500, configuration.getInboundBatchMaxMessages());
+        Assert.assertEquals(1048576, configuration.getInboundBatchMaxBytes());
+        configuration.setInboundBatchMaxBytes(1024);
+        Assert.assertEquals(1024, configuration.getInboundBatchMaxBytes());
+        Assert.assertEquals(100, configuration.getInboundBatchLingerMilliseconds());
+        configuration.setInboundBatchLingerMilliseconds(250);
+        Assert.assertEquals(250, configuration.getInboundBatchLingerMilliseconds());
+        Assert.assertTrue(configuration.isInboundBatchAdaptiveLinger());
+        configuration.setInboundBatchAdaptiveLinger(false);
+        Assert.assertFalse(configuration.isInboundBatchAdaptiveLinger());
+        Assert.assertNull(configuration.getDuplicateKeyExtractor());
+        configuration.setDuplicateKeyExtractor(MqttDuplicateKeyExtractor.MESSAGE_ID);
+        Assert.assertEquals(MqttDuplicateKeyExtractor.MESSAGE_ID,
+            configuration.getDuplicateKeyExtractor());
+        Assert.assertEquals(60000, configuration.getDuplicateExpiryMilliseconds());
+        configuration.setDuplicateExpiryMilliseconds(5000);
+        Assert.assertEquals(5000, configuration.getDuplicateExpiryMilliseconds());
+        Assert.assertEquals(131072, configuration.getDuplicateCacheCapacity());
+        configuration.setDuplicateCacheCapacity(1024);
+        Assert.assertEquals(1024, configuration.getDuplicateCacheCapacity());
+    }
+
+    @Test
+    public void testMessageEventSampleRateZero()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'messageEventSampleRate' must be greater than 0!");
+        configuration.setMessageEventSampleRate(0);
+    }
+
+    @Test
+    public void testInboundDispatchThreadsNegative()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'inboundDispatchThreads' must be 0 or greater!");
+        configuration.setInboundDispatchThreads(-1);
+    }
+
+    @Test
+    public void testInboundQueueCapacityZero()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'inboundQueueCapacity' must be greater than 0!");
+        configuration.setInboundQueueCapacity(0);
+    }
+
+    @Test
+    public void testInboundOverflowStrategyNull()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'inboundOverflowStrategy' must be set!");
+        configuration.setInboundOverflowStrategy(null);
+    }
+
+    @Test
+    public void testInboundPayloadModeNull()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'inboundPayloadMode' must be set!");
+        configuration.setInboundPayloadMode(null);
+    }
+
+    @Test
+    public void testInboundMessageIdGenerationNull()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'inboundMessageIdGeneration' must be set!");
+        configuration.setInboundMessageIdGeneration(null);
+    }
+
+    @Test
+    public void testBatchedTopicFilterBlank()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'topicFilter' must be set!");
+        configuration.addBatchedTopicFilter("");
+    }
+
+    @Test
+    public void testInboundBatchMaxMessagesZero()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'inboundBatchMaxMessages' must be greater than 0!");
+        configuration.setInboundBatchMaxMessages(0);
+    }
+
+    @Test
+    public void testInboundBatchLingerMillisecondsZero()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'inboundBatchLingerMilliseconds' must be greater than 0!");
+        configuration.setInboundBatchLingerMilliseconds(0);
+    }
+
+    @Test
+    public void testDuplicateExpiryMillisecondsZero()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'duplicateExpiryMilliseconds' must be greater than 0!");
+        configuration.setDuplicateExpiryMilliseconds(0);
+    }
+
+    @Test
+    public void testDuplicateCacheCapacityZero()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'duplicateCacheCapacity' must be greater than 0!");
+        configuration.setDuplicateCacheCapacity(0);
+    }
+
+    @Test
+    public void testConflationIntervalMillisecondsZero()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'conflationIntervalMilliseconds' must be greater than 0!");
+        configuration.setConflationIntervalMilliseconds(0);
+    }
+
+    @Test
+    public void testInboundDecompressionMaxBytesZero()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'inboundDecompressionMaxBytes' must be greater than 0!");
+        configuration.setInboundDecompressionMaxBytes(0);
+    }
+
+    @Test
+    public void testEventBufferCapacityZero()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'eventBufferCapacity' must be greater than 0!");
+        configuration.setEventBufferCapacity(0);
+    }
+
+    @Test
+    public void testCompressedTopicFilterCompressionNull()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'compression' must be set!");
+        configuration.addCompressedTopicFilter("devices/#", null);
+    }
+
+    @Test
+    public void testConflatedTopicFilterEmpty()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'topicFilter' must be set!");
+        configuration.addConflatedTopicFilter("");
     }
 
     @Test
@@ -92,4 +380,85 @@ public class MqttClientConfigurationTest
         thrown.expectMessage("'defaultQualityOfService' must be set!");
         configuration.setDefaultQualityOfService(null);
     }
+
+    @Test
+    public void testInFlightOverflowStrategyNull()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'inFlightOverflowStrategy' must be set!");
+        configuration.setInFlightOverflowStrategy(null);
+    }
+
+    @Test
+    public void testMaxInFlightMessagesNegative()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'maxInFlightMessages' must be 0 or greater!");
+        configuration.setMaxInFlightMessages(-1);
+    }
+
+    @Test
+    public void testInFlightWaitMillisecondsNegative()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'inFlightWaitMilliseconds' must be 0 or greater!");
+        configuration.setInFlightWaitMilliseconds(-1);
+    }
+
+    @Test
+    public void testInFlightQueueCapacityNegative()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'inFlightQueueCapacity' must be 0 or greater!");
+        configuration.setInFlightQueueCapacity(-1);
+    }
+
+    @Test
+    public void testPriorityLaneWeightsZero()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'priorityLaneWeights' must be greater than 0!");
+        configuration.setPriorityLaneWeights(2, 0);
+    }
+
+    @Test
+    public void testPrioritySchedulingNull()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'priorityScheduling' must be set!");
+        configuration.setPriorityScheduling(null);
+    }
+
+    @Test
+    public void testRateLimitBehaviorNull()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'rateLimitBehavior' must be set!");
+        configuration.setRateLimitBehavior(null);
+    }
+
+    @Test
+    public void testRateLimitWaitMillisecondsNegative()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'rateLimitWaitMilliseconds' must be 0 or greater!");
+        configuration.setRateLimitWaitMilliseconds(-1);
+    }
+
+    @Test
+    public void testTopicRateLimitNull()
+    {
+        MqttClientConfiguration configuration = new MqttClientConfiguration();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'rateLimit' must be set!");
+        configuration.addTopicRateLimit("devices/#", null);
+    }
 }
@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MqttDuplicateKeyExtractorTest
+{
+    private static final byte[] PAYLOAD = "Test".getBytes();
+
+    @Test
+    public void testMessageId()
+    {
+        final MqttDuplicateKeyExtractor extractor = MqttDuplicateKeyExtractor.MESSAGE_ID;
+        Assert.assertEquals(extractor.extractKey("a", 1, PAYLOAD),
+            extractor.extractKey("a", 1, new byte[0]));
+        Assert.assertNotEquals(extractor.extractKey("a", 1, PAYLOAD),
+            extractor.extractKey("a", 2, PAYLOAD));
+        Assert.assertNotEquals(extractor.extractKey("a", 1, PAYLOAD),
+            extractor.extractKey("b", 1, PAYLOAD));
+    }
+
+    @Test
+    public void testPayloadHash()
+    {
+        final MqttDuplicateKeyExtractor extractor = MqttDuplicateKeyExtractor.PAYLOAD_HASH;
+        Assert.assertEquals(extractor.extractKey("a", 1, PAYLOAD),
+            extractor.extractKey("a", 2, "Test".getBytes()));
+        Assert.assertNotEquals(extractor.extractKey("a", 1, PAYLOAD),
+            extractor.extractKey("a", 1, "Tesu".getBytes()));
+        Assert.assertNotEquals(extractor.extractKey("a", 1, PAYLOAD),
+            extractor.extractKey("b", 1, PAYLOAD));
+    }
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.util.SimpleIdGenerator;
+
+import com.github.christophersmith.summer.mqtt.core.util.MqttHeaderHelper;
+
+public class MqttInboundMessageTest
+{
+    private static final String TOPIC  = "devices/1/status";
+    @Rule
+    public ExpectedException    thrown = ExpectedException.none();
+
+    @Test
+    public void testHeaders()
+    {
+        final MqttInboundMessage<String> message = createMessage(MqttMessageIdGeneration.RANDOM);
+        Assert.assertEquals("Test", message.getPayload());
+        Assert.assertEquals(TOPIC, message.getTopic());
+        Assert.assertEquals(7, message.getMessageId());
+        Assert.assertEquals(MqttQualityOfService.QOS_1, message.getQualityOfService());
+        Assert.assertTrue(message.isRetained());
+        Assert.assertFalse(message.isDuplicate());
+        Assert.assertEquals(MqttCompression.DEFLATE, message.getCompression());
+        final MessageHeaders headers = message.getHeaders();
+        Assert.assertSame(headers, message.getHeaders());
+        Assert.assertEquals(TOPIC, headers.get(MqttHeaderHelper.TOPIC));
+        Assert.assertEquals(7, headers.get(MqttHeaderHelper.ID));
+        Assert.assertEquals(MqttQualityOfService.QOS_1, headers.get(MqttHeaderHelper.QOS));
+        Assert.assertEquals(Boolean.TRUE, headers.get(MqttHeaderHelper.RETAINED));
+        Assert.assertEquals(Boolean.FALSE, headers.get(MqttHeaderHelper.DUPLICATE));
+        Assert.assertEquals(MqttCompression.DEFLATE, headers.get(MqttHeaderHelper.COMPRESSION));
+        Assert.assertNotNull(headers.getId());
+        Assert.assertEquals(message.getTimestamp(), headers.getTimestamp().longValue());
+        Assert.assertEquals(TOPIC, MqttHeaderHelper.getTopicHeaderValue(message));
+        Assert.assertTrue(MqttHeaderHelper.getRetainedHeaderValue(message));
+        Assert.assertEquals(MqttCompression.DEFLATE,
+            MqttHeaderHelper.getCompressionHeaderValue(message));
+    }
+
+    @Test
+    public void testIdGeneration()
+    {
+        Assert.assertNull(createMessage(MqttMessageIdGeneration.NONE).getHeaders().getId());
+        final SimpleIdGenerator idGenerator = new SimpleIdGenerator();
+        final MqttInboundMessage<String> first = new MqttInboundMessage<String>("Test", TOPIC, 1,
+            MqttQualityOfService.QOS_0, false, false, null, MqttMessageIdGeneration.SEQUENTIAL,
+            idGenerator);
+        final MqttInboundMessage<String> second = new MqttInboundMessage<String>("Test", TOPIC, 2,
+            MqttQualityOfService.QOS_0, false, false, null, MqttMessageIdGeneration.SEQUENTIAL,
+            idGenerator);
+        Assert.assertEquals(1, first.getHeaders().getId().getLeastSignificantBits());
+        Assert.assertEquals(2, second.getHeaders().getId().getLeastSignificantBits());
+        Assert.assertFalse(first.getHeaders().containsKey(MqttHeaderHelper.COMPRESSION));
+    }
+
+    @Test
+    public void testNullTopic()
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'topic' must be set!");
+        new MqttInboundMessage<String>("Test", null, 1, MqttQualityOfService.QOS_0, false, false,
+            null, MqttMessageIdGeneration.RANDOM, null);
+    }
+
+    private MqttInboundMessage<String> createMessage(final MqttMessageIdGeneration idGeneration)
+    {
+        return new MqttInboundMessage<String>("Test", TOPIC, 7, MqttQualityOfService.QOS_1, true,
+            false, MqttCompression.DEFLATE, idGeneration, null);
+    }
+}
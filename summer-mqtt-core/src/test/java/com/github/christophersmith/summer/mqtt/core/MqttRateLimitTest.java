@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class MqttRateLimitTest
+{
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void test()
+    {
+        final MqttRateLimit rateLimit = new MqttRateLimit(2.5, 10);
+        Assert.assertEquals(2.5, rateLimit.getMessagesPerSecond(), 0);
+        Assert.assertEquals(10, rateLimit.getBurst());
+    }
+
+    @Test
+    public void testMessagesPerSecondZero()
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'messagesPerSecond' must be greater than 0!");
+        new MqttRateLimit(0, 10);
+    }
+
+    @Test
+    public void testBurstZero()
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'burst' must be greater than 0!");
+        new MqttRateLimit(10, 0);
+    }
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.compression;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.github.christophersmith.summer.mqtt.core.MqttCompression;
+
+public class MqttPayloadCompressionTest
+{
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void testDeflateRoundTrip()
+    {
+        final byte[] payload = createJson(200);
+        final byte[] compressed = MqttPayloadCompression.compress(payload,
+            MqttCompression.DEFLATE);
+        Assert.assertTrue(compressed.length < payload.length / 4);
+        Assert.assertEquals(MqttCompression.DEFLATE,
+            MqttPayloadCompression.getCompression(compressed));
+        Assert.assertArrayEquals(payload, MqttPayloadCompression.decompress(compressed));
+    }
+
+    @Test
+    public void testLzRoundTrip()
+    {
+        final byte[] payload = createJson(200);
+        final byte[] compressed = MqttPayloadCompression.compress(payload, MqttCompression.LZ);
+        Assert.assertTrue(compressed.length < payload.length / 2);
+        Assert.assertEquals(MqttCompression.LZ, MqttPayloadCompression.getCompression(compressed));
+        Assert.assertArrayEquals(payload, MqttPayloadCompression.decompress(compressed));
+    }
+
+    @Test
+    public void testLzLongRuns()
+    {
+        final byte[] payload = new byte[70000];
+        for (int i = 0; i < payload.length; i++)
+        {
+            payload[i] = (byte) (i % 3 == 0 ? 'a' : i / 1000);
+        }
+        final byte[] compressed = MqttPayloadCompression.compress(payload, MqttCompression.LZ);
+        Assert.assertEquals(MqttCompression.LZ, MqttPayloadCompression.getCompression(compressed));
+        Assert.assertArrayEquals(payload, MqttPayloadCompression.decompress(compressed));
+    }
+
+    @Test
+    public void testIncompressible()
+    {
+        final byte[] payload = new byte[2048];
+        new Random(42).nextBytes(payload);
+        Assert.assertSame(payload, MqttPayloadCompression.compress(payload, MqttCompression.LZ));
+        Assert.assertSame(payload,
+            MqttPayloadCompression.compress(payload, MqttCompression.DEFLATE));
+        final byte[] small = "{}".getBytes(StandardCharsets.UTF_8);
+        Assert.assertSame(small, MqttPayloadCompression.compress(small, MqttCompression.LZ));
+    }
+
+    @Test
+    public void testNone()
+    {
+        final byte[] payload = createJson(10);
+        Assert.assertSame(payload, MqttPayloadCompression.compress(payload, MqttCompression.NONE));
+        Assert.assertEquals(MqttCompression.NONE, MqttPayloadCompression.getCompression(payload));
+        Assert.assertSame(payload, MqttPayloadCompression.decompress(payload));
+        Assert.assertEquals(MqttCompression.NONE, MqttPayloadCompression.getCompression(null));
+    }
+
+    @Test
+    public void testMalformed()
+    {
+        final byte[] compressed = MqttPayloadCompression.compress(createJson(50),
+            MqttCompression.LZ);
+        final byte[] truncated = new byte[compressed.length - 10];
+        System.arraycopy(compressed, 0, truncated, 0, truncated.length);
+
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("The LZ data is malformed!");
+
+        MqttPayloadCompression.decompress(truncated);
+    }
+
+    @Test
+    public void testHighlyCompressible()
+    {
+        final byte[] payload = new byte[4 * 1024 * 1024];
+        Assert.assertArrayEquals(payload, MqttPayloadCompression
+            .decompress(MqttPayloadCompression.compress(payload, MqttCompression.DEFLATE)));
+        Assert.assertArrayEquals(payload, MqttPayloadCompression
+            .decompress(MqttPayloadCompression.compress(payload, MqttCompression.LZ)));
+    }
+
+    @Test
+    public void testForgedLength()
+    {
+        // a few bytes that claim to decompress to 2 GiB
+        final byte[] forged = { 0x00, 'S', 'M', 'Z',
+            (byte) MqttCompression.LZ.getCodecIdentifier(), 0x7F, (byte) 0xFF, (byte) 0xFF,
+            (byte) 0xFF, 0x00 };
+
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("The compressed payload is malformed!");
+
+        MqttPayloadCompression.decompress(forged);
+    }
+
+    @Test
+    public void testMaximumLength()
+    {
+        final byte[] payload = createJson(200);
+        final byte[] compressed = MqttPayloadCompression.compress(payload,
+            MqttCompression.DEFLATE);
+        Assert.assertArrayEquals(payload,
+            MqttPayloadCompression.decompress(compressed, payload.length));
+
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage(String.format(
+            "The compressed payload exceeds the maximum length of %s bytes!",
+            payload.length - 1));
+
+        MqttPayloadCompression.decompress(compressed, payload.length - 1);
+    }
+
+    @Test
+    public void testNullCompression()
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'compression' must be set!");
+
+        MqttPayloadCompression.compress(new byte[0], null);
+    }
+
+    private static byte[] createJson(final int records)
+    {
+        final StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < records; i++)
+        {
+            builder.append(String.format(
+                "{\"deviceId\":\"device-%s\",\"latitude\":%s,\"longitude\":%s,\"status\":\"MOVING\"},",
+                i % 17, 51.5 + i * 0.0001, -0.12 - i * 0.0001));
+        }
+        return builder.append("]").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
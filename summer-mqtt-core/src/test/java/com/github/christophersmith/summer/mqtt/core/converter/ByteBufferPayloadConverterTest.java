@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.converter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ByteBufferPayloadConverterTest
+{
+    private static final byte[]              VALUE     = "Test".getBytes(StandardCharsets.UTF_8);
+    private final ByteBufferPayloadConverter converter = new ByteBufferPayloadConverter();
+
+    @Test
+    public void testHeapBufferIsNotCopied()
+    {
+        Assert.assertEquals(ByteBuffer.class, converter.getPayloadType());
+        Assert.assertSame(VALUE, converter.toBytes(ByteBuffer.wrap(VALUE)));
+    }
+
+    @Test
+    public void testHeapBufferSlice()
+    {
+        final ByteBuffer buffer = ByteBuffer.wrap(VALUE, 1, 2);
+        final byte[] value = converter.toBytes(buffer);
+        Assert.assertArrayEquals(new byte[] { VALUE[1], VALUE[2] }, value);
+        Assert.assertEquals(1, buffer.position());
+    }
+
+    @Test
+    public void testDirectBuffer()
+    {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(VALUE.length);
+        buffer.put(VALUE).flip();
+        Assert.assertArrayEquals(VALUE, converter.toBytes(buffer));
+        Assert.assertEquals(0, buffer.position());
+    }
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.converter;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CharSequencePayloadConverterTest
+{
+    private static final String                VALUE     = "Temp °C 温度";
+    private final CharSequencePayloadConverter converter = new CharSequencePayloadConverter();
+
+    @Test
+    public void testString()
+    {
+        Assert.assertEquals(CharSequence.class, converter.getPayloadType());
+        Assert.assertArrayEquals(VALUE.getBytes(StandardCharsets.UTF_8), converter.toBytes(VALUE));
+    }
+
+    @Test
+    public void testStringBuilder()
+    {
+        Assert.assertArrayEquals(VALUE.getBytes(StandardCharsets.UTF_8),
+            converter.toBytes(new StringBuilder(VALUE)));
+        Assert.assertArrayEquals(new byte[0], converter.toBytes(new StringBuilder()));
+    }
+
+    @Test
+    public void testLargeStringBuilder()
+    {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 50000; i++)
+        {
+            builder.append(VALUE);
+        }
+        Assert.assertArrayEquals(builder.toString().getBytes(StandardCharsets.UTF_8),
+            converter.toBytes(builder));
+        Assert.assertArrayEquals(VALUE.getBytes(StandardCharsets.UTF_8),
+            converter.toBytes(new StringBuilder(VALUE)));
+    }
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.converter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class MqttPayloadConverterRegistryTest
+{
+    private static final String VALUE_TEST = "Test";
+    @Rule
+    public ExpectedException    thrown     = ExpectedException.none();
+
+    @Test
+    public void testBuiltInConverters()
+    {
+        final MqttPayloadConverterRegistry registry = new MqttPayloadConverterRegistry();
+        final byte[] value = VALUE_TEST.getBytes(StandardCharsets.UTF_8);
+        Assert.assertSame(value, registry.convert(value));
+        Assert.assertArrayEquals(value, registry.convert(VALUE_TEST));
+        Assert.assertArrayEquals(value, registry.convert(new StringBuilder(VALUE_TEST)));
+        Assert.assertArrayEquals(value, registry.convert(ByteBuffer.wrap(value)));
+        Assert.assertTrue(registry
+            .getPayloadConverter(ByteBuffer.allocateDirect(1).getClass()) instanceof ByteBufferPayloadConverter);
+        Assert.assertNull(registry.convert(null));
+        Assert.assertNull(registry.convert(Integer.valueOf(1)));
+        Assert.assertNull(registry.getPayloadConverter(Integer.class));
+    }
+
+    @Test
+    public void testAddPayloadConverter()
+    {
+        final MqttPayloadConverterRegistry registry = new MqttPayloadConverterRegistry();
+        Assert.assertNull(registry.convert(Integer.valueOf(1)));
+        registry.addPayloadConverter(new MqttPayloadConverter<Number>()
+        {
+            @Override
+            public Class<Number> getPayloadType()
+            {
+                return Number.class;
+            }
+
+            @Override
+            public byte[] toBytes(Number payload)
+            {
+                return payload.toString().getBytes(StandardCharsets.UTF_8);
+            }
+        });
+        Assert.assertArrayEquals("1".getBytes(StandardCharsets.UTF_8),
+            registry.convert(Integer.valueOf(1)));
+    }
+
+    @Test
+    public void testFallbackPayloadConverter()
+    {
+        final MqttPayloadConverterRegistry registry = new MqttPayloadConverterRegistry();
+        registry.addPayloadConverter(new MqttPayloadConverter<Object>()
+        {
+            @Override
+            public Class<Object> getPayloadType()
+            {
+                return Object.class;
+            }
+
+            @Override
+            public byte[] toBytes(Object payload)
+            {
+                return new byte[] { 1 };
+            }
+        });
+        Assert.assertArrayEquals(new byte[] { 1 }, registry.convert(Integer.valueOf(1)));
+        Assert.assertArrayEquals(VALUE_TEST.getBytes(StandardCharsets.UTF_8),
+            registry.convert(VALUE_TEST));
+    }
+
+    @Test
+    public void testNullPayloadConverter()
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'payloadConverter' must be set!");
+        new MqttPayloadConverterRegistry().addPayloadConverter(null);
+    }
+}
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.event;
+
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class MqttMessageBatchPublishedEventTest
+{
+    private static final String   CLIENT_ID       = "TESTCLIENT";
+    private static final int[]    MESSAGE_IDS     = new int[] { 12, 13 };
+    private static final String[] CORRELATION_IDS = new String[] { UUID.randomUUID().toString(),
+            null };
+    @Rule
+    public ExpectedException      thrown          = ExpectedException.none();
+
+    @Test
+    public void test()
+    {
+        MqttMessageBatchPublishedEvent event = new MqttMessageBatchPublishedEvent(CLIENT_ID,
+            MESSAGE_IDS, CORRELATION_IDS, 3, this);
+        Assert.assertArrayEquals(MESSAGE_IDS, event.getMessageIdentifiers());
+        Assert.assertArrayEquals(CORRELATION_IDS, event.getCorrelationIds());
+        Assert.assertEquals(3, event.getFailedCount());
+    }
+
+    @Test
+    public void testNullClientId()
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'clientId' must be set!");
+        new MqttMessageBatchPublishedEvent(null, MESSAGE_IDS, CORRELATION_IDS, 0, this);
+    }
+
+    @Test
+    public void testMismatchedLengths()
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'messageIdentifiers' and 'correlationIds' must be the same length!");
+        new MqttMessageBatchPublishedEvent(CLIENT_ID, MESSAGE_IDS, new String[1], 0, this);
+    }
+}
@@ -31,6 +31,18 @@ public class MqttMessageDeliveredEventTest
         MqttMessageDeliveredEvent event = new MqttMessageDeliveredEvent(CLIENT_ID, MESSAGE_ID,
             this);
         Assert.assertEquals(MESSAGE_ID, event.getMessageIdentifier());
+        Assert.assertNull(event.getCorrelationId());
+        Assert.assertEquals(-1, event.getLatencyNanoseconds());
+    }
+
+    @Test
+    public void testCorrelationIdAndLatency()
+    {
+        MqttMessageDeliveredEvent event = new MqttMessageDeliveredEvent(CLIENT_ID, MESSAGE_ID,
+            "foo", 1500, this);
+        Assert.assertEquals(MESSAGE_ID, event.getMessageIdentifier());
+        Assert.assertEquals("foo", event.getCorrelationId());
+        Assert.assertEquals(1500, event.getLatencyNanoseconds());
     }
 
     @Test
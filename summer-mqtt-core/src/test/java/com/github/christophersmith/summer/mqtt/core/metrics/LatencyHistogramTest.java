@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class LatencyHistogramTest
+{
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void testBucketIndex()
+    {
+        final Random random = new Random(42);
+        for (int i = 0; i < 100000; i++)
+        {
+            final long value = random.nextLong() >>> (1 + random.nextInt(63));
+            final int index = LatencyHistogram.getBucketIndex(value);
+            Assert.assertTrue(index >= 0
+                && index < LatencyHistogram.BUCKET_COUNT);
+            Assert.assertTrue(value <= LatencyHistogram.getBucketUpperBound(index));
+            Assert.assertTrue(index == 0
+                || value > LatencyHistogram.getBucketUpperBound(index - 1));
+        }
+        Assert.assertEquals(LatencyHistogram.BUCKET_COUNT - 1,
+            LatencyHistogram.getBucketIndex(Long.MAX_VALUE));
+        Assert.assertEquals(Long.MAX_VALUE,
+            LatencyHistogram.getBucketUpperBound(LatencyHistogram.BUCKET_COUNT - 1));
+    }
+
+    @Test
+    public void testPercentiles()
+    {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.snapshot().getValueAtPercentile(99));
+        for (int i = 1; i <= 10000; i++)
+        {
+            histogram.record(i * 1000L);
+        }
+        final LatencyHistogramSnapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(10000, snapshot.getCount());
+        Assert.assertEquals(5000500, snapshot.getMean(), 0.001);
+        Assert.assertEquals(10000000, snapshot.getMaximum());
+        assertWithin(5000000, snapshot.getValueAtPercentile(50));
+        assertWithin(9900000, snapshot.getValueAtPercentile(99));
+        assertWithin(9990000, snapshot.getValueAtPercentile(99.9));
+        Assert.assertEquals(10000000, snapshot.getValueAtPercentile(100));
+        assertWithin(1000, snapshot.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void testReset()
+    {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10);
+        histogram.record(-5);
+        final LatencyHistogramSnapshot snapshot = histogram.snapshotAndReset();
+        Assert.assertEquals(2, snapshot.getCount());
+        Assert.assertEquals(0, snapshot.getValueAtPercentile(50));
+        Assert.assertEquals(10, snapshot.getMaximum());
+        Assert.assertEquals(0, histogram.snapshot().getCount());
+        histogram.record(10);
+        histogram.reset();
+        Assert.assertEquals(0, histogram.snapshot().getCount());
+        Assert.assertEquals(0, histogram.snapshot().getMaximum());
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException
+    {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++)
+        {
+            final Thread thread = new Thread(() ->
+            {
+                for (int j = 0; j < 10000; j++)
+                {
+                    histogram.record(j);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (final Thread thread : threads)
+        {
+            thread.join();
+        }
+        Assert.assertEquals(40000, histogram.snapshot().getCount());
+        Assert.assertEquals(9999, histogram.snapshot().getMaximum());
+    }
+
+    @Test
+    public void testPercentileOutOfRange()
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'percentile' must be between 0 and 100!");
+        new LatencyHistogram().snapshot().getValueAtPercentile(101);
+    }
+
+    private void assertWithin(final long expected, final long actual)
+    {
+        Assert.assertEquals(expected, actual, expected / 32.0);
+    }
+}
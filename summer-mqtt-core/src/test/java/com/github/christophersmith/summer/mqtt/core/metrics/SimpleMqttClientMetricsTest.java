@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.metrics;
+
+import java.util.function.IntSupplier;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.github.christophersmith.summer.mqtt.core.MqttQualityOfService;
+
+public class SimpleMqttClientMetricsTest
+{
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void testCounts()
+    {
+        final SimpleMqttClientMetrics metrics = new SimpleMqttClientMetrics();
+        metrics.messagePublished(MqttQualityOfService.QOS_1, 10);
+        metrics.messagePublished(MqttQualityOfService.QOS_0, 5);
+        metrics.messageDelivered(MqttQualityOfService.QOS_1, 1000);
+        metrics.messageDelivered(MqttQualityOfService.QOS_0, -1);
+        metrics.messagePublishFailed();
+        metrics.messageReceived(MqttQualityOfService.QOS_2, 7);
+        metrics.connected(false);
+        metrics.connectionLost();
+        metrics.connected(true);
+        Assert.assertEquals(2, metrics.getPublishedCount());
+        Assert.assertEquals(15, metrics.getBytesOut());
+        Assert.assertEquals(2, metrics.getDeliveredCount());
+        Assert.assertEquals(1, metrics.getPublishFailedCount());
+        Assert.assertEquals(1, metrics.getReceivedCount());
+        Assert.assertEquals(7, metrics.getBytesIn());
+        Assert.assertEquals(2, metrics.getConnectedCount());
+        Assert.assertEquals(1, metrics.getReconnectedCount());
+        Assert.assertEquals(1, metrics.getConnectionLostCount());
+        Assert.assertEquals(1, metrics.getDeliveryLatencyHistogram(MqttQualityOfService.QOS_1)
+            .snapshot().getCount());
+        Assert.assertEquals(0, metrics.getDeliveryLatencyHistogram(MqttQualityOfService.QOS_0)
+            .snapshot().getCount());
+    }
+
+    @Test
+    public void testGauges()
+    {
+        final SimpleMqttClientMetrics metrics = new SimpleMqttClientMetrics();
+        final IntSupplier first = () -> 3;
+        final IntSupplier second = () -> 4;
+        Assert.assertEquals(0, metrics.getGaugeValue(MqttClientMetrics.GAUGE_IN_FLIGHT));
+        metrics.registerGauge(MqttClientMetrics.GAUGE_IN_FLIGHT, first);
+        metrics.registerGauge(MqttClientMetrics.GAUGE_IN_FLIGHT, second);
+        metrics.registerGauge(MqttClientMetrics.GAUGE_PENDING, first);
+        Assert.assertEquals(7, metrics.getGaugeValue(MqttClientMetrics.GAUGE_IN_FLIGHT));
+        Assert.assertEquals(3, metrics.getGaugeValues().get(MqttClientMetrics.GAUGE_PENDING)
+            .intValue());
+        metrics.unregisterGauge(MqttClientMetrics.GAUGE_IN_FLIGHT, first);
+        Assert.assertEquals(4, metrics.getGaugeValue(MqttClientMetrics.GAUGE_IN_FLIGHT));
+    }
+
+    @Test
+    public void testRegisterGaugeNullValue()
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'value' must be set!");
+        new SimpleMqttClientMetrics().registerGauge(MqttClientMetrics.GAUGE_PENDING, null);
+    }
+}
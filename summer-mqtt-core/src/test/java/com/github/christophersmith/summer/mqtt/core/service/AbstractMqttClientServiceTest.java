@@ -13,6 +13,9 @@
  */
 package com.github.christophersmith.summer.mqtt.core.service;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -25,6 +28,7 @@ import org.springframework.scheduling.TaskScheduler;
 import com.github.christophersmith.summer.mqtt.core.MqttClientConnectionType;
 import com.github.christophersmith.summer.mqtt.core.MqttQualityOfService;
 import com.github.christophersmith.summer.mqtt.core.TopicSubscription;
+import com.github.christophersmith.summer.mqtt.core.event.MqttMessageDeliveredEvent;
 
 public class AbstractMqttClientServiceTest
 {
@@ -45,7 +49,7 @@ public class AbstractMqttClientServiceTest
         Assert.assertNotNull(clientService.applicationEventPublisher);
         clientService.subscribe("inbound/client");
         Mockito.verify(clientService, Mockito.times(1)).subscribe(Mockito.anyString(),
-            Mockito.any());
+            Mockito.any(MqttQualityOfService.class));
         Assert.assertNull(clientService.inboundMessageChannel);
         clientService.setInboundMessageChannel(Mockito.mock(MessageChannel.class));
         Assert.assertNotNull(clientService.inboundMessageChannel);
@@ -73,4 +77,133 @@ public class AbstractMqttClientServiceTest
             "Client ID null is setup as a PUBLISHER and cannot receive messages from the Broker!");
         clientService.setInboundMessageChannel(Mockito.mock(MessageChannel.class));
     }
+
+    @Test
+    public void testMqttClientListeners()
+    {
+        AbstractMqttClientService clientService = Mockito.mock(AbstractMqttClientService.class,
+            Mockito.withSettings().useConstructor(MqttClientConnectionType.PUBSUB)
+                .defaultAnswer(Mockito.CALLS_REAL_METHODS));
+        Mockito.doReturn("client").when(clientService).getClientId();
+        final ApplicationEventPublisher applicationEventPublisher = Mockito
+            .mock(ApplicationEventPublisher.class);
+        clientService.setApplicationEventPublisher(applicationEventPublisher);
+        final List<String> calls = new ArrayList<String>();
+        final MqttClientListener first = new MqttClientListener()
+        {
+            @Override
+            public void onDelivered(String clientId, int messageIdentifier, String correlationId,
+                long latencyNanoseconds)
+            {
+                calls.add(String.format("first %s %d %s %d", clientId, messageIdentifier,
+                    correlationId, latencyNanoseconds));
+            }
+        };
+        final MqttClientListener second = new MqttClientListener()
+        {
+            @Override
+            public void onDelivered(String clientId, int messageIdentifier, String correlationId,
+                long latencyNanoseconds)
+            {
+                calls.add("second");
+            }
+        };
+        clientService.addMqttClientListener(first);
+        clientService.addMqttClientListener(second);
+        clientService.notifyDelivered(12, "correlation", 500);
+        Assert.assertEquals(2, calls.size());
+        Assert.assertEquals("first client 12 correlation 500", calls.get(0));
+        Assert.assertEquals("second", calls.get(1));
+        Mockito.verify(applicationEventPublisher, Mockito.times(1))
+            .publishEvent(Mockito.any(MqttMessageDeliveredEvent.class));
+        clientService.removeMqttClientListener(first);
+        clientService.notifyDelivered(13, null, -1);
+        Assert.assertEquals(3, calls.size());
+        Assert.assertEquals("second", calls.get(2));
+        Mockito.verify(applicationEventPublisher, Mockito.times(2))
+            .publishEvent(Mockito.any(MqttMessageDeliveredEvent.class));
+    }
+
+    @Test
+    public void testThrowingMqttClientListener()
+    {
+        AbstractMqttClientService clientService = Mockito.mock(AbstractMqttClientService.class,
+            Mockito.withSettings().useConstructor(MqttClientConnectionType.PUBSUB)
+                .defaultAnswer(Mockito.CALLS_REAL_METHODS));
+        Mockito.doReturn("client").when(clientService).getClientId();
+        final List<String> calls = new ArrayList<String>();
+        final MqttClientListener first = new MqttClientListener()
+        {
+            @Override
+            public void onPublished(String clientId, int messageIdentifier, String correlationId)
+            {
+                throw new IllegalStateException("Test");
+            }
+
+            @Override
+            public void onDelivered(String clientId, int messageIdentifier, String correlationId,
+                long latencyNanoseconds)
+            {
+                throw new IllegalStateException("Test");
+            }
+        };
+        final MqttClientListener second = new MqttClientListener()
+        {
+            @Override
+            public void onPublished(String clientId, int messageIdentifier, String correlationId)
+            {
+                calls.add("published");
+            }
+
+            @Override
+            public void onDelivered(String clientId, int messageIdentifier, String correlationId,
+                long latencyNanoseconds)
+            {
+                calls.add("delivered");
+            }
+        };
+        clientService.addMqttClientListener(first);
+        clientService.addMqttClientListener(second);
+        clientService.notifyPublished(12, "correlation");
+        clientService.notifyDelivered(12, "correlation", 500);
+        Assert.assertEquals(2, calls.size());
+        Assert.assertEquals("published", calls.get(0));
+        Assert.assertEquals("delivered", calls.get(1));
+    }
+
+    @Test
+    public void testAddMqttClientListenerNull()
+    {
+        AbstractMqttClientService clientService = Mockito.mock(AbstractMqttClientService.class,
+            Mockito.withSettings().useConstructor(MqttClientConnectionType.PUBSUB)
+                .defaultAnswer(Mockito.CALLS_REAL_METHODS));
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'mqttClientListener' must be set!");
+        clientService.addMqttClientListener(null);
+    }
+
+    @Test
+    public void testSubscribeMessageChannel()
+    {
+        AbstractMqttClientService clientService = Mockito.mock(AbstractMqttClientService.class,
+            Mockito.withSettings().useConstructor(MqttClientConnectionType.PUBSUB)
+                .defaultAnswer(Mockito.CALLS_REAL_METHODS));
+        MessageChannel messageChannel = Mockito.mock(MessageChannel.class);
+        clientService.subscribe("devices/+/status", messageChannel);
+        Mockito.verify(clientService, Mockito.times(1)).subscribe("devices/+/status",
+            MqttQualityOfService.QOS_0);
+        Assert.assertEquals(1, clientService.topicRouter.route("devices/1/status",
+            channel -> Assert.assertSame(messageChannel, channel)));
+        Mockito.doThrow(new IllegalStateException()).when(clientService).subscribe("devices/#",
+            MqttQualityOfService.QOS_1);
+        thrown.expect(IllegalStateException.class);
+        try
+        {
+            clientService.subscribe("devices/#", MqttQualityOfService.QOS_1, messageChannel);
+        }
+        finally
+        {
+            Assert.assertEquals(1, clientService.topicRouter.size());
+        }
+    }
 }
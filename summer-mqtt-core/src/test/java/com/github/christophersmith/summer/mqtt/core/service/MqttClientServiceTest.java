@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.support.MessageBuilder;
+
+import com.github.christophersmith.summer.mqtt.core.MqttBatchPublishResult;
+import com.github.christophersmith.summer.mqtt.core.MqttClientConnectionType;
+import com.github.christophersmith.summer.mqtt.core.MqttQualityOfService;
+import com.github.christophersmith.summer.mqtt.core.TopicSubscription;
+
+public class MqttClientServiceTest
+{
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void testPublishAsync() throws Exception
+    {
+        final DefaultMqttClientService clientService = new DefaultMqttClientService();
+        final CompletableFuture<Integer> future = clientService
+            .publishAsync(MessageBuilder.withPayload("good").build());
+        Assert.assertTrue(future.isDone());
+        Assert.assertEquals(Integer.valueOf(0), future.get());
+        Assert.assertEquals(1, clientService.handledPayloads.size());
+    }
+
+    @Test
+    public void testPublishAsyncFailure() throws Exception
+    {
+        final DefaultMqttClientService clientService = new DefaultMqttClientService();
+        final CompletableFuture<Integer> future = clientService
+            .publishAsync(MessageBuilder.withPayload("bad").build());
+        Assert.assertTrue(future.isCompletedExceptionally());
+        try
+        {
+            future.get();
+            Assert.fail("The future should have failed.");
+        }
+        catch (ExecutionException ex)
+        {
+            Assert.assertTrue(ex.getCause() instanceof MessagingException);
+            Assert.assertTrue(ex.getCause().getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testPublishAsyncNullMessage()
+    {
+        final DefaultMqttClientService clientService = new DefaultMqttClientService();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'message' must be set!");
+        clientService.publishAsync(null);
+    }
+
+    @Test
+    public void testPublishAll()
+    {
+        final DefaultMqttClientService clientService = new DefaultMqttClientService();
+        final MqttBatchPublishResult result = clientService
+            .publishAll(Arrays.<Message<?>> asList(MessageBuilder.withPayload("good").build(),
+                MessageBuilder.withPayload("bad").build(),
+                MessageBuilder.withPayload("good").build()));
+        Assert.assertEquals(3, result.getMessageCount());
+        Assert.assertEquals(2, result.getSubmittedCount());
+        Assert.assertEquals(1, result.getFailedCount());
+        Assert.assertTrue(result.getResults().get(1).isCompletedExceptionally());
+        Assert.assertEquals(3, clientService.handledPayloads.size());
+    }
+
+    @Test
+    public void testPublishAllNullMessage()
+    {
+        final DefaultMqttClientService clientService = new DefaultMqttClientService();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'message' must be set!");
+        clientService.publishAll(Arrays.<Message<?>> asList(
+            MessageBuilder.withPayload("good").build(), null));
+    }
+
+    @Test
+    public void testSubscribeMessageChannel()
+    {
+        final DefaultMqttClientService clientService = new DefaultMqttClientService();
+        try
+        {
+            clientService.subscribe("test", Mockito.mock(MessageChannel.class));
+            Assert.fail("Routing should not be supported.");
+        }
+        catch (UnsupportedOperationException ex)
+        {
+            Assert.assertEquals(
+                "Client ID test can't send the messages of a Topic Filter to their own MessageChannel.",
+                ex.getMessage());
+        }
+        Assert.assertTrue(clientService.subscribedTopics.isEmpty());
+    }
+
+    @Test
+    public void testSubscribeNullMessageChannel()
+    {
+        final DefaultMqttClientService clientService = new DefaultMqttClientService();
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'messageChannel' must be set!");
+        clientService.subscribe("test", MqttQualityOfService.QOS_1, null);
+    }
+
+    /**
+     * A {@link MqttClientService} that only implements the abstract methods, so the default
+     * methods can be tested.
+     */
+    private static final class DefaultMqttClientService implements MqttClientService
+    {
+        private final List<Object> handledPayloads  = new ArrayList<Object>();
+        private final List<String> subscribedTopics = new ArrayList<String>();
+
+        @Override
+        public String getClientId()
+        {
+            return "test";
+        }
+
+        @Override
+        public MqttClientConnectionType getConnectionType()
+        {
+            return MqttClientConnectionType.PUBSUB;
+        }
+
+        @Override
+        public List<TopicSubscription> getTopicSubscriptions()
+        {
+            return new ArrayList<TopicSubscription>();
+        }
+
+        @Override
+        public boolean start()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean isConnected()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean isStarted()
+        {
+            return true;
+        }
+
+        @Override
+        public String getConnectedServerUri()
+        {
+            return null;
+        }
+
+        @Override
+        public void subscribe(final String topicFilter)
+        {
+            subscribe(topicFilter, MqttQualityOfService.QOS_0);
+        }
+
+        @Override
+        public void subscribe(final String topicFilter,
+            final MqttQualityOfService qualityOfService)
+        {
+            subscribedTopics.add(topicFilter);
+        }
+
+        @Override
+        public void unsubscribe(final String topicFilter)
+        {
+            subscribedTopics.remove(topicFilter);
+        }
+
+        @Override
+        public void handleMessage(final Message<?> message) throws MessagingException
+        {
+            handledPayloads.add(message.getPayload());
+            if ("bad".equals(message.getPayload()))
+            {
+                throw new IllegalStateException("Test");
+            }
+        }
+
+        @Override
+        public void stop()
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+
+        @Override
+        public void setApplicationEventPublisher(
+            final ApplicationEventPublisher applicationEventPublisher)
+        {
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.util;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class DuplicateCacheTest
+{
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void testAdd()
+    {
+        final DuplicateCache cache = new DuplicateCache(1000, 60000);
+        Assert.assertEquals(2048, cache.getSlotCount());
+        for (long key = 0; key < 1000; key++)
+        {
+            Assert.assertTrue(cache.add(key));
+        }
+        for (long key = 0; key < 1000; key++)
+        {
+            Assert.assertFalse(cache.add(key));
+        }
+        Assert.assertTrue(cache.add(1000));
+    }
+
+    @Test
+    public void testExpiry() throws InterruptedException
+    {
+        final DuplicateCache cache = new DuplicateCache(16, 20);
+        Assert.assertTrue(cache.add(1));
+        Assert.assertFalse(cache.add(1));
+        Thread.sleep(50);
+        Assert.assertTrue(cache.add(1));
+    }
+
+    @Test
+    public void testPut() throws InterruptedException
+    {
+        final DuplicateCache cache = new DuplicateCache(16, 100);
+        cache.put(1);
+        Assert.assertFalse(cache.add(1));
+        Thread.sleep(70);
+        cache.put(1);
+        Thread.sleep(70);
+        // the second put restarted the expiry time
+        Assert.assertFalse(cache.add(1));
+        Thread.sleep(200);
+        Assert.assertTrue(cache.add(1));
+    }
+
+    @Test
+    public void testBoundedMemory()
+    {
+        final DuplicateCache cache = new DuplicateCache(16, 60000);
+        for (long key = 0; key < 100000; key++)
+        {
+            cache.add(key);
+        }
+        Assert.assertEquals(256, cache.getSlotCount());
+        Assert.assertFalse(cache.add(99999));
+        Assert.assertTrue(cache.add(0));
+    }
+
+    @Test
+    public void testCapacityZero()
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'capacity' must be greater than 0!");
+        new DuplicateCache(0, 60000);
+    }
+}
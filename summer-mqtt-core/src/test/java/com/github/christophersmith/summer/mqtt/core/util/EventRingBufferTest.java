@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EventRingBufferTest
+{
+    @Test
+    public void testCapacity()
+    {
+        Assert.assertEquals(1, new EventRingBuffer<Integer>(1).getCapacity());
+        Assert.assertEquals(8, new EventRingBuffer<Integer>(5).getCapacity());
+        Assert.assertEquals(1024, new EventRingBuffer<Integer>(1024).getCapacity());
+    }
+
+    @Test
+    public void testOfferAndPoll()
+    {
+        final EventRingBuffer<Integer> buffer = new EventRingBuffer<Integer>(4);
+        Assert.assertTrue(buffer.isEmpty());
+        Assert.assertNull(buffer.poll());
+        for (int lap = 0; lap < 3; lap++)
+        {
+            for (int i = 0; i < 4; i++)
+            {
+                Assert.assertTrue(buffer.offer(i));
+            }
+            Assert.assertFalse(buffer.offer(4));
+            Assert.assertFalse(buffer.isEmpty());
+            for (int i = 0; i < 4; i++)
+            {
+                Assert.assertEquals(Integer.valueOf(i), buffer.poll());
+            }
+            Assert.assertTrue(buffer.isEmpty());
+        }
+    }
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException
+    {
+        final EventRingBuffer<Integer> buffer = new EventRingBuffer<Integer>(64);
+        final int producers = 4;
+        final int count = 10000;
+        final ExecutorService executor = Executors.newFixedThreadPool(producers);
+        final CountDownLatch latch = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++)
+        {
+            final int producer = p;
+            executor.execute(() -> {
+                for (int i = 0; i < count; i++)
+                {
+                    while (!buffer.offer(producer * count + i))
+                    {
+                        Thread.yield();
+                    }
+                }
+                latch.countDown();
+            });
+        }
+        final int[] next = new int[producers];
+        int received = 0;
+        while (received < producers * count)
+        {
+            final Integer value = buffer.poll();
+            if (value == null)
+            {
+                Thread.yield();
+            }
+            else
+            {
+                // each producer's values arrive in the order they were offered
+                Assert.assertEquals(next[value / count]++, value % count);
+                received++;
+            }
+        }
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(buffer.isEmpty());
+        executor.shutdown();
+    }
+}
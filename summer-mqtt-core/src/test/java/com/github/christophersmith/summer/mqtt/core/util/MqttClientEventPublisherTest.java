@@ -13,18 +13,28 @@
  */
 package com.github.christophersmith.summer.mqtt.core.util;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 
+import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.Mockito;
+import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationEventPublisher;
 
+import com.github.christophersmith.summer.mqtt.core.MqttClientConfiguration;
+import com.github.christophersmith.summer.mqtt.core.MqttEventDispatchMode;
+import com.github.christophersmith.summer.mqtt.core.MqttEventOverflowBehavior;
+import com.github.christophersmith.summer.mqtt.core.MqttMessageEventType;
 import com.github.christophersmith.summer.mqtt.core.event.MqttClientConnectedEvent;
 import com.github.christophersmith.summer.mqtt.core.event.MqttClientConnectionFailureEvent;
 import com.github.christophersmith.summer.mqtt.core.event.MqttClientConnectionLostEvent;
 import com.github.christophersmith.summer.mqtt.core.event.MqttClientDisconnectedEvent;
+import com.github.christophersmith.summer.mqtt.core.event.MqttMessageBatchPublishedEvent;
 import com.github.christophersmith.summer.mqtt.core.event.MqttMessageDeliveredEvent;
 import com.github.christophersmith.summer.mqtt.core.event.MqttMessagePublishedEvent;
 
@@ -203,6 +213,19 @@ public class MqttClientEventPublisherTest
             .publishEvent(Mockito.any(MqttMessageDeliveredEvent.class));
     }
 
+    @Test
+    public void testPublishMessageDeliveredEventWithCorrelationId()
+    {
+        ApplicationEventPublisher applicationEventPublisher = Mockito
+            .mock(ApplicationEventPublisher.class);
+        mqttClientEventPublisher.publishMessageDeliveredEvent(CLIENT_ID, MESSAGE_ID,
+            CORRELATION_ID, 1500, applicationEventPublisher, this);
+        Mockito.verify(applicationEventPublisher, Mockito.atLeast(1))
+            .publishEvent(Mockito.argThat((MqttMessageDeliveredEvent event) -> CORRELATION_ID
+                .equals(event.getCorrelationId())
+                && event.getLatencyNanoseconds() == 1500));
+    }
+
     @Test
     public void testPublishMessagePublishedEventNullApplicationEventPublisher()
     {
@@ -240,4 +263,194 @@ public class MqttClientEventPublisherTest
         Mockito.verify(applicationEventPublisher, Mockito.atLeast(1))
             .publishEvent(Mockito.any(MqttMessagePublishedEvent.class));
     }
+
+    @Test
+    public void testPublishMessageBatchPublishedEventNullApplicationEventPublisher()
+    {
+        mqttClientEventPublisher.publishMessageBatchPublishedEvent(CLIENT_ID,
+            new int[] { MESSAGE_ID }, new String[] { CORRELATION_ID }, 0, null, this);
+    }
+
+    @Test
+    public void testPublishMessageBatchPublishedEvent()
+    {
+        ApplicationEventPublisher applicationEventPublisher = Mockito
+            .mock(ApplicationEventPublisher.class);
+        mqttClientEventPublisher.publishMessageBatchPublishedEvent(CLIENT_ID,
+            new int[] { MESSAGE_ID }, new String[] { CORRELATION_ID }, 0,
+            applicationEventPublisher, this);
+        Mockito.verify(applicationEventPublisher, Mockito.atLeast(1))
+            .publishEvent(Mockito.any(MqttMessageBatchPublishedEvent.class));
+    }
+
+    @Test
+    public void testAsynchronousDispatchOrder() throws InterruptedException
+    {
+        final MqttClientConfiguration configuration = new MqttClientConfiguration();
+        configuration.setEventDispatchMode(MqttEventDispatchMode.ASYNCHRONOUS);
+        configuration.setEventBufferCapacity(8);
+        configuration.setEventOverflowBehavior(MqttEventOverflowBehavior.BLOCK);
+        final MqttClientEventPublisher publisher = new MqttClientEventPublisher(configuration);
+        final RecordingEventPublisher applicationEventPublisher = new RecordingEventPublisher();
+        publisher.publishConnectedEvent(CLIENT_ID, SERVER_URI, SUBSCRIBED_TOPICS_EMPTY,
+            applicationEventPublisher, this);
+        for (int i = 1; i <= 100; i++)
+        {
+            publisher.publishMessageDeliveredEvent(CLIENT_ID, i, applicationEventPublisher, this);
+        }
+        publisher.publishConnectionLostEvent(CLIENT_ID, false, applicationEventPublisher, this);
+        publisher.close();
+        while (!publisher.isIdle())
+        {
+            Thread.sleep(1);
+        }
+        final List<Object> events = applicationEventPublisher.getEvents();
+        Assert.assertEquals(102, events.size());
+        Assert.assertTrue(events.get(0) instanceof MqttClientConnectedEvent);
+        for (int i = 1; i <= 100; i++)
+        {
+            Assert.assertEquals(i,
+                ((MqttMessageDeliveredEvent) events.get(i)).getMessageIdentifier());
+        }
+        Assert.assertTrue(events.get(101) instanceof MqttClientConnectionLostEvent);
+        Assert.assertEquals(0, publisher.getDroppedEventCount());
+    }
+
+    @Test
+    public void testAsynchronousDispatchDrop()
+    {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        final MqttClientEventPublisher publisher = createPublisher(MqttEventOverflowBehavior.DROP,
+            tasks);
+        final RecordingEventPublisher applicationEventPublisher = new RecordingEventPublisher();
+        for (int i = 1; i <= 5; i++)
+        {
+            publisher.publishMessageDeliveredEvent(CLIENT_ID, i, applicationEventPublisher, this);
+        }
+        Assert.assertEquals(3, publisher.getDroppedEventCount());
+        Assert.assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        Assert.assertEquals(2, applicationEventPublisher.getEvents().size());
+        Assert.assertTrue(publisher.isIdle());
+    }
+
+    @Test
+    public void testAsynchronousDispatchCoalesce()
+    {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        final MqttClientEventPublisher publisher = createPublisher(
+            MqttEventOverflowBehavior.COALESCE, tasks);
+        final RecordingEventPublisher applicationEventPublisher = new RecordingEventPublisher();
+        for (int i = 1; i <= 5; i++)
+        {
+            publisher.publishMessageDeliveredEvent(CLIENT_ID, i, applicationEventPublisher, this);
+        }
+        Assert.assertEquals(2, publisher.getDroppedEventCount());
+        tasks.get(0).run();
+        final List<Object> events = applicationEventPublisher.getEvents();
+        Assert.assertEquals(3, events.size());
+        Assert.assertEquals(5,
+            ((MqttMessageDeliveredEvent) events.get(2)).getMessageIdentifier());
+    }
+
+    @Test
+    public void testAsynchronousDispatchListenerError()
+    {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        final MqttClientEventPublisher publisher = createPublisher(MqttEventOverflowBehavior.DROP,
+            tasks);
+        final RecordingEventPublisher applicationEventPublisher = new RecordingEventPublisher();
+        final ApplicationEventPublisher failingEventPublisher = Mockito
+            .mock(ApplicationEventPublisher.class);
+        Mockito.doThrow(new AssertionError("Test")).when(failingEventPublisher)
+            .publishEvent(Mockito.any(ApplicationEvent.class));
+        publisher.publishMessageDeliveredEvent(CLIENT_ID, MESSAGE_ID, failingEventPublisher,
+            this);
+        try
+        {
+            tasks.get(0).run();
+            Assert.fail("The Error should have been thrown.");
+        }
+        catch (AssertionError ex)
+        {
+            Assert.assertEquals("Test", ex.getMessage());
+        }
+        Assert.assertTrue(publisher.isIdle());
+        publisher.publishMessageDeliveredEvent(CLIENT_ID, MESSAGE_ID, applicationEventPublisher,
+            this);
+        Assert.assertEquals(2, tasks.size());
+        tasks.get(1).run();
+        Assert.assertEquals(1, applicationEventPublisher.getEvents().size());
+    }
+
+    @Test
+    public void testDisabledMessageEventType()
+    {
+        final MqttClientConfiguration configuration = new MqttClientConfiguration();
+        configuration.setMessageEventEnabled(MqttMessageEventType.DELIVERED, false);
+        final MqttClientEventPublisher publisher = new MqttClientEventPublisher(configuration);
+        final RecordingEventPublisher applicationEventPublisher = new RecordingEventPublisher();
+        publisher.publishMessageDeliveredEvent(CLIENT_ID, MESSAGE_ID, applicationEventPublisher,
+            this);
+        publisher.publishMessagePublishedEvent(CLIENT_ID, MESSAGE_ID, CORRELATION_ID,
+            applicationEventPublisher, this);
+        publisher.publishDisconnectedEvent(CLIENT_ID, applicationEventPublisher, this);
+        final List<Object> events = applicationEventPublisher.getEvents();
+        Assert.assertEquals(2, events.size());
+        Assert.assertTrue(events.get(0) instanceof MqttMessagePublishedEvent);
+        Assert.assertTrue(events.get(1) instanceof MqttClientDisconnectedEvent);
+    }
+
+    @Test
+    public void testMessageEventSampleRate()
+    {
+        final MqttClientConfiguration configuration = new MqttClientConfiguration();
+        configuration.setMessageEventSampleRate(4);
+        final MqttClientEventPublisher publisher = new MqttClientEventPublisher(configuration);
+        final RecordingEventPublisher applicationEventPublisher = new RecordingEventPublisher();
+        for (int i = 0; i < 4000; i++)
+        {
+            publisher.publishMessageDeliveredEvent(CLIENT_ID, MESSAGE_ID,
+                applicationEventPublisher, this);
+        }
+        final int size = applicationEventPublisher.getEvents().size();
+        Assert.assertTrue(size > 700
+            && size < 1300);
+        publisher.publishConnectionLostEvent(CLIENT_ID, false, applicationEventPublisher, this);
+        Assert.assertEquals(size + 1, applicationEventPublisher.getEvents().size());
+    }
+
+    private MqttClientEventPublisher createPublisher(
+        final MqttEventOverflowBehavior overflowBehavior, final List<Runnable> tasks)
+    {
+        final MqttClientConfiguration configuration = new MqttClientConfiguration();
+        configuration.setEventDispatchMode(MqttEventDispatchMode.ASYNCHRONOUS);
+        configuration.setEventBufferCapacity(2);
+        configuration.setEventOverflowBehavior(overflowBehavior);
+        final MqttClientEventPublisher publisher = new MqttClientEventPublisher(configuration);
+        publisher.setExecutor(tasks::add);
+        return publisher;
+    }
+
+    private static final class RecordingEventPublisher implements ApplicationEventPublisher
+    {
+        private final List<Object> events = Collections.synchronizedList(new ArrayList<Object>());
+
+        @Override
+        public void publishEvent(final ApplicationEvent event)
+        {
+            events.add(event);
+        }
+
+        @Override
+        public void publishEvent(final Object event)
+        {
+            events.add(event);
+        }
+
+        private List<Object> getEvents()
+        {
+            return new ArrayList<Object>(events);
+        }
+    }
 }
@@ -17,6 +17,7 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.springframework.messaging.support.MessageBuilder;
 
+import com.github.christophersmith.summer.mqtt.core.MqttCompression;
 import com.github.christophersmith.summer.mqtt.core.MqttQualityOfService;
 
 public class MqttHeaderHelperTest
@@ -80,4 +81,46 @@ public class MqttHeaderHelperTest
         builder.setHeader(MqttHeaderHelper.CORRELATION_ID, "foo");
         Assert.assertSame("foo", MqttHeaderHelper.getCorrelationIdHeaderValue(builder.build()));
     }
+
+    @Test
+    public void testCompressionHeader()
+    {
+        Assert.assertNull(MqttHeaderHelper.getCompressionHeaderValue(null));
+        MessageBuilder<String> builder = MessageBuilder.withPayload("See Compression header");
+        Assert.assertNull(MqttHeaderHelper.getCompressionHeaderValue(builder.build()));
+        builder.setHeader(MqttHeaderHelper.COMPRESSION, MqttCompression.LZ);
+        Assert.assertEquals(MqttCompression.LZ,
+            MqttHeaderHelper.getCompressionHeaderValue(builder.build()));
+        builder.setHeader(MqttHeaderHelper.COMPRESSION, "DEFLATE");
+        Assert.assertEquals(MqttCompression.DEFLATE,
+            MqttHeaderHelper.getCompressionHeaderValue(builder.build()));
+        builder.setHeader(MqttHeaderHelper.COMPRESSION, "foo");
+        Assert.assertNull(MqttHeaderHelper.getCompressionHeaderValue(builder.build()));
+    }
+
+    @Test
+    public void testPriorityHeader()
+    {
+        Assert.assertEquals(2, MqttHeaderHelper.getPriorityHeaderValue(null, 2));
+        MessageBuilder<String> builder = MessageBuilder.withPayload("See Priority header");
+        Assert.assertEquals(2, MqttHeaderHelper.getPriorityHeaderValue(builder.build(), 2));
+        builder.setHeader(MqttHeaderHelper.PRIORITY, 0);
+        Assert.assertEquals(0, MqttHeaderHelper.getPriorityHeaderValue(builder.build(), 2));
+        builder.setHeader(MqttHeaderHelper.PRIORITY, -1);
+        Assert.assertEquals(2, MqttHeaderHelper.getPriorityHeaderValue(builder.build(), 2));
+        builder.setHeader(MqttHeaderHelper.PRIORITY, "foo");
+        Assert.assertEquals(2, MqttHeaderHelper.getPriorityHeaderValue(builder.build(), 2));
+    }
+
+    @Test
+    public void testRoutingKeyHeader()
+    {
+        Assert.assertNull(MqttHeaderHelper.getRoutingKeyHeaderValue(null));
+        MessageBuilder<String> builder = MessageBuilder.withPayload("See Routing Key header");
+        Assert.assertNull(MqttHeaderHelper.getRoutingKeyHeaderValue(builder.build()));
+        builder.setHeader(MqttHeaderHelper.ROUTING_KEY, "device-1");
+        Assert.assertEquals("device-1", MqttHeaderHelper.getRoutingKeyHeaderValue(builder.build()));
+        builder.setHeader(MqttHeaderHelper.ROUTING_KEY, 42);
+        Assert.assertEquals("42", MqttHeaderHelper.getRoutingKeyHeaderValue(builder.build()));
+    }
 }
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TopicFilterHelperTest
+{
+    @Test
+    public void testExact()
+    {
+        new TopicFilterHelper();
+        Assert.assertTrue(TopicFilterHelper.matches("devices/1/position", "devices/1/position"));
+        Assert.assertFalse(TopicFilterHelper.matches("devices/1/position", "devices/1/Position"));
+        Assert.assertFalse(TopicFilterHelper.matches("devices/1", "devices/1/position"));
+        Assert.assertFalse(TopicFilterHelper.matches("devices/1/position", "devices/1"));
+    }
+
+    @Test
+    public void testSingleLevelWildcard()
+    {
+        Assert.assertTrue(TopicFilterHelper.matches("devices/+/position", "devices/1/position"));
+        Assert.assertTrue(TopicFilterHelper.matches("devices/+/position", "devices//position"));
+        Assert.assertTrue(TopicFilterHelper.matches("+", "devices"));
+        Assert.assertTrue(TopicFilterHelper.matches("+/+", "/devices"));
+        Assert.assertFalse(TopicFilterHelper.matches("devices/+/position", "devices/1/2/position"));
+        Assert.assertFalse(TopicFilterHelper.matches("devices/+", "devices/1/position"));
+        Assert.assertFalse(TopicFilterHelper.matches("+", "/devices"));
+    }
+
+    @Test
+    public void testMultiLevelWildcard()
+    {
+        Assert.assertTrue(TopicFilterHelper.matches("#", "devices/1/position"));
+        Assert.assertTrue(TopicFilterHelper.matches("devices/#", "devices/1/position"));
+        Assert.assertTrue(TopicFilterHelper.matches("devices/#", "devices"));
+        Assert.assertTrue(TopicFilterHelper.matches("devices/+/#", "devices/1"));
+        Assert.assertFalse(TopicFilterHelper.matches("devices/#", "status/1"));
+        Assert.assertFalse(TopicFilterHelper.matches("devices/#/position", "devices/1/position"));
+    }
+
+    @Test
+    public void testSystemTopics()
+    {
+        Assert.assertFalse(TopicFilterHelper.matches("#", "$SYS/broker/uptime"));
+        Assert.assertFalse(TopicFilterHelper.matches("+/broker/uptime", "$SYS/broker/uptime"));
+        Assert.assertTrue(TopicFilterHelper.matches("$SYS/#", "$SYS/broker/uptime"));
+    }
+
+    @Test
+    public void testNullOrEmpty()
+    {
+        Assert.assertFalse(TopicFilterHelper.matches(null, "devices"));
+        Assert.assertFalse(TopicFilterHelper.matches("devices", null));
+        Assert.assertFalse(TopicFilterHelper.matches("", "devices"));
+        Assert.assertFalse(TopicFilterHelper.matches("devices", ""));
+    }
+}
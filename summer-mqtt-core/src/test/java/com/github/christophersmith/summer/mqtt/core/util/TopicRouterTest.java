@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.core.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class TopicRouterTest
+{
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void testRoute()
+    {
+        final TopicRouter<String> router = new TopicRouter<String>();
+        router.add("devices/1/status", "exact");
+        router.add("devices/+/status", "single");
+        router.add("devices/#", "multi");
+        router.add("#", "all");
+        router.add("+/+", "two");
+        router.add("$SYS/#", "system");
+        Assert.assertEquals(6, router.size());
+        Assert.assertEquals(Arrays.asList("all", "exact", "multi", "single"),
+            route(router, "devices/1/status"));
+        Assert.assertEquals(Arrays.asList("all", "multi", "single"),
+            route(router, "devices/2/status"));
+        Assert.assertEquals(Arrays.asList("all", "multi", "two"), route(router, "devices/2"));
+        Assert.assertEquals(Arrays.asList("all", "multi"), route(router, "devices"));
+        Assert.assertEquals(Arrays.asList("all"), route(router, "sensors/1/status"));
+        Assert.assertEquals(Arrays.asList("system"), route(router, "$SYS/broker/uptime"));
+        Assert.assertEquals(0, router.route(null, target -> Assert.fail()));
+    }
+
+    @Test
+    public void testMatchesTopicFilterHelper()
+    {
+        final List<String> topicFilters = Arrays.asList("a/b/c", "a/+/c", "a/#", "+/b/#", "#",
+            "+", "a/+", "a//c", "a/+/+", "+/+/+/+", "$SYS/+", "a/b/c/#");
+        final TopicRouter<String> router = new TopicRouter<String>();
+        topicFilters.forEach(topicFilter -> router.add(topicFilter, topicFilter));
+        for (final String topic : Arrays.asList("a", "a/b", "a/b/c", "a//c", "a/b/c/d", "b/b/x",
+            "x", "a/", "$SYS/uptime", "$SYS"))
+        {
+            final List<String> expected = new ArrayList<String>();
+            for (final String topicFilter : topicFilters)
+            {
+                if (TopicFilterHelper.matches(topicFilter, topic))
+                {
+                    expected.add(topicFilter);
+                }
+            }
+            Collections.sort(expected);
+            Assert.assertEquals(topic, expected, route(router, topic));
+        }
+    }
+
+    @Test
+    public void testRemove()
+    {
+        final TopicRouter<String> router = new TopicRouter<String>();
+        router.add("devices/+/status", "first");
+        router.add("devices/+/status", "second");
+        router.add("devices/1/status", "first");
+        Assert.assertTrue(router.remove("devices/+/status", "first"));
+        Assert.assertFalse(router.remove("devices/+/status", "first"));
+        Assert.assertEquals(Arrays.asList("first", "second"), route(router, "devices/1/status"));
+        Assert.assertEquals(1, router.removeAll("devices/+/status"));
+        Assert.assertEquals(1, router.removeAll("devices/1/status"));
+        Assert.assertTrue(router.isEmpty());
+        Assert.assertEquals(0, router.route("devices/1/status", target -> Assert.fail()));
+    }
+
+    @Test
+    public void testAddBlankTopicFilter()
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'topicFilter' must be set!");
+        new TopicRouter<String>().add("", "target");
+    }
+
+    private List<String> route(final TopicRouter<String> router, final String topic)
+    {
+        final List<String> targets = new ArrayList<String>();
+        router.route(topic, targets::add);
+        Collections.sort(targets);
+        return targets;
+    }
+}
@@ -0,0 +1,771 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttPersistable;
+import org.eclipse.paho.client.mqttv3.MqttPersistenceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link MqttClientPersistence} implementation that appends every persisted message to a log of
+ * memory-mapped segment files, instead of writing a file per message like Paho's
+ * {@link org.eclipse.paho.client.mqttv3.persist.MqttDefaultFilePersistence}.
+ * <p>
+ * An in-memory index maps each persistence key to the location of its latest record, so reads
+ * never scan the log. Removing a key appends a small removal record. Once the live records in a
+ * segment drop below half of the segment, a background thread copies them to the end of the log
+ * and deletes the segment, starting with the segment that holds the most garbage. A long-lived
+ * record in an old segment therefore doesn't hold up the compaction of newer segments.
+ * <p>
+ * Like {@link org.eclipse.paho.client.mqttv3.persist.MqttDefaultFilePersistence}, each Client ID
+ * and Server URI pair is given its own sub-directory of the {@code directory}. By default records
+ * survive a crash of the JVM, as they are held by the operating system's page cache, but not
+ * necessarily a crash of the host, whereas
+ * {@link org.eclipse.paho.client.mqttv3.persist.MqttDefaultFilePersistence} syncs each message to
+ * the storage device as it's put. {@link #setForceOnPut(boolean)} gives the same guarantee, at the
+ * cost of a sync per put.
+ */
+public final class MappedFilePersistence implements MqttClientPersistence
+{
+    private static final Logger               LOG                  = LoggerFactory
+        .getLogger(MappedFilePersistence.class);
+    /**
+     * The default segment size of 16 MiB.
+     */
+    public static final int                   DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final int                  MINIMUM_SEGMENT_SIZE = 4096;
+    private static final String               SEGMENT_FILE_PREFIX  = "persistence-";
+    private static final String               SEGMENT_FILE_SUFFIX  = ".log";
+    private static final byte                 RECORD_TYPE_PUT      = 1;
+    private static final byte                 RECORD_TYPE_REMOVE   = 2;
+    private static final int                  RECORD_HEADER_LENGTH = 4;
+    private static final int                  RECORD_FIXED_LENGTH  = 7;
+    private transient final File              directory;
+    private transient final int               segmentSize;
+    private transient final AtomicBoolean     compacting           = new AtomicBoolean();
+    private final Map<String, RecordLocation> index                = new HashMap<String, RecordLocation>();
+    private final TreeMap<Long, Segment>      segments             = new TreeMap<Long, Segment>();
+    private File                              clientDirectory;
+    private Segment                           activeSegment;
+    private boolean                           compactionPending;
+    private ExecutorService                   compactionExecutor;
+    private volatile boolean                  forceOnPut;
+
+    /**
+     * Creates an instance with the {@link #DEFAULT_SEGMENT_SIZE}.
+     * 
+     * @param directory the directory that holds a sub-directory per Client ID and Server URI
+     * @throws IllegalArgumentException if the {@code directory} is null
+     */
+    public MappedFilePersistence(final File directory)
+    {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates an instance.
+     * 
+     * @param directory the directory that holds a sub-directory per Client ID and Server URI
+     * @param segmentSize the size of each segment file in bytes; a message that's larger is given
+     *            a segment of its own
+     * @throws IllegalArgumentException if the {@code directory} is null, or the
+     *             {@code segmentSize} is less than 4,096 bytes
+     */
+    public MappedFilePersistence(final File directory, final int segmentSize)
+    {
+        Assert.notNull(directory, "'directory' must be set!");
+        Assert.isTrue(segmentSize >= MINIMUM_SEGMENT_SIZE,
+            "'segmentSize' must be at least 4096 bytes!");
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    @Override
+    public synchronized void open(final String clientId, final String serverURI)
+        throws MqttPersistenceException
+    {
+        Assert.state(clientDirectory == null, "The persistence is already open!");
+        final File target = new File(directory, getClientDirectoryName(clientId, serverURI));
+        if (!target.isDirectory()
+            && !target.mkdirs())
+        {
+            throw new MqttPersistenceException(new IOException(
+                String.format("The persistence directory %s could not be created.", target)));
+        }
+        clientDirectory = target;
+        compactionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable,
+                String.format("%s-persistence-compaction", clientId));
+            thread.setDaemon(true);
+            return thread;
+        });
+        try
+        {
+            recover();
+        }
+        catch (IOException ex)
+        {
+            close();
+            throw new MqttPersistenceException(ex);
+        }
+    }
+
+    @Override
+    public void close() throws MqttPersistenceException
+    {
+        ExecutorService executor = null;
+        synchronized (this)
+        {
+            executor = compactionExecutor;
+            closeSegments();
+            compactionExecutor = null;
+            clientDirectory = null;
+        }
+        if (executor != null)
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public synchronized void put(final String key, final MqttPersistable persistable)
+        throws MqttPersistenceException
+    {
+        checkIsOpen();
+        Assert.notNull(key, "'key' must be set!");
+        Assert.notNull(persistable, "'persistable' must be set!");
+        try
+        {
+            final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            final int headerLength = persistable.getHeaderLength();
+            final int payloadLength = persistable.getPayloadBytes() == null ? 0
+                : persistable.getPayloadLength();
+            final int bodyLength = RECORD_FIXED_LENGTH + keyBytes.length + headerLength
+                + payloadLength;
+            final Segment segment = reserve(bodyLength);
+            final int offset = segment.writePosition;
+            final MappedByteBuffer buffer = segment.buffer;
+            buffer.position(offset + RECORD_HEADER_LENGTH);
+            buffer.put(RECORD_TYPE_PUT);
+            buffer.putShort((short) keyBytes.length);
+            buffer.putInt(headerLength);
+            buffer.put(keyBytes);
+            buffer.put(persistable.getHeaderBytes(), persistable.getHeaderOffset(), headerLength);
+            if (payloadLength > 0)
+            {
+                buffer.put(persistable.getPayloadBytes(), persistable.getPayloadOffset(),
+                    payloadLength);
+            }
+            commit(segment, offset, bodyLength);
+            if (forceOnPut)
+            {
+                segment.buffer.force();
+            }
+            segment.liveBytes += RECORD_HEADER_LENGTH + bodyLength;
+            release(index.put(key, new RecordLocation(segment, offset, bodyLength,
+                RECORD_HEADER_LENGTH + RECORD_FIXED_LENGTH + keyBytes.length, headerLength)));
+        }
+        catch (IOException ex)
+        {
+            throw new MqttPersistenceException(ex);
+        }
+        scheduleCompaction();
+    }
+
+    @Override
+    public synchronized MqttPersistable get(final String key) throws MqttPersistenceException
+    {
+        checkIsOpen();
+        final RecordLocation location = index.get(key);
+        MqttPersistable persistable = null;
+        if (location != null)
+        {
+            final byte[] data = new byte[location.bodyLength + RECORD_HEADER_LENGTH
+                - location.dataOffset];
+            final MappedByteBuffer buffer = location.segment.buffer;
+            buffer.position(location.offset + location.dataOffset);
+            buffer.get(data);
+            persistable = new PersistedData(data, location.headerLength);
+        }
+        return persistable;
+    }
+
+    @Override
+    public synchronized void remove(final String key) throws MqttPersistenceException
+    {
+        checkIsOpen();
+        final RecordLocation location = index.remove(key);
+        if (location != null)
+        {
+            try
+            {
+                // a removal record keeps the key from being recovered while older segments remain
+                appendRemoval(key.getBytes(StandardCharsets.UTF_8));
+                release(location);
+            }
+            catch (IOException ex)
+            {
+                index.put(key, location);
+                throw new MqttPersistenceException(ex);
+            }
+            scheduleCompaction();
+        }
+    }
+
+    @Override
+    public synchronized Enumeration<String> keys() throws MqttPersistenceException
+    {
+        checkIsOpen();
+        return Collections.enumeration(new ArrayList<String>(index.keySet()));
+    }
+
+    @Override
+    public synchronized void clear() throws MqttPersistenceException
+    {
+        checkIsOpen();
+        final File[] files = segments.values().stream().map(segment -> segment.file)
+            .toArray(File[]::new);
+        closeSegments();
+        for (final File file : files)
+        {
+            if (!file.delete())
+            {
+                LOG.warn(String.format("The persistence segment %s could not be deleted.", file));
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean containsKey(final String key) throws MqttPersistenceException
+    {
+        checkIsOpen();
+        return index.containsKey(key);
+    }
+
+    /**
+     * Returns whether each put is written through to the storage device before it returns.
+     * <p>
+     * The default value is false.
+     * 
+     * @return whether each put is written through to the storage device
+     */
+    public boolean isForceOnPut()
+    {
+        return forceOnPut;
+    }
+
+    /**
+     * Sets whether each put is written through to the storage device before it returns, so the
+     * record also survives a crash of the host, as with
+     * {@link org.eclipse.paho.client.mqttv3.persist.MqttDefaultFilePersistence}. Otherwise the
+     * operating system writes the records out in its own time.
+     * 
+     * @param forceOnPut whether each put is written through to the storage device
+     */
+    public void setForceOnPut(final boolean forceOnPut)
+    {
+        this.forceOnPut = forceOnPut;
+    }
+
+    /**
+     * Returns the number of segment files in use.
+     * 
+     * @return the number of segment files
+     */
+    public synchronized int getSegmentCount()
+    {
+        return segments.size();
+    }
+
+    /**
+     * Compacts the segments whose live records take less than half of the segment, by copying
+     * those records to the end of the log and deleting the segment.
+     * <p>
+     * This is done on a background thread after each change, and is only exposed to allow
+     * compaction on demand.
+     * 
+     * @throws MqttPersistenceException if a segment could not be compacted
+     */
+    public void compact() throws MqttPersistenceException
+    {
+        synchronized (this)
+        {
+            checkIsOpen();
+        }
+        compactSegments();
+    }
+
+    private void compactSegments() throws MqttPersistenceException
+    {
+        boolean compacted = true;
+        while (compacted)
+        {
+            // the lock is only held per segment, so Paho isn't held up for the whole compaction
+            synchronized (this)
+            {
+                compacted = clientDirectory != null
+                    && compactSegment();
+            }
+        }
+    }
+
+    /**
+     * Returns the segment, other than the active segment, that holds the most garbage, provided
+     * its live records take less than half of the segment, or else null.
+     */
+    private Segment getCompactableSegment()
+    {
+        Segment compactable = null;
+        long compactableGarbageBytes = 0;
+        for (final Segment segment : segments.values())
+        {
+            final long garbageBytes = segment.writePosition - getLiveBytes(segment);
+            if (isCompactable(segment)
+                && garbageBytes > compactableGarbageBytes)
+            {
+                compactable = segment;
+                compactableGarbageBytes = garbageBytes;
+            }
+        }
+        return compactable;
+    }
+
+    /**
+     * Returns whether the {@code segment} isn't the active segment, and its live records take less
+     * than half of it.
+     */
+    private boolean isCompactable(final Segment segment)
+    {
+        final long liveBytes = getLiveBytes(segment);
+        return segment != activeSegment
+            && liveBytes < segment.writePosition - liveBytes;
+    }
+
+    private long getLiveBytes(final Segment segment)
+    {
+        // removal records are only garbage in the oldest segment
+        return segment == segments.firstEntry().getValue() ? segment.liveBytes
+            : segment.liveBytes + segment.removalBytes;
+    }
+
+    /**
+     * Notes that a compaction is due if the {@code segment} has become compactable, so a change
+     * only checks the segment it affected instead of scanning every segment.
+     */
+    private void checkCompactable(final Segment segment)
+    {
+        if (segment != null
+            && isCompactable(segment))
+        {
+            compactionPending = true;
+        }
+    }
+
+    private boolean compactSegment() throws MqttPersistenceException
+    {
+        boolean compacted = false;
+        final Segment segment = getCompactableSegment();
+        if (segment != null)
+        {
+            try
+            {
+                if (segment != segments.firstEntry().getValue())
+                {
+                    // an older segment may still hold a record of a removed key, so the removal
+                    // records have to move along with the live records
+                    copyRemovals(segment);
+                }
+                final Iterator<Map.Entry<String, RecordLocation>> iterator = index.entrySet()
+                    .iterator();
+                final Map<String, RecordLocation> moved = new HashMap<String, RecordLocation>();
+                while (iterator.hasNext())
+                {
+                    final Map.Entry<String, RecordLocation> entry = iterator.next();
+                    if (entry.getValue().segment == segment)
+                    {
+                        moved.put(entry.getKey(), copy(entry.getValue()));
+                    }
+                }
+                index.putAll(moved);
+                if (forceOnPut)
+                {
+                    // the copies have to be on the storage device before the originals are gone
+                    for (final Segment target : segments.tailMap(segment.sequence, false).values())
+                    {
+                        target.buffer.force();
+                    }
+                }
+                // removal records in the oldest segment can only refer to that segment, and any
+                // other segment's removal records were copied, so they can be dropped with it
+                segments.remove(segment.sequence);
+                segment.close();
+                if (!segment.file.delete())
+                {
+                    LOG.warn(String.format("The persistence segment %s could not be deleted.",
+                        segment.file));
+                }
+                compacted = true;
+            }
+            catch (IOException ex)
+            {
+                throw new MqttPersistenceException(ex);
+            }
+        }
+        return compacted;
+    }
+
+    /**
+     * Appends a removal record for each key the {@code segment} holds a removal record for, once
+     * per key. A key that has since been put again is skipped, as its newer record already
+     * replaces any older record on recovery.
+     */
+    private void copyRemovals(final Segment segment) throws IOException
+    {
+        final MappedByteBuffer buffer = segment.buffer;
+        final Map<String, byte[]> removedKeys = new HashMap<String, byte[]>();
+        int offset = 0;
+        while (offset < segment.writePosition)
+        {
+            final int bodyLength = buffer.getInt(offset);
+            if (RECORD_TYPE_REMOVE == buffer.get(offset + RECORD_HEADER_LENGTH))
+            {
+                final byte[] keyBytes = new byte[buffer.getShort(offset + RECORD_HEADER_LENGTH + 1)
+                    & 0xFFFF];
+                buffer.position(offset + RECORD_HEADER_LENGTH + RECORD_FIXED_LENGTH);
+                buffer.get(keyBytes);
+                final String key = new String(keyBytes, StandardCharsets.UTF_8);
+                if (!index.containsKey(key))
+                {
+                    removedKeys.put(key, keyBytes);
+                }
+            }
+            offset += RECORD_HEADER_LENGTH + bodyLength;
+        }
+        for (final byte[] keyBytes : removedKeys.values())
+        {
+            appendRemoval(keyBytes);
+        }
+    }
+
+    /**
+     * Appends a removal record for the {@code keyBytes}.
+     */
+    private void appendRemoval(final byte[] keyBytes) throws IOException
+    {
+        final int bodyLength = RECORD_FIXED_LENGTH + keyBytes.length;
+        final Segment segment = reserve(bodyLength);
+        final int offset = segment.writePosition;
+        final MappedByteBuffer buffer = segment.buffer;
+        buffer.position(offset + RECORD_HEADER_LENGTH);
+        buffer.put(RECORD_TYPE_REMOVE);
+        buffer.putShort((short) keyBytes.length);
+        buffer.putInt(0);
+        buffer.put(keyBytes);
+        commit(segment, offset, bodyLength);
+        segment.removalBytes += RECORD_HEADER_LENGTH + bodyLength;
+    }
+
+    private RecordLocation copy(final RecordLocation location) throws IOException
+    {
+        final byte[] record = new byte[RECORD_HEADER_LENGTH + location.bodyLength];
+        location.segment.buffer.position(location.offset);
+        location.segment.buffer.get(record);
+        final Segment target = reserve(location.bodyLength);
+        final int offset = target.writePosition;
+        target.buffer.position(offset + RECORD_HEADER_LENGTH);
+        target.buffer.put(record, RECORD_HEADER_LENGTH, location.bodyLength);
+        commit(target, offset, location.bodyLength);
+        target.liveBytes += record.length;
+        location.segment.liveBytes -= record.length;
+        return new RecordLocation(target, offset, location.bodyLength, location.dataOffset,
+            location.headerLength);
+    }
+
+    private void scheduleCompaction()
+    {
+        final ExecutorService executor = compactionExecutor;
+        if (executor != null
+            && compactionPending
+            && compacting.compareAndSet(false, true))
+        {
+            // the compaction looks for every compactable segment, not just the one that was noted
+            compactionPending = false;
+            executor.execute(() -> {
+                try
+                {
+                    compactSegments();
+                }
+                catch (MqttPersistenceException ex)
+                {
+                    LOG.warn(String.format("The persistence in %s could not be compacted.",
+                        directory), ex);
+                }
+                finally
+                {
+                    compacting.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the segment to append a record with a body of {@code bodyLength} bytes to, starting
+     * a new segment if the active segment doesn't have room.
+     */
+    private Segment reserve(final int bodyLength) throws IOException
+    {
+        final int recordLength = RECORD_HEADER_LENGTH + bodyLength;
+        if (activeSegment == null
+            || activeSegment.writePosition + recordLength > activeSegment.buffer.capacity())
+        {
+            final Segment previousSegment = activeSegment;
+            final long sequence = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+            activeSegment = Segment.open(
+                new File(clientDirectory, String.format("%s%020d%s", SEGMENT_FILE_PREFIX,
+                    sequence, SEGMENT_FILE_SUFFIX)),
+                sequence, Math.max(segmentSize, recordLength + RECORD_HEADER_LENGTH));
+            activeSegment.buffer.putInt(0, 0);
+            segments.put(sequence, activeSegment);
+            // the garbage of the previous segment only counts once it's no longer active
+            checkCompactable(previousSegment);
+        }
+        return activeSegment;
+    }
+
+    private static void commit(final Segment segment, final int offset, final int bodyLength)
+    {
+        final MappedByteBuffer buffer = segment.buffer;
+        // terminate the log before the record is committed by writing its length
+        final int end = offset + RECORD_HEADER_LENGTH + bodyLength;
+        if (end + RECORD_HEADER_LENGTH <= buffer.capacity())
+        {
+            buffer.putInt(end, 0);
+        }
+        buffer.putInt(offset, bodyLength);
+        segment.writePosition = end;
+    }
+
+    private void release(final RecordLocation location)
+    {
+        if (location != null)
+        {
+            location.segment.liveBytes -= RECORD_HEADER_LENGTH + location.bodyLength;
+            checkCompactable(location.segment);
+        }
+    }
+
+    private void recover() throws IOException
+    {
+        final File[] files = clientDirectory.listFiles((dir, name) -> name.startsWith(
+            SEGMENT_FILE_PREFIX)
+            && name.endsWith(SEGMENT_FILE_SUFFIX));
+        if (files != null)
+        {
+            Arrays.sort(files);
+            for (final File file : files)
+            {
+                final long sequence = Long.parseLong(file.getName().substring(
+                    SEGMENT_FILE_PREFIX.length(),
+                    file.getName().length() - SEGMENT_FILE_SUFFIX.length()));
+                final Segment segment = Segment.open(file, sequence,
+                    (int) Math.min(Integer.MAX_VALUE, file.length()));
+                segments.put(sequence, segment);
+                replay(segment);
+                activeSegment = segment;
+            }
+        }
+        if (!index.isEmpty())
+        {
+            LOG.info(String.format("Recovered %s persisted message(s) from %s.", index.size(),
+                clientDirectory));
+        }
+    }
+
+    private void replay(final Segment segment)
+    {
+        final MappedByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        boolean reading = true;
+        while (reading
+            && offset + RECORD_HEADER_LENGTH <= buffer.capacity())
+        {
+            final int bodyLength = buffer.getInt(offset);
+            if (bodyLength < RECORD_FIXED_LENGTH
+                || offset + RECORD_HEADER_LENGTH + bodyLength > buffer.capacity())
+            {
+                reading = false;
+            }
+            else
+            {
+                final byte type = buffer.get(offset + RECORD_HEADER_LENGTH);
+                final byte[] keyBytes = new byte[buffer.getShort(offset + RECORD_HEADER_LENGTH + 1)
+                    & 0xFFFF];
+                final int headerLength = buffer.getInt(offset + RECORD_HEADER_LENGTH + 3);
+                buffer.position(offset + RECORD_HEADER_LENGTH + RECORD_FIXED_LENGTH);
+                buffer.get(keyBytes);
+                final String key = new String(keyBytes, StandardCharsets.UTF_8);
+                if (RECORD_TYPE_PUT == type)
+                {
+                    segment.liveBytes += RECORD_HEADER_LENGTH + bodyLength;
+                    release(index.put(key, new RecordLocation(segment, offset, bodyLength,
+                        RECORD_HEADER_LENGTH + RECORD_FIXED_LENGTH + keyBytes.length,
+                        headerLength)));
+                }
+                else
+                {
+                    segment.removalBytes += RECORD_HEADER_LENGTH + bodyLength;
+                    release(index.remove(key));
+                }
+                offset += RECORD_HEADER_LENGTH + bodyLength;
+            }
+        }
+        segment.writePosition = offset;
+    }
+
+    private void closeSegments()
+    {
+        for (final Segment segment : segments.values())
+        {
+            segment.close();
+        }
+        segments.clear();
+        index.clear();
+        activeSegment = null;
+        compactionPending = false;
+    }
+
+    private void checkIsOpen() throws MqttPersistenceException
+    {
+        if (clientDirectory == null)
+        {
+            throw new MqttPersistenceException(MqttException.REASON_CODE_CLIENT_CLOSED,
+                new IllegalStateException("The mapped file persistence isn't open."));
+        }
+    }
+
+    /**
+     * Returns the sub-directory name for the {@code clientId} and {@code serverURI}, keeping only
+     * the characters that are safe in a file name, as Paho's file persistence does.
+     */
+    private static String getClientDirectoryName(final String clientId, final String serverURI)
+    {
+        final String name = String.format("%s-%s", clientId, serverURI);
+        final StringBuilder builder = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++)
+        {
+            final char character = name.charAt(i);
+            if (Character.isLetterOrDigit(character)
+                || character == '-')
+            {
+                builder.append(character);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static final class RecordLocation
+    {
+        private final Segment segment;
+        private final int     offset;
+        private final int     bodyLength;
+        private final int     dataOffset;
+        private final int     headerLength;
+
+        private RecordLocation(final Segment segment, final int offset, final int bodyLength,
+            final int dataOffset, final int headerLength)
+        {
+            this.segment = segment;
+            this.offset = offset;
+            this.bodyLength = bodyLength;
+            this.dataOffset = dataOffset;
+            this.headerLength = headerLength;
+        }
+    }
+
+    private static final class Segment
+    {
+        private final File             file;
+        private final long             sequence;
+        private final RandomAccessFile randomAccessFile;
+        private final MappedByteBuffer buffer;
+        private int                    writePosition;
+        private long                   liveBytes;
+        private long                   removalBytes;
+
+        private Segment(final File file, final long sequence,
+            final RandomAccessFile randomAccessFile, final MappedByteBuffer buffer)
+        {
+            this.file = file;
+            this.sequence = sequence;
+            this.randomAccessFile = randomAccessFile;
+            this.buffer = buffer;
+        }
+
+        private static Segment open(final File file, final long sequence, final int size)
+            throws IOException
+        {
+            final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try
+            {
+                if (randomAccessFile.length() < size)
+                {
+                    randomAccessFile.setLength(size);
+                }
+                final MappedByteBuffer buffer = randomAccessFile.getChannel()
+                    .map(FileChannel.MapMode.READ_WRITE, 0, size);
+                return new Segment(file, sequence, randomAccessFile, buffer);
+            }
+            catch (IOException ex)
+            {
+                randomAccessFile.close();
+                throw ex;
+            }
+        }
+
+        private void close()
+        {
+            try
+            {
+                randomAccessFile.close();
+            }
+            catch (IOException ex)
+            {
+                LOG.warn(String.format("The persistence segment %s could not be closed.", file),
+                    ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,412 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.persistence;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttPersistable;
+import org.eclipse.paho.client.mqttv3.MqttPersistenceException;
+import org.springframework.util.Assert;
+
+/**
+ * A non-durable {@link MqttClientPersistence} implementation that holds persisted messages outside
+ * of the heap, as an alternative to Paho's
+ * {@link org.eclipse.paho.client.mqttv3.persist.MemoryPersistence}.
+ * <p>
+ * Message headers and payloads are copied into fixed-size blocks carved from direct memory slabs,
+ * so thousands of outstanding QoS 1 and QoS 2 messages don't add to the work of the garbage
+ * collector. Slabs are allocated as needed up to a hard byte cap, and are kept until the
+ * persistence is closed. When a message doesn't fit within the cap, the
+ * {@link OffHeapOverflowPolicy} decides whether it's rejected or older messages are evicted.
+ * <p>
+ * Messages are lost when the JVM stops.
+ */
+public final class OffHeapMemoryPersistence implements MqttClientPersistence
+{
+    /**
+     * The default slab size of 1 MiB.
+     */
+    public static final int                       DEFAULT_SLAB_SIZE  = 1024 * 1024;
+    /**
+     * The default block size of 256 bytes.
+     */
+    public static final int                       DEFAULT_BLOCK_SIZE = 256;
+    private transient final long                  maximumBytes;
+    private transient final int                   slabSize;
+    private transient final int                   blockSize;
+    private transient final int                   blocksPerSlab;
+    private transient final int                   maximumSlabs;
+    private transient final OffHeapOverflowPolicy overflowPolicy;
+    private final List<ByteBuffer>                slabs              = new ArrayList<ByteBuffer>();
+    private final Map<String, Entry>              entries            = new LinkedHashMap<String, Entry>();
+    private int[]                                 freeBlocks         = new int[0];
+    private int                                   freeBlockCount;
+    private long                                  storedBytes;
+    private long                                  evictionCount;
+    private long                                  rejectionCount;
+    private boolean                               open;
+
+    /**
+     * Creates an instance with the {@link #DEFAULT_SLAB_SIZE}, the {@link #DEFAULT_BLOCK_SIZE} and
+     * the {@link OffHeapOverflowPolicy#REJECT} policy.
+     * 
+     * @param maximumBytes the maximum number of bytes of direct memory to use
+     * @throws IllegalArgumentException if the {@code maximumBytes} is less than the slab size
+     */
+    public OffHeapMemoryPersistence(final long maximumBytes)
+    {
+        this(maximumBytes, DEFAULT_SLAB_SIZE, DEFAULT_BLOCK_SIZE, OffHeapOverflowPolicy.REJECT);
+    }
+
+    /**
+     * Creates an instance.
+     * 
+     * @param maximumBytes the maximum number of bytes of direct memory to use
+     * @param slabSize the size of each direct memory allocation in bytes
+     * @param blockSize the size of the blocks a slab is divided into, which is the smallest amount
+     *            of memory a message takes
+     * @param overflowPolicy the {@link OffHeapOverflowPolicy} applied when a message doesn't fit
+     * @throws IllegalArgumentException if the {@code blockSize} is less than 16 bytes, the
+     *             {@code slabSize} isn't a multiple of the {@code blockSize}, the
+     *             {@code maximumBytes} is less than the {@code slabSize}, or the
+     *             {@code overflowPolicy} is null
+     */
+    public OffHeapMemoryPersistence(final long maximumBytes, final int slabSize,
+        final int blockSize, final OffHeapOverflowPolicy overflowPolicy)
+    {
+        Assert.isTrue(blockSize >= 16, "'blockSize' must be at least 16 bytes!");
+        Assert.isTrue(slabSize > 0
+            && slabSize % blockSize == 0, "'slabSize' must be a multiple of 'blockSize'!");
+        Assert.isTrue(maximumBytes >= slabSize, "'maximumBytes' must be at least 'slabSize'!");
+        Assert.notNull(overflowPolicy, "'overflowPolicy' must be set!");
+        this.maximumBytes = maximumBytes;
+        this.slabSize = slabSize;
+        this.blockSize = blockSize;
+        this.blocksPerSlab = slabSize / blockSize;
+        this.maximumSlabs = (int) Math.min(Integer.MAX_VALUE / blocksPerSlab,
+            maximumBytes / slabSize);
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    @Override
+    public synchronized void open(final String clientId, final String serverURI)
+        throws MqttPersistenceException
+    {
+        open = true;
+    }
+
+    /**
+     * Releases the direct memory slabs, which discards any persisted messages.
+     */
+    @Override
+    public synchronized void close() throws MqttPersistenceException
+    {
+        open = false;
+        clearEntries();
+        slabs.clear();
+        freeBlocks = new int[0];
+        freeBlockCount = 0;
+    }
+
+    @Override
+    public synchronized void put(final String key, final MqttPersistable persistable)
+        throws MqttPersistenceException
+    {
+        checkIsOpen();
+        Assert.notNull(key, "'key' must be set!");
+        Assert.notNull(persistable, "'persistable' must be set!");
+        final int headerLength = persistable.getHeaderLength();
+        final int payloadLength = persistable.getPayloadBytes() == null ? 0
+            : persistable.getPayloadLength();
+        final int length = headerLength + payloadLength;
+        final int blockCount = Math.max(1, (length + blockSize - 1) / blockSize);
+        // the blocks of the message being replaced are only given back once the new message fits
+        if (!reserve(blockCount, entries.get(key)))
+        {
+            rejectionCount++;
+            throw new MqttPersistenceException(new IllegalStateException(String.format(
+                "The off-heap persistence cannot hold a message of %s bytes within its cap of %s bytes.",
+                length, maximumBytes)));
+        }
+        release(entries.remove(key));
+        final Entry entry = new Entry(new int[blockCount], headerLength, length);
+        for (int i = 0; i < blockCount; i++)
+        {
+            entry.blocks[i] = freeBlocks[--freeBlockCount];
+        }
+        write(entry, 0, persistable.getHeaderBytes(), persistable.getHeaderOffset(),
+            headerLength);
+        if (payloadLength > 0)
+        {
+            write(entry, headerLength, persistable.getPayloadBytes(),
+                persistable.getPayloadOffset(), payloadLength);
+        }
+        entries.put(key, entry);
+        storedBytes += length;
+    }
+
+    @Override
+    public synchronized MqttPersistable get(final String key) throws MqttPersistenceException
+    {
+        checkIsOpen();
+        final Entry entry = entries.get(key);
+        MqttPersistable persistable = null;
+        if (entry != null)
+        {
+            final byte[] data = new byte[entry.length];
+            int position = 0;
+            for (int i = 0; position < entry.length; i++)
+            {
+                final int length = Math.min(blockSize, entry.length - position);
+                final ByteBuffer slab = slabs.get(entry.blocks[i] / blocksPerSlab).duplicate();
+                slab.position((entry.blocks[i] % blocksPerSlab) * blockSize);
+                slab.get(data, position, length);
+                position += length;
+            }
+            persistable = new PersistedData(data, entry.headerLength);
+        }
+        return persistable;
+    }
+
+    @Override
+    public synchronized void remove(final String key) throws MqttPersistenceException
+    {
+        checkIsOpen();
+        release(entries.remove(key));
+    }
+
+    @Override
+    public synchronized Enumeration<String> keys() throws MqttPersistenceException
+    {
+        checkIsOpen();
+        return Collections.enumeration(new ArrayList<String>(entries.keySet()));
+    }
+
+    @Override
+    public synchronized void clear() throws MqttPersistenceException
+    {
+        checkIsOpen();
+        clearEntries();
+    }
+
+    @Override
+    public synchronized boolean containsKey(final String key) throws MqttPersistenceException
+    {
+        checkIsOpen();
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Returns the maximum number of bytes of direct memory this instance uses.
+     * 
+     * @return the byte cap
+     */
+    public long getMaximumBytes()
+    {
+        return maximumBytes;
+    }
+
+    /**
+     * Returns the number of bytes of direct memory that's allocated.
+     * 
+     * @return the allocated bytes
+     */
+    public synchronized long getAllocatedBytes()
+    {
+        return (long) slabs.size() * slabSize;
+    }
+
+    /**
+     * Returns the number of bytes taken by the blocks holding persisted messages, which includes
+     * the unused part of the last block of each message.
+     * 
+     * @return the used bytes
+     */
+    public synchronized long getUsedBytes()
+    {
+        return ((long) slabs.size() * blocksPerSlab - freeBlockCount) * blockSize;
+    }
+
+    /**
+     * Returns the number of bytes of the persisted message headers and payloads.
+     * 
+     * @return the stored bytes
+     */
+    public synchronized long getStoredBytes()
+    {
+        return storedBytes;
+    }
+
+    /**
+     * Returns the used bytes as a fraction of the byte cap, from 0 to 1.
+     * 
+     * @return the occupancy
+     */
+    public synchronized double getOccupancy()
+    {
+        return (double) getUsedBytes() / maximumBytes;
+    }
+
+    /**
+     * Returns the number of persisted messages.
+     * 
+     * @return the number of messages
+     */
+    public synchronized int getMessageCount()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of messages evicted by the {@link OffHeapOverflowPolicy#EVICT_OLDEST}
+     * policy.
+     * 
+     * @return the number of evicted messages
+     */
+    public synchronized long getEvictionCount()
+    {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the number of messages that were rejected because they didn't fit.
+     * 
+     * @return the number of rejected messages
+     */
+    public synchronized long getRejectionCount()
+    {
+        return rejectionCount;
+    }
+
+    /**
+     * Makes sure {@code blockCount} blocks are free, counting the blocks of the {@code replaced}
+     * message, if any, and allocating slabs and evicting other messages as allowed.
+     */
+    private boolean reserve(final int blockCount, final Entry replaced)
+    {
+        final int requiredBlockCount = replaced == null ? blockCount
+            : blockCount - replaced.blocks.length;
+        final boolean fits = blockCount <= (long) maximumSlabs * blocksPerSlab;
+        while (fits
+            && freeBlockCount < requiredBlockCount
+            && slabs.size() < maximumSlabs)
+        {
+            allocateSlab();
+        }
+        if (fits
+            && OffHeapOverflowPolicy.EVICT_OLDEST == overflowPolicy)
+        {
+            final Iterator<Entry> iterator = entries.values().iterator();
+            while (freeBlockCount < requiredBlockCount
+                && iterator.hasNext())
+            {
+                final Entry entry = iterator.next();
+                if (entry != replaced)
+                {
+                    iterator.remove();
+                    release(entry);
+                    evictionCount++;
+                }
+            }
+        }
+        return freeBlockCount >= requiredBlockCount;
+    }
+
+    private void allocateSlab()
+    {
+        final int slabIndex = slabs.size();
+        slabs.add(ByteBuffer.allocateDirect(slabSize));
+        if (freeBlocks.length < (slabIndex + 1) * blocksPerSlab)
+        {
+            final int[] blocks = new int[(slabIndex + 1) * blocksPerSlab];
+            System.arraycopy(freeBlocks, 0, blocks, 0, freeBlockCount);
+            freeBlocks = blocks;
+        }
+        // push in reverse, so blocks are handed out in address order
+        for (int i = blocksPerSlab - 1; i >= 0; i--)
+        {
+            freeBlocks[freeBlockCount++] = slabIndex * blocksPerSlab + i;
+        }
+    }
+
+    private void write(final Entry entry, final int offset, final byte[] source,
+        final int sourceOffset, final int length)
+    {
+        int position = 0;
+        while (position < length)
+        {
+            final int entryPosition = offset + position;
+            final int block = entry.blocks[entryPosition / blockSize];
+            final int blockOffset = entryPosition % blockSize;
+            final int count = Math.min(blockSize - blockOffset, length - position);
+            final ByteBuffer slab = slabs.get(block / blocksPerSlab).duplicate();
+            slab.position((block % blocksPerSlab) * blockSize + blockOffset);
+            slab.put(source, sourceOffset + position, count);
+            position += count;
+        }
+    }
+
+    private void release(final Entry entry)
+    {
+        if (entry != null)
+        {
+            for (final int block : entry.blocks)
+            {
+                freeBlocks[freeBlockCount++] = block;
+            }
+            storedBytes -= entry.length;
+        }
+    }
+
+    private void clearEntries()
+    {
+        for (final Entry entry : entries.values())
+        {
+            release(entry);
+        }
+        entries.clear();
+    }
+
+    private void checkIsOpen() throws MqttPersistenceException
+    {
+        if (!open)
+        {
+            throw new MqttPersistenceException(MqttException.REASON_CODE_CLIENT_CLOSED,
+                new IllegalStateException("The off-heap persistence isn't open."));
+        }
+    }
+
+    private static final class Entry
+    {
+        private final int[] blocks;
+        private final int   headerLength;
+        private final int   length;
+
+        private Entry(final int[] blocks, final int headerLength, final int length)
+        {
+            this.blocks = blocks;
+            this.headerLength = headerLength;
+            this.length = length;
+        }
+    }
+}
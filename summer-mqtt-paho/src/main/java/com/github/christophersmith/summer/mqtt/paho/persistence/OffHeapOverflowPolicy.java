@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.persistence;
+
+/**
+ * Defines what an {@link OffHeapMemoryPersistence} does when a message doesn't fit within its byte
+ * cap.
+ */
+public enum OffHeapOverflowPolicy
+{
+        /**
+         * The message is rejected with a
+         * {@link org.eclipse.paho.client.mqttv3.MqttPersistenceException}, which fails the publish.
+         */
+        REJECT,
+        /**
+         * The oldest persisted messages are evicted until the message fits. An evicted message
+         * can't be retried by Paho if the connection is lost before it's acknowledged.
+         */
+        EVICT_OLDEST;
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.persistence;
+
+import org.eclipse.paho.client.mqttv3.MqttPersistable;
+
+/**
+ * A {@link MqttPersistable} read back from a persistence, with the header and payload held in a
+ * single array.
+ */
+final class PersistedData implements MqttPersistable
+{
+    private final byte[] data;
+    private final int    headerLength;
+
+    PersistedData(final byte[] data, final int headerLength)
+    {
+        this.data = data;
+        this.headerLength = headerLength;
+    }
+
+    @Override
+    public byte[] getHeaderBytes()
+    {
+        return data;
+    }
+
+    @Override
+    public int getHeaderLength()
+    {
+        return headerLength;
+    }
+
+    @Override
+    public int getHeaderOffset()
+    {
+        return 0;
+    }
+
+    @Override
+    public byte[] getPayloadBytes()
+    {
+        return data;
+    }
+
+    @Override
+    public int getPayloadLength()
+    {
+        return data.length - headerLength;
+    }
+
+    @Override
+    public int getPayloadOffset()
+    {
+        return headerLength;
+    }
+}
@@ -0,0 +1,668 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessagingException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
+
+import com.github.christophersmith.summer.mqtt.core.MqttBatchPublishResult;
+import com.github.christophersmith.summer.mqtt.core.MqttClientConnectionType;
+import com.github.christophersmith.summer.mqtt.core.MqttQualityOfService;
+import com.github.christophersmith.summer.mqtt.core.TopicSubscription;
+import com.github.christophersmith.summer.mqtt.core.metrics.MqttClientMetrics;
+import com.github.christophersmith.summer.mqtt.core.service.MqttClientService;
+import com.github.christophersmith.summer.mqtt.core.service.ReconnectService;
+import com.github.christophersmith.summer.mqtt.core.util.MqttHeaderHelper;
+import com.github.christophersmith.summer.mqtt.core.util.TopicRouter;
+
+/**
+ * A {@link MqttClientService} that consumes in-bound messages through a group of
+ * {@link PahoAsyncMqttClientService} connections, all subscribed to the same Shared Subscriptions,
+ * so the Broker spreads the messages of each Topic Filter over the members of the group.
+ * <p>
+ * Each Topic Filter is subscribed to as {@code $share/{groupName}/{topicFilter}}, which requires a
+ * Broker that supports Shared Subscriptions. The messages received by every member are sent to the
+ * one in-bound {@link MessageChannel} of the group, so they're processed in parallel on the
+ * callback thread of each member. The group can be resized at runtime through
+ * {@link #setGroupSize(int)}, and the number of messages each member received is reported through
+ * {@link #getReceivedMessageCounts()} and {@link #sampleReceivedMessages()}.
+ * <p>
+ * Each member uses the Client ID of the group with its index appended, like {@code my-client-0},
+ * and is setup as a {@link MqttClientConnectionType#SUBSCRIBER}.
+ */
+public final class ConsumerGroupMqttClientService implements MqttClientService
+{
+    private static final Logger                                     LOG               = LoggerFactory
+        .getLogger(ConsumerGroupMqttClientService.class);
+    private static final String                                     SHARED_FILTER     = "$share/%s/%s";
+    private transient final ReentrantLock                           reentrantLock     = new ReentrantLock();
+    private transient final String                                  serverUri;
+    private transient final String                                  clientId;
+    private transient final String                                  groupName;
+    private transient final Function<String, MqttClientPersistence> persistenceFactory;
+    private transient final Consumer<PahoAsyncMqttClientService>    memberInitializer;
+    private transient final List<Member>                            members           = new CopyOnWriteArrayList<Member>();
+    private transient final Map<String, MqttQualityOfService>       topicFilters      = new LinkedHashMap<String, MqttQualityOfService>();
+    private transient final TopicRouter<MessageChannel>             topicRouter       = new TopicRouter<MessageChannel>();
+    private volatile MessageChannel                                 inboundMessageChannel;
+    private MqttClientMetrics                                       mqttClientMetrics = MqttClientMetrics.NONE;
+    private ApplicationEventPublisher                               applicationEventPublisher;
+    private ReconnectService                                        reconnectService;
+    private TaskScheduler                                           taskScheduler;
+    private boolean                                                 started;
+
+    /**
+     * Creates a group whose members use the default Paho {@link MqttClientPersistence}.
+     * 
+     * @param serverUri the Server URI to connect to
+     * @param clientId the Client ID of the group, which each member appends its index to
+     * @param groupName the name of the Shared Subscription group
+     * @param groupSize the initial number of members
+     * @throws IllegalArgumentException if the {@code serverUri}, {@code clientId} or
+     *             {@code groupName} is blank or null, the {@code groupName} contains a
+     *             {@code /}, {@code +} or {@code #}, or the {@code groupSize} isn't greater than 0
+     * @throws MqttException if a member cannot be created
+     */
+    public ConsumerGroupMqttClientService(final String serverUri, final String clientId,
+        final String groupName, final int groupSize)
+        throws MqttException
+    {
+        this(serverUri, clientId, groupName, groupSize, null, null);
+    }
+
+    /**
+     * Creates a group whose members use the {@link MqttClientPersistence} created by the
+     * {@code persistenceFactory}, and are configured by the {@code memberInitializer}.
+     * 
+     * @param serverUri the Server URI to connect to
+     * @param clientId the Client ID of the group, which each member appends its index to
+     * @param groupName the name of the Shared Subscription group
+     * @param groupSize the initial number of members
+     * @param persistenceFactory an optional factory for the {@link MqttClientPersistence} of each
+     *            member, given the Client ID of the member
+     * @param memberInitializer an optional callback that configures each member when it's created,
+     *            including members added later through {@link #setGroupSize(int)}
+     * @throws IllegalArgumentException if the {@code serverUri}, {@code clientId} or
+     *             {@code groupName} is blank or null, the {@code groupName} contains a
+     *             {@code /}, {@code +} or {@code #}, or the {@code groupSize} isn't greater than 0
+     * @throws MqttException if a member cannot be created
+     */
+    public ConsumerGroupMqttClientService(final String serverUri, final String clientId,
+        final String groupName, final int groupSize,
+        final Function<String, MqttClientPersistence> persistenceFactory,
+        final Consumer<PahoAsyncMqttClientService> memberInitializer)
+        throws MqttException
+    {
+        Assert.hasText(serverUri, "'serverUri' must be set!");
+        Assert.hasText(clientId, "'clientId' must be set!");
+        Assert.hasText(groupName, "'groupName' must be set!");
+        Assert.isTrue(groupName.indexOf('/') < 0
+            && groupName.indexOf('+') < 0
+            && groupName.indexOf('#') < 0, "'groupName' must not contain '/', '+' or '#'!");
+        this.serverUri = serverUri;
+        this.clientId = clientId;
+        this.groupName = groupName;
+        this.persistenceFactory = persistenceFactory;
+        this.memberInitializer = memberInitializer;
+        setGroupSize(groupSize);
+    }
+
+    /**
+     * Returns the name of the Shared Subscription group.
+     * 
+     * @return the Group Name
+     */
+    public String getGroupName()
+    {
+        return groupName;
+    }
+
+    /**
+     * Returns the current number of members.
+     * 
+     * @return the Group Size
+     */
+    public int getGroupSize()
+    {
+        return members.size();
+    }
+
+    /**
+     * Adds or removes members until the group has {@code groupSize} members.
+     * <p>
+     * Added members are subscribed to every Topic Filter of the group, and started if the group is
+     * started. Members are removed from the highest index down, and closed, after which the Broker
+     * sends their share of the messages to the remaining members.
+     * <p>
+     * If a member cannot be created, the members this call already added are closed and removed
+     * again, so the group keeps its previous size.
+     * 
+     * @param groupSize the number of members
+     * @throws IllegalArgumentException if the {@code groupSize} isn't greater than 0
+     * @throws MqttException if a member cannot be created
+     */
+    public void setGroupSize(final int groupSize) throws MqttException
+    {
+        Assert.isTrue(groupSize > 0, "'groupSize' must be greater than 0!");
+        reentrantLock.lock();
+        try
+        {
+            final int previousSize = members.size();
+            try
+            {
+                while (members.size() < groupSize)
+                {
+                    final Member member = createMember(members.size());
+                    members.add(member);
+                    if (started)
+                    {
+                        member.connection.start();
+                    }
+                }
+            }
+            catch (MqttException | RuntimeException ex)
+            {
+                while (members.size() > previousSize)
+                {
+                    members.remove(members.size() - 1).connection.close();
+                }
+                throw ex;
+            }
+            while (members.size() > groupSize)
+            {
+                final Member member = members.remove(members.size() - 1);
+                member.connection.close();
+                LOG.info(String.format("Client ID %s removed %s from consumer group %s.", clientId,
+                    member.connection.getClientId(), groupName));
+            }
+        }
+        finally
+        {
+            reentrantLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the members of this group, in index order, so each can be configured through its
+     * {@link PahoAsyncMqttClientService#getMqttClientConfiguration()} and
+     * {@link PahoAsyncMqttClientService#getMqttConnectOptions()}.
+     * 
+     * @return a {@link List} of {@link PahoAsyncMqttClientService} instances
+     */
+    public List<PahoAsyncMqttClientService> getMembers()
+    {
+        final List<PahoAsyncMqttClientService> records = new ArrayList<PahoAsyncMqttClientService>(
+            members.size());
+        members.forEach(member -> records.add(member.connection));
+        return records;
+    }
+
+    /**
+     * Returns the number of messages each member received, keyed by the Client ID of the member,
+     * in index order.
+     * 
+     * @return a {@link Map} of Client IDs to message counts
+     */
+    public Map<String, Long> getReceivedMessageCounts()
+    {
+        final Map<String, Long> records = new LinkedHashMap<String, Long>();
+        members.forEach(
+            member -> records.put(member.connection.getClientId(), member.receivedCount.sum()));
+        return records;
+    }
+
+    /**
+     * Returns a {@link ReceivedMessageSample} of the number of messages each member received, with
+     * the time it was taken.
+     * <p>
+     * The rate of each member since an earlier sample is then returned by
+     * {@link ReceivedMessageSample#getMessagesPerSecond(ReceivedMessageSample)}. As no state is
+     * kept between samples, any number of readers can sample the group at their own interval.
+     * 
+     * @return a {@link ReceivedMessageSample} value
+     */
+    public ReceivedMessageSample sampleReceivedMessages()
+    {
+        return new ReceivedMessageSample(getReceivedMessageCounts(), System.nanoTime());
+    }
+
+    @Override
+    public String getClientId()
+    {
+        return clientId;
+    }
+
+    @Override
+    public MqttClientConnectionType getConnectionType()
+    {
+        return MqttClientConnectionType.SUBSCRIBER;
+    }
+
+    /**
+     * Returns the Topic Filters of this group, without the Shared Subscription prefix, marked as
+     * subscribed once every member is subscribed.
+     */
+    @Override
+    public List<TopicSubscription> getTopicSubscriptions()
+    {
+        final List<TopicSubscription> records = new ArrayList<TopicSubscription>();
+        reentrantLock.lock();
+        try
+        {
+            for (final Map.Entry<String, MqttQualityOfService> entry : topicFilters.entrySet())
+            {
+                final TopicSubscription record = new TopicSubscription(entry.getKey(),
+                    entry.getValue());
+                final String sharedTopicFilter = getSharedTopicFilter(entry.getKey());
+                boolean subscribed = true;
+                for (final Member member : members)
+                {
+                    subscribed &= member.connection.getTopicSubscriptions().stream()
+                        .anyMatch(subscription -> subscription.isSubscribed()
+                            && sharedTopicFilter.equals(subscription.getTopicFilter()));
+                }
+                record.setSubscribed(subscribed);
+                records.add(record);
+            }
+        }
+        finally
+        {
+            reentrantLock.unlock();
+        }
+        return records;
+    }
+
+    /**
+     * Starts every member of this group.
+     * 
+     * @return whether every member was started
+     */
+    @Override
+    public boolean start()
+    {
+        boolean result = true;
+        reentrantLock.lock();
+        try
+        {
+            started = true;
+            for (final Member member : members)
+            {
+                result &= member.connection.start();
+            }
+        }
+        finally
+        {
+            reentrantLock.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether every member of this group is connected.
+     * 
+     * @return whether every member is connected
+     */
+    @Override
+    public boolean isConnected()
+    {
+        boolean result = true;
+        for (final Member member : members)
+        {
+            result &= member.connection.isConnected();
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether every member of this group is started.
+     * 
+     * @return whether every member is started
+     */
+    @Override
+    public boolean isStarted()
+    {
+        boolean result = true;
+        for (final Member member : members)
+        {
+            result &= member.connection.isStarted();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the Server URI the first member of this group is connected to.
+     * 
+     * @return the Server URI, or null if not connected
+     */
+    @Override
+    public String getConnectedServerUri()
+    {
+        return members.get(0).connection.getConnectedServerUri();
+    }
+
+    @Override
+    public void subscribe(final String topicFilter)
+    {
+        subscribe(topicFilter, members.get(0).connection.getMqttClientConfiguration()
+            .getDefaultQualityOfService());
+    }
+
+    /**
+     * Subscribes every member of this group to the Shared Subscription of the {@code topicFilter}.
+     */
+    @Override
+    public void subscribe(final String topicFilter, final MqttQualityOfService qualityOfService)
+    {
+        Assert.hasText(topicFilter, "'topicFilter' must be set!");
+        Assert.notNull(qualityOfService, "'qualityOfService' must be set!");
+        reentrantLock.lock();
+        try
+        {
+            topicFilters.put(topicFilter, qualityOfService);
+            for (final Member member : members)
+            {
+                member.connection.subscribe(getSharedTopicFilter(topicFilter), qualityOfService);
+            }
+        }
+        finally
+        {
+            reentrantLock.unlock();
+        }
+    }
+
+    @Override
+    public void subscribe(final String topicFilter, final MessageChannel messageChannel)
+    {
+        subscribe(topicFilter, members.get(0).connection.getMqttClientConfiguration()
+            .getDefaultQualityOfService(), messageChannel);
+    }
+
+    /**
+     * Subscribes every member of this group to the Shared Subscription of the {@code topicFilter},
+     * and sends the matching messages any member receives to the {@code messageChannel}.
+     */
+    @Override
+    public void subscribe(final String topicFilter, final MqttQualityOfService qualityOfService,
+        final MessageChannel messageChannel)
+    {
+        Assert.notNull(messageChannel, "'messageChannel' must be set!");
+        topicRouter.add(topicFilter, messageChannel);
+        try
+        {
+            subscribe(topicFilter, qualityOfService);
+        }
+        catch (RuntimeException ex)
+        {
+            topicRouter.remove(topicFilter, messageChannel);
+            throw ex;
+        }
+    }
+
+    /**
+     * Unsubscribes every member of this group from the Shared Subscription of the
+     * {@code topicFilter}.
+     */
+    @Override
+    public void unsubscribe(final String topicFilter)
+    {
+        Assert.hasText(topicFilter, "'topicFilter' must be set!");
+        reentrantLock.lock();
+        try
+        {
+            topicFilters.remove(topicFilter);
+            topicRouter.removeAll(topicFilter);
+            for (final Member member : members)
+            {
+                member.connection.unsubscribe(getSharedTopicFilter(topicFilter));
+            }
+        }
+        finally
+        {
+            reentrantLock.unlock();
+        }
+    }
+
+    /**
+     * Sets the in-bound {@link MessageChannel} the messages received by every member of this group
+     * are sent to.
+     * 
+     * @param inboundMessageChannel a {@link MessageChannel} for in-bound messages
+     * @throws IllegalArgumentException if the {@code inboundMessageChannel} value is null
+     */
+    public void setInboundMessageChannel(final MessageChannel inboundMessageChannel)
+    {
+        Assert.notNull(inboundMessageChannel, "'inboundMessageChannel' must be set!");
+        this.inboundMessageChannel = inboundMessageChannel;
+    }
+
+    /**
+     * Sets the {@link MqttClientMetrics} of every member of this group, including members added
+     * later, so it receives the metrics of the group as a whole.
+     * 
+     * @param mqttClientMetrics a {@link MqttClientMetrics} value
+     * @throws IllegalArgumentException if the {@code mqttClientMetrics} value is null
+     */
+    public void setMqttClientMetrics(final MqttClientMetrics mqttClientMetrics)
+    {
+        Assert.notNull(mqttClientMetrics, "'mqttClientMetrics' must be set!");
+        reentrantLock.lock();
+        try
+        {
+            this.mqttClientMetrics = mqttClientMetrics;
+            members.forEach(member -> member.connection.setMqttClientMetrics(mqttClientMetrics));
+        }
+        finally
+        {
+            reentrantLock.unlock();
+        }
+    }
+
+    /**
+     * Sets the {@link ReconnectService} and {@link TaskScheduler} of every member of this group,
+     * including members added later.
+     * 
+     * @param reconnectService a {@link ReconnectService} value
+     * @param taskScheduler a {@link TaskScheduler} value
+     */
+    public void setReconnectDetails(final ReconnectService reconnectService,
+        final TaskScheduler taskScheduler)
+    {
+        reentrantLock.lock();
+        try
+        {
+            this.reconnectService = reconnectService;
+            this.taskScheduler = taskScheduler;
+            members.forEach(member -> member.connection.setReconnectDetails(reconnectService,
+                taskScheduler));
+        }
+        finally
+        {
+            reentrantLock.unlock();
+        }
+    }
+
+    /**
+     * Hands the {@code message} to the first member, which fails it as every member is setup as a
+     * {@link MqttClientConnectionType#SUBSCRIBER}.
+     */
+    @Override
+    public void handleMessage(final Message<?> message) throws MessagingException
+    {
+        members.get(0).connection.handleMessage(message);
+    }
+
+    /**
+     * Hands the {@code message} to the first member, which fails the returned
+     * {@link CompletableFuture} as every member is setup as a
+     * {@link MqttClientConnectionType#SUBSCRIBER}.
+     */
+    @Override
+    public CompletableFuture<Integer> publishAsync(final Message<?> message)
+    {
+        return members.get(0).connection.publishAsync(message);
+    }
+
+    /**
+     * Hands the {@code messages} to the first member, which fails each of them as every member is
+     * setup as a {@link MqttClientConnectionType#SUBSCRIBER}.
+     */
+    @Override
+    public MqttBatchPublishResult publishAll(final Collection<Message<?>> messages)
+    {
+        return members.get(0).connection.publishAll(messages);
+    }
+
+    @Override
+    public void stop()
+    {
+        reentrantLock.lock();
+        try
+        {
+            started = false;
+            members.forEach(member -> member.connection.stop());
+        }
+        finally
+        {
+            reentrantLock.unlock();
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        reentrantLock.lock();
+        try
+        {
+            started = false;
+            members.forEach(member -> member.connection.close());
+        }
+        finally
+        {
+            reentrantLock.unlock();
+        }
+    }
+
+    /**
+     * Sets the {@link ApplicationEventPublisher} of every member of this group, including members
+     * added later. The Events of each member are published with the Client ID of the member.
+     */
+    @Override
+    public void setApplicationEventPublisher(
+        final ApplicationEventPublisher applicationEventPublisher)
+    {
+        reentrantLock.lock();
+        try
+        {
+            this.applicationEventPublisher = applicationEventPublisher;
+            members.forEach(member -> member.connection
+                .setApplicationEventPublisher(applicationEventPublisher));
+        }
+        finally
+        {
+            reentrantLock.unlock();
+        }
+    }
+
+    private String getSharedTopicFilter(final String topicFilter)
+    {
+        return String.format(SHARED_FILTER, groupName, topicFilter);
+    }
+
+    private Member createMember(final int index) throws MqttException
+    {
+        final String memberClientId = String.format("%s-%d", clientId, index);
+        final PahoAsyncMqttClientService connection = new PahoAsyncMqttClientService(serverUri,
+            memberClientId, MqttClientConnectionType.SUBSCRIBER,
+            persistenceFactory == null ? null : persistenceFactory.apply(memberClientId));
+        final Member member = new Member(connection);
+        try
+        {
+            connection.setInboundMessageChannel(member);
+            connection.setApplicationEventPublisher(applicationEventPublisher);
+            connection.setReconnectDetails(reconnectService, taskScheduler);
+            connection.setMqttClientMetrics(mqttClientMetrics);
+            if (memberInitializer != null)
+            {
+                memberInitializer.accept(connection);
+            }
+            for (final Map.Entry<String, MqttQualityOfService> entry : topicFilters.entrySet())
+            {
+                connection.subscribe(getSharedTopicFilter(entry.getKey()), entry.getValue());
+            }
+        }
+        catch (RuntimeException ex)
+        {
+            connection.close();
+            throw ex;
+        }
+        return member;
+    }
+
+    /**
+     * A member of the group, which is also the in-bound {@link MessageChannel} of its connection,
+     * counting each message before sending it on to the {@link MessageChannel} of every Topic
+     * Filter it matches, or else to the in-bound {@link MessageChannel} of the group.
+     */
+    private final class Member implements MessageChannel
+    {
+        private final PahoAsyncMqttClientService connection;
+        private final LongAdder                  receivedCount = new LongAdder();
+
+        private Member(final PahoAsyncMqttClientService connection)
+        {
+            this.connection = connection;
+        }
+
+        @Override
+        public boolean send(final Message<?> message)
+        {
+            return send(message, INDEFINITE_TIMEOUT);
+        }
+
+        @Override
+        public boolean send(final Message<?> message, final long timeout)
+        {
+            receivedCount.increment();
+            boolean sent = topicRouter.route(MqttHeaderHelper.getTopicHeaderValue(message),
+                channel -> channel.send(message, timeout)) > 0;
+            if (!sent)
+            {
+                final MessageChannel channel = inboundMessageChannel;
+                sent = channel != null
+                    && channel.send(message, timeout);
+            }
+            return sent;
+        }
+    }
+}
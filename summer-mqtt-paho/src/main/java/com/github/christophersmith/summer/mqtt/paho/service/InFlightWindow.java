@@ -0,0 +1,394 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import com.github.christophersmith.summer.mqtt.core.MqttClientConfiguration;
+import com.github.christophersmith.summer.mqtt.core.MqttInFlightOverflowStrategy;
+import com.github.christophersmith.summer.mqtt.core.MqttPriorityScheduling;
+
+/**
+ * Tracks the out-going messages that are in-flight and applies the
+ * {@link MqttInFlightOverflowStrategy} once the window is full.
+ * <p>
+ * A slot is taken through {@link #acquire(PublishFuture, int, MqttClientConfiguration)} before a
+ * message is handed to the MQTT Client, and given back through
+ * {@link #release(MqttClientConfiguration)} once the MQTT Client reports the message as delivered
+ * or failed.
+ * <p>
+ * Messages that wait for a slot, whether pending or blocked, wait in the priority lane of their
+ * {@link PublishFuture#priority}. A released slot is handed straight to a waiting message of the
+ * lane chosen by the {@link MqttPriorityScheduling}, so a busy low priority lane can't hold back a
+ * higher priority message, and messages within a lane keep their order.
+ */
+final class InFlightWindow
+{
+    /**
+     * The outcome of an {@link InFlightWindow#acquire(PublishFuture, int, MqttClientConfiguration)}
+     * call.
+     */
+    enum Admission
+    {
+            /**
+             * A slot was taken and the message must be handed to the MQTT Client now.
+             */
+            SUBMIT,
+            /**
+             * The message was added to the pending queue and will be returned by
+             * {@link InFlightWindow#release(MqttClientConfiguration)} later.
+             */
+            QUEUED,
+            /**
+             * The message was not admitted.
+             */
+            REJECTED;
+    }
+
+    private final ReentrantLock           lock          = new ReentrantLock();
+    private final AtomicInteger           inFlightCount = new AtomicInteger();
+    private final AtomicInteger           pendingCount  = new AtomicInteger();
+    private final Consumer<PublishFuture> evictionHandler;
+    private Lane[]                        lanes         = new Lane[0];
+
+    /**
+     * The default constructor.
+     * 
+     * @param evictionHandler called, outside of any lock, with each pending message that's dropped
+     *            by {@link MqttInFlightOverflowStrategy#DROP_OLDEST_QOS_0}
+     */
+    InFlightWindow(final Consumer<PublishFuture> evictionHandler)
+    {
+        this.evictionHandler = evictionHandler;
+    }
+
+    /**
+     * Takes a slot for the {@code publishFuture}, or applies the configured
+     * {@link MqttInFlightOverflowStrategy} if the window is full.
+     * <p>
+     * When a pending QoS 0 message is dropped to make room, it's passed to the eviction handler
+     * before this method returns. When interrupted after a slot was already handed to the blocked
+     * caller, the slot is kept and the interrupt status is restored instead.
+     * 
+     * @param publishFuture the message to admit
+     * @param maximumInFlight the size of the window, or 0 or less for an unbounded window
+     * @param configuration the {@link MqttClientConfiguration} holding the overflow settings
+     * @return the {@link Admission} for the message
+     * @throws InterruptedException if interrupted while blocked for a free slot
+     */
+    Admission acquire(final PublishFuture publishFuture, final int maximumInFlight,
+        final MqttClientConfiguration configuration)
+        throws InterruptedException
+    {
+        Admission admission = Admission.REJECTED;
+        PublishFuture evicted = null;
+        boolean interrupted = false;
+        lock.lock();
+        try
+        {
+            final MqttInFlightOverflowStrategy strategy = configuration
+                .getInFlightOverflowStrategy();
+            final Lane lane = getLane(publishFuture.priority, configuration);
+            boolean granted = false;
+            if (maximumInFlight <= 0
+                || isSlotFree(maximumInFlight))
+            {
+                admission = Admission.SUBMIT;
+            }
+            else if (MqttInFlightOverflowStrategy.BLOCK == strategy)
+            {
+                long nanos = TimeUnit.MILLISECONDS
+                    .toNanos(configuration.getInFlightWaitMilliseconds());
+                lane.waiting++;
+                try
+                {
+                    while (lane.granted == 0
+                        && !isSlotFree(maximumInFlight)
+                        && nanos > 0)
+                    {
+                        nanos = lane.slotGranted.awaitNanos(nanos);
+                    }
+                }
+                catch (InterruptedException ex)
+                {
+                    interrupted = true;
+                }
+                lane.waiting--;
+                if (lane.granted > 0)
+                {
+                    // a released slot was handed to this lane, and is still counted as in-flight
+                    lane.granted--;
+                    granted = true;
+                    admission = Admission.SUBMIT;
+                }
+                else if (!interrupted
+                    && isSlotFree(maximumInFlight))
+                {
+                    admission = Admission.SUBMIT;
+                }
+            }
+            else if (MqttInFlightOverflowStrategy.QUEUE == strategy
+                || MqttInFlightOverflowStrategy.DROP_OLDEST_QOS_0 == strategy)
+            {
+                if (pendingCount.get() >= configuration.getInFlightQueueCapacity()
+                    && MqttInFlightOverflowStrategy.DROP_OLDEST_QOS_0 == strategy)
+                {
+                    evicted = removeOldestQualityOfServiceZero();
+                }
+                if (pendingCount.get() < configuration.getInFlightQueueCapacity())
+                {
+                    lane.pending.add(publishFuture);
+                    pendingCount.incrementAndGet();
+                    admission = Admission.QUEUED;
+                }
+            }
+            if (Admission.SUBMIT == admission
+                && !granted)
+            {
+                inFlightCount.incrementAndGet();
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        if (evicted != null)
+        {
+            evictionHandler.accept(evicted);
+        }
+        if (interrupted)
+        {
+            if (Admission.SUBMIT != admission)
+            {
+                throw new InterruptedException();
+            }
+            Thread.currentThread().interrupt();
+        }
+        return admission;
+    }
+
+    /**
+     * Gives back a slot. If a message is waiting, the slot is handed to the lane chosen by the
+     * configured {@link MqttPriorityScheduling} instead. A pending message of that lane is
+     * returned so it can be handed to the MQTT Client, while a blocked caller of that lane is
+     * woken up to hand over its own message.
+     * 
+     * @param configuration the {@link MqttClientConfiguration} holding the priority settings
+     * @return the next pending message that now holds a slot, or null
+     */
+    PublishFuture release(final MqttClientConfiguration configuration)
+    {
+        PublishFuture next = null;
+        lock.lock();
+        try
+        {
+            final Lane lane = selectLane(configuration);
+            if (lane == null)
+            {
+                inFlightCount.decrementAndGet();
+            }
+            else if (lane.pending.isEmpty())
+            {
+                lane.granted++;
+                lane.slotGranted.signal();
+            }
+            else
+            {
+                next = lane.pending.poll();
+                pendingCount.decrementAndGet();
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        return next;
+    }
+
+    /**
+     * Removes every pending message, in priority order, so they can be failed when the MQTT Client
+     * is closed.
+     * 
+     * @return the pending messages that were removed
+     */
+    List<PublishFuture> removePending()
+    {
+        final List<PublishFuture> removed = new ArrayList<PublishFuture>();
+        lock.lock();
+        try
+        {
+            for (final Lane lane : lanes)
+            {
+                removed.addAll(lane.pending);
+                lane.pending.clear();
+            }
+            pendingCount.set(0);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the number of messages currently holding a slot.
+     * 
+     * @return the number of in-flight messages
+     */
+    int getInFlightCount()
+    {
+        return inFlightCount.get();
+    }
+
+    /**
+     * Returns the number of messages waiting for a slot.
+     * 
+     * @return the number of pending messages
+     */
+    int getPendingCount()
+    {
+        return pendingCount.get();
+    }
+
+    private boolean isSlotFree(final int maximumInFlight)
+    {
+        return pendingCount.get() == 0
+            && inFlightCount.get() < maximumInFlight;
+    }
+
+    /**
+     * Returns the lane for the {@code priority}, adding lanes if the Priority Lane Count was raised.
+     * Lanes are never removed, so messages in a lane beyond a lowered count still drain.
+     */
+    private Lane getLane(final int priority, final MqttClientConfiguration configuration)
+    {
+        final int laneCount = Math.max(1, configuration.getPriorityLaneCount());
+        if (lanes.length < laneCount)
+        {
+            final int start = lanes.length;
+            lanes = Arrays.copyOf(lanes, laneCount);
+            for (int i = start; i < laneCount; i++)
+            {
+                lanes[i] = new Lane(lock.newCondition());
+            }
+        }
+        return lanes[Math.min(priority, laneCount - 1)];
+    }
+
+    /**
+     * Returns the lane that receives the next free slot, or null if no message is waiting.
+     * <p>
+     * Weighted fair scheduling uses a smooth weighted round robin over the lanes with waiting
+     * messages, so the lanes are interleaved rather than drained in runs.
+     */
+    private Lane selectLane(final MqttClientConfiguration configuration)
+    {
+        Lane selected = null;
+        if (MqttPriorityScheduling.WEIGHTED_FAIR == configuration.getPriorityScheduling())
+        {
+            int totalWeight = 0;
+            for (int i = 0; i < lanes.length; i++)
+            {
+                final Lane lane = lanes[i];
+                if (lane.isWaiting())
+                {
+                    final int weight = configuration.getPriorityLaneWeight(i);
+                    lane.currentWeight += weight;
+                    totalWeight += weight;
+                    if (selected == null
+                        || lane.currentWeight > selected.currentWeight)
+                    {
+                        selected = lane;
+                    }
+                }
+            }
+            if (selected != null)
+            {
+                selected.currentWeight -= totalWeight;
+            }
+        }
+        else
+        {
+            for (int i = 0; selected == null
+                && i < lanes.length; i++)
+            {
+                if (lanes[i].isWaiting())
+                {
+                    selected = lanes[i];
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Removes the oldest pending QoS 0 message, starting with the lowest priority lane.
+     */
+    private PublishFuture removeOldestQualityOfServiceZero()
+    {
+        PublishFuture value = null;
+        for (int i = lanes.length - 1; value == null
+            && i >= 0; i--)
+        {
+            final Iterator<PublishFuture> iterator = lanes[i].pending.iterator();
+            while (value == null
+                && iterator.hasNext())
+            {
+                final PublishFuture candidate = iterator.next();
+                if (candidate.levelIdentifier == 0)
+                {
+                    iterator.remove();
+                    pendingCount.decrementAndGet();
+                    value = candidate;
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * The pending messages and blocked callers of a single priority, only accessed while holding
+     * the lock.
+     */
+    private static final class Lane
+    {
+        private final Deque<PublishFuture> pending = new ArrayDeque<PublishFuture>();
+        private final Condition            slotGranted;
+        private int                        waiting;
+        private int                        granted;
+        private int                        currentWeight;
+
+        private Lane(final Condition slotGranted)
+        {
+            this.slotGranted = slotGranted;
+        }
+
+        private boolean isWaiting()
+        {
+            return !pending.isEmpty()
+                || waiting > granted;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import com.github.christophersmith.summer.mqtt.core.MqttClientConfiguration;
+import com.github.christophersmith.summer.mqtt.core.util.MqttHeaderHelper;
+
+/**
+ * Collects the in-coming messages of a batched Topic Filter, and sends them as one
+ * {@link Message} with a {@link List} payload once the maximum number of messages, the maximum
+ * number of bytes or the linger time is reached.
+ * <p>
+ * Batches are sent while holding the lock of this instance, so they're sent in order, and the
+ * threads adding messages wait while a batch is sent.
+ * <p>
+ * This class is only used internally.
+ */
+final class InboundBatcher
+{
+    private static final int                         MINIMUM_LINGER_DIVISOR = 16;
+    private transient final String                   topicFilter;
+    private transient final MqttClientConfiguration  configuration;
+    private transient final ScheduledExecutorService executor;
+    private transient final Consumer<Message<?>>     sender;
+    private List<Message<?>>                         messages               = new ArrayList<Message<?>>();
+    private long                                     bytes;
+    private long                                     generation;
+    private long                                     lingerNanoseconds;
+    private ScheduledFuture<?>                       lingerFuture;
+
+    /**
+     * Creates a new instance.
+     * 
+     * @param topicFilter the batched Topic Filter
+     * @param configuration the {@link MqttClientConfiguration} with the batch limits
+     * @param executor the {@link ScheduledExecutorService} that sends a batch once its linger time
+     *            has passed
+     * @param sender the {@link Consumer} that sends each batch
+     */
+    InboundBatcher(final String topicFilter, final MqttClientConfiguration configuration,
+        final ScheduledExecutorService executor, final Consumer<Message<?>> sender)
+    {
+        this.topicFilter = topicFilter;
+        this.configuration = configuration;
+        this.executor = executor;
+        this.sender = sender;
+        lingerNanoseconds = getMaximumLingerNanoseconds();
+    }
+
+    /**
+     * Adds the {@code message} to the current batch, and sends the batch if it's full.
+     * 
+     * @param message the in-coming {@link Message}
+     * @param size the payload size of the {@code message}
+     */
+    synchronized void add(final Message<?> message, final int size)
+    {
+        messages.add(message);
+        bytes += size;
+        if (messages.size() >= configuration.getInboundBatchMaxMessages()
+            || bytes >= configuration.getInboundBatchMaxBytes())
+        {
+            send(false);
+        }
+        else if (messages.size() == 1)
+        {
+            final long batchGeneration = generation;
+            lingerFuture = executor.schedule(() -> sendLingered(batchGeneration),
+                lingerNanoseconds, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Sends the current batch, if it holds any messages.
+     */
+    synchronized void flush()
+    {
+        if (!messages.isEmpty())
+        {
+            send(false);
+        }
+    }
+
+    /**
+     * Returns the linger time of the next batch, in nanoseconds.
+     * 
+     * @return the linger time
+     */
+    synchronized long getLingerNanoseconds()
+    {
+        return lingerNanoseconds;
+    }
+
+    private synchronized void sendLingered(final long batchGeneration)
+    {
+        // a batch that was already sent because it was full has a newer generation
+        if (batchGeneration == generation
+            && !messages.isEmpty())
+        {
+            send(true);
+        }
+    }
+
+    private void send(final boolean lingered)
+    {
+        if (lingerFuture != null)
+        {
+            lingerFuture.cancel(false);
+            lingerFuture = null;
+        }
+        adaptLinger(lingered);
+        final Message<?> batch = MessageBuilder
+            .withPayload(Collections.unmodifiableList(messages))
+            .setHeader(MqttHeaderHelper.TOPIC_FILTER, topicFilter).build();
+        messages = new ArrayList<Message<?>>(messages.size());
+        bytes = 0;
+        generation++;
+        sender.accept(batch);
+    }
+
+    private void adaptLinger(final boolean lingered)
+    {
+        final long maximum = getMaximumLingerNanoseconds();
+        if (lingered
+            && configuration.isInboundBatchAdaptiveLinger())
+        {
+            // a batch that didn't fill up in time won't fill up by waiting longer either
+            final double fill = Math.max(
+                messages.size() / (double) configuration.getInboundBatchMaxMessages(),
+                bytes / (double) configuration.getInboundBatchMaxBytes());
+            final long target = Math.max(maximum / MINIMUM_LINGER_DIVISOR,
+                (long) (maximum * fill));
+            lingerNanoseconds = Math.min(maximum, (lingerNanoseconds + target) / 2);
+        }
+        else
+        {
+            lingerNanoseconds = maximum;
+        }
+    }
+
+    private long getMaximumLingerNanoseconds()
+    {
+        return TimeUnit.MILLISECONDS.toNanos(configuration.getInboundBatchLingerMilliseconds());
+    }
+}
@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import com.github.christophersmith.summer.mqtt.core.MqttInboundOverflowStrategy;
+
+/**
+ * Hands in-coming messages from the MQTT Client's callback thread to a fixed set of worker
+ * threads, each with its own bounded queue.
+ * <p>
+ * A message is assigned to a worker by the hash of its Topic, so the messages of a Topic are
+ * handled in the order they arrived, by the same worker, while different Topics are handled in
+ * parallel.
+ * <p>
+ * This class is only used internally.
+ */
+final class InboundDispatcher
+{
+    private static final long                               POLL_MILLISECONDS = 100;
+    private transient final Worker[]                        workers;
+    private transient final Thread[]                        threads;
+    private transient final BiConsumer<String, MqttMessage> handler;
+    private transient final LongAdder                       droppedCount      = new LongAdder();
+    private volatile boolean                                running           = true;
+
+    /**
+     * Creates and starts the worker threads.
+     * 
+     * @param clientId the Client ID, used to name the worker threads
+     * @param threadCount the number of worker threads
+     * @param queueCapacity the queue capacity of each worker thread
+     * @param handler the handler each worker thread calls with the Topic and message
+     */
+    InboundDispatcher(final String clientId, final int threadCount, final int queueCapacity,
+        final BiConsumer<String, MqttMessage> handler)
+    {
+        this.handler = handler;
+        workers = new Worker[threadCount];
+        threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++)
+        {
+            workers[i] = new Worker(queueCapacity);
+            threads[i] = new Thread(workers[i], String.format("%s-inbound-%d", clientId, i));
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    /**
+     * Places the message in the queue of the worker for its Topic, applying the
+     * {@code overflowStrategy} if the queue is full.
+     * 
+     * @param topic the Topic of the message
+     * @param message the {@link MqttMessage}
+     * @param overflowStrategy the {@link MqttInboundOverflowStrategy}
+     * @return whether the message was queued, rather than dropped
+     */
+    boolean dispatch(final String topic, final MqttMessage message,
+        final MqttInboundOverflowStrategy overflowStrategy)
+    {
+        final InboundMessage inboundMessage = new InboundMessage(topic, message);
+        final BlockingQueue<InboundMessage> queue = workers[getWorkerIndex(topic,
+            workers.length)].queue;
+        boolean queued = queue.offer(inboundMessage);
+        if (!queued
+            && (MqttInboundOverflowStrategy.BLOCK == overflowStrategy
+                || (MqttInboundOverflowStrategy.DROP_QOS_0 == overflowStrategy
+                    && message.getQos() > 0)))
+        {
+            try
+            {
+                queue.put(inboundMessage);
+                queued = true;
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!queued)
+        {
+            droppedCount.increment();
+        }
+        return queued;
+    }
+
+    /**
+     * Stops the worker threads once their queues are empty.
+     */
+    void shutdown()
+    {
+        running = false;
+    }
+
+    /**
+     * Waits for the worker threads to stop after {@link #shutdown()}, so the handler is no longer
+     * called once this method returns true.
+     * 
+     * @param timeoutMilliseconds the maximum time to wait, in milliseconds
+     * @return whether every worker thread has stopped
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    boolean awaitTermination(final long timeoutMilliseconds) throws InterruptedException
+    {
+        final long deadline = System.nanoTime()
+            + TimeUnit.MILLISECONDS.toNanos(timeoutMilliseconds);
+        boolean terminated = true;
+        for (final Thread thread : threads)
+        {
+            final long remainingMilliseconds = TimeUnit.NANOSECONDS
+                .toMillis(deadline - System.nanoTime());
+            if (remainingMilliseconds > 0)
+            {
+                thread.join(remainingMilliseconds);
+            }
+            terminated &= !thread.isAlive();
+        }
+        return terminated;
+    }
+
+    /**
+     * Returns the number of messages waiting in all queues.
+     * 
+     * @return the number of queued messages
+     */
+    int getQueuedCount()
+    {
+        int count = 0;
+        for (final Worker worker : workers)
+        {
+            count += worker.queue.size();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of messages waiting in the queue of each worker, in worker order.
+     * 
+     * @return the queue depths
+     */
+    int[] getQueueDepths()
+    {
+        final int[] depths = new int[workers.length];
+        for (int i = 0; i < workers.length; i++)
+        {
+            depths[i] = workers[i].queue.size();
+        }
+        return depths;
+    }
+
+    /**
+     * Returns the number of messages dropped because a queue was full.
+     * 
+     * @return the number of dropped messages
+     */
+    long getDroppedCount()
+    {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Returns the index of the worker for the {@code topic}.
+     * 
+     * @param topic the Topic
+     * @param workerCount the number of workers
+     * @return the worker index
+     */
+    static int getWorkerIndex(final String topic, final int workerCount)
+    {
+        int hash = topic.hashCode();
+        // Topics often share a long prefix, so the high bits are mixed in
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) % workerCount;
+    }
+
+    private static final class InboundMessage
+    {
+        private final String      topic;
+        private final MqttMessage message;
+
+        private InboundMessage(final String topic, final MqttMessage message)
+        {
+            this.topic = topic;
+            this.message = message;
+        }
+    }
+
+    private final class Worker implements Runnable
+    {
+        private final BlockingQueue<InboundMessage> queue;
+
+        private Worker(final int queueCapacity)
+        {
+            queue = new ArrayBlockingQueue<InboundMessage>(queueCapacity);
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while (running
+                    || !queue.isEmpty())
+                {
+                    final InboundMessage inboundMessage = queue.poll(POLL_MILLISECONDS,
+                        TimeUnit.MILLISECONDS);
+                    if (inboundMessage != null)
+                    {
+                        handler.accept(inboundMessage.topic, inboundMessage.message);
+                    }
+                }
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
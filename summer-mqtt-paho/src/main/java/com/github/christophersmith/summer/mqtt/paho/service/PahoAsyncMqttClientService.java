@@ -13,7 +13,26 @@
  */
 package com.github.christophersmith.summer.mqtt.paho.service;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
 
 import org.eclipse.paho.client.mqttv3.IMqttActionListener;
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
@@ -31,19 +50,36 @@ import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.util.Assert;
+import org.springframework.util.IdGenerator;
+import org.springframework.util.SimpleIdGenerator;
 import org.springframework.util.StringUtils;
 
+import com.github.christophersmith.summer.mqtt.core.MqttBatchPublishResult;
 import com.github.christophersmith.summer.mqtt.core.MqttClientConnectionType;
+import com.github.christophersmith.summer.mqtt.core.MqttCompression;
+import com.github.christophersmith.summer.mqtt.core.MqttDuplicateKeyExtractor;
+import com.github.christophersmith.summer.mqtt.core.MqttInFlightOverflowStrategy;
+import com.github.christophersmith.summer.mqtt.core.MqttInboundMessage;
+import com.github.christophersmith.summer.mqtt.core.MqttInboundPayloadMode;
 import com.github.christophersmith.summer.mqtt.core.MqttQualityOfService;
+import com.github.christophersmith.summer.mqtt.core.MqttRateLimitBehavior;
 import com.github.christophersmith.summer.mqtt.core.TopicSubscription;
+import com.github.christophersmith.summer.mqtt.core.compression.MqttPayloadCompression;
+import com.github.christophersmith.summer.mqtt.core.converter.MqttPayloadConverterRegistry;
 import com.github.christophersmith.summer.mqtt.core.event.MqttClientConnectionFailureEvent;
 import com.github.christophersmith.summer.mqtt.core.event.MqttClientConnectionLostEvent;
 import com.github.christophersmith.summer.mqtt.core.event.MqttMessageDeliveredEvent;
+import com.github.christophersmith.summer.mqtt.core.metrics.LatencyHistogram;
+import com.github.christophersmith.summer.mqtt.core.metrics.MqttClientMetrics;
 import com.github.christophersmith.summer.mqtt.core.service.AbstractMqttClientService;
 import com.github.christophersmith.summer.mqtt.core.service.MqttClientService;
 import com.github.christophersmith.summer.mqtt.core.service.ReconnectService;
+import com.github.christophersmith.summer.mqtt.core.util.DuplicateCache;
 import com.github.christophersmith.summer.mqtt.core.util.MqttHeaderHelper;
+import com.github.christophersmith.summer.mqtt.core.util.TopicFilterHelper;
 import com.github.christophersmith.summer.mqtt.core.util.TopicSubscriptionHelper;
+import com.github.christophersmith.summer.mqtt.paho.spool.MappedOutboundSpool;
+import com.github.christophersmith.summer.mqtt.paho.spool.SpooledMessage;
 
 /**
  * This is a Paho Asynchronous MQTT Client Service implementation which allows you configure
@@ -52,11 +88,38 @@ import com.github.christophersmith.summer.mqtt.core.util.TopicSubscriptionHelper
 public final class PahoAsyncMqttClientService extends AbstractMqttClientService
     implements MqttClientService, MqttCallbackExtended, IMqttActionListener
 {
-    private static final Logger                   LOG                = LoggerFactory
+    private static final Logger                                       LOG                     = LoggerFactory
         .getLogger(PahoAsyncMqttClientService.class);
-    private transient final MqttClientPersistence clientPersistence;
-    private transient final MqttAsyncClient       mqttClient;
-    private transient final MqttConnectOptions    mqttConnectOptions = new MqttConnectOptions();
+    private static final long                                         SPOOL_RETRY_NANOSECONDS = TimeUnit.MILLISECONDS
+        .toNanos(500);
+    private transient final MqttClientPersistence                     clientPersistence;
+    private transient final MqttAsyncClient                           mqttClient;
+    private transient final MqttConnectOptions                        mqttConnectOptions      = new MqttConnectOptions();
+    private transient final IMqttActionListener                       deliveryActionListener;
+    private transient final InFlightWindow                            inFlightWindow;
+    private transient final RateLimiter                               rateLimiter             = new RateLimiter();
+    private transient final LatencyHistogram[]                        deliveryLatencies       = new LatencyHistogram[] {
+        new LatencyHistogram(), new LatencyHistogram(), new LatencyHistogram() };
+    private transient final Map<Long, CompletableFuture<Integer>>     spooledFutures          = new ConcurrentHashMap<Long, CompletableFuture<Integer>>();
+    private transient final AtomicBoolean                             spoolReplaying          = new AtomicBoolean();
+    private transient final Map<String, PublishFuture>                conflatedMessages       = new ConcurrentHashMap<String, PublishFuture>();
+    private transient final AtomicBoolean                             conflationScheduled     = new AtomicBoolean();
+    private transient final AtomicBoolean                             conflationTriggered     = new AtomicBoolean();
+    private transient final AtomicLong                                conflatedCount          = new AtomicLong();
+    private transient final AtomicReference<ScheduledExecutorService> conflationExecutor      = new AtomicReference<ScheduledExecutorService>();
+    private transient final Map<String, InboundBatcher>               inboundBatchers         = new ConcurrentHashMap<String, InboundBatcher>();
+    private transient final AtomicReference<ScheduledExecutorService> batchExecutor           = new AtomicReference<ScheduledExecutorService>();
+    private transient final IntSupplier                               inFlightGauge           = this::getInFlightCount;
+    private transient final IntSupplier                               pendingGauge            = this::getPendingCount;
+    private transient final IntSupplier                               subscriptionsGauge      = () -> this.subscribedCount;
+    private transient final IntSupplier                               inboundQueuedGauge      = this::getInboundQueuedCount;
+    private transient final IdGenerator                               inboundIdGenerator      = new SimpleIdGenerator();
+    private transient final LongAdder                                 duplicateCount          = new LongAdder();
+    private volatile MappedOutboundSpool                              outboundSpool;
+    private volatile InboundDispatcher                                inboundDispatcher;
+    private DuplicateCache                                            duplicateCache;
+    private volatile int                                              subscribedCount;
+    private ExecutorService                                           spoolReplayExecutor;
 
     /**
      * Default constructor
@@ -76,13 +139,38 @@ public final class PahoAsyncMqttClientService extends AbstractMqttClientService
         final MqttClientConnectionType connectionType,
         final MqttClientPersistence clientPersistence)
         throws MqttException
+    {
+        this(createMqttClient(serverUri, clientId, clientPersistence), connectionType,
+            clientPersistence);
+    }
+
+    /**
+     * Creates an instance around an existing {@link MqttAsyncClient}, which allows the tests to
+     * provide a mock.
+     */
+    PahoAsyncMqttClientService(final MqttAsyncClient mqttClient,
+        final MqttClientConnectionType connectionType,
+        final MqttClientPersistence clientPersistence)
     {
         super(connectionType);
-        Assert.hasText(serverUri, "'serverUri' must be set!");
-        Assert.hasText(clientId, "'clientId' must be set!");
         this.clientPersistence = clientPersistence;
-        mqttClient = new MqttAsyncClient(serverUri, clientId, this.clientPersistence);
+        this.mqttClient = mqttClient;
         mqttClient.setCallback(this);
+        deliveryActionListener = new DeliveryActionListener();
+        inFlightWindow = new InFlightWindow(future -> failPublish(future,
+            String.format(
+                "Client ID %s dropped the pending QoS 0 message because the in-flight queue is full.",
+                getClientId()),
+            null, true));
+    }
+
+    private static MqttAsyncClient createMqttClient(final String serverUri, final String clientId,
+        final MqttClientPersistence clientPersistence)
+        throws MqttException
+    {
+        Assert.hasText(serverUri, "'serverUri' must be set!");
+        Assert.hasText(clientId, "'clientId' must be set!");
+        return new MqttAsyncClient(serverUri, clientId, clientPersistence);
     }
 
     @Override
@@ -94,6 +182,56 @@ public final class PahoAsyncMqttClientService extends AbstractMqttClientService
      * @throws MessagingException if the {@code message} could not be sent
      */
     public void handleMessage(final Message<?> message) throws MessagingException
+    {
+        publish(message, false);
+    }
+
+    @Override
+    public CompletableFuture<Integer> publishAsync(final Message<?> message)
+    {
+        Assert.notNull(message, "'message' must be set!");
+        CompletableFuture<Integer> future = null;
+        try
+        {
+            future = toCallerFuture(publish(message, true));
+        }
+        catch (RuntimeException ex)
+        {
+            future = new CompletableFuture<Integer>();
+            future.completeExceptionally(ex instanceof MessagingException ? ex
+                : new MessagingException(message,
+                    String.format(
+                        "Client ID %s encountered an issue and the message couldn't be sent.",
+                        getClientId()),
+                    ex));
+        }
+        return future;
+    }
+
+    /**
+     * Returns a new {@link CompletableFuture} that completes as the {@code future} does, so a
+     * caller completing or cancelling it can't change the {@code future} the MQTT Client's
+     * delivery callbacks rely on.
+     */
+    private static CompletableFuture<Integer> toCallerFuture(
+        final CompletableFuture<Integer> future)
+    {
+        final CompletableFuture<Integer> callerFuture = new CompletableFuture<Integer>();
+        future.whenComplete((messageId, throwable) -> {
+            if (throwable == null)
+            {
+                callerFuture.complete(messageId);
+            }
+            else
+            {
+                callerFuture.completeExceptionally(throwable);
+            }
+        });
+        return callerFuture;
+    }
+
+    private CompletableFuture<Integer> publish(final Message<?> message, final boolean tracked)
+        throws MessagingException
     {
         if (MqttClientConnectionType.SUBSCRIBER == connectionType)
         {
@@ -101,68 +239,342 @@ public final class PahoAsyncMqttClientService extends AbstractMqttClientService
                 String.format(
                     "Client ID %s is setup as a SUBSCRIBER and could not publish this message.",
                     getClientId()));
-            mqttClientEventPublisher.publishMessagePublishFailureEvent(getClientId(), exception,
-                applicationEventPublisher, this);
+            mqttClientMetrics.messagePublishFailed();
+            notifyPublishFailure(exception);
             throw exception;
         }
         Assert.notNull(message, "'message' must be set!");
-        try
+        CompletableFuture<Integer> future = null;
+        if (isSpooling())
         {
-            if (mqttClient.isConnected())
+            future = spool(message, tracked);
+            scheduleSpoolReplay();
+        }
+        else if (mqttClient.isConnected())
+        {
+            PublishFuture publishFuture = null;
+            MessagingException exception = null;
+            try
             {
-                final String topic = MqttHeaderHelper.getTopicHeaderValue(message);
-                byte[] payload = null;
-                // TODO: really need to use a payload converter
-                if (message.getPayload() != null
-                    && message.getPayload() instanceof byte[])
-                {
-                    payload = (byte[]) message.getPayload();
-                }
-                else if (message.getPayload() != null
-                    && message.getPayload() instanceof String)
-                {
-                    payload = ((String) message.getPayload()).getBytes();
-                }
-                final MqttQualityOfService qualityOfService = MqttHeaderHelper
-                    .getMqttQualityOfServiceHeaderValue(message,
-                        mqttClientConfiguration.getDefaultQualityOfService().getLevelIdentifier());
-                final boolean retained = MqttHeaderHelper.getRetainedHeaderValue(message);
-                if (StringUtils.isEmpty(topic)
-                    || payload == null)
+                publishFuture = createPublishFuture(message,
+                    mqttClientConfiguration.getDefaultQualityOfService().getLevelIdentifier(),
+                    mqttClientConfiguration.getPayloadConverterRegistry());
+                if (publishFuture == null)
                 {
-                    final MessagingException exception = new MessagingException(message,
-                        String.format(
-                            "Client ID '%s' could not publish this message because either the topic or payload isn't set, or the payload could not be converted.",
-                            getClientId()));
-                    mqttClientEventPublisher.publishMessagePublishFailureEvent(getClientId(),
-                        exception, applicationEventPublisher, this);
-                    throw exception;
+                    exception = new MessagingException(message, String.format(
+                        "Client ID '%s' could not publish this message because either the topic or payload isn't set, or the payload could not be converted.",
+                        getClientId()));
                 }
-                final IMqttDeliveryToken token = mqttClient.publish(topic, payload,
-                    qualityOfService.getLevelIdentifier(), retained);
-                mqttClientEventPublisher.publishMessagePublishedEvent(getClientId(),
-                    token.getMessageId(), MqttHeaderHelper.getCorrelationIdHeaderValue(message),
-                    applicationEventPublisher, this);
             }
-            else
+            catch (MessagingException ex)
             {
-                final MessagingException exception = new MessagingException(message, String.format(
-                    "Client ID %s is disconnected. Could not send message.", getClientId()));
-                mqttClientEventPublisher.publishMessagePublishFailureEvent(getClientId(), exception,
-                    applicationEventPublisher, this);
+                exception = ex;
+            }
+            if (exception != null)
+            {
+                mqttClientMetrics.messagePublishFailed();
+                notifyPublishFailure(exception);
                 throw exception;
             }
+            if (isConflated(publishFuture))
+            {
+                conflate(publishFuture);
+            }
+            else
+            {
+                admit(publishFuture, true);
+            }
+            future = publishFuture;
         }
-        catch (MqttException ex)
+        else
         {
-            final MessagingException exception = new MessagingException(message,
-                String.format("Client ID %s encountered an issue and the message couldn't be sent.",
-                    getClientId()),
-                ex);
-            mqttClientEventPublisher.publishMessagePublishFailureEvent(getClientId(), exception,
-                applicationEventPublisher, this);
+            final MessagingException exception = new MessagingException(message, String.format(
+                "Client ID %s is disconnected. Could not send message.", getClientId()));
+            mqttClientMetrics.messagePublishFailed();
+            notifyPublishFailure(exception);
             throw exception;
         }
+        return future;
+    }
+
+    @Override
+    public MqttBatchPublishResult publishAll(final Collection<Message<?>> messages)
+    {
+        Assert.notNull(messages, "'messages' must be set!");
+        for (final Message<?> message : messages)
+        {
+            Assert.notNull(message, "'message' must be set!");
+        }
+        MessagingException batchException = null;
+        if (MqttClientConnectionType.SUBSCRIBER == connectionType)
+        {
+            batchException = new MessagingException(String.format(
+                "Client ID %s is setup as a SUBSCRIBER and could not publish this message.",
+                getClientId()));
+        }
+        else if (!mqttClient.isConnected()
+            && outboundSpool == null)
+        {
+            batchException = new MessagingException(String.format(
+                "Client ID %s is disconnected. Could not send message.", getClientId()));
+        }
+        final List<CompletableFuture<Integer>> results = new ArrayList<CompletableFuture<Integer>>(
+            messages.size());
+        int acceptedCount = 0;
+        if (batchException == null
+            && isSpooling())
+        {
+            acceptedCount = spoolBatch(messages, results);
+        }
+        else if (batchException == null)
+        {
+            acceptedCount = publishBatch(messages, results);
+        }
+        else
+        {
+            for (int i = 0; i < messages.size(); i++)
+            {
+                final CompletableFuture<Integer> future = new CompletableFuture<Integer>();
+                future.completeExceptionally(batchException);
+                results.add(future);
+                mqttClientMetrics.messagePublishFailed();
+            }
+            notifyPublishFailure(batchException);
+        }
+        return new MqttBatchPublishResult(results, acceptedCount);
+    }
+
+    /**
+     * Returns the number of out-going messages that are in-flight, meaning handed to the MQTT
+     * Client and not yet reported as delivered or failed.
+     * <p>
+     * This is tracked whether or not an in-flight window is configured through
+     * {@link com.github.christophersmith.summer.mqtt.core.MqttClientConfiguration#setMaxInFlightMessages(int)}.
+     * 
+     * @return the number of in-flight messages
+     */
+    public int getInFlightCount()
+    {
+        return inFlightWindow.getInFlightCount();
+    }
+
+    /**
+     * Returns the number of out-going messages that are waiting for a free slot in the in-flight
+     * window.
+     * 
+     * @return the number of pending messages
+     */
+    public int getPendingCount()
+    {
+        return inFlightWindow.getPendingCount();
+    }
+
+    /**
+     * Returns the {@link LatencyHistogram} of the time, in nanoseconds, between handing a message
+     * with the {@code qualityOfService} to the MQTT Client and its delivery confirmation.
+     * <p>
+     * For QoS 1 and QoS 2 this is the time the Broker takes to acknowledge the message, while for
+     * QoS 0 it's only the time the MQTT Client takes to write it out. The histogram can be read
+     * through {@link LatencyHistogram#snapshot()}, and reset between reads through
+     * {@link LatencyHistogram#snapshotAndReset()}.
+     * 
+     * @param qualityOfService the {@link MqttQualityOfService} of the messages
+     * @return the {@link LatencyHistogram} for the {@code qualityOfService}
+     * @throws IllegalArgumentException if the {@code qualityOfService} is null
+     */
+    public LatencyHistogram getDeliveryLatencyHistogram(
+        final MqttQualityOfService qualityOfService)
+    {
+        Assert.notNull(qualityOfService, "'qualityOfService' must be set!");
+        return deliveryLatencies[qualityOfService.getLevelIdentifier()];
+    }
+
+    /**
+     * Registers the {@link MqttClientMetrics#GAUGE_IN_FLIGHT},
+     * {@link MqttClientMetrics#GAUGE_PENDING} and {@link MqttClientMetrics#GAUGE_SUBSCRIPTIONS}
+     * gauges of this instance.
+     */
+    @Override
+    protected void registerGauges(final MqttClientMetrics mqttClientMetrics)
+    {
+        mqttClientMetrics.registerGauge(MqttClientMetrics.GAUGE_IN_FLIGHT, inFlightGauge);
+        mqttClientMetrics.registerGauge(MqttClientMetrics.GAUGE_PENDING, pendingGauge);
+        mqttClientMetrics.registerGauge(MqttClientMetrics.GAUGE_SUBSCRIPTIONS, subscriptionsGauge);
+        mqttClientMetrics.registerGauge(MqttClientMetrics.GAUGE_INBOUND_QUEUED, inboundQueuedGauge);
+    }
+
+    @Override
+    protected void unregisterGauges(final MqttClientMetrics mqttClientMetrics)
+    {
+        mqttClientMetrics.unregisterGauge(MqttClientMetrics.GAUGE_IN_FLIGHT, inFlightGauge);
+        mqttClientMetrics.unregisterGauge(MqttClientMetrics.GAUGE_PENDING, pendingGauge);
+        mqttClientMetrics.unregisterGauge(MqttClientMetrics.GAUGE_SUBSCRIPTIONS,
+            subscriptionsGauge);
+        mqttClientMetrics.unregisterGauge(MqttClientMetrics.GAUGE_INBOUND_QUEUED,
+            inboundQueuedGauge);
+    }
+
+    /**
+     * Returns the number of out-going messages that were delayed to stay within a rate limit.
+     * 
+     * @return the number of delayed messages
+     * @see com.github.christophersmith.summer.mqtt.core.MqttRateLimitBehavior#WAIT
+     */
+    public long getRateLimitWaitedCount()
+    {
+        return rateLimiter.getWaitedCount();
+    }
+
+    /**
+     * Returns the number of out-going messages that failed because they exceeded a rate limit.
+     * 
+     * @return the number of rejected messages
+     */
+    public long getRateLimitRejectedCount()
+    {
+        return rateLimiter.getRejectedCount();
+    }
+
+    /**
+     * Returns the number of out-going QoS 0 messages that were dropped because they exceeded a
+     * rate limit.
+     * 
+     * @return the number of dropped messages
+     * @see com.github.christophersmith.summer.mqtt.core.MqttRateLimitBehavior#DROP_QOS_0
+     */
+    public long getRateLimitDroppedCount()
+    {
+        return rateLimiter.getDroppedCount();
+    }
+
+    /**
+     * Returns the number of conflated messages waiting to be published, which is at most one per
+     * Topic.
+     * 
+     * @return the number of conflated messages
+     * @see com.github.christophersmith.summer.mqtt.core.MqttClientConfiguration#addConflatedTopicFilter(String)
+     */
+    public int getConflatedPendingCount()
+    {
+        return conflatedMessages.size();
+    }
+
+    /**
+     * Returns the number of conflated messages that were replaced by a newer message for the same
+     * Topic before they could be published.
+     * 
+     * @return the number of replaced messages
+     */
+    public long getConflatedCount()
+    {
+        return conflatedCount.get();
+    }
+
+    /**
+     * Returns the number of in-bound messages waiting for an in-bound dispatch thread.
+     * <p>
+     * This is always 0 when
+     * {@link com.github.christophersmith.summer.mqtt.core.MqttClientConfiguration#getInboundDispatchThreads()}
+     * is 0.
+     * 
+     * @return the number of queued in-bound messages
+     */
+    public int getInboundQueuedCount()
+    {
+        final InboundDispatcher dispatcher = inboundDispatcher;
+        return dispatcher == null ? 0 : dispatcher.getQueuedCount();
+    }
+
+    /**
+     * Returns the number of in-bound messages waiting for each in-bound dispatch thread, in thread
+     * order.
+     * 
+     * @return the queue depth of each in-bound dispatch thread, or an empty array if no thread was
+     *         started
+     */
+    public int[] getInboundQueueDepths()
+    {
+        final InboundDispatcher dispatcher = inboundDispatcher;
+        return dispatcher == null ? new int[0] : dispatcher.getQueueDepths();
+    }
+
+    /**
+     * Returns the number of in-bound messages that were dropped because the queue of their
+     * in-bound dispatch thread was full.
+     * 
+     * @return the number of dropped in-bound messages
+     */
+    public long getInboundDroppedCount()
+    {
+        final InboundDispatcher dispatcher = inboundDispatcher;
+        return dispatcher == null ? 0 : dispatcher.getDroppedCount();
+    }
+
+    /**
+     * Returns the number of in-coming QoS 1 messages that were dropped as duplicates.
+     * 
+     * @return the number of duplicate messages
+     * @see com.github.christophersmith.summer.mqtt.core.MqttClientConfiguration#setDuplicateKeyExtractor(MqttDuplicateKeyExtractor)
+     */
+    public long getDuplicateCount()
+    {
+        return duplicateCount.sum();
+    }
+
+    /**
+     * Returns the {@link MappedOutboundSpool} used to hold out-going messages while the MQTT Client
+     * is disconnected.
+     * <p>
+     * The default value is {@literal null}.
+     * 
+     * @return a {@link MappedOutboundSpool}, or null if undefined
+     */
+    public MappedOutboundSpool getOutboundSpool()
+    {
+        return outboundSpool;
+    }
+
+    /**
+     * Sets the {@link MappedOutboundSpool} used to hold out-going messages while the MQTT Client is
+     * disconnected, or null to fail those messages instead.
+     * <p>
+     * While the spool holds any messages, new messages are appended to it too, so the order in
+     * which messages are published is kept. Once the MQTT Client is connected, the spooled
+     * messages are replayed in order on a background thread, at the rate set on the spool. The
+     * spool is closed when this instance is closed.
+     * 
+     * @param outboundSpool the {@link MappedOutboundSpool}, or null if undefined
+     * @throws IllegalStateException if the Connection Type is
+     *             {@link MqttClientConnectionType#SUBSCRIBER}
+     */
+    public void setOutboundSpool(final MappedOutboundSpool outboundSpool)
+    {
+        if (MqttClientConnectionType.SUBSCRIBER == connectionType)
+        {
+            throw new IllegalStateException(String.format(
+                "Client ID %s is setup as a SUBSCRIBER and cannot publish messages to the Broker!",
+                getClientId()));
+        }
+        reentrantLock.lock();
+        try
+        {
+            if (outboundSpool != null
+                && spoolReplayExecutor == null)
+            {
+                spoolReplayExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                    final Thread thread = new Thread(runnable,
+                        String.format("%s-spool-replay", getClientId()));
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            this.outboundSpool = outboundSpool;
+        }
+        finally
+        {
+            reentrantLock.unlock();
+        }
+        scheduleSpoolReplay();
     }
 
     @Override
@@ -178,6 +590,7 @@ public final class PahoAsyncMqttClientService extends AbstractMqttClientService
         reentrantLock.lock();
         try
         {
+            final boolean reconnect = firstStartOccurred;
             if (!mqttClient.isConnected())
             {
                 mqttClient.connect(mqttConnectOptions, null, this)
@@ -200,12 +613,12 @@ public final class PahoAsyncMqttClientService extends AbstractMqttClientService
                     }
                 }
             }
+            updateSubscribedCount();
             if (mqttClient.isConnected())
             {
-                mqttClientEventPublisher.publishConnectedEvent(getClientId(),
-                    getConnectedServerUri(),
-                    TopicSubscriptionHelper.getSubscribedTopicFilters(topicSubscriptions),
-                    applicationEventPublisher, this);
+                mqttClientMetrics.connected(reconnect);
+                notifyConnected(getConnectedServerUri(),
+                    TopicSubscriptionHelper.getSubscribedTopicFilters(topicSubscriptions));
                 publishConnectionStatus(true);
                 LOG.info(String.format(
                     "Client ID %s is connected to Broker %s with the topic(s): [%s]", getClientId(),
@@ -218,6 +631,7 @@ public final class PahoAsyncMqttClientService extends AbstractMqttClientService
                 {
                     reconnectService.connected(true);
                 }
+                scheduleSpoolReplay();
             }
         }
         catch (MqttException ex)
@@ -264,7 +678,7 @@ public final class PahoAsyncMqttClientService extends AbstractMqttClientService
             if (topicSubscription != null
                 && topicSubscription.getQualityOfService() != qualityOfService)
             {
-                unsubscribe(topicFilter);
+                removeTopicSubscription(topicSubscription);
                 topicSubscription = null;
             }
             if (topicSubscription == null)
@@ -281,6 +695,7 @@ public final class PahoAsyncMqttClientService extends AbstractMqttClientService
                             .waitForCompletion(
                                 mqttClientConfiguration.getSubscribeWaitMilliseconds());
                         topicSubscription.setSubscribed(true);
+                        updateSubscribedCount();
                     }
                     catch (MqttException ex)
                     {
@@ -326,24 +741,9 @@ public final class PahoAsyncMqttClientService extends AbstractMqttClientService
                 .findByTopicFilter(topicFilter, topicSubscriptions);
             if (topicSubscription != null)
             {
-                if (mqttClient.isConnected()
-                    && topicSubscription.isSubscribed())
-                {
-                    try
-                    {
-                        mqttClient.unsubscribe(topicSubscription.getTopicFilter())
-                            .waitForCompletion(mqttClientConfiguration
-                                .getTopicUnsubscribeWaitTimeoutMilliseconds());
-                    }
-                    catch (MqttException ex)
-                    {
-                        LOG.error(String.format(
-                            "Client ID %s could not unsubscribe to the Topic Filter [%s].",
-                            getClientId(), topicFilter), ex);
-                    }
-                }
-                topicSubscriptions.remove(topicSubscription);
+                removeTopicSubscription(topicSubscription);
             }
+            topicRouter.removeAll(topicFilter);
         }
         finally
         {
@@ -351,6 +751,28 @@ public final class PahoAsyncMqttClientService extends AbstractMqttClientService
         }
     }
 
+    private void removeTopicSubscription(final TopicSubscription topicSubscription)
+    {
+        if (mqttClient.isConnected()
+            && topicSubscription.isSubscribed())
+        {
+            try
+            {
+                mqttClient.unsubscribe(topicSubscription.getTopicFilter())
+                    .waitForCompletion(mqttClientConfiguration
+                        .getTopicUnsubscribeWaitTimeoutMilliseconds());
+            }
+            catch (MqttException ex)
+            {
+                LOG.error(String.format(
+                    "Client ID %s could not unsubscribe to the Topic Filter [%s].", getClientId(),
+                    topicSubscription.getTopicFilter()), ex);
+            }
+        }
+        topicSubscriptions.remove(topicSubscription);
+        updateSubscribedCount();
+    }
+
     @Override
     public void stop()
     {
@@ -364,6 +786,7 @@ public final class PahoAsyncMqttClientService extends AbstractMqttClientService
         try
         {
             TopicSubscriptionHelper.markUnsubscribed(topicSubscriptions);
+            updateSubscribedCount();
             if (mqttClient.isConnected())
             {
                 publishConnectionStatus(false);
@@ -371,8 +794,7 @@ public final class PahoAsyncMqttClientService extends AbstractMqttClientService
                 {
                     mqttClient.disconnect()
                         .waitForCompletion(mqttClientConfiguration.getDisconnectWaitMilliseconds());
-                    mqttClientEventPublisher.publishDisconnectedEvent(getClientId(),
-                        applicationEventPublisher, this);
+                    notifyDisconnected();
                     LOG.info(String.format("Client ID %s is stopped.", getClientId()));
                 }
                 catch (MqttException ex)
@@ -384,8 +806,7 @@ public final class PahoAsyncMqttClientService extends AbstractMqttClientService
                             mqttClient.disconnectForcibly(
                                 mqttClientConfiguration.getDisconnectWaitMilliseconds());
                         }
-                        mqttClientEventPublisher.publishDisconnectedEvent(getClientId(),
-                            applicationEventPublisher, this);
+                        notifyDisconnected();
                         LOG.info(String.format("Client ID %s is stopped.", getClientId()));
                     }
                     catch (MqttException e)
@@ -409,6 +830,53 @@ public final class PahoAsyncMqttClientService extends AbstractMqttClientService
         try
         {
             stop();
+            if (spoolReplayExecutor != null)
+            {
+                spoolReplayExecutor.shutdownNow();
+            }
+            if (conflationExecutor.get() != null)
+            {
+                conflationExecutor.get().shutdownNow();
+            }
+            for (final String topic : conflatedMessages.keySet())
+            {
+                final PublishFuture future = conflatedMessages.remove(topic);
+                if (future != null)
+                {
+                    failPublish(future, String.format(
+                        "Client ID %s is closed. Could not send the conflated message.",
+                        getClientId()), null, true);
+                }
+            }
+            for (final PublishFuture future : inFlightWindow.removePending())
+            {
+                failPublish(future, String.format(
+                    "Client ID %s is closed. Could not send the pending message.", getClientId()),
+                    null, true);
+            }
+            for (final Long position : spooledFutures.keySet())
+            {
+                final CompletableFuture<Integer> future = spooledFutures.remove(position);
+                if (future != null)
+                {
+                    // the message isn't lost, as a spool opened on the same directory replays it
+                    future.completeExceptionally(new MessagingException(String.format(
+                        "Client ID %s is closed. The spooled message was not sent, and stays in the outbound spool.",
+                        getClientId())));
+                }
+            }
+            if (outboundSpool != null)
+            {
+                try
+                {
+                    outboundSpool.close();
+                }
+                catch (RuntimeException ex)
+                {
+                    LOG.error(String.format("Client ID %s could not close the Outbound Spool.",
+                        getClientId()), ex);
+                }
+            }
             mqttClient.close();
             LOG.info(
                 String.format("Client ID %s is closed and cannot be restarted.", getClientId()));
@@ -421,7 +889,39 @@ public final class PahoAsyncMqttClientService extends AbstractMqttClientService
         }
         finally
         {
-            reentrantLock.unlock();
+            // the in-bound threads and the gauges are released even if the MQTT Client failed to
+            // close
+            try
+            {
+                closeInbound();
+            }
+            finally
+            {
+                try
+                {
+                    unregisterGauges(mqttClientMetrics);
+                    mqttClientEventPublisher.close();
+                }
+                finally
+                {
+                    reentrantLock.unlock();
+                }
+            }
+        }
+    }
+
+    private void closeInbound()
+    {
+        if (inboundDispatcher != null)
+        {
+            // the workers are stopped first, so none adds to a batch after the last flush
+            inboundDispatcher.shutdown();
+            awaitInboundDispatcher();
+        }
+        inboundBatchers.values().forEach(InboundBatcher::flush);
+        if (batchExecutor.get() != null)
+        {
+            batchExecutor.get().shutdownNow();
         }
     }
 
@@ -440,49 +940,202 @@ public final class PahoAsyncMqttClientService extends AbstractMqttClientService
         try
         {
             TopicSubscriptionHelper.markUnsubscribed(topicSubscriptions);
+            updateSubscribedCount();
         }
         finally
         {
             reentrantLock.unlock();
         }
-        mqttClientEventPublisher.publishConnectionLostEvent(getClientId(), isAutoReconnect(),
-            applicationEventPublisher, this);
+        mqttClientMetrics.connectionLost();
+        notifyConnectionLost(isAutoReconnect());
         scheduleReconnect();
     }
 
     /**
      * Overridden from the {@link MqttCallbackExtended#deliveryComplete(IMqttDeliveryToken)} method.
      * <p>
-     * Attempts to publish a {@link MqttMessageDeliveredEvent} message.
+     * Attempts to publish a {@link MqttMessageDeliveredEvent} message, with the Correlation ID and
+     * delivery latency of the message when it was published through this instance. The latency is
+     * also recorded in the {@link #getDeliveryLatencyHistogram(MqttQualityOfService)} histogram.
      */
     @Override
     public void deliveryComplete(final IMqttDeliveryToken token)
     {
-        mqttClientEventPublisher.publishMessageDeliveredEvent(getClientId(), token.getMessageId(),
-            applicationEventPublisher, this);
+        String correlationId = null;
+        long latencyNanoseconds = -1;
+        if (token.getUserContext() instanceof PublishFuture)
+        {
+            final PublishFuture future = (PublishFuture) token.getUserContext();
+            correlationId = future.correlationId;
+            latencyNanoseconds = System.nanoTime() - future.submittedNanoseconds;
+            deliveryLatencies[future.levelIdentifier].record(latencyNanoseconds);
+            mqttClientMetrics.messageDelivered(
+                MqttQualityOfService.findByLevelIdentifier(future.levelIdentifier),
+                latencyNanoseconds);
+        }
+        notifyDelivered(token.getMessageId(), correlationId, latencyNanoseconds);
     }
 
     /**
      * Overridden from the {@link MqttCallbackExtended#messageArrived(String, MqttMessage)} method.
      * <p>
      * If the {@code inboundMessageChannel} is not null, the received message is sent to this
-     * {@link MessageChannel}.
+     * {@link MessageChannel}, unless it's a QoS 1 message that was already received and a
+     * {@link MqttDuplicateKeyExtractor} is set.
      */
     @Override
     public void messageArrived(final String topic, final MqttMessage message) throws Exception
     {
         try
         {
-            if (inboundMessageChannel != null)
+            mqttClientMetrics.messageReceived(
+                MqttQualityOfService.findByLevelIdentifier(message.getQos()),
+                message.getPayload().length);
+            if ((inboundMessageChannel != null
+                || !topicRouter.isEmpty())
+                && !isDuplicate(topic, message))
             {
-                inboundMessageChannel.send(MessageBuilder.withPayload(message.getPayload().clone())
-                    .setHeader(MqttHeaderHelper.TOPIC, topic)
-                    .setHeader(MqttHeaderHelper.ID, message.getId())
-                    .setHeader(MqttHeaderHelper.QOS,
-                        MqttQualityOfService.findByLevelIdentifier(message.getQos()))
-                    .setHeader(MqttHeaderHelper.RETAINED, message.isRetained())
-                    .setHeader(MqttHeaderHelper.DUPLICATE, message.isDuplicate()).build());
-            }
+                if (mqttClientConfiguration.getInboundDispatchThreads() > 0)
+                {
+                    getInboundDispatcher().dispatch(topic, message,
+                        mqttClientConfiguration.getInboundOverflowStrategy());
+                }
+                else
+                {
+                    sendInbound(topic, message);
+                }
+            }
+        }
+        catch (Exception | Error ex)
+        {
+            // an exception thrown back to the MQTT Client would close the connection
+            LOG.error(String.format(
+                "Client ID %s could not send the message to the Inbound Channel. Topic: %s, Message: %s",
+                getClientId(), topic, message.toString()), ex);
+        }
+    }
+
+    private boolean isDuplicate(final String topic, final MqttMessage message)
+    {
+        boolean duplicate = false;
+        final MqttDuplicateKeyExtractor extractor = mqttClientConfiguration
+            .getDuplicateKeyExtractor();
+        if (extractor != null
+            && message.getQos() == MqttQualityOfService.QOS_1.getLevelIdentifier())
+        {
+            // only the MQTT Client's callback thread creates the cache
+            if (duplicateCache == null)
+            {
+                duplicateCache = new DuplicateCache(
+                    mqttClientConfiguration.getDuplicateCacheCapacity(),
+                    mqttClientConfiguration.getDuplicateExpiryMilliseconds());
+            }
+            try
+            {
+                final long key = extractor.extractKey(topic, message.getId(),
+                    message.getPayload());
+                if (MqttDuplicateKeyExtractor.MESSAGE_ID == extractor
+                    && !message.isDuplicate())
+                {
+                    // the Broker reuses a Message ID once it's acknowledged, so only a redelivery
+                    // is looked up, while a first delivery is recorded for the redeliveries that
+                    // follow
+                    duplicateCache.put(key);
+                }
+                else
+                {
+                    duplicate = !duplicateCache.add(key);
+                }
+            }
+            catch (RuntimeException ex)
+            {
+                LOG.warn(String.format(
+                    "Client ID %s could not extract the duplicate key of the message from Topic %s, and sent it on. Message ID: %d",
+                    getClientId(), topic, message.getId()), ex);
+            }
+            if (duplicate)
+            {
+                duplicateCount.increment();
+                LOG.debug(String.format(
+                    "Client ID %s dropped a duplicate message from Topic %s. Message ID: %d",
+                    getClientId(), topic, message.getId()));
+            }
+        }
+        return duplicate;
+    }
+
+    private void awaitInboundDispatcher()
+    {
+        try
+        {
+            if (!inboundDispatcher
+                .awaitTermination(mqttClientConfiguration.getDisconnectWaitMilliseconds()))
+            {
+                LOG.warn(String.format(
+                    "Client ID %s closed before its in-bound dispatch threads finished. Messages they still hand over may not be sent.",
+                    getClientId()));
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private InboundDispatcher getInboundDispatcher()
+    {
+        // only the MQTT Client's callback thread creates the dispatcher
+        if (inboundDispatcher == null)
+        {
+            inboundDispatcher = new InboundDispatcher(getClientId(),
+                mqttClientConfiguration.getInboundDispatchThreads(),
+                mqttClientConfiguration.getInboundQueueCapacity(), this::sendInbound);
+        }
+        return inboundDispatcher;
+    }
+
+    private void sendInbound(final String topic, final MqttMessage message)
+    {
+        try
+        {
+            byte[] payload = message.getPayload();
+            MqttCompression compression = mqttClientConfiguration.isInboundDecompression()
+                ? MqttPayloadCompression.getCompression(payload)
+                : MqttCompression.NONE;
+            if (MqttCompression.NONE == compression)
+            {
+                compression = null;
+            }
+            else
+            {
+                try
+                {
+                    payload = MqttPayloadCompression.decompress(payload,
+                        mqttClientConfiguration.getInboundDecompressionMaxBytes());
+                }
+                catch (IllegalArgumentException ex)
+                {
+                    compression = null;
+                    LOG.warn(String.format(
+                        "Client ID %s could not decompress the message from Topic %s, and sent it as received.",
+                        getClientId(), topic), ex);
+                }
+            }
+            final Message<Object> inboundMessage = new MqttInboundMessage<Object>(
+                getInboundPayload(payload, compression == null), topic, message.getId(),
+                MqttQualityOfService.findByLevelIdentifier(message.getQos()),
+                message.isRetained(), message.isDuplicate(), compression,
+                mqttClientConfiguration.getInboundMessageIdGeneration(), inboundIdGenerator);
+            final InboundBatcher batcher = getInboundBatcher(topic);
+            if (batcher != null)
+            {
+                batcher.add(inboundMessage, payload.length);
+            }
+            else if (topicRouter.route(topic, channel -> sendRouted(channel, inboundMessage)) == 0
+                && inboundMessageChannel != null)
+            {
+                inboundMessageChannel.send(inboundMessage);
+            }
         }
         catch (Exception | Error ex)
         {
@@ -492,6 +1145,91 @@ public final class PahoAsyncMqttClientService extends AbstractMqttClientService
         }
     }
 
+    private InboundBatcher getInboundBatcher(final String topic)
+    {
+        InboundBatcher batcher = null;
+        for (final String topicFilter : mqttClientConfiguration.getBatchedTopicFilters())
+        {
+            if (batcher == null
+                && TopicFilterHelper.matches(topicFilter, topic))
+            {
+                batcher = inboundBatchers.computeIfAbsent(topicFilter,
+                    key -> new InboundBatcher(key, mqttClientConfiguration, getBatchExecutor(),
+                        this::sendBatch));
+            }
+        }
+        return batcher;
+    }
+
+    private ScheduledExecutorService getBatchExecutor()
+    {
+        ScheduledExecutorService executor = batchExecutor.get();
+        if (executor == null)
+        {
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable,
+                    String.format("%s-batch", getClientId()));
+                thread.setDaemon(true);
+                return thread;
+            });
+            if (!batchExecutor.compareAndSet(null, executor))
+            {
+                executor.shutdown();
+                executor = batchExecutor.get();
+            }
+        }
+        return executor;
+    }
+
+    private void sendBatch(final Message<?> batch)
+    {
+        try
+        {
+            final MessageChannel channel = inboundMessageChannel;
+            if (channel != null)
+            {
+                channel.send(batch);
+            }
+        }
+        catch (Exception | Error ex)
+        {
+            LOG.error(String.format(
+                "Client ID %s could not send the batch to the Inbound Channel. Topic Filter: %s",
+                getClientId(), batch.getHeaders().get(MqttHeaderHelper.TOPIC_FILTER)), ex);
+        }
+    }
+
+    private void sendRouted(final MessageChannel channel, final Message<?> message)
+    {
+        try
+        {
+            channel.send(message);
+        }
+        catch (Exception | Error ex)
+        {
+            LOG.error(String.format(
+                "Client ID %s could not send the message to the Channel of a Topic Filter. Topic: %s",
+                getClientId(), MqttHeaderHelper.getTopicHeaderValue(message)), ex);
+        }
+    }
+
+    private Object getInboundPayload(final byte[] payload, final boolean received)
+    {
+        Object inboundPayload = payload;
+        final MqttInboundPayloadMode mode = mqttClientConfiguration.getInboundPayloadMode();
+        if (MqttInboundPayloadMode.READ_ONLY_BUFFER == mode)
+        {
+            inboundPayload = ByteBuffer.wrap(payload).asReadOnlyBuffer();
+        }
+        else if (MqttInboundPayloadMode.COPY == mode
+            && received)
+        {
+            // a decompressed payload is already a copy
+            inboundPayload = payload.clone();
+        }
+        return inboundPayload;
+    }
+
     /**
      * Returns the {@link MqttConnectOptions} that will be used for this instance.
      * 
@@ -550,8 +1288,7 @@ public final class PahoAsyncMqttClientService extends AbstractMqttClientService
                     final IMqttDeliveryToken token = mqttClient.publish(topic, payload,
                         qualityOfService.getLevelIdentifier(), mqttClientConfiguration
                             .getMqttClientConnectionStatusPublisher().isStatusMessageRetained());
-                    mqttClientEventPublisher.publishMessagePublishedEvent(getClientId(),
-                        token.getMessageId(), null, applicationEventPublisher, this);
+                    notifyPublished(token.getMessageId(), null);
                 }
                 catch (MqttException ex)
                 {
@@ -563,6 +1300,710 @@ public final class PahoAsyncMqttClientService extends AbstractMqttClientService
         }
     }
 
+    private int publishBatch(final Collection<Message<?>> messages,
+        final List<CompletableFuture<Integer>> results)
+    {
+        final int size = messages.size();
+        // resolve every topic, payload and header first, so the PUBLISH packets go out back to back
+        final int defaultLevelIdentifier = mqttClientConfiguration.getDefaultQualityOfService()
+            .getLevelIdentifier();
+        final MqttPayloadConverterRegistry payloadConverterRegistry = mqttClientConfiguration
+            .getPayloadConverterRegistry();
+        final PublishFuture[] futures = new PublishFuture[size];
+        int index = 0;
+        for (final Message<?> message : messages)
+        {
+            MessagingException exception = null;
+            try
+            {
+                futures[index] = createPublishFuture(message, defaultLevelIdentifier,
+                    payloadConverterRegistry);
+                if (futures[index] == null)
+                {
+                    exception = new MessagingException(message, String.format(
+                        "Client ID '%s' could not publish this message because either the topic or payload isn't set, or the payload could not be converted.",
+                        getClientId()));
+                }
+            }
+            catch (MessagingException ex)
+            {
+                // the rest of the batch is still published
+                exception = ex;
+            }
+            if (exception != null)
+            {
+                final CompletableFuture<Integer> future = new CompletableFuture<Integer>();
+                future.completeExceptionally(exception);
+                results.add(future);
+                mqttClientMetrics.messagePublishFailed();
+            }
+            else
+            {
+                results.add(toCallerFuture(futures[index]));
+            }
+            index++;
+        }
+        final int[] messageIdentifiers = new int[size];
+        final String[] correlationIds = new String[size];
+        int submittedCount = 0;
+        int acceptedCount = 0;
+        for (final PublishFuture future : futures)
+        {
+            if (future != null
+                && isConflated(future))
+            {
+                // conflated messages publish their own event once flushed
+                conflate(future);
+                acceptedCount++;
+            }
+            else if (future != null)
+            {
+                try
+                {
+                    final IMqttDeliveryToken token = admit(future, false);
+                    if (token != null)
+                    {
+                        messageIdentifiers[submittedCount] = token.getMessageId();
+                        correlationIds[submittedCount] = future.correlationId;
+                        submittedCount++;
+                        acceptedCount++;
+                    }
+                    else if (!future.isCompletedExceptionally())
+                    {
+                        // queued by the in-flight window, rather than dropped by the rate limit
+                        acceptedCount++;
+                    }
+                }
+                catch (MessagingException ex)
+                {
+                    // the future is already completed exceptionally, and counted as failed below
+                }
+            }
+        }
+        // messages that were queued by the in-flight window publish their own event once sent
+        notifyBatchPublished(Arrays.copyOf(messageIdentifiers, submittedCount),
+            Arrays.copyOf(correlationIds, submittedCount), size - acceptedCount);
+        return acceptedCount;
+    }
+
+    private boolean isConflated(final PublishFuture future)
+    {
+        boolean conflated = false;
+        if (future.levelIdentifier == MqttQualityOfService.QOS_0.getLevelIdentifier())
+        {
+            for (final String topicFilter : mqttClientConfiguration.getConflatedTopicFilters())
+            {
+                if (TopicFilterHelper.matches(topicFilter, future.topic))
+                {
+                    conflated = true;
+                    break;
+                }
+            }
+        }
+        return conflated;
+    }
+
+    /**
+     * Holds the {@code future} as the latest message for its Topic, replacing and failing any
+     * older message for that Topic that is still waiting, and schedules a flush.
+     */
+    private void conflate(final PublishFuture future)
+    {
+        final PublishFuture replaced = conflatedMessages.put(future.topic, future);
+        if (replaced != null)
+        {
+            conflatedCount.incrementAndGet();
+            replaced.completeExceptionally(new MessagingException(replaced.message, String.format(
+                "Client ID %s replaced the conflated message for Topic %s with a newer message.",
+                getClientId(), replaced.topic)));
+        }
+        scheduleConflationFlush();
+    }
+
+    /**
+     * Flushes the conflated messages straight away, as a slot in the in-flight window was freed.
+     */
+    private void triggerConflationFlush()
+    {
+        if (!conflatedMessages.isEmpty()
+            && inFlightWindow.getPendingCount() == 0
+            && conflationTriggered.compareAndSet(false, true))
+        {
+            try
+            {
+                getConflationExecutor().execute(() -> {
+                    conflationTriggered.set(false);
+                    flushConflated();
+                });
+            }
+            catch (RuntimeException ex)
+            {
+                conflationTriggered.set(false);
+            }
+        }
+    }
+
+    private void scheduleConflationFlush()
+    {
+        if (!conflatedMessages.isEmpty()
+            && conflationScheduled.compareAndSet(false, true))
+        {
+            try
+            {
+                getConflationExecutor().schedule(() -> {
+                    conflationScheduled.set(false);
+                    flushConflated();
+                }, mqttClientConfiguration.getConflationIntervalMilliseconds(),
+                    TimeUnit.MILLISECONDS);
+            }
+            catch (RuntimeException ex)
+            {
+                conflationScheduled.set(false);
+                LOG.warn(String.format("Client ID %s could not schedule the conflated messages.",
+                    getClientId()), ex);
+            }
+        }
+    }
+
+    private ScheduledExecutorService getConflationExecutor()
+    {
+        // not guarded by the reentrantLock, as this is reached from the Paho callback thread
+        ScheduledExecutorService executor = conflationExecutor.get();
+        if (executor == null)
+        {
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable,
+                    String.format("%s-conflation", getClientId()));
+                thread.setDaemon(true);
+                return thread;
+            });
+            if (!conflationExecutor.compareAndSet(null, executor))
+            {
+                executor.shutdown();
+                executor = conflationExecutor.get();
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Hands the conflated messages to the MQTT Client while the in-flight window has free slots.
+     * Messages that don't fit wait for the next interval, or for a slot to be freed, and can still
+     * be replaced in the meantime.
+     */
+    private void flushConflated()
+    {
+        final int maximumInFlight = getMaximumInFlight();
+        for (final String topic : conflatedMessages.keySet())
+        {
+            if (mqttClient.isConnected()
+                && (maximumInFlight <= 0
+                    || (inFlightWindow.getInFlightCount() < maximumInFlight
+                        && inFlightWindow.getPendingCount() == 0)))
+            {
+                final PublishFuture future = conflatedMessages.remove(topic);
+                if (future != null)
+                {
+                    try
+                    {
+                        admit(future, true);
+                    }
+                    catch (MessagingException ex)
+                    {
+                        // the future is already completed exceptionally
+                    }
+                }
+            }
+        }
+        scheduleConflationFlush();
+    }
+
+    private int spoolBatch(final Collection<Message<?>> messages,
+        final List<CompletableFuture<Integer>> results)
+    {
+        int acceptedCount = 0;
+        for (final Message<?> message : messages)
+        {
+            CompletableFuture<Integer> future = null;
+            try
+            {
+                future = spool(message, true);
+                acceptedCount++;
+            }
+            catch (MessagingException ex)
+            {
+                future = new CompletableFuture<Integer>();
+                future.completeExceptionally(ex);
+            }
+            results.add(future);
+        }
+        // spooled messages publish their own event once replayed
+        notifyBatchPublished(new int[0], new String[0], messages.size() - acceptedCount);
+        scheduleSpoolReplay();
+        return acceptedCount;
+    }
+
+    private boolean isSpooling()
+    {
+        final MappedOutboundSpool spool = outboundSpool;
+        return spool != null
+            && (!mqttClient.isConnected()
+                || !spool.isEmpty());
+    }
+
+    /**
+     * Appends the {@code message} to the outbound spool.
+     * 
+     * @return a {@link CompletableFuture} that's completed once the message is replayed and
+     *         delivered, which is only tracked in memory if {@code tracked} is true
+     * @throws MessagingException if the message could not be spooled
+     */
+    private CompletableFuture<Integer> spool(final Message<?> message, final boolean tracked)
+        throws MessagingException
+    {
+        PublishFuture publishFuture = null;
+        MessagingException exception = null;
+        try
+        {
+            publishFuture = createPublishFuture(message,
+                mqttClientConfiguration.getDefaultQualityOfService().getLevelIdentifier(),
+                mqttClientConfiguration.getPayloadConverterRegistry());
+            if (publishFuture == null)
+            {
+                exception = new MessagingException(message, String.format(
+                    "Client ID '%s' could not publish this message because either the topic or payload isn't set, or the payload could not be converted.",
+                    getClientId()));
+            }
+        }
+        catch (MessagingException ex)
+        {
+            exception = ex;
+        }
+        final CompletableFuture<Integer> future = new CompletableFuture<Integer>();
+        if (exception == null)
+        {
+            try
+            {
+                final long position = outboundSpool.append(publishFuture.topic,
+                    publishFuture.payload, publishFuture.levelIdentifier, publishFuture.retained,
+                    publishFuture.correlationId);
+                if (position < 0)
+                {
+                    exception = new MessagingException(message, String.format(
+                        "Client ID %s is disconnected and the outbound spool is full. Could not send message.",
+                        getClientId()));
+                }
+                else if (tracked)
+                {
+                    spooledFutures.put(position, future);
+                }
+            }
+            catch (IOException | IllegalStateException ex)
+            {
+                exception = new MessagingException(message, String.format(
+                    "Client ID %s could not append the message to the outbound spool.",
+                    getClientId()), ex);
+            }
+        }
+        if (exception != null)
+        {
+            mqttClientMetrics.messagePublishFailed();
+            notifyPublishFailure(exception);
+            throw exception;
+        }
+        return future;
+    }
+
+    private void scheduleSpoolReplay()
+    {
+        final MappedOutboundSpool spool = outboundSpool;
+        if (spool != null
+            && mqttClient.isConnected()
+            && spoolReplaying.compareAndSet(false, true))
+        {
+            try
+            {
+                spoolReplayExecutor.execute(() -> replaySpool(spool));
+            }
+            catch (RuntimeException ex)
+            {
+                spoolReplaying.set(false);
+                LOG.warn(String.format("Client ID %s could not replay the outbound spool.",
+                    getClientId()), ex);
+            }
+        }
+    }
+
+    /**
+     * Hands the spooled messages to the MQTT Client in order, at the replay rate of the spool,
+     * until the spool is empty or the MQTT Client is disconnected. A message is only consumed
+     * from the spool once the in-flight window has taken it.
+     */
+    private void replaySpool(final MappedOutboundSpool spool)
+    {
+        try
+        {
+            final int messagesPerSecond = spool.getReplayMessagesPerSecond();
+            final long intervalNanoseconds = messagesPerSecond > 0
+                ? TimeUnit.SECONDS.toNanos(1) / messagesPerSecond
+                : 0;
+            long nextReplayNanoseconds = System.nanoTime();
+            SpooledMessage spooledMessage = spool.peek();
+            while (spooledMessage != null
+                && mqttClient.isConnected()
+                && !Thread.currentThread().isInterrupted())
+            {
+                final long waitNanoseconds = nextReplayNanoseconds - System.nanoTime();
+                if (waitNanoseconds > 0)
+                {
+                    LockSupport.parkNanos(waitNanoseconds);
+                }
+                final PublishFuture future = createPublishFuture(spooledMessage);
+                try
+                {
+                    // a retried message is only reported once it's sent or finally dropped
+                    final IMqttDeliveryToken token = admit(future, false, false);
+                    if (token != null)
+                    {
+                        notifyPublished(token.getMessageId(), future.correlationId);
+                    }
+                    else if (future.isCompletedExceptionally())
+                    {
+                        // dropped by the rate limit, which isn't retried
+                        future.exceptionally(throwable -> {
+                            mqttClientMetrics.messagePublishFailed();
+                            notifyPublishFailure((MessagingException) throwable);
+                            return null;
+                        });
+                    }
+                    spool.consume(spooledMessage);
+                    final CompletableFuture<Integer> spooledFuture = spooledFutures
+                        .remove(spooledMessage.getPosition());
+                    if (spooledFuture != null)
+                    {
+                        future.whenComplete((messageId, throwable) -> {
+                            if (throwable == null)
+                            {
+                                spooledFuture.complete(messageId);
+                            }
+                            else
+                            {
+                                spooledFuture.completeExceptionally(throwable);
+                            }
+                        });
+                    }
+                    nextReplayNanoseconds = Math.max(nextReplayNanoseconds, System.nanoTime())
+                        + intervalNanoseconds;
+                }
+                catch (MessagingException ex)
+                {
+                    if (isTransientFailure(ex))
+                    {
+                        // the message stays in the spool and is retried, or replayed after a
+                        // reconnect
+                        LockSupport.parkNanos(SPOOL_RETRY_NANOSECONDS);
+                    }
+                    else
+                    {
+                        // the message can never be sent, so it's consumed rather than blocking
+                        // the messages behind it
+                        LOG.warn(String.format(
+                            "Client ID %s dropped a spooled message for Topic %s that could not be sent.",
+                            getClientId(), spooledMessage.getTopic()), ex);
+                        mqttClientMetrics.messagePublishFailed();
+                        notifyPublishFailure(ex);
+                        spool.consume(spooledMessage);
+                        final CompletableFuture<Integer> spooledFuture = spooledFutures
+                            .remove(spooledMessage.getPosition());
+                        if (spooledFuture != null)
+                        {
+                            spooledFuture.completeExceptionally(ex);
+                        }
+                    }
+                }
+                spooledMessage = spool.peek();
+            }
+        }
+        catch (RuntimeException ex)
+        {
+            LOG.error(String.format("Client ID %s stopped replaying the outbound spool.",
+                getClientId()), ex);
+        }
+        finally
+        {
+            spoolReplaying.set(false);
+        }
+        if (!spool.isEmpty()
+            && !Thread.currentThread().isInterrupted())
+        {
+            // a message may have been appended after the last peek
+            scheduleSpoolReplay();
+        }
+    }
+
+    /**
+     * Returns whether the {@code exception} from {@link #admit(PublishFuture, boolean)} is expected
+     * to pass, as the MQTT Client is disconnected, the in-flight window is full or a rate limit is
+     * exceeded, rather than the MQTT Client rejecting the message itself.
+     */
+    private boolean isTransientFailure(final MessagingException exception)
+    {
+        final Throwable cause = exception.getCause();
+        boolean transientFailure = !mqttClient.isConnected()
+            || cause == null;
+        if (!transientFailure
+            && cause instanceof MqttException)
+        {
+            final int reasonCode = ((MqttException) cause).getReasonCode();
+            transientFailure = reasonCode == MqttException.REASON_CODE_CLIENT_NOT_CONNECTED
+                || reasonCode == MqttException.REASON_CODE_CLIENT_DISCONNECTING
+                || reasonCode == MqttException.REASON_CODE_CONNECTION_LOST
+                || reasonCode == MqttException.REASON_CODE_MAX_INFLIGHT
+                || reasonCode == MqttException.REASON_CODE_NO_MESSAGE_IDS_AVAILABLE;
+        }
+        return transientFailure;
+    }
+
+    private PublishFuture createPublishFuture(final SpooledMessage spooledMessage)
+    {
+        final MessageBuilder<byte[]> builder = MessageBuilder
+            .withPayload(spooledMessage.getPayload())
+            .setHeader(MqttHeaderHelper.TOPIC, spooledMessage.getTopic())
+            .setHeader(MqttHeaderHelper.QOS,
+                MqttQualityOfService.findByLevelIdentifier(spooledMessage.getLevelIdentifier()))
+            .setHeader(MqttHeaderHelper.RETAINED, spooledMessage.isRetained());
+        if (spooledMessage.getCorrelationId() != null)
+        {
+            builder.setHeader(MqttHeaderHelper.CORRELATION_ID, spooledMessage.getCorrelationId());
+        }
+        return new PublishFuture(builder.build(), spooledMessage.getTopic(),
+            spooledMessage.getPayload(), spooledMessage.getLevelIdentifier(),
+            spooledMessage.isRetained(), spooledMessage.getCorrelationId(),
+            PublishFuture.LOWEST_PRIORITY);
+    }
+
+    private PublishFuture createPublishFuture(final Message<?> message,
+        final int defaultLevelIdentifier,
+        final MqttPayloadConverterRegistry payloadConverterRegistry)
+    {
+        PublishFuture future = null;
+        final String topic = MqttHeaderHelper.getTopicHeaderValue(message);
+        byte[] payload = null;
+        try
+        {
+            payload = payloadConverterRegistry.convert(message.getPayload());
+        }
+        catch (RuntimeException ex)
+        {
+            throw new MessagingException(message, String.format(
+                "Client ID %s could not publish this message because the payload converter failed.",
+                getClientId()), ex);
+        }
+        if (!StringUtils.isEmpty(topic)
+            && payload != null)
+        {
+            future = new PublishFuture(message, topic,
+                MqttPayloadCompression.compress(payload, getCompression(message, topic)),
+                MqttHeaderHelper.getMqttQualityOfServiceHeaderValue(message, defaultLevelIdentifier)
+                    .getLevelIdentifier(),
+                MqttHeaderHelper.getRetainedHeaderValue(message),
+                MqttHeaderHelper.getCorrelationIdHeaderValue(message),
+                MqttHeaderHelper.getPriorityHeaderValue(message, PublishFuture.LOWEST_PRIORITY));
+        }
+        return future;
+    }
+
+    /**
+     * Returns the {@link MqttCompression} codec from the header of the {@code message}, or else
+     * from the first compressed Topic Filter that matches the {@code topic}.
+     */
+    private MqttCompression getCompression(final Message<?> message, final String topic)
+    {
+        MqttCompression compression = MqttHeaderHelper.getCompressionHeaderValue(message);
+        if (compression == null)
+        {
+            compression = MqttCompression.NONE;
+            for (final Map.Entry<String, MqttCompression> entry : mqttClientConfiguration
+                .getCompressedTopicFilters().entrySet())
+            {
+                if (TopicFilterHelper.matches(entry.getKey(), topic))
+                {
+                    compression = entry.getValue();
+                    break;
+                }
+            }
+        }
+        return compression;
+    }
+
+    /**
+     * Takes a permit from the rate limits and a slot in the in-flight window for the
+     * {@code future} and hands it to the MQTT Client, or queues it, depending on the
+     * {@link MqttRateLimitBehavior} and {@link MqttInFlightOverflowStrategy}.
+     * 
+     * @return the delivery token if the message was handed to the MQTT Client, or null if it was
+     *         queued or dropped, in which case a dropped {@code future} is already completed
+     *         exceptionally
+     * @throws MessagingException if the message was rejected or could not be sent, in which case
+     *             the {@code future} is already completed exceptionally
+     */
+    private IMqttDeliveryToken admit(final PublishFuture future, final boolean publishEvents)
+        throws MessagingException
+    {
+        return admit(future, publishEvents, true);
+    }
+
+    /**
+     * As {@link #admit(PublishFuture, boolean)}, but a failure to admit the {@code future} is only
+     * counted and published as an Event if {@code reportFailures} is true, so a caller that
+     * retries can report the final outcome itself.
+     */
+    private IMqttDeliveryToken admit(final PublishFuture future, final boolean publishEvents,
+        final boolean reportFailures)
+        throws MessagingException
+    {
+        IMqttDeliveryToken token = null;
+        RateLimiter.Permit permit = RateLimiter.Permit.REJECTED;
+        InFlightWindow.Admission admission = InFlightWindow.Admission.REJECTED;
+        try
+        {
+            permit = rateLimiter.acquire(future.topic, future.levelIdentifier,
+                mqttClientConfiguration);
+            if (RateLimiter.Permit.GRANTED == permit)
+            {
+                admission = inFlightWindow.acquire(future, getMaximumInFlight(),
+                    mqttClientConfiguration);
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+        if (RateLimiter.Permit.DROPPED == permit)
+        {
+            failPublish(future, String.format(
+                "Client ID %s dropped the QoS 0 message because it exceeds the rate limit.",
+                getClientId()), null, publishEvents, reportFailures);
+        }
+        else if (RateLimiter.Permit.REJECTED == permit)
+        {
+            throw failPublish(future, String.format(
+                "Client ID %s could not publish the message because it exceeds the rate limit.",
+                getClientId()), null, publishEvents, reportFailures);
+        }
+        else if (InFlightWindow.Admission.SUBMIT == admission)
+        {
+            try
+            {
+                token = submit(future, publishEvents);
+            }
+            catch (MqttException | RuntimeException ex)
+            {
+                releaseInFlightSlot();
+                throw failPublish(future,
+                    String.format(
+                        "Client ID %s encountered an issue and the message couldn't be sent.",
+                        getClientId()),
+                    ex, publishEvents, reportFailures);
+            }
+        }
+        else if (InFlightWindow.Admission.REJECTED == admission)
+        {
+            throw failPublish(future, String.format(
+                "Client ID %s could not publish the message because the in-flight window is full.",
+                getClientId()), null, publishEvents, reportFailures);
+        }
+        return token;
+    }
+
+    private IMqttDeliveryToken submit(final PublishFuture future, final boolean publishEvent)
+        throws MqttException
+    {
+        future.submittedNanoseconds = System.nanoTime();
+        final IMqttDeliveryToken token = mqttClient.publish(future.topic, future.payload,
+            future.levelIdentifier, future.retained, future, deliveryActionListener);
+        mqttClientMetrics.messagePublished(
+            MqttQualityOfService.findByLevelIdentifier(future.levelIdentifier),
+            future.payload.length);
+        if (publishEvent)
+        {
+            notifyPublished(token.getMessageId(), future.correlationId);
+        }
+        return token;
+    }
+
+    private MessagingException failPublish(final PublishFuture future, final String description,
+        final Throwable cause, final boolean publishEvent)
+    {
+        return failPublish(future, description, cause, publishEvent, true);
+    }
+
+    private MessagingException failPublish(final PublishFuture future, final String description,
+        final Throwable cause, final boolean publishEvent, final boolean reportFailure)
+    {
+        final MessagingException exception = new MessagingException(future.message, description,
+            cause);
+        if (reportFailure)
+        {
+            mqttClientMetrics.messagePublishFailed();
+            if (publishEvent)
+            {
+                notifyPublishFailure(exception);
+            }
+        }
+        future.completeExceptionally(exception);
+        return exception;
+    }
+
+    /**
+     * Gives back an in-flight slot, and hands the oldest pending message, if any, to the MQTT
+     * Client in its place.
+     */
+    private void releaseInFlightSlot()
+    {
+        PublishFuture next = inFlightWindow.release(mqttClientConfiguration);
+        while (next != null)
+        {
+            final PublishFuture current = next;
+            next = null;
+            try
+            {
+                submit(current, true);
+            }
+            catch (MqttException | RuntimeException ex)
+            {
+                failPublish(current,
+                    String.format(
+                        "Client ID %s encountered an issue and the message couldn't be sent.",
+                        getClientId()),
+                    ex, true);
+                next = inFlightWindow.release(mqttClientConfiguration);
+            }
+        }
+        triggerConflationFlush();
+    }
+
+    private int getMaximumInFlight()
+    {
+        int maximumInFlight = mqttClientConfiguration.getMaxInFlightMessages();
+        if (maximumInFlight > 0)
+        {
+            // Paho rejects publishes beyond its own limit, so the window can't be any larger
+            maximumInFlight = Math.min(maximumInFlight, mqttConnectOptions.getMaxInflight());
+        }
+        return maximumInFlight;
+    }
+
+    /**
+     * Refreshes the count behind the {@link MqttClientMetrics#GAUGE_SUBSCRIPTIONS} gauge, so
+     * reading it doesn't need the lock. Called while holding the lock.
+     */
+    private void updateSubscribedCount()
+    {
+        subscribedCount = TopicSubscriptionHelper
+            .getSubscribedTopicFilters(topicSubscriptions).length;
+    }
+
     private void scheduleReconnect()
     {
         if (mqttConnectOptions.isAutomaticReconnect()
@@ -609,8 +2050,7 @@ public final class PahoAsyncMqttClientService extends AbstractMqttClientService
     @Override
     public void onFailure(final IMqttToken token, final Throwable throwable)
     {
-        mqttClientEventPublisher.publishConnectionFailureEvent(getClientId(), isAutoReconnect(),
-            throwable, applicationEventPublisher, this);
+        notifyConnectionFailure(isAutoReconnect(), throwable);
         if (reconnectService != null)
         {
             reconnectService.connected(false);
@@ -635,4 +2075,27 @@ public final class PahoAsyncMqttClientService extends AbstractMqttClientService
         }
         return autoReconnect;
     }
+
+    /**
+     * Completes the {@link PublishFuture} carried as the User Context of a publish token from the
+     * Paho callback, so no thread is left waiting on the token, and gives back its in-flight slot.
+     */
+    private final class DeliveryActionListener implements IMqttActionListener
+    {
+        @Override
+        public void onSuccess(final IMqttToken token)
+        {
+            releaseInFlightSlot();
+            ((PublishFuture) token.getUserContext()).complete(token.getMessageId());
+        }
+
+        @Override
+        public void onFailure(final IMqttToken token, final Throwable throwable)
+        {
+            releaseInFlightSlot();
+            failPublish((PublishFuture) token.getUserContext(),
+                String.format("Client ID %s could not deliver the message.", getClientId()),
+                throwable, true);
+        }
+    }
 }
@@ -0,0 +1,560 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessagingException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
+
+import com.github.christophersmith.summer.mqtt.core.MqttBatchPublishResult;
+import com.github.christophersmith.summer.mqtt.core.MqttClientConnectionType;
+import com.github.christophersmith.summer.mqtt.core.MqttPoolRoutingStrategy;
+import com.github.christophersmith.summer.mqtt.core.MqttQualityOfService;
+import com.github.christophersmith.summer.mqtt.core.TopicSubscription;
+import com.github.christophersmith.summer.mqtt.core.event.MqttClientConnectedEvent;
+import com.github.christophersmith.summer.mqtt.core.event.MqttClientConnectionFailureEvent;
+import com.github.christophersmith.summer.mqtt.core.event.MqttClientConnectionLostEvent;
+import com.github.christophersmith.summer.mqtt.core.event.MqttClientDisconnectedEvent;
+import com.github.christophersmith.summer.mqtt.core.event.MqttConnectionStatusEvent;
+import com.github.christophersmith.summer.mqtt.core.metrics.MqttClientMetrics;
+import com.github.christophersmith.summer.mqtt.core.service.MqttClientService;
+import com.github.christophersmith.summer.mqtt.core.service.ReconnectService;
+import com.github.christophersmith.summer.mqtt.core.util.MqttClientEventPublisher;
+import com.github.christophersmith.summer.mqtt.core.util.MqttHeaderHelper;
+
+/**
+ * A {@link MqttClientService} that spreads out-going messages over a pool of
+ * {@link PahoAsyncMqttClientService} connections, to publish beyond the limits of a single
+ * connection, its sender thread and its Message Identifiers.
+ * <p>
+ * Each connection uses the Client ID of the pool with its index appended, like
+ * {@code my-client-0}. A message is published through the connection picked by the
+ * {@link MqttPoolRoutingStrategy}. Topic Filters and the in-bound {@link MessageChannel} only apply
+ * to the first connection, so in-bound messages aren't received once per connection; the other
+ * connections are setup as a {@link MqttClientConnectionType#PUBLISHER}.
+ * <p>
+ * The pool publishes its own Connection Status Events, with its own Client ID: Connected once all
+ * connections are connected, Connection Lost or Disconnected once the first connection goes away,
+ * and Connection Failure while it's not connected. Message Status Events are passed on as they are,
+ * with the Client ID of the connection, as the Message Identifiers are only unique per connection.
+ * Each connection is configured through {@link #getConnections()}.
+ */
+public final class PooledMqttClientService implements MqttClientService
+{
+    private transient final String                           clientId;
+    private transient final MqttClientConnectionType         connectionType;
+    private transient final List<PahoAsyncMqttClientService> connections;
+    private transient final MqttClientEventPublisher         mqttClientEventPublisher = new MqttClientEventPublisher();
+    private volatile MqttPoolRoutingStrategy                 routingStrategy          = MqttPoolRoutingStrategy.TOPIC_HASH;
+    private volatile ApplicationEventPublisher               applicationEventPublisher;
+    private volatile String[]                                subscribedTopics         = new String[0];
+    private boolean                                          connected;
+
+    /**
+     * Creates a pool whose connections use the default Paho {@link MqttClientPersistence}.
+     * 
+     * @param serverUri the Server URI to connect to
+     * @param clientId the Client ID of the pool, which each connection appends its index to
+     * @param connectionType either {@link MqttClientConnectionType#PUBLISHER} or
+     *            {@link MqttClientConnectionType#PUBSUB}
+     * @param poolSize the number of connections
+     * @throws IllegalArgumentException if the {@code serverUri} or {@code clientId} is blank or
+     *             null, the {@code connectionType} is null or a
+     *             {@link MqttClientConnectionType#SUBSCRIBER}, or the {@code poolSize} isn't
+     *             greater than 0
+     * @throws MqttException if a connection cannot be created
+     */
+    public PooledMqttClientService(final String serverUri, final String clientId,
+        final MqttClientConnectionType connectionType, final int poolSize)
+        throws MqttException
+    {
+        this(serverUri, clientId, connectionType, poolSize, null);
+    }
+
+    /**
+     * Creates a pool whose connections use the {@link MqttClientPersistence} created by the
+     * {@code persistenceFactory} for their Client ID.
+     * 
+     * @param serverUri the Server URI to connect to
+     * @param clientId the Client ID of the pool, which each connection appends its index to
+     * @param connectionType either {@link MqttClientConnectionType#PUBLISHER} or
+     *            {@link MqttClientConnectionType#PUBSUB}
+     * @param poolSize the number of connections
+     * @param persistenceFactory an optional factory for the {@link MqttClientPersistence} of each
+     *            connection, given the Client ID of the connection
+     * @throws IllegalArgumentException if the {@code serverUri} or {@code clientId} is blank or
+     *             null, the {@code connectionType} is null or a
+     *             {@link MqttClientConnectionType#SUBSCRIBER}, or the {@code poolSize} isn't
+     *             greater than 0
+     * @throws MqttException if a connection cannot be created
+     */
+    public PooledMqttClientService(final String serverUri, final String clientId,
+        final MqttClientConnectionType connectionType, final int poolSize,
+        final Function<String, MqttClientPersistence> persistenceFactory)
+        throws MqttException
+    {
+        Assert.hasText(serverUri, "'serverUri' must be set!");
+        Assert.hasText(clientId, "'clientId' must be set!");
+        Assert.notNull(connectionType, "'connectionType' must be set!");
+        Assert.isTrue(MqttClientConnectionType.SUBSCRIBER != connectionType,
+            "'connectionType' must be PUBLISHER or PUBSUB!");
+        Assert.isTrue(poolSize > 0, "'poolSize' must be greater than 0!");
+        this.clientId = clientId;
+        this.connectionType = connectionType;
+        final ApplicationEventPublisher connectionEventPublisher = new ConnectionEventPublisher();
+        final List<PahoAsyncMqttClientService> records = new ArrayList<PahoAsyncMqttClientService>(
+            poolSize);
+        try
+        {
+            for (int i = 0; i < poolSize; i++)
+            {
+                final String connectionClientId = String.format("%s-%d", clientId, i);
+                final PahoAsyncMqttClientService connection = new PahoAsyncMqttClientService(
+                    serverUri, connectionClientId,
+                    i == 0 ? connectionType : MqttClientConnectionType.PUBLISHER,
+                    persistenceFactory == null ? null : persistenceFactory.apply(connectionClientId));
+                connection.setApplicationEventPublisher(connectionEventPublisher);
+                records.add(connection);
+            }
+        }
+        catch (MqttException | RuntimeException ex)
+        {
+            records.forEach(PahoAsyncMqttClientService::close);
+            throw ex;
+        }
+        connections = Collections.unmodifiableList(records);
+    }
+
+    /**
+     * Returns the connections of this pool, in index order, so each can be configured through its
+     * {@link PahoAsyncMqttClientService#getMqttClientConfiguration()} and
+     * {@link PahoAsyncMqttClientService#getMqttConnectOptions()}.
+     * 
+     * @return an unmodifiable {@link List} of {@link PahoAsyncMqttClientService} instances
+     */
+    public List<PahoAsyncMqttClientService> getConnections()
+    {
+        return connections;
+    }
+
+    /**
+     * Returns the {@link MqttPoolRoutingStrategy} used to pick the connection for a message.
+     * <p>
+     * The default value is {@link MqttPoolRoutingStrategy#TOPIC_HASH}.
+     * 
+     * @return a {@link MqttPoolRoutingStrategy} value
+     */
+    public MqttPoolRoutingStrategy getRoutingStrategy()
+    {
+        return routingStrategy;
+    }
+
+    /**
+     * Sets the {@link MqttPoolRoutingStrategy} used to pick the connection for a message.
+     * 
+     * @param routingStrategy the {@link MqttPoolRoutingStrategy}
+     * @throws IllegalArgumentException if the parameter {@code routingStrategy} is null
+     */
+    public void setRoutingStrategy(final MqttPoolRoutingStrategy routingStrategy)
+    {
+        Assert.notNull(routingStrategy, "'routingStrategy' must be set!");
+        this.routingStrategy = routingStrategy;
+    }
+
+    @Override
+    public String getClientId()
+    {
+        return clientId;
+    }
+
+    @Override
+    public MqttClientConnectionType getConnectionType()
+    {
+        return connectionType;
+    }
+
+    @Override
+    public List<TopicSubscription> getTopicSubscriptions()
+    {
+        return connections.get(0).getTopicSubscriptions();
+    }
+
+    /**
+     * Starts every connection of this pool.
+     * 
+     * @return whether every connection was started
+     */
+    @Override
+    public boolean start()
+    {
+        boolean result = true;
+        for (final PahoAsyncMqttClientService connection : connections)
+        {
+            result &= connection.start();
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether every connection of this pool is connected.
+     * 
+     * @return whether every connection is connected
+     */
+    @Override
+    public boolean isConnected()
+    {
+        boolean result = true;
+        for (final PahoAsyncMqttClientService connection : connections)
+        {
+            result &= connection.isConnected();
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether every connection of this pool is started.
+     * 
+     * @return whether every connection is started
+     */
+    @Override
+    public boolean isStarted()
+    {
+        boolean result = true;
+        for (final PahoAsyncMqttClientService connection : connections)
+        {
+            result &= connection.isStarted();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the Server URI the first connection of this pool is connected to.
+     * 
+     * @return the Server URI, or null if not connected
+     */
+    @Override
+    public String getConnectedServerUri()
+    {
+        return connections.get(0).getConnectedServerUri();
+    }
+
+    @Override
+    public void subscribe(final String topicFilter)
+    {
+        connections.get(0).subscribe(topicFilter);
+    }
+
+    @Override
+    public void subscribe(final String topicFilter, final MqttQualityOfService qualityOfService)
+    {
+        connections.get(0).subscribe(topicFilter, qualityOfService);
+    }
+
+    @Override
+    public void subscribe(final String topicFilter, final MessageChannel messageChannel)
+    {
+        connections.get(0).subscribe(topicFilter, messageChannel);
+    }
+
+    @Override
+    public void subscribe(final String topicFilter, final MqttQualityOfService qualityOfService,
+        final MessageChannel messageChannel)
+    {
+        connections.get(0).subscribe(topicFilter, qualityOfService, messageChannel);
+    }
+
+    @Override
+    public void unsubscribe(final String topicFilter)
+    {
+        connections.get(0).unsubscribe(topicFilter);
+    }
+
+    /**
+     * Sets the in-bound {@link MessageChannel} of the first connection of this pool.
+     * 
+     * @param inboundMessageChannel a {@link MessageChannel} for in-bound messages
+     * @throws IllegalStateException if the Connection Type is
+     *             {@link MqttClientConnectionType#PUBLISHER}
+     * @throws IllegalArgumentException if the {@code inboundMessageChannel} value is null
+     */
+    public void setInboundMessageChannel(final MessageChannel inboundMessageChannel)
+    {
+        connections.get(0).setInboundMessageChannel(inboundMessageChannel);
+    }
+
+    /**
+     * Sets the {@link ReconnectService} and {@link TaskScheduler} of every connection of this
+     * pool.
+     * 
+     * @param reconnectService a {@link ReconnectService} value
+     * @param taskScheduler a {@link TaskScheduler} value
+     */
+    public void setReconnectDetails(final ReconnectService reconnectService,
+        final TaskScheduler taskScheduler)
+    {
+        connections.forEach(
+            connection -> connection.setReconnectDetails(reconnectService, taskScheduler));
+    }
+
+    /**
+     * Sets the {@link MqttClientMetrics} of every connection of this pool, so it receives the
+     * metrics of the pool as a whole.
+     * 
+     * @param mqttClientMetrics a {@link MqttClientMetrics} value
+     * @throws IllegalArgumentException if the {@code mqttClientMetrics} value is null
+     */
+    public void setMqttClientMetrics(final MqttClientMetrics mqttClientMetrics)
+    {
+        connections.forEach(connection -> connection.setMqttClientMetrics(mqttClientMetrics));
+    }
+
+    @Override
+    public void handleMessage(final Message<?> message) throws MessagingException
+    {
+        Assert.notNull(message, "'message' must be set!");
+        route(message).handleMessage(message);
+    }
+
+    @Override
+    public CompletableFuture<Integer> publishAsync(final Message<?> message)
+    {
+        Assert.notNull(message, "'message' must be set!");
+        return route(message).publishAsync(message);
+    }
+
+    /**
+     * Publishes a batch of {@link Message} objects, split into one batch per connection. Each
+     * connection publishes its own
+     * {@link com.github.christophersmith.summer.mqtt.core.event.MqttMessageBatchPublishedEvent}.
+     */
+    @Override
+    public MqttBatchPublishResult publishAll(final Collection<Message<?>> messages)
+    {
+        Assert.notNull(messages, "'messages' must be set!");
+        final int size = connections.size();
+        final int[] routes = new int[messages.size()];
+        final List<List<Message<?>>> batches = new ArrayList<List<Message<?>>>(size);
+        for (int i = 0; i < size; i++)
+        {
+            batches.add(new ArrayList<Message<?>>());
+        }
+        int index = 0;
+        for (final Message<?> message : messages)
+        {
+            Assert.notNull(message, "'message' must be set!");
+            routes[index] = getRouteIndex(message);
+            batches.get(routes[index]).add(message);
+            index++;
+        }
+        final List<List<CompletableFuture<Integer>>> batchResults = new ArrayList<List<CompletableFuture<Integer>>>(
+            size);
+        int acceptedCount = 0;
+        for (int i = 0; i < size; i++)
+        {
+            List<CompletableFuture<Integer>> results = Collections.emptyList();
+            if (!batches.get(i).isEmpty())
+            {
+                final MqttBatchPublishResult result = connections.get(i)
+                    .publishAll(batches.get(i));
+                results = result.getResults();
+                acceptedCount += result.getSubmittedCount();
+            }
+            batchResults.add(results);
+        }
+        // put the results back in the order of the messages
+        final int[] positions = new int[size];
+        final List<CompletableFuture<Integer>> results = new ArrayList<CompletableFuture<Integer>>(
+            routes.length);
+        for (final int route : routes)
+        {
+            results.add(batchResults.get(route).get(positions[route]++));
+        }
+        return new MqttBatchPublishResult(results, acceptedCount);
+    }
+
+    @Override
+    public void stop()
+    {
+        connections.forEach(PahoAsyncMqttClientService::stop);
+    }
+
+    @Override
+    public void close()
+    {
+        connections.forEach(PahoAsyncMqttClientService::close);
+    }
+
+    @Override
+    public void setApplicationEventPublisher(
+        final ApplicationEventPublisher applicationEventPublisher)
+    {
+        this.applicationEventPublisher = applicationEventPublisher;
+    }
+
+    /**
+     * Returns the connection the {@code message} is published through.
+     * 
+     * @param message the {@link Message} to route
+     * @return a {@link PahoAsyncMqttClientService} of this pool
+     */
+    PahoAsyncMqttClientService route(final Message<?> message)
+    {
+        return connections.get(getRouteIndex(message));
+    }
+
+    private int getRouteIndex(final Message<?> message)
+    {
+        int index = 0;
+        final int size = connections.size();
+        if (size > 1)
+        {
+            final MqttPoolRoutingStrategy strategy = routingStrategy;
+            if (MqttPoolRoutingStrategy.LEAST_IN_FLIGHT == strategy)
+            {
+                index = getLeastInFlightIndex();
+            }
+            else
+            {
+                String key = MqttPoolRoutingStrategy.ROUTING_KEY == strategy
+                    ? MqttHeaderHelper.getRoutingKeyHeaderValue(message)
+                    : null;
+                if (key == null)
+                {
+                    key = MqttHeaderHelper.getTopicHeaderValue(message);
+                }
+                if (key != null)
+                {
+                    final int hash = key.hashCode();
+                    index = ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % size;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index of the connected connection with the fewest in-flight and pending
+     * messages, or of the first connection if none is connected.
+     */
+    private int getLeastInFlightIndex()
+    {
+        int index = 0;
+        int lowestCount = Integer.MAX_VALUE;
+        for (int i = 0; i < connections.size(); i++)
+        {
+            final PahoAsyncMqttClientService connection = connections.get(i);
+            if (connection.isConnected())
+            {
+                final int count = connection.getInFlightCount() + connection.getPendingCount();
+                if (count < lowestCount)
+                {
+                    lowestCount = count;
+                    index = i;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Turns a Connection Status Event of a connection into a Connection Status Event of the pool,
+     * when the state of the pool changes.
+     */
+    private synchronized void publishConnectionEvent(final MqttConnectionStatusEvent event)
+    {
+        final ApplicationEventPublisher publisher = applicationEventPublisher;
+        if (event instanceof MqttClientConnectedEvent)
+        {
+            if (connections.get(0).getClientId().equals(event.getClientId()))
+            {
+                subscribedTopics = ((MqttClientConnectedEvent) event).getSubscribedTopics();
+            }
+            if (!connected
+                && isConnected())
+            {
+                connected = true;
+                mqttClientEventPublisher.publishConnectedEvent(clientId, getConnectedServerUri(),
+                    subscribedTopics, publisher, this);
+            }
+        }
+        else if (event instanceof MqttClientConnectionLostEvent)
+        {
+            if (connected)
+            {
+                connected = false;
+                mqttClientEventPublisher.publishConnectionLostEvent(clientId,
+                    ((MqttClientConnectionLostEvent) event).isAutoReconnect(), publisher, this);
+            }
+        }
+        else if (event instanceof MqttClientDisconnectedEvent)
+        {
+            if (connected)
+            {
+                connected = false;
+                mqttClientEventPublisher.publishDisconnectedEvent(clientId, publisher, this);
+            }
+        }
+        else if (event instanceof MqttClientConnectionFailureEvent)
+        {
+            if (!connected)
+            {
+                final MqttClientConnectionFailureEvent failureEvent = (MqttClientConnectionFailureEvent) event;
+                mqttClientEventPublisher.publishConnectionFailureEvent(clientId,
+                    failureEvent.isAutoReconnect(), failureEvent.getThrowable(), publisher, this);
+            }
+        }
+    }
+
+    /**
+     * The {@link ApplicationEventPublisher} every connection of this pool publishes to.
+     */
+    private final class ConnectionEventPublisher implements ApplicationEventPublisher
+    {
+        @Override
+        public void publishEvent(final ApplicationEvent event)
+        {
+            publishEvent((Object) event);
+        }
+
+        @Override
+        public void publishEvent(final Object event)
+        {
+            if (event instanceof MqttConnectionStatusEvent)
+            {
+                publishConnectionEvent((MqttConnectionStatusEvent) event);
+            }
+            else
+            {
+                final ApplicationEventPublisher publisher = applicationEventPublisher;
+                if (publisher != null)
+                {
+                    publisher.publishEvent(event);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.service;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.messaging.Message;
+
+/**
+ * An out-going message whose topic, payload and headers have been resolved, and the
+ * {@link CompletableFuture} that is completed with its Message Identifier once delivered.
+ * <p>
+ * An instance is passed as the User Context of the Paho publish token, so the delivery callbacks
+ * can find it, its Correlation ID and the time it was handed to the MQTT Client without a lookup.
+ */
+final class PublishFuture extends CompletableFuture<Integer>
+{
+    /**
+     * The priority of a message without a priority, which places it in the last priority lane.
+     */
+    static final int LOWEST_PRIORITY = Integer.MAX_VALUE;
+    final Message<?> message;
+    final String     topic;
+    final byte[]     payload;
+    final int        levelIdentifier;
+    final boolean    retained;
+    final String     correlationId;
+    final int        priority;
+    volatile long    submittedNanoseconds;
+
+    PublishFuture(final Message<?> message, final String topic, final byte[] payload,
+        final int levelIdentifier, final boolean retained, final String correlationId,
+        final int priority)
+    {
+        this.message = message;
+        this.topic = topic;
+        this.payload = payload;
+        this.levelIdentifier = levelIdentifier;
+        this.retained = retained;
+        this.correlationId = correlationId;
+        this.priority = priority;
+    }
+}
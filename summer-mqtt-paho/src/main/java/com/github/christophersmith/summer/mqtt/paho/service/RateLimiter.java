@@ -0,0 +1,338 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.github.christophersmith.summer.mqtt.core.MqttClientConfiguration;
+import com.github.christophersmith.summer.mqtt.core.MqttQualityOfService;
+import com.github.christophersmith.summer.mqtt.core.MqttRateLimit;
+import com.github.christophersmith.summer.mqtt.core.MqttRateLimitBehavior;
+import com.github.christophersmith.summer.mqtt.core.util.TopicFilterHelper;
+
+/**
+ * Applies the client and Topic Filter {@link MqttRateLimit} values of a
+ * {@link MqttClientConfiguration} to out-going messages, using the configured
+ * {@link MqttRateLimitBehavior}.
+ * <p>
+ * Each limit is a lock-free token bucket, created on first use and replaced when its
+ * {@link MqttRateLimit} is replaced in the configuration. A Topic Filter bucket is shared by every
+ * Topic the Topic Filter matches.
+ */
+final class RateLimiter
+{
+    /**
+     * The outcome of a {@link RateLimiter#acquire(String, int, MqttClientConfiguration)} call.
+     */
+    enum Permit
+    {
+            /**
+             * The message is within the rate limits and can be sent.
+             */
+            GRANTED,
+            /**
+             * The message exceeds a rate limit and must fail.
+             */
+            REJECTED,
+            /**
+             * The message is a QoS 0 message that exceeds a rate limit and must be dropped.
+             */
+            DROPPED;
+    }
+
+    private final Map<String, TokenBucket> topicBuckets  = new ConcurrentHashMap<String, TokenBucket>();
+    private final LongAdder                waitedCount   = new LongAdder();
+    private final LongAdder                rejectedCount = new LongAdder();
+    private final LongAdder                droppedCount  = new LongAdder();
+    private volatile TokenBucket           clientBucket;
+
+    /**
+     * Takes a permit for a message on the {@code topic} from the client bucket and from the bucket
+     * of the first Topic Filter that matches, if any, applying the configured
+     * {@link MqttRateLimitBehavior} if either bucket is empty.
+     * 
+     * @param topic the Topic of the message
+     * @param levelIdentifier the QoS level of the message
+     * @param configuration the {@link MqttClientConfiguration} holding the rate limits
+     * @return the {@link Permit} for the message
+     * @throws InterruptedException if interrupted while waiting for a permit
+     */
+    Permit acquire(final String topic, final int levelIdentifier,
+        final MqttClientConfiguration configuration)
+        throws InterruptedException
+    {
+        Permit permit = Permit.GRANTED;
+        final TokenBucket client = getClientBucket(configuration.getClientRateLimit());
+        final TokenBucket topicBucket = getTopicBucket(topic, configuration.getTopicRateLimits());
+        if (client != null
+            || topicBucket != null)
+        {
+            MqttRateLimitBehavior behavior = configuration.getRateLimitBehavior();
+            if (MqttRateLimitBehavior.DROP_QOS_0 == behavior
+                && levelIdentifier != MqttQualityOfService.QOS_0.getLevelIdentifier())
+            {
+                behavior = MqttRateLimitBehavior.WAIT;
+            }
+            final long now = System.nanoTime();
+            if (MqttRateLimitBehavior.WAIT == behavior)
+            {
+                permit = reserve(client, topicBucket, now,
+                    TimeUnit.MILLISECONDS.toNanos(configuration.getRateLimitWaitMilliseconds()));
+            }
+            else if (!tryAcquire(client, topicBucket, now))
+            {
+                permit = MqttRateLimitBehavior.REJECT == behavior
+                    ? Permit.REJECTED
+                    : Permit.DROPPED;
+            }
+            if (Permit.REJECTED == permit)
+            {
+                rejectedCount.increment();
+            }
+            else if (Permit.DROPPED == permit)
+            {
+                droppedCount.increment();
+            }
+        }
+        return permit;
+    }
+
+    /**
+     * Returns the number of messages that were delayed to stay within a rate limit.
+     * 
+     * @return the number of delayed messages
+     */
+    long getWaitedCount()
+    {
+        return waitedCount.sum();
+    }
+
+    /**
+     * Returns the number of messages that failed because they exceeded a rate limit.
+     * 
+     * @return the number of rejected messages
+     */
+    long getRejectedCount()
+    {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * Returns the number of QoS 0 messages that were dropped because they exceeded a rate limit.
+     * 
+     * @return the number of dropped messages
+     */
+    long getDroppedCount()
+    {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Reserves a permit from both buckets and parks until the later of the two is due, or gives
+     * both back if that's longer than {@code maximumWaitNanos}.
+     */
+    private Permit reserve(final TokenBucket client, final TokenBucket topicBucket,
+        final long now, final long maximumWaitNanos)
+        throws InterruptedException
+    {
+        Permit permit = Permit.GRANTED;
+        long waitNanos = 0;
+        if (topicBucket != null)
+        {
+            waitNanos = topicBucket.reserve(now);
+        }
+        if (client != null)
+        {
+            waitNanos = Math.max(waitNanos, client.reserve(now));
+        }
+        if (waitNanos > maximumWaitNanos)
+        {
+            refund(client, topicBucket);
+            permit = Permit.REJECTED;
+        }
+        else if (waitNanos > 0)
+        {
+            waitedCount.increment();
+            final long deadline = now + waitNanos;
+            long remaining = waitNanos;
+            while (remaining > 0)
+            {
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted())
+                {
+                    refund(client, topicBucket);
+                    throw new InterruptedException();
+                }
+                remaining = deadline - System.nanoTime();
+            }
+        }
+        return permit;
+    }
+
+    private boolean tryAcquire(final TokenBucket client, final TokenBucket topicBucket,
+        final long now)
+    {
+        boolean acquired = topicBucket == null
+            || topicBucket.tryAcquire(now);
+        if (acquired
+            && client != null
+            && !client.tryAcquire(now))
+        {
+            refund(null, topicBucket);
+            acquired = false;
+        }
+        return acquired;
+    }
+
+    private void refund(final TokenBucket client, final TokenBucket topicBucket)
+    {
+        if (client != null)
+        {
+            client.refund();
+        }
+        if (topicBucket != null)
+        {
+            topicBucket.refund();
+        }
+    }
+
+    private TokenBucket getClientBucket(final MqttRateLimit rateLimit)
+    {
+        TokenBucket bucket = null;
+        if (rateLimit != null)
+        {
+            bucket = clientBucket;
+            if (bucket == null
+                || bucket.rateLimit != rateLimit)
+            {
+                // a benign race, as at worst a burst is granted twice while the limit is replaced
+                bucket = new TokenBucket(rateLimit);
+                clientBucket = bucket;
+            }
+        }
+        return bucket;
+    }
+
+    private TokenBucket getTopicBucket(final String topic,
+        final Map<String, MqttRateLimit> topicRateLimits)
+    {
+        TokenBucket bucket = null;
+        if (!topicRateLimits.isEmpty())
+        {
+            for (final Map.Entry<String, MqttRateLimit> entry : topicRateLimits.entrySet())
+            {
+                if (TopicFilterHelper.matches(entry.getKey(), topic))
+                {
+                    final MqttRateLimit rateLimit = entry.getValue();
+                    bucket = topicBuckets.compute(entry.getKey(),
+                        (topicFilter, current) -> current == null
+                            || current.rateLimit != rateLimit
+                                ? new TokenBucket(rateLimit)
+                                : current);
+                    break;
+                }
+            }
+            if (topicBuckets.size() > topicRateLimits.size())
+            {
+                topicBuckets.keySet().retainAll(topicRateLimits.keySet());
+            }
+        }
+        return bucket;
+    }
+
+    /**
+     * A token bucket kept as the theoretical arrival time of the next message, so a permit is a
+     * single compare-and-set. A message conforms while that time is no further ahead of now than
+     * the burst allows.
+     */
+    static final class TokenBucket
+    {
+        private final MqttRateLimit rateLimit;
+        private final long          intervalNanos;
+        private final long          toleranceNanos;
+        private final AtomicLong    theoreticalArrival;
+
+        TokenBucket(final MqttRateLimit rateLimit)
+        {
+            this(rateLimit, System.nanoTime());
+        }
+
+        TokenBucket(final MqttRateLimit rateLimit, final long now)
+        {
+            this.rateLimit = rateLimit;
+            intervalNanos = Math.max(1,
+                (long) (TimeUnit.SECONDS.toNanos(1) / rateLimit.getMessagesPerSecond()));
+            toleranceNanos = intervalNanos * (rateLimit.getBurst() - 1);
+            theoreticalArrival = new AtomicLong(now);
+        }
+
+        /**
+         * Takes a permit if one is available at {@code now}.
+         * 
+         * @param now the current {@link System#nanoTime()}
+         * @return whether a permit was taken
+         */
+        boolean tryAcquire(final long now)
+        {
+            boolean acquired = false;
+            boolean done = false;
+            while (!done)
+            {
+                final long current = theoreticalArrival.get();
+                final long arrival = current - now > 0 ? current : now;
+                if (arrival - now > toleranceNanos)
+                {
+                    done = true;
+                }
+                else if (theoreticalArrival.compareAndSet(current, arrival + intervalNanos))
+                {
+                    acquired = true;
+                    done = true;
+                }
+            }
+            return acquired;
+        }
+
+        /**
+         * Takes a permit unconditionally, which may be due in the future.
+         * 
+         * @param now the current {@link System#nanoTime()}
+         * @return the nanoseconds until the permit is due, or 0 if it's due now
+         */
+        long reserve(final long now)
+        {
+            long current = theoreticalArrival.get();
+            long arrival = current - now > 0 ? current : now;
+            while (!theoreticalArrival.compareAndSet(current, arrival + intervalNanos))
+            {
+                current = theoreticalArrival.get();
+                arrival = current - now > 0 ? current : now;
+            }
+            return Math.max(0, arrival - toleranceNanos - now);
+        }
+
+        /**
+         * Gives back a permit taken by {@link #tryAcquire(long)} or {@link #reserve(long)}.
+         */
+        void refund()
+        {
+            theoreticalArrival.addAndGet(-intervalNanos);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.util.Assert;
+
+/**
+ * The number of messages each member of a {@link ConsumerGroupMqttClientService} had received at
+ * the moment the sample was taken, through
+ * {@link ConsumerGroupMqttClientService#sampleReceivedMessages()}.
+ * <p>
+ * Taking a sample doesn't change any state of the group, so every reader keeps its own previous
+ * sample and calculates the rates since then through
+ * {@link #getMessagesPerSecond(ReceivedMessageSample)}, without affecting the rates other readers
+ * see.
+ */
+public final class ReceivedMessageSample
+{
+    private transient final Map<String, Long> receivedMessageCounts;
+    private transient final long              nanoTime;
+
+    /**
+     * The default constructor.
+     * 
+     * @param receivedMessageCounts the number of messages each member received, keyed by the
+     *            Client ID of the member
+     * @param nanoTime the {@link System#nanoTime()} value the sample was taken at
+     * 
+     * @throws IllegalArgumentException if the {@code receivedMessageCounts} value is null
+     */
+    ReceivedMessageSample(final Map<String, Long> receivedMessageCounts, final long nanoTime)
+    {
+        Assert.notNull(receivedMessageCounts, "'receivedMessageCounts' must be set!");
+        this.receivedMessageCounts = Collections
+            .unmodifiableMap(new LinkedHashMap<String, Long>(receivedMessageCounts));
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Returns the number of messages each member received, keyed by the Client ID of the member,
+     * in index order.
+     * 
+     * @return an unmodifiable {@link Map} of Client IDs to message counts
+     */
+    public Map<String, Long> getReceivedMessageCounts()
+    {
+        return receivedMessageCounts;
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} value the sample was taken at.
+     * 
+     * @return the {@link System#nanoTime()} value
+     */
+    public long getNanoTime()
+    {
+        return nanoTime;
+    }
+
+    /**
+     * Returns the number of messages per second each member received between the
+     * {@code previousSample} and this sample, keyed by the Client ID of the member, in index order.
+     * <p>
+     * A member that isn't in the {@code previousSample}, or was replaced since then and so
+     * received fewer messages, is counted from 0.
+     * 
+     * @param previousSample a sample taken earlier from the same group
+     * @return a {@link Map} of Client IDs to messages per second
+     * 
+     * @throws IllegalArgumentException if the {@code previousSample} value is null
+     */
+    public Map<String, Double> getMessagesPerSecond(final ReceivedMessageSample previousSample)
+    {
+        Assert.notNull(previousSample, "'previousSample' must be set!");
+        final double elapsedSeconds = Math.max(1, nanoTime - previousSample.nanoTime)
+            / (double) TimeUnit.SECONDS.toNanos(1);
+        final Map<String, Double> records = new LinkedHashMap<String, Double>();
+        receivedMessageCounts.forEach((clientId, count) -> {
+            final Long previousCount = previousSample.receivedMessageCounts.get(clientId);
+            final long received = previousCount == null
+                || previousCount > count ? count : count - previousCount;
+            records.put(clientId, received / elapsedSeconds);
+        });
+        return records;
+    }
+}
@@ -0,0 +1,497 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.spool;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+/**
+ * A disk-backed, first-in first-out spool for out-going messages, used to hold messages while the
+ * MQTT Client is disconnected.
+ * <p>
+ * Messages are appended to a log made of fixed-size, memory-mapped segment files in the spool
+ * directory, so the spool doesn't grow the heap no matter how many messages are held. A message is
+ * marked as consumed in place once it has been replayed, and a segment whose messages are all
+ * consumed is recycled as the next segment to write to, rather than being deleted and created
+ * again. The total size of the segment files is capped; once the cap is reached, appends are
+ * refused until messages are consumed.
+ * <p>
+ * Messages that haven't been consumed are found again when a spool is opened on the same
+ * directory. Written messages survive a crash of the JVM, as they are held by the operating
+ * system's page cache, but not necessarily a crash of the host.
+ * <p>
+ * All methods are thread-safe.
+ */
+public final class MappedOutboundSpool implements Closeable
+{
+    private static final Logger  LOG                         = LoggerFactory
+        .getLogger(MappedOutboundSpool.class);
+    private static final String  SEGMENT_FILE_PREFIX         = "spool-";
+    private static final String  SEGMENT_FILE_SUFFIX         = ".seg";
+    private static final int     RECORD_HEADER_LENGTH        = 4;
+    private static final int     RECORD_FIXED_BODY_LENGTH    = 5;
+    private static final int     FLAG_RETAINED               = 0x04;
+    private static final int     FLAG_CORRELATION_ID         = 0x08;
+    private static final int     MASK_LEVEL_IDENTIFIER       = 0x03;
+    private static final int     MINIMUM_SEGMENT_SIZE        = 4096;
+    private transient final File directory;
+    private transient final int  segmentSize;
+    private transient final int  maximumSegments;
+    private final Deque<Segment> segments                    = new ArrayDeque<Segment>();
+    private final Deque<Segment> recycledSegments            = new ArrayDeque<Segment>();
+    private long                 nextSequence;
+    private long                 messageCount;
+    private int                  replayMessagesPerSecond;
+    private boolean              closed;
+
+    /**
+     * Opens a spool in the {@code directory}, creating the directory if needed, and recovers any
+     * messages that were not yet consumed.
+     * 
+     * @param directory the directory that holds the segment files
+     * @param segmentSize the size of each segment file in bytes, which also limits the size of a
+     *            single message
+     * @param maximumSize the maximum total size of the segment files in bytes, which must allow
+     *            for at least two segments
+     * @throws IllegalArgumentException if the {@code directory} is null, the {@code segmentSize}
+     *             is less than 4,096 bytes, or the {@code maximumSize} doesn't allow for two
+     *             segments
+     * @throws IOException if the directory or the segment files cannot be opened
+     */
+    public MappedOutboundSpool(final File directory, final int segmentSize,
+        final long maximumSize)
+        throws IOException
+    {
+        Assert.notNull(directory, "'directory' must be set!");
+        Assert.isTrue(segmentSize >= MINIMUM_SEGMENT_SIZE,
+            "'segmentSize' must be at least 4096 bytes!");
+        Assert.isTrue(maximumSize / segmentSize >= 2,
+            "'maximumSize' must allow for at least two segments!");
+        if (!directory.isDirectory()
+            && !directory.mkdirs())
+        {
+            throw new IOException(
+                String.format("The spool directory %s could not be created.", directory));
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maximumSegments = (int) Math.min(Integer.MAX_VALUE, maximumSize / segmentSize);
+        recover();
+    }
+
+    /**
+     * Returns the maximum number of messages per second that are replayed once the MQTT Client is
+     * connected again.
+     * <p>
+     * A value of 0 or less means replay isn't throttled. The default value is 0.
+     * 
+     * @return the replay rate in messages per second
+     */
+    public int getReplayMessagesPerSecond()
+    {
+        return replayMessagesPerSecond;
+    }
+
+    /**
+     * Sets the maximum number of messages per second that are replayed once the MQTT Client is
+     * connected again, so a backlog doesn't flood the Broker. A value of 0 or less means replay
+     * isn't throttled.
+     * 
+     * @param replayMessagesPerSecond the replay rate in messages per second
+     */
+    public void setReplayMessagesPerSecond(int replayMessagesPerSecond)
+    {
+        this.replayMessagesPerSecond = replayMessagesPerSecond;
+    }
+
+    /**
+     * Appends a message to the end of the spool.
+     * 
+     * @param topic the Topic to publish to
+     * @param payload the payload to publish
+     * @param levelIdentifier the QoS level identifier to publish with
+     * @param retained whether the message should be retained
+     * @param correlationId an optional Correlation ID
+     * @return the position of the message in the spool, or -1 if the spool is full or the message
+     *         is larger than a segment
+     * @throws IllegalArgumentException if the {@code topic} is empty, or the {@code payload} is
+     *             null
+     * @throws IllegalStateException if the spool is closed
+     * @throws IOException if a new segment file cannot be created
+     */
+    public synchronized long append(final String topic, final byte[] payload,
+        final int levelIdentifier, final boolean retained, final String correlationId)
+        throws IOException
+    {
+        Assert.hasText(topic, "'topic' must be set!");
+        Assert.notNull(payload, "'payload' must be set!");
+        Assert.state(!closed, "The spool is closed!");
+        final byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        final byte[] correlationIdBytes = correlationId == null ? new byte[0]
+            : correlationId.getBytes(StandardCharsets.UTF_8);
+        final int bodyLength = RECORD_FIXED_BODY_LENGTH + topicBytes.length
+            + correlationIdBytes.length + payload.length;
+        long position = -1;
+        if (topicBytes.length <= 0xFFFF
+            && correlationIdBytes.length <= 0xFFFF
+            && RECORD_HEADER_LENGTH + bodyLength + RECORD_HEADER_LENGTH <= segmentSize)
+        {
+            Segment segment = segments.peekLast();
+            if (segment == null
+                || !segment.hasRoom(bodyLength))
+            {
+                segment = nextSegment();
+            }
+            if (segment != null)
+            {
+                final int offset = segment.writePosition;
+                final MappedByteBuffer buffer = segment.buffer;
+                buffer.position(offset + RECORD_HEADER_LENGTH);
+                buffer.put((byte) ((levelIdentifier & MASK_LEVEL_IDENTIFIER)
+                    | (retained ? FLAG_RETAINED : 0)
+                    | (correlationId == null ? 0 : FLAG_CORRELATION_ID)));
+                buffer.putShort((short) topicBytes.length);
+                buffer.putShort((short) correlationIdBytes.length);
+                buffer.put(topicBytes);
+                buffer.put(correlationIdBytes);
+                buffer.put(payload);
+                // terminate the log before the record is committed by writing its length
+                if (buffer.remaining() >= RECORD_HEADER_LENGTH)
+                {
+                    buffer.putInt(buffer.position(), 0);
+                }
+                buffer.putInt(offset, bodyLength);
+                segment.writePosition = offset + RECORD_HEADER_LENGTH + bodyLength;
+                segment.unconsumed++;
+                messageCount++;
+                position = segment.sequence * segmentSize + offset;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Returns the oldest message that hasn't been consumed, without consuming it.
+     * 
+     * @return the oldest message, or null if the spool is empty
+     * @throws IllegalStateException if the spool is closed
+     */
+    public synchronized SpooledMessage peek()
+    {
+        Assert.state(!closed, "The spool is closed!");
+        SpooledMessage message = null;
+        Segment segment = segments.peekFirst();
+        while (message == null
+            && segment != null)
+        {
+            if (segment.readPosition < segment.writePosition)
+            {
+                final int length = segment.buffer.getInt(segment.readPosition);
+                if (length < 0)
+                {
+                    segment.readPosition += RECORD_HEADER_LENGTH - length;
+                }
+                else
+                {
+                    message = read(segment, segment.readPosition, length);
+                }
+            }
+            else if (segment != segments.peekLast())
+            {
+                recycle(segments.pollFirst());
+                segment = segments.peekFirst();
+            }
+            else
+            {
+                segment = null;
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Marks the {@code message} as consumed, so it won't be returned again, not even after the
+     * spool is opened again.
+     * <p>
+     * Messages must be consumed in the order {@link #peek()} returns them.
+     * 
+     * @param message the message to consume
+     * @throws IllegalArgumentException if the {@code message} isn't the oldest message
+     * @throws IllegalStateException if the spool is closed
+     */
+    public synchronized void consume(final SpooledMessage message)
+    {
+        Assert.state(!closed, "The spool is closed!");
+        Assert.notNull(message, "'message' must be set!");
+        final Segment segment = segments.peekFirst();
+        Assert.isTrue(segment != null
+            && message.getPosition() == segment.sequence * segmentSize + segment.readPosition,
+            "'message' must be the oldest message in the spool!");
+        final int length = segment.buffer.getInt(segment.readPosition);
+        segment.buffer.putInt(segment.readPosition, -length);
+        segment.readPosition += RECORD_HEADER_LENGTH + length;
+        segment.unconsumed--;
+        messageCount--;
+        if (segment.unconsumed == 0
+            && segment != segments.peekLast())
+        {
+            recycle(segments.pollFirst());
+        }
+    }
+
+    /**
+     * Returns whether the spool holds no messages.
+     * 
+     * @return true if the spool is empty
+     */
+    public synchronized boolean isEmpty()
+    {
+        return messageCount == 0;
+    }
+
+    /**
+     * Returns the number of messages in the spool.
+     * 
+     * @return the number of messages
+     */
+    public synchronized long getMessageCount()
+    {
+        return messageCount;
+    }
+
+    /**
+     * Returns the number of segment files in use, including recycled segments waiting for reuse.
+     * 
+     * @return the number of segment files
+     */
+    public synchronized int getSegmentCount()
+    {
+        return segments.size() + recycledSegments.size();
+    }
+
+    /**
+     * Closes the segment files. Messages that weren't consumed remain in the spool directory.
+     */
+    @Override
+    public synchronized void close()
+    {
+        if (!closed)
+        {
+            closed = true;
+            for (final Segment segment : segments)
+            {
+                segment.close();
+            }
+            for (final Segment segment : recycledSegments)
+            {
+                segment.close();
+            }
+            segments.clear();
+            recycledSegments.clear();
+        }
+    }
+
+    private SpooledMessage read(final Segment segment, final int offset, final int length)
+    {
+        final MappedByteBuffer buffer = segment.buffer;
+        final int flags = buffer.get(offset + RECORD_HEADER_LENGTH);
+        final int topicLength = buffer.getShort(offset + RECORD_HEADER_LENGTH + 1) & 0xFFFF;
+        final int correlationIdLength = buffer.getShort(offset + RECORD_HEADER_LENGTH + 3)
+            & 0xFFFF;
+        final byte[] topic = new byte[topicLength];
+        final byte[] correlationId = new byte[correlationIdLength];
+        final byte[] payload = new byte[length - RECORD_FIXED_BODY_LENGTH - topicLength
+            - correlationIdLength];
+        buffer.position(offset + RECORD_HEADER_LENGTH + RECORD_FIXED_BODY_LENGTH);
+        buffer.get(topic);
+        buffer.get(correlationId);
+        buffer.get(payload);
+        return new SpooledMessage(segment.sequence * segmentSize + offset,
+            new String(topic, StandardCharsets.UTF_8), payload, flags & MASK_LEVEL_IDENTIFIER,
+            (flags & FLAG_RETAINED) != 0,
+            (flags & FLAG_CORRELATION_ID) == 0 ? null
+                : new String(correlationId, StandardCharsets.UTF_8));
+    }
+
+    private Segment nextSegment() throws IOException
+    {
+        Segment segment = null;
+        final long sequence = nextSequence++;
+        final File file = new File(directory, segmentFileName(sequence));
+        if (!recycledSegments.isEmpty())
+        {
+            final Segment recycled = recycledSegments.pollFirst();
+            recycled.close();
+            if (!recycled.file.renameTo(file))
+            {
+                throw new IOException(String.format("The spool segment %s could not be renamed.",
+                    recycled.file));
+            }
+            segment = Segment.open(file, sequence, segmentSize);
+        }
+        else if (segments.size() < maximumSegments)
+        {
+            segment = Segment.open(file, sequence, segmentSize);
+        }
+        if (segment != null)
+        {
+            segment.buffer.putInt(0, 0);
+            segments.addLast(segment);
+        }
+        return segment;
+    }
+
+    private void recycle(final Segment segment)
+    {
+        segment.readPosition = 0;
+        segment.writePosition = 0;
+        segment.unconsumed = 0;
+        recycledSegments.addLast(segment);
+    }
+
+    private void recover() throws IOException
+    {
+        final File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_FILE_PREFIX)
+            && name.endsWith(SEGMENT_FILE_SUFFIX));
+        if (files != null)
+        {
+            Arrays.sort(files);
+            for (final File file : files)
+            {
+                final long sequence = Long.parseLong(file.getName().substring(
+                    SEGMENT_FILE_PREFIX.length(),
+                    file.getName().length() - SEGMENT_FILE_SUFFIX.length()));
+                final Segment segment = Segment.open(file, sequence, segmentSize);
+                segment.scan();
+                nextSequence = Math.max(nextSequence, sequence + 1);
+                if (segment.unconsumed > 0
+                    || segments.size() + recycledSegments.size() == files.length - 1)
+                {
+                    segments.addLast(segment);
+                    messageCount += segment.unconsumed;
+                }
+                else
+                {
+                    recycle(segment);
+                }
+            }
+        }
+        if (messageCount > 0)
+        {
+            LOG.info(String.format("Recovered %s spooled message(s) from %s.", messageCount,
+                directory));
+        }
+    }
+
+    private static String segmentFileName(final long sequence)
+    {
+        return String.format("%s%020d%s", SEGMENT_FILE_PREFIX, sequence, SEGMENT_FILE_SUFFIX);
+    }
+
+    private static final class Segment
+    {
+        private final File             file;
+        private final long             sequence;
+        private final RandomAccessFile randomAccessFile;
+        private final MappedByteBuffer buffer;
+        private int                    readPosition;
+        private int                    writePosition;
+        private int                    unconsumed;
+
+        private Segment(final File file, final long sequence,
+            final RandomAccessFile randomAccessFile, final MappedByteBuffer buffer)
+        {
+            this.file = file;
+            this.sequence = sequence;
+            this.randomAccessFile = randomAccessFile;
+            this.buffer = buffer;
+        }
+
+        private static Segment open(final File file, final long sequence, final int segmentSize)
+            throws IOException
+        {
+            final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try
+            {
+                randomAccessFile.setLength(segmentSize);
+                final MappedByteBuffer buffer = randomAccessFile.getChannel()
+                    .map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+                return new Segment(file, sequence, randomAccessFile, buffer);
+            }
+            catch (IOException ex)
+            {
+                randomAccessFile.close();
+                throw ex;
+            }
+        }
+
+        private boolean hasRoom(final int bodyLength)
+        {
+            return writePosition + RECORD_HEADER_LENGTH + bodyLength <= buffer.capacity();
+        }
+
+        private void scan()
+        {
+            int offset = 0;
+            boolean reading = true;
+            while (reading
+                && offset + RECORD_HEADER_LENGTH <= buffer.capacity())
+            {
+                final int length = buffer.getInt(offset);
+                if (length == 0
+                    || offset + RECORD_HEADER_LENGTH + Math.abs(length) > buffer.capacity())
+                {
+                    reading = false;
+                }
+                else
+                {
+                    if (length > 0)
+                    {
+                        unconsumed++;
+                    }
+                    else if (unconsumed == 0)
+                    {
+                        readPosition = offset + RECORD_HEADER_LENGTH - length;
+                    }
+                    offset += RECORD_HEADER_LENGTH + Math.abs(length);
+                }
+            }
+            writePosition = offset;
+        }
+
+        private void close()
+        {
+            try
+            {
+                randomAccessFile.close();
+            }
+            catch (IOException ex)
+            {
+                LOG.warn(String.format("The spool segment %s could not be closed.", file), ex);
+            }
+        }
+    }
+}
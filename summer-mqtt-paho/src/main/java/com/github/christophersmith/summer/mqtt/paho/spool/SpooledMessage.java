@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.spool;
+
+/**
+ * An out-going message read back from a {@link MappedOutboundSpool}.
+ */
+public final class SpooledMessage
+{
+    private transient final long    position;
+    private transient final String  topic;
+    private transient final byte[]  payload;
+    private transient final int     levelIdentifier;
+    private transient final boolean retained;
+    private transient final String  correlationId;
+
+    SpooledMessage(final long position, final String topic, final byte[] payload,
+        final int levelIdentifier, final boolean retained, final String correlationId)
+    {
+        this.position = position;
+        this.topic = topic;
+        this.payload = payload;
+        this.levelIdentifier = levelIdentifier;
+        this.retained = retained;
+        this.correlationId = correlationId;
+    }
+
+    /**
+     * Returns the position of this message in the spool, which is the same value that was
+     * returned when the message was appended.
+     * 
+     * @return the position of this message
+     */
+    public long getPosition()
+    {
+        return position;
+    }
+
+    /**
+     * Returns the Topic the message should be published to.
+     * 
+     * @return the Topic
+     */
+    public String getTopic()
+    {
+        return topic;
+    }
+
+    /**
+     * Returns the payload to publish.
+     * 
+     * @return the payload
+     */
+    public byte[] getPayload()
+    {
+        return payload;
+    }
+
+    /**
+     * Returns the QoS level identifier the message should be published with.
+     * 
+     * @return the QoS level identifier
+     */
+    public int getLevelIdentifier()
+    {
+        return levelIdentifier;
+    }
+
+    /**
+     * Returns whether the message should be retained.
+     * 
+     * @return true if the message should be retained
+     */
+    public boolean isRetained()
+    {
+        return retained;
+    }
+
+    /**
+     * Returns the optional Correlation ID of the message.
+     * 
+     * @return the Correlation ID, or null if not set
+     */
+    public String getCorrelationId()
+    {
+        return correlationId;
+    }
+}
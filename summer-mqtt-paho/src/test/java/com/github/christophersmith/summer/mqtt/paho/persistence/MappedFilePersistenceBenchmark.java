@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
+import org.eclipse.paho.client.mqttv3.MqttPersistable;
+import org.eclipse.paho.client.mqttv3.MqttPersistenceException;
+import org.eclipse.paho.client.mqttv3.internal.MqttPersistentData;
+import org.eclipse.paho.client.mqttv3.persist.MqttDefaultFilePersistence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Compares {@link MappedFilePersistence} with Paho's {@link MqttDefaultFilePersistence} for the
+ * put and remove cycle Paho runs for each QoS 1 message. Paho only reads persisted messages back
+ * when it restores state on connect, so reads aren't measured.
+ * <p>
+ * {@link MqttDefaultFilePersistence} syncs each put to the storage device, so only the
+ * {@code mapped-force} type, which sets {@link MappedFilePersistence#setForceOnPut(boolean)},
+ * compares like for like. The {@code mapped} type leaves writing out to the operating system, and
+ * its records only survive a crash of the JVM.
+ * <p>
+ * This isn't run as part of the build. Run the {@link #main(String[])} method from the test
+ * classpath to execute it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappedFilePersistenceBenchmark
+{
+    @Param({ "mapped", "mapped-force", "file" })
+    public String                 persistenceType;
+    @Param({ "64", "4096" })
+    public int                    payloadSize;
+    private File                  directory;
+    private MqttClientPersistence persistence;
+    private MqttPersistable       persistable;
+    private int                   messageId;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, MqttPersistenceException
+    {
+        directory = Files.createTempDirectory("summer-mqtt-persistence").toFile();
+        if ("file".equals(persistenceType))
+        {
+            persistence = new MqttDefaultFilePersistence(directory.getAbsolutePath());
+        }
+        else
+        {
+            final MappedFilePersistence mappedFilePersistence = new MappedFilePersistence(
+                directory);
+            mappedFilePersistence.setForceOnPut("mapped-force".equals(persistenceType));
+            persistence = mappedFilePersistence;
+        }
+        persistence.open("benchmark", "tcp://localhost:1883");
+        persistable = new MqttPersistentData("s-1", new byte[16], 0, 16, new byte[payloadSize], 0,
+            payloadSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws MqttPersistenceException
+    {
+        persistence.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public void putRemove() throws MqttPersistenceException
+    {
+        messageId = messageId % 65535 + 1;
+        final String key = "s-" + messageId;
+        persistence.put(key, persistable);
+        persistence.remove(key);
+    }
+
+    public static void main(final String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+            .include(MappedFilePersistenceBenchmark.class.getSimpleName()).build()).run();
+    }
+}
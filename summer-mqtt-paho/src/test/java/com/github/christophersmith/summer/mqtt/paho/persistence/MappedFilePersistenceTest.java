@@ -0,0 +1,293 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.persistence;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttPersistable;
+import org.eclipse.paho.client.mqttv3.MqttPersistenceException;
+import org.eclipse.paho.client.mqttv3.internal.MqttPersistentData;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedFilePersistenceTest
+{
+    private static final String VALUE_CLIENT_ID  = "client-test";
+    private static final String VALUE_SERVER_URI = "tcp://localhost:1883";
+    private static final int    SEGMENT_SIZE     = 4096;
+
+    @Rule
+    public ExpectedException    thrown           = ExpectedException.none();
+    @Rule
+    public TemporaryFolder      temporaryFolder  = new TemporaryFolder();
+
+    @Test
+    public void testInvalidDirectory()
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'directory' must be set!");
+
+        new MappedFilePersistence(null);
+    }
+
+    @Test
+    public void testNotOpen()
+    {
+        try
+        {
+            new MappedFilePersistence(temporaryFolder.getRoot()).get("s-1");
+            Assert.fail("The persistence should not be open.");
+        }
+        catch (MqttPersistenceException ex)
+        {
+            Assert.assertEquals(MqttException.REASON_CODE_CLIENT_CLOSED, ex.getReasonCode());
+            Assert.assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testPutGetRemove() throws MqttPersistenceException
+    {
+        final MappedFilePersistence persistence = open(temporaryFolder.getRoot());
+        try
+        {
+            persistence.put("s-1", createPersistable("header-1", "payload-1"));
+            persistence.put("s-2", createPersistable("header-2", ""));
+            Assert.assertTrue(persistence.containsKey("s-1"));
+            assertPersistable("header-1", "payload-1", persistence.get("s-1"));
+            assertPersistable("header-2", "", persistence.get("s-2"));
+            persistence.put("s-1", createPersistable("header-3", "payload-3"));
+            assertPersistable("header-3", "payload-3", persistence.get("s-1"));
+            persistence.remove("s-1");
+            Assert.assertFalse(persistence.containsKey("s-1"));
+            Assert.assertNull(persistence.get("s-1"));
+            Assert.assertEquals(Collections.singletonList("s-2"),
+                Collections.list(persistence.keys()));
+            persistence.clear();
+            Assert.assertFalse(persistence.keys().hasMoreElements());
+            persistence.put("s-4", createPersistable("header-4", "payload-4"));
+            assertPersistable("header-4", "payload-4", persistence.get("s-4"));
+        }
+        finally
+        {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void testRecovery() throws MqttPersistenceException
+    {
+        final File directory = temporaryFolder.getRoot();
+        MappedFilePersistence persistence = open(directory);
+        for (int i = 0; i < 100; i++)
+        {
+            persistence.put(String.format("s-%s", i),
+                createPersistable(String.format("header-%s", i), String.format("payload-%s", i)));
+        }
+        for (int i = 0; i < 100; i += 2)
+        {
+            persistence.remove(String.format("s-%s", i));
+        }
+        persistence.close();
+        persistence = open(directory);
+        try
+        {
+            final List<String> keys = Collections.list(persistence.keys());
+            Assert.assertEquals(50, keys.size());
+            for (int i = 1; i < 100; i += 2)
+            {
+                assertPersistable(String.format("header-%s", i), String.format("payload-%s", i),
+                    persistence.get(String.format("s-%s", i)));
+            }
+            Assert.assertFalse(persistence.containsKey("s-0"));
+        }
+        finally
+        {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void testCompaction() throws MqttPersistenceException
+    {
+        final File directory = temporaryFolder.getRoot();
+        MappedFilePersistence persistence = open(directory);
+        final String payload = new String(new char[500]).replace('\0', 'x');
+        persistence.put("s-keep", createPersistable("header-keep", "payload-keep"));
+        for (int i = 0; i < 100; i++)
+        {
+            persistence.put(String.format("s-%s", i), createPersistable("header", payload));
+            persistence.remove(String.format("s-%s", i));
+        }
+        persistence.compact();
+        Assert.assertTrue(persistence.getSegmentCount() <= 2);
+        assertPersistable("header-keep", "payload-keep", persistence.get("s-keep"));
+        persistence.close();
+        persistence = open(directory);
+        try
+        {
+            Assert.assertEquals(Collections.singletonList("s-keep"),
+                Collections.list(persistence.keys()));
+            assertPersistable("header-keep", "payload-keep", persistence.get("s-keep"));
+        }
+        finally
+        {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void testBackgroundCompaction() throws Exception
+    {
+        final MappedFilePersistence persistence = open(temporaryFolder.getRoot());
+        try
+        {
+            final String payload = new String(new char[500]).replace('\0', 'x');
+            persistence.put("s-keep", createPersistable("header-keep", "payload-keep"));
+            for (int i = 0; i < 100; i++)
+            {
+                persistence.put(String.format("s-%s", i), createPersistable("header", payload));
+                persistence.remove(String.format("s-%s", i));
+            }
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (persistence.getSegmentCount() > 2
+                && System.currentTimeMillis() < deadline)
+            {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(persistence.getSegmentCount() <= 2);
+            assertPersistable("header-keep", "payload-keep", persistence.get("s-keep"));
+        }
+        finally
+        {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void testCompactionBehindLongLivedRecord() throws MqttPersistenceException
+    {
+        final File directory = temporaryFolder.getRoot();
+        MappedFilePersistence persistence = open(directory);
+        final String payload = new String(new char[500]).replace('\0', 'x');
+        // the oldest segment stays mostly live, so it can't be compacted
+        persistence.put("s-keep", createPersistable("header-keep",
+            new String(new char[SEGMENT_SIZE - 1000]).replace('\0', 'k')));
+        persistence.put("s-removed", createPersistable("header-removed", "payload-removed"));
+        for (int i = 0; i < 100; i++)
+        {
+            persistence.put(String.format("s-%s", i), createPersistable("header", payload));
+            persistence.remove(String.format("s-%s", i));
+            if (i == 10)
+            {
+                persistence.remove("s-removed");
+            }
+        }
+        persistence.compact();
+        Assert.assertTrue(persistence.getSegmentCount() <= 3);
+        persistence.close();
+        persistence = open(directory);
+        try
+        {
+            // the removal record must outlive its segment, as the older segment still holds the key
+            Assert.assertEquals(Collections.singletonList("s-keep"),
+                Collections.list(persistence.keys()));
+        }
+        finally
+        {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void testForceOnPut() throws MqttPersistenceException
+    {
+        final File directory = temporaryFolder.getRoot();
+        MappedFilePersistence persistence = new MappedFilePersistence(directory, SEGMENT_SIZE);
+        Assert.assertFalse(persistence.isForceOnPut());
+        persistence.setForceOnPut(true);
+        Assert.assertTrue(persistence.isForceOnPut());
+        persistence.open(VALUE_CLIENT_ID, VALUE_SERVER_URI);
+        final String payload = new String(new char[500]).replace('\0', 'x');
+        persistence.put("s-keep", createPersistable("header-keep", "payload-keep"));
+        for (int i = 0; i < 20; i++)
+        {
+            persistence.put(String.format("s-%s", i), createPersistable("header", payload));
+            persistence.remove(String.format("s-%s", i));
+        }
+        persistence.compact();
+        persistence.close();
+        persistence = open(directory);
+        try
+        {
+            Assert.assertEquals(Collections.singletonList("s-keep"),
+                Collections.list(persistence.keys()));
+            assertPersistable("header-keep", "payload-keep", persistence.get("s-keep"));
+        }
+        finally
+        {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void testLargeRecord() throws MqttPersistenceException
+    {
+        final MappedFilePersistence persistence = open(temporaryFolder.getRoot());
+        try
+        {
+            final String payload = new String(new char[SEGMENT_SIZE * 2]).replace('\0', 'x');
+            persistence.put("s-1", createPersistable("header-1", payload));
+            assertPersistable("header-1", payload, persistence.get("s-1"));
+        }
+        finally
+        {
+            persistence.close();
+        }
+    }
+
+    private static MappedFilePersistence open(final File directory)
+        throws MqttPersistenceException
+    {
+        final MappedFilePersistence persistence = new MappedFilePersistence(directory,
+            SEGMENT_SIZE);
+        persistence.open(VALUE_CLIENT_ID, VALUE_SERVER_URI);
+        return persistence;
+    }
+
+    private static MqttPersistable createPersistable(final String header, final String payload)
+    {
+        final byte[] headerBytes = header.getBytes(StandardCharsets.UTF_8);
+        final byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        return new MqttPersistentData("key", headerBytes, 0, headerBytes.length, payloadBytes, 0,
+            payloadBytes.length);
+    }
+
+    private static void assertPersistable(final String header, final String payload,
+        final MqttPersistable persistable) throws MqttPersistenceException
+    {
+        Assert.assertEquals(header, new String(persistable.getHeaderBytes(),
+            persistable.getHeaderOffset(), persistable.getHeaderLength(), StandardCharsets.UTF_8));
+        Assert.assertEquals(payload,
+            new String(persistable.getPayloadBytes(), persistable.getPayloadOffset(),
+                persistable.getPayloadLength(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.persistence;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttPersistable;
+import org.eclipse.paho.client.mqttv3.MqttPersistenceException;
+import org.eclipse.paho.client.mqttv3.internal.MqttPersistentData;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class OffHeapMemoryPersistenceTest
+{
+    private static final String VALUE_CLIENT_ID  = "client-test";
+    private static final String VALUE_SERVER_URI = "tcp://localhost:1883";
+
+    @Rule
+    public ExpectedException    thrown           = ExpectedException.none();
+
+    @Test
+    public void testInvalidSlabSize()
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'slabSize' must be a multiple of 'blockSize'!");
+
+        new OffHeapMemoryPersistence(4096, 1000, 64, OffHeapOverflowPolicy.REJECT);
+    }
+
+    @Test
+    public void testInvalidOverflowPolicy()
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'overflowPolicy' must be set!");
+
+        new OffHeapMemoryPersistence(4096, 1024, 64, null);
+    }
+
+    @Test
+    public void testNotOpen()
+    {
+        try
+        {
+            new OffHeapMemoryPersistence(OffHeapMemoryPersistence.DEFAULT_SLAB_SIZE).get("s-1");
+            Assert.fail("The persistence should not be open.");
+        }
+        catch (MqttPersistenceException ex)
+        {
+            Assert.assertEquals(MqttException.REASON_CODE_CLIENT_CLOSED, ex.getReasonCode());
+            Assert.assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testPutGetRemove() throws MqttPersistenceException
+    {
+        final OffHeapMemoryPersistence persistence = open(OffHeapOverflowPolicy.REJECT);
+        final String payload = new String(new char[300]).replace('\0', 'x');
+        persistence.put("s-1", createPersistable("header-1", payload));
+        persistence.put("s-2", createPersistable("header-2", ""));
+        Assert.assertEquals(2, persistence.getMessageCount());
+        Assert.assertEquals(1024, persistence.getAllocatedBytes());
+        Assert.assertEquals(64 * 6, persistence.getUsedBytes());
+        Assert.assertEquals(316, persistence.getStoredBytes());
+        Assert.assertEquals(64 * 6 / 2048.0, persistence.getOccupancy(), 0.0001);
+        assertPersistable("header-1", payload, persistence.get("s-1"));
+        assertPersistable("header-2", "", persistence.get("s-2"));
+        persistence.put("s-1", createPersistable("header-3", "payload-3"));
+        assertPersistable("header-3", "payload-3", persistence.get("s-1"));
+        Assert.assertEquals(64 * 2, persistence.getUsedBytes());
+        persistence.remove("s-1");
+        Assert.assertFalse(persistence.containsKey("s-1"));
+        Assert.assertNull(persistence.get("s-1"));
+        Assert.assertEquals(Collections.singletonList("s-2"),
+            Collections.list(persistence.keys()));
+        persistence.clear();
+        Assert.assertEquals(0, persistence.getUsedBytes());
+        Assert.assertEquals(0, persistence.getStoredBytes());
+        persistence.close();
+        Assert.assertEquals(0, persistence.getAllocatedBytes());
+    }
+
+    @Test
+    public void testReject() throws MqttPersistenceException
+    {
+        final OffHeapMemoryPersistence persistence = open(OffHeapOverflowPolicy.REJECT);
+        final String payload = new String(new char[1000]).replace('\0', 'x');
+        persistence.put("s-1", createPersistable("header-1", payload));
+        persistence.put("s-2", createPersistable("header-2", payload));
+        Assert.assertEquals(2048, persistence.getAllocatedBytes());
+        try
+        {
+            persistence.put("s-3", createPersistable("header-3", payload));
+            Assert.fail("The message should have been rejected.");
+        }
+        catch (MqttPersistenceException ex)
+        {
+            Assert.assertEquals(1, persistence.getRejectionCount());
+        }
+        Assert.assertEquals(Arrays.asList("s-1", "s-2"), Collections.list(persistence.keys()));
+        persistence.remove("s-1");
+        persistence.put("s-3", createPersistable("header-3", payload));
+        assertPersistable("header-3", payload, persistence.get("s-3"));
+        persistence.close();
+    }
+
+    @Test
+    public void testRejectOverwrite() throws MqttPersistenceException
+    {
+        final OffHeapMemoryPersistence persistence = open(OffHeapOverflowPolicy.REJECT);
+        final String payload = new String(new char[1000]).replace('\0', 'x');
+        persistence.put("s-1", createPersistable("header-1", payload));
+        persistence.put("s-2", createPersistable("header-2", payload));
+        try
+        {
+            persistence.put("s-1",
+                createPersistable("header-3", new String(new char[1500]).replace('\0', 'y')));
+            Assert.fail("The message should have been rejected.");
+        }
+        catch (MqttPersistenceException ex)
+        {
+            Assert.assertEquals(1, persistence.getRejectionCount());
+        }
+        // the rejected overwrite keeps the message that was already persisted for the key
+        assertPersistable("header-1", payload, persistence.get("s-1"));
+        Assert.assertEquals(Arrays.asList("s-1", "s-2"), Collections.list(persistence.keys()));
+        persistence.put("s-1", createPersistable("header-4", payload));
+        assertPersistable("header-4", payload, persistence.get("s-1"));
+        Assert.assertEquals(2048, persistence.getAllocatedBytes());
+        persistence.close();
+    }
+
+    @Test
+    public void testEvictOldest() throws MqttPersistenceException
+    {
+        final OffHeapMemoryPersistence persistence = open(OffHeapOverflowPolicy.EVICT_OLDEST);
+        final String payload = new String(new char[1000]).replace('\0', 'x');
+        persistence.put("s-1", createPersistable("header-1", payload));
+        persistence.put("s-2", createPersistable("header-2", payload));
+        persistence.put("s-3", createPersistable("header-3", payload));
+        Assert.assertEquals(1, persistence.getEvictionCount());
+        Assert.assertEquals(Arrays.asList("s-2", "s-3"), Collections.list(persistence.keys()));
+        assertPersistable("header-2", payload, persistence.get("s-2"));
+        assertPersistable("header-3", payload, persistence.get("s-3"));
+        persistence.close();
+    }
+
+    @Test
+    public void testLargerThanCap() throws MqttPersistenceException
+    {
+        final OffHeapMemoryPersistence persistence = open(OffHeapOverflowPolicy.EVICT_OLDEST);
+        persistence.put("s-1", createPersistable("header-1", "payload-1"));
+        try
+        {
+            persistence.put("s-2",
+                createPersistable("header-2", new String(new char[4096]).replace('\0', 'x')));
+            Assert.fail("The message should have been rejected.");
+        }
+        catch (MqttPersistenceException ex)
+        {
+            Assert.assertEquals(1, persistence.getRejectionCount());
+        }
+        Assert.assertEquals(0, persistence.getEvictionCount());
+        Assert.assertTrue(persistence.containsKey("s-1"));
+        persistence.close();
+    }
+
+    private static OffHeapMemoryPersistence open(final OffHeapOverflowPolicy overflowPolicy)
+        throws MqttPersistenceException
+    {
+        final OffHeapMemoryPersistence persistence = new OffHeapMemoryPersistence(2048, 1024, 64,
+            overflowPolicy);
+        persistence.open(VALUE_CLIENT_ID, VALUE_SERVER_URI);
+        return persistence;
+    }
+
+    private static MqttPersistable createPersistable(final String header, final String payload)
+    {
+        final byte[] headerBytes = header.getBytes(StandardCharsets.UTF_8);
+        final byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        return new MqttPersistentData("key", headerBytes, 0, headerBytes.length, payloadBytes, 0,
+            payloadBytes.length);
+    }
+
+    private static void assertPersistable(final String header, final String payload,
+        final MqttPersistable persistable) throws MqttPersistenceException
+    {
+        Assert.assertEquals(header, new String(persistable.getHeaderBytes(),
+            persistable.getHeaderOffset(), persistable.getHeaderLength(), StandardCharsets.UTF_8));
+        Assert.assertEquals(payload,
+            new String(persistable.getPayloadBytes(), persistable.getPayloadOffset(),
+                persistable.getPayloadLength(), StandardCharsets.UTF_8));
+    }
+}
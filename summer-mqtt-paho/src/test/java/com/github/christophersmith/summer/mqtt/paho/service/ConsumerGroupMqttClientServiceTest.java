@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+
+import com.github.christophersmith.summer.mqtt.core.MqttClientConnectionType;
+import com.github.christophersmith.summer.mqtt.core.MqttQualityOfService;
+import com.github.christophersmith.summer.mqtt.core.TopicSubscription;
+import com.github.christophersmith.summer.mqtt.core.metrics.SimpleMqttClientMetrics;
+import com.github.christophersmith.summer.mqtt.paho.service.util.BrokerHelper;
+
+public class ConsumerGroupMqttClientServiceTest
+{
+    private static final String            VALUE_CLIENT_ID = "group";
+    private static final String            VALUE_GROUP     = "workers";
+    @Rule
+    public ExpectedException               thrown          = ExpectedException.none();
+    private final List<Message<?>>         received        = new ArrayList<Message<?>>();
+    private ConsumerGroupMqttClientService service;
+
+    @After
+    public void after()
+    {
+        if (service != null)
+        {
+            service.close();
+        }
+    }
+
+    @Test
+    public void testConstruction() throws MqttException
+    {
+        service = new ConsumerGroupMqttClientService(BrokerHelper.getBrokerUri(), VALUE_CLIENT_ID,
+            VALUE_GROUP, 2);
+        Assert.assertEquals(VALUE_CLIENT_ID, service.getClientId());
+        Assert.assertEquals(VALUE_GROUP, service.getGroupName());
+        Assert.assertEquals(MqttClientConnectionType.SUBSCRIBER, service.getConnectionType());
+        Assert.assertEquals(2, service.getGroupSize());
+        Assert.assertEquals("group-0", service.getMembers().get(0).getClientId());
+        Assert.assertEquals("group-1", service.getMembers().get(1).getClientId());
+        Assert.assertEquals(MqttClientConnectionType.SUBSCRIBER,
+            service.getMembers().get(1).getConnectionType());
+    }
+
+    @Test
+    public void testConstructionInvalidGroupName() throws MqttException
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'groupName' must not contain '/', '+' or '#'!");
+        new ConsumerGroupMqttClientService(BrokerHelper.getBrokerUri(), VALUE_CLIENT_ID,
+            "workers/1", 2);
+    }
+
+    @Test
+    public void testConstructionGroupSizeZero() throws MqttException
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'groupSize' must be greater than 0!");
+        new ConsumerGroupMqttClientService(BrokerHelper.getBrokerUri(), VALUE_CLIENT_ID,
+            VALUE_GROUP, 0);
+    }
+
+    @Test
+    public void testConstructionMemberFailure() throws MqttException
+    {
+        final List<GaugeCountingMetrics> memberMetrics = new ArrayList<GaugeCountingMetrics>();
+        try
+        {
+            new ConsumerGroupMqttClientService(BrokerHelper.getBrokerUri(), VALUE_CLIENT_ID,
+                VALUE_GROUP, 3, null, member -> addMemberMetrics(member, memberMetrics, 2));
+            Assert.fail("The construction should have failed.");
+        }
+        catch (IllegalStateException ex)
+        {
+            // the members created before the failure are closed
+            Assert.assertEquals(2, memberMetrics.size());
+            for (final GaugeCountingMetrics metrics : memberMetrics)
+            {
+                Assert.assertEquals(0, metrics.gaugeCount);
+            }
+        }
+    }
+
+    @Test
+    public void testResizeMemberFailure() throws MqttException
+    {
+        final List<GaugeCountingMetrics> memberMetrics = new ArrayList<GaugeCountingMetrics>();
+        service = new ConsumerGroupMqttClientService(BrokerHelper.getBrokerUri(), VALUE_CLIENT_ID,
+            VALUE_GROUP, 1, null, member -> addMemberMetrics(member, memberMetrics, 2));
+        try
+        {
+            service.setGroupSize(3);
+            Assert.fail("The resize should have failed.");
+        }
+        catch (IllegalStateException ex)
+        {
+            Assert.assertEquals(1, service.getGroupSize());
+            Assert.assertTrue(memberMetrics.get(0).gaugeCount > 0);
+            Assert.assertEquals(0, memberMetrics.get(1).gaugeCount);
+        }
+    }
+
+    @Test
+    public void testSubscribeAndResize() throws MqttException
+    {
+        final List<String> initialized = new ArrayList<String>();
+        service = new ConsumerGroupMqttClientService(BrokerHelper.getBrokerUri(), VALUE_CLIENT_ID,
+            VALUE_GROUP, 2, null, member -> initialized.add(member.getClientId()));
+        service.subscribe("devices/+/status", MqttQualityOfService.QOS_1);
+        final List<TopicSubscription> subscriptions = service.getTopicSubscriptions();
+        Assert.assertEquals(1, subscriptions.size());
+        Assert.assertEquals("devices/+/status", subscriptions.get(0).getTopicFilter());
+        Assert.assertFalse(subscriptions.get(0).isSubscribed());
+        service.setGroupSize(3);
+        Assert.assertEquals(3, service.getGroupSize());
+        for (final PahoAsyncMqttClientService member : service.getMembers())
+        {
+            Assert.assertEquals("$share/workers/devices/+/status",
+                member.getTopicSubscriptions().get(0).getTopicFilter());
+            Assert.assertEquals(MqttQualityOfService.QOS_1,
+                member.getTopicSubscriptions().get(0).getQualityOfService());
+        }
+        service.setGroupSize(1);
+        Assert.assertEquals(1, service.getGroupSize());
+        Assert.assertEquals(3, initialized.size());
+        service.unsubscribe("devices/+/status");
+        Assert.assertTrue(service.getTopicSubscriptions().isEmpty());
+        Assert.assertTrue(service.getMembers().get(0).getTopicSubscriptions().isEmpty());
+    }
+
+    @Test
+    public void testReceivedMessages() throws Exception
+    {
+        service = new ConsumerGroupMqttClientService(BrokerHelper.getBrokerUri(), VALUE_CLIENT_ID,
+            VALUE_GROUP, 2);
+        final ExecutorSubscribableChannel inboundMessageChannel = new ExecutorSubscribableChannel();
+        inboundMessageChannel.subscribe(message -> received.add(message));
+        service.setInboundMessageChannel(inboundMessageChannel);
+        service.getMembers().get(0).messageArrived("devices/1/status",
+            new MqttMessage("Test".getBytes()));
+        service.getMembers().get(1).messageArrived("devices/2/status",
+            new MqttMessage("Test".getBytes()));
+        service.getMembers().get(1).messageArrived("devices/3/status",
+            new MqttMessage("Test".getBytes()));
+        Assert.assertEquals(3, received.size());
+        Assert.assertEquals(Long.valueOf(1), service.getReceivedMessageCounts().get("group-0"));
+        Assert.assertEquals(Long.valueOf(2), service.getReceivedMessageCounts().get("group-1"));
+        final ReceivedMessageSample firstSample = service.sampleReceivedMessages();
+        service.getMembers().get(1).messageArrived("devices/4/status",
+            new MqttMessage("Test".getBytes()));
+        final ReceivedMessageSample secondSample = service.sampleReceivedMessages();
+        Assert.assertEquals(Long.valueOf(3),
+            secondSample.getReceivedMessageCounts().get("group-1"));
+        Assert.assertEquals(0, secondSample.getMessagesPerSecond(firstSample).get("group-0"), 0);
+        final double messagesPerSecond = secondSample.getMessagesPerSecond(firstSample)
+            .get("group-1");
+        Assert.assertTrue(messagesPerSecond > 0);
+        // sampling again doesn't change the rate between the earlier samples
+        service.sampleReceivedMessages();
+        Assert.assertEquals(messagesPerSecond,
+            secondSample.getMessagesPerSecond(firstSample).get("group-1"), 0);
+    }
+
+    private static void addMemberMetrics(final PahoAsyncMqttClientService member,
+        final List<GaugeCountingMetrics> memberMetrics, final int failingIndex)
+    {
+        if (memberMetrics.size() == failingIndex)
+        {
+            throw new IllegalStateException("Test");
+        }
+        final GaugeCountingMetrics metrics = new GaugeCountingMetrics();
+        member.setMqttClientMetrics(metrics);
+        memberMetrics.add(metrics);
+    }
+
+    private static final class GaugeCountingMetrics extends SimpleMqttClientMetrics
+    {
+        private int gaugeCount;
+
+        @Override
+        public void registerGauge(final String name, final IntSupplier value)
+        {
+            super.registerGauge(name, value);
+            gaugeCount++;
+        }
+
+        @Override
+        public void unregisterGauge(final String name, final IntSupplier value)
+        {
+            super.unregisterGauge(name, value);
+            gaugeCount--;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.github.christophersmith.summer.mqtt.core.MqttClientConfiguration;
+import com.github.christophersmith.summer.mqtt.core.MqttMessageEventType;
+import com.github.christophersmith.summer.mqtt.core.util.MqttClientEventPublisher;
+
+/**
+ * Measures the per-message cost of the Published and Delivered Events, with the Events enabled,
+ * sampled and disabled.
+ * <p>
+ * Run with the GC profiler, which {@link #main(String[])} adds, the {@code gc.alloc.rate.norm}
+ * result of the disabled case shows 0 bytes per operation, as a disabled Event isn't created.
+ * <p>
+ * This isn't run as part of the build. Run the {@link #main(String[])} method from the test
+ * classpath to execute it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventPublishingBenchmark
+{
+    private static final String       CLIENT_ID = "benchmark";
+    @Param({ "enabled", "sampled", "disabled" })
+    public String                     eventSetting;
+    private MqttClientEventPublisher  mqttClientEventPublisher;
+    private ApplicationEventPublisher applicationEventPublisher;
+    private int                       messageId;
+
+    @Setup(Level.Trial)
+    public void setup(final Blackhole blackhole)
+    {
+        final MqttClientConfiguration configuration = new MqttClientConfiguration();
+        if ("sampled".equals(eventSetting))
+        {
+            configuration.setMessageEventSampleRate(100);
+        }
+        else if ("disabled".equals(eventSetting))
+        {
+            configuration.setMessageEventEnabled(MqttMessageEventType.PUBLISHED, false);
+            configuration.setMessageEventEnabled(MqttMessageEventType.DELIVERED, false);
+        }
+        mqttClientEventPublisher = new MqttClientEventPublisher(configuration);
+        applicationEventPublisher = new ApplicationEventPublisher()
+        {
+            @Override
+            public void publishEvent(final ApplicationEvent event)
+            {
+                blackhole.consume(event);
+            }
+
+            @Override
+            public void publishEvent(final Object event)
+            {
+                blackhole.consume(event);
+            }
+        };
+    }
+
+    @Benchmark
+    public void publishedAndDelivered()
+    {
+        messageId = messageId % 65535 + 1;
+        mqttClientEventPublisher.publishMessagePublishedEvent(CLIENT_ID, messageId, null,
+            applicationEventPublisher, this);
+        mqttClientEventPublisher.publishMessageDeliveredEvent(CLIENT_ID, messageId, null, 0,
+            applicationEventPublisher, this);
+    }
+
+    public static void main(final String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(EventPublishingBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class).build()).run();
+    }
+}
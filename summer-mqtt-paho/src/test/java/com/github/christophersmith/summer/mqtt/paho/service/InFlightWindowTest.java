@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.messaging.support.MessageBuilder;
+
+import com.github.christophersmith.summer.mqtt.core.MqttClientConfiguration;
+import com.github.christophersmith.summer.mqtt.core.MqttInFlightOverflowStrategy;
+import com.github.christophersmith.summer.mqtt.core.MqttPriorityScheduling;
+
+public class InFlightWindowTest
+{
+    private static final String       VALUE_TEST = "Test";
+    private final List<PublishFuture> evicted    = new ArrayList<PublishFuture>();
+
+    @Test
+    public void testUnbounded() throws InterruptedException
+    {
+        final InFlightWindow window = new InFlightWindow(evicted::add);
+        final MqttClientConfiguration configuration = new MqttClientConfiguration();
+        for (int i = 0; i < 100; i++)
+        {
+            Assert.assertEquals(InFlightWindow.Admission.SUBMIT,
+                window.acquire(createPublishFuture(0), 0, configuration));
+        }
+        Assert.assertEquals(100, window.getInFlightCount());
+        Assert.assertNull(window.release(configuration));
+        Assert.assertEquals(99, window.getInFlightCount());
+    }
+
+    @Test
+    public void testFail() throws InterruptedException
+    {
+        final InFlightWindow window = new InFlightWindow(evicted::add);
+        final MqttClientConfiguration configuration = new MqttClientConfiguration();
+        configuration.setInFlightOverflowStrategy(MqttInFlightOverflowStrategy.FAIL);
+        Assert.assertEquals(InFlightWindow.Admission.SUBMIT,
+            window.acquire(createPublishFuture(1), 1, configuration));
+        Assert.assertEquals(InFlightWindow.Admission.REJECTED,
+            window.acquire(createPublishFuture(1), 1, configuration));
+        window.release(configuration);
+        Assert.assertEquals(InFlightWindow.Admission.SUBMIT,
+            window.acquire(createPublishFuture(1), 1, configuration));
+    }
+
+    @Test
+    public void testBlock() throws InterruptedException
+    {
+        final InFlightWindow window = new InFlightWindow(evicted::add);
+        final MqttClientConfiguration configuration = new MqttClientConfiguration();
+        configuration.setInFlightWaitMilliseconds(50);
+        Assert.assertEquals(InFlightWindow.Admission.SUBMIT,
+            window.acquire(createPublishFuture(1), 1, configuration));
+        Assert.assertEquals(InFlightWindow.Admission.REJECTED,
+            window.acquire(createPublishFuture(1), 1, configuration));
+        configuration.setInFlightWaitMilliseconds(5000);
+        final Thread releaser = new Thread(() ->
+        {
+            try
+            {
+                Thread.sleep(50);
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+            window.release(configuration);
+        });
+        releaser.start();
+        Assert.assertEquals(InFlightWindow.Admission.SUBMIT,
+            window.acquire(createPublishFuture(1), 1, configuration));
+        releaser.join();
+        Assert.assertEquals(1, window.getInFlightCount());
+    }
+
+    @Test
+    public void testQueue() throws InterruptedException
+    {
+        final InFlightWindow window = new InFlightWindow(evicted::add);
+        final MqttClientConfiguration configuration = new MqttClientConfiguration();
+        configuration.setInFlightOverflowStrategy(MqttInFlightOverflowStrategy.QUEUE);
+        configuration.setInFlightQueueCapacity(2);
+        final PublishFuture first = createPublishFuture(1);
+        final PublishFuture second = createPublishFuture(1);
+        Assert.assertEquals(InFlightWindow.Admission.SUBMIT,
+            window.acquire(createPublishFuture(1), 1, configuration));
+        Assert.assertEquals(InFlightWindow.Admission.QUEUED,
+            window.acquire(first, 1, configuration));
+        Assert.assertEquals(InFlightWindow.Admission.QUEUED,
+            window.acquire(second, 1, configuration));
+        Assert.assertEquals(InFlightWindow.Admission.REJECTED,
+            window.acquire(createPublishFuture(0), 1, configuration));
+        Assert.assertEquals(2, window.getPendingCount());
+        Assert.assertSame(first, window.release(configuration));
+        Assert.assertSame(second, window.release(configuration));
+        Assert.assertEquals(1, window.getInFlightCount());
+        Assert.assertNull(window.release(configuration));
+        Assert.assertEquals(0, window.getInFlightCount());
+        Assert.assertEquals(0, window.getPendingCount());
+        Assert.assertTrue(evicted.isEmpty());
+    }
+
+    @Test
+    public void testRemovePending() throws InterruptedException
+    {
+        final InFlightWindow window = new InFlightWindow(evicted::add);
+        final MqttClientConfiguration configuration = new MqttClientConfiguration();
+        configuration.setInFlightOverflowStrategy(MqttInFlightOverflowStrategy.QUEUE);
+        configuration.setPriorityLaneCount(2);
+        final PublishFuture telemetry = createPublishFuture(0, PublishFuture.LOWEST_PRIORITY);
+        final PublishFuture alarm = createPublishFuture(1, 0);
+        window.acquire(createPublishFuture(1, 0), 1, configuration);
+        window.acquire(telemetry, 1, configuration);
+        window.acquire(alarm, 1, configuration);
+        Assert.assertEquals(Arrays.asList(alarm, telemetry), window.removePending());
+        Assert.assertEquals(0, window.getPendingCount());
+        Assert.assertEquals(1, window.getInFlightCount());
+        Assert.assertNull(window.release(configuration));
+        Assert.assertEquals(0, window.getInFlightCount());
+    }
+
+    @Test
+    public void testDropOldestQualityOfServiceZero() throws InterruptedException
+    {
+        final InFlightWindow window = new InFlightWindow(evicted::add);
+        final MqttClientConfiguration configuration = new MqttClientConfiguration();
+        configuration.setInFlightOverflowStrategy(MqttInFlightOverflowStrategy.DROP_OLDEST_QOS_0);
+        configuration.setInFlightQueueCapacity(2);
+        final PublishFuture qualityOfServiceOne = createPublishFuture(1);
+        final PublishFuture qualityOfServiceZero = createPublishFuture(0);
+        final PublishFuture latest = createPublishFuture(1);
+        window.acquire(createPublishFuture(1), 1, configuration);
+        window.acquire(qualityOfServiceOne, 1, configuration);
+        window.acquire(qualityOfServiceZero, 1, configuration);
+        Assert.assertEquals(InFlightWindow.Admission.QUEUED,
+            window.acquire(latest, 1, configuration));
+        Assert.assertEquals(1, evicted.size());
+        Assert.assertSame(qualityOfServiceZero, evicted.get(0));
+        Assert.assertEquals(InFlightWindow.Admission.REJECTED,
+            window.acquire(createPublishFuture(1), 1, configuration));
+        Assert.assertSame(qualityOfServiceOne, window.release(configuration));
+        Assert.assertSame(latest, window.release(configuration));
+    }
+
+    @Test
+    public void testStrictPriority() throws InterruptedException
+    {
+        final InFlightWindow window = new InFlightWindow(evicted::add);
+        final MqttClientConfiguration configuration = new MqttClientConfiguration();
+        configuration.setInFlightOverflowStrategy(MqttInFlightOverflowStrategy.QUEUE);
+        configuration.setPriorityLaneCount(3);
+        final PublishFuture telemetry = createPublishFuture(0, PublishFuture.LOWEST_PRIORITY);
+        final PublishFuture command = createPublishFuture(1, 1);
+        final PublishFuture alarm = createPublishFuture(1, 0);
+        window.acquire(createPublishFuture(1, 0), 1, configuration);
+        window.acquire(telemetry, 1, configuration);
+        window.acquire(command, 1, configuration);
+        window.acquire(alarm, 1, configuration);
+        Assert.assertSame(alarm, window.release(configuration));
+        Assert.assertSame(command, window.release(configuration));
+        Assert.assertSame(telemetry, window.release(configuration));
+        Assert.assertNull(window.release(configuration));
+        Assert.assertEquals(0, window.getInFlightCount());
+    }
+
+    @Test
+    public void testWeightedFairPriority() throws InterruptedException
+    {
+        final InFlightWindow window = new InFlightWindow(evicted::add);
+        final MqttClientConfiguration configuration = new MqttClientConfiguration();
+        configuration.setInFlightOverflowStrategy(MqttInFlightOverflowStrategy.QUEUE);
+        configuration.setPriorityLaneCount(2);
+        configuration.setPriorityScheduling(MqttPriorityScheduling.WEIGHTED_FAIR);
+        configuration.setPriorityLaneWeights(3, 1);
+        window.acquire(createPublishFuture(1, 0), 1, configuration);
+        for (int i = 0; i < 8; i++)
+        {
+            window.acquire(createPublishFuture(1, 0), 1, configuration);
+            window.acquire(createPublishFuture(1, 1), 1, configuration);
+        }
+        int highPriorityCount = 0;
+        for (int i = 0; i < 8; i++)
+        {
+            if (window.release(configuration).priority == 0)
+            {
+                highPriorityCount++;
+            }
+        }
+        Assert.assertEquals(6, highPriorityCount);
+        // once a lane is empty, the other lane receives every slot
+        for (int i = 0; i < 8; i++)
+        {
+            window.release(configuration);
+        }
+        Assert.assertNull(window.release(configuration));
+    }
+
+    @Test
+    public void testBlockPriority() throws InterruptedException
+    {
+        final InFlightWindow window = new InFlightWindow(evicted::add);
+        final MqttClientConfiguration configuration = new MqttClientConfiguration();
+        configuration.setPriorityLaneCount(2);
+        configuration.setInFlightWaitMilliseconds(5000);
+        window.acquire(createPublishFuture(1, 0), 1, configuration);
+        final List<Integer> admitted = Collections.synchronizedList(new ArrayList<Integer>());
+        final Thread telemetry = startAcquire(window, configuration, 1, admitted);
+        final Thread alarm = startAcquire(window, configuration, 0, admitted);
+        while (telemetry.getState() != Thread.State.TIMED_WAITING
+            || alarm.getState() != Thread.State.TIMED_WAITING)
+        {
+            Thread.sleep(5);
+        }
+        window.release(configuration);
+        alarm.join();
+        Assert.assertEquals(Collections.singletonList(0), admitted);
+        window.release(configuration);
+        telemetry.join();
+        Assert.assertEquals(Arrays.asList(0, 1), admitted);
+        Assert.assertEquals(1, window.getInFlightCount());
+    }
+
+    private Thread startAcquire(final InFlightWindow window,
+        final MqttClientConfiguration configuration, final int priority,
+        final List<Integer> admitted)
+    {
+        final Thread thread = new Thread(() ->
+        {
+            try
+            {
+                if (InFlightWindow.Admission.SUBMIT == window
+                    .acquire(createPublishFuture(1, priority), 1, configuration))
+                {
+                    admitted.add(priority);
+                }
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private PublishFuture createPublishFuture(final int levelIdentifier)
+    {
+        return createPublishFuture(levelIdentifier, PublishFuture.LOWEST_PRIORITY);
+    }
+
+    private PublishFuture createPublishFuture(final int levelIdentifier, final int priority)
+    {
+        return new PublishFuture(MessageBuilder.withPayload(VALUE_TEST).build(), VALUE_TEST,
+            VALUE_TEST.getBytes(), levelIdentifier, false, null, priority);
+    }
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.service;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import com.github.christophersmith.summer.mqtt.core.MqttClientConfiguration;
+import com.github.christophersmith.summer.mqtt.core.util.MqttHeaderHelper;
+
+public class InboundBatcherTest
+{
+    private static final String             TOPIC_FILTER  = "devices/+/status";
+    private final MqttClientConfiguration   configuration = new MqttClientConfiguration();
+    private final ScheduledExecutorService  executor      = Executors
+        .newSingleThreadScheduledExecutor();
+    private final BlockingQueue<Message<?>> batches       = new LinkedBlockingQueue<Message<?>>();
+
+    @After
+    public void after()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testMaxMessages() throws InterruptedException
+    {
+        configuration.setInboundBatchMaxMessages(3);
+        configuration.setInboundBatchLingerMilliseconds(60000);
+        final InboundBatcher batcher = createBatcher();
+        for (int i = 0; i < 7; i++)
+        {
+            batcher.add(MessageBuilder.withPayload(i).build(), 1);
+        }
+        Assert.assertEquals(2, batches.size());
+        final Message<?> batch = batches.take();
+        Assert.assertEquals(TOPIC_FILTER, batch.getHeaders().get(MqttHeaderHelper.TOPIC_FILTER));
+        Assert.assertEquals(3, ((List<?>) batch.getPayload()).size());
+        Assert.assertEquals(0, ((Message<?>) ((List<?>) batch.getPayload()).get(0)).getPayload());
+        batcher.flush();
+        batches.take();
+        Assert.assertEquals(1, ((List<?>) batches.take().getPayload()).size());
+    }
+
+    @Test
+    public void testMaxBytes()
+    {
+        configuration.setInboundBatchMaxBytes(100);
+        configuration.setInboundBatchLingerMilliseconds(60000);
+        final InboundBatcher batcher = createBatcher();
+        batcher.add(MessageBuilder.withPayload(1).build(), 60);
+        Assert.assertTrue(batches.isEmpty());
+        batcher.add(MessageBuilder.withPayload(2).build(), 60);
+        Assert.assertEquals(1, batches.size());
+    }
+
+    @Test
+    public void testLinger() throws InterruptedException
+    {
+        configuration.setInboundBatchLingerMilliseconds(20);
+        final InboundBatcher batcher = createBatcher();
+        final long maximum = batcher.getLingerNanoseconds();
+        batcher.add(MessageBuilder.withPayload(1).build(), 1);
+        final Message<?> batch = batches.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(batch);
+        Assert.assertEquals(1, ((List<?>) batch.getPayload()).size());
+        Assert.assertTrue(batcher.getLingerNanoseconds() < maximum);
+        for (int i = 0; i < 10; i++)
+        {
+            batcher.add(MessageBuilder.withPayload(1).build(), 1);
+            Assert.assertNotNull(batches.poll(5, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(maximum / 16, batcher.getLingerNanoseconds(), maximum / 100);
+        configuration.setInboundBatchMaxMessages(1);
+        batcher.add(MessageBuilder.withPayload(1).build(), 1);
+        Assert.assertEquals(maximum, batcher.getLingerNanoseconds());
+    }
+
+    @Test
+    public void testFixedLinger() throws InterruptedException
+    {
+        configuration.setInboundBatchLingerMilliseconds(20);
+        configuration.setInboundBatchAdaptiveLinger(false);
+        final InboundBatcher batcher = createBatcher();
+        final long maximum = batcher.getLingerNanoseconds();
+        batcher.add(MessageBuilder.withPayload(1).build(), 1);
+        Assert.assertNotNull(batches.poll(5, TimeUnit.SECONDS));
+        Assert.assertEquals(maximum, batcher.getLingerNanoseconds());
+    }
+
+    private InboundBatcher createBatcher()
+    {
+        return new InboundBatcher(TOPIC_FILTER, configuration, executor, batches::add);
+    }
+}
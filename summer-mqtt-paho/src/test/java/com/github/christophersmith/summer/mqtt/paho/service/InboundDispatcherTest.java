@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.christophersmith.summer.mqtt.core.MqttInboundOverflowStrategy;
+
+public class InboundDispatcherTest
+{
+    private static final String CLIENT_ID = "client";
+
+    @Test
+    public void testTopicOrder() throws InterruptedException
+    {
+        final int topics = 10;
+        final int messages = 200;
+        final Map<String, List<Integer>> received = new ConcurrentHashMap<String, List<Integer>>();
+        final CountDownLatch latch = new CountDownLatch(topics * messages);
+        final InboundDispatcher dispatcher = new InboundDispatcher(CLIENT_ID, 4, 16,
+            (topic, message) ->
+            {
+                received
+                    .computeIfAbsent(topic,
+                        key -> Collections.synchronizedList(new ArrayList<Integer>()))
+                    .add(message.getId());
+                latch.countDown();
+            });
+        for (int i = 0; i < messages; i++)
+        {
+            for (int t = 0; t < topics; t++)
+            {
+                Assert.assertTrue(dispatcher.dispatch("devices/" + t, createMessage(i, 1),
+                    MqttInboundOverflowStrategy.BLOCK));
+            }
+        }
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(topics, received.size());
+        for (final List<Integer> ids : received.values())
+        {
+            Assert.assertEquals(messages, ids.size());
+            for (int i = 0; i < messages; i++)
+            {
+                Assert.assertEquals(i, ids.get(i).intValue());
+            }
+        }
+        Assert.assertEquals(0, dispatcher.getQueuedCount());
+        Assert.assertEquals(0, dispatcher.getDroppedCount());
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testOverflow() throws InterruptedException
+    {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final InboundDispatcher dispatcher = new InboundDispatcher(CLIENT_ID, 1, 1,
+            (topic, message) ->
+            {
+                started.countDown();
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        Assert.assertTrue(
+            dispatcher.dispatch("a", createMessage(1, 1), MqttInboundOverflowStrategy.DROP));
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(
+            dispatcher.dispatch("a", createMessage(2, 1), MqttInboundOverflowStrategy.DROP));
+        Assert.assertArrayEquals(new int[] { 1 }, dispatcher.getQueueDepths());
+        Assert.assertFalse(
+            dispatcher.dispatch("a", createMessage(3, 1), MqttInboundOverflowStrategy.DROP));
+        Assert.assertFalse(dispatcher.dispatch("a", createMessage(4, 0),
+            MqttInboundOverflowStrategy.DROP_QOS_0));
+        Assert.assertEquals(2, dispatcher.getDroppedCount());
+        release.countDown();
+        Assert.assertTrue(dispatcher.dispatch("a", createMessage(5, 1),
+            MqttInboundOverflowStrategy.DROP_QOS_0));
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testAwaitTermination() throws InterruptedException
+    {
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+        final InboundDispatcher dispatcher = new InboundDispatcher(CLIENT_ID, 2, 16,
+            (topic, message) ->
+            {
+                try
+                {
+                    Thread.sleep(10);
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                received.add(message.getId());
+            });
+        for (int i = 0; i < 10; i++)
+        {
+            Assert.assertTrue(dispatcher.dispatch("devices/" + i, createMessage(i, 1),
+                MqttInboundOverflowStrategy.BLOCK));
+        }
+        dispatcher.shutdown();
+        Assert.assertTrue(dispatcher.awaitTermination(5000));
+        Assert.assertEquals(10, received.size());
+    }
+
+    @Test
+    public void testWorkerIndex()
+    {
+        for (int i = 0; i < 100; i++)
+        {
+            final String topic = "devices/" + i + "/status";
+            final int index = InboundDispatcher.getWorkerIndex(topic, 3);
+            Assert.assertTrue(index >= 0 && index < 3);
+            Assert.assertEquals(index, InboundDispatcher.getWorkerIndex(topic, 3));
+        }
+    }
+
+    private MqttMessage createMessage(final int id, final int qos)
+    {
+        final MqttMessage message = new MqttMessage(new byte[] { 1 });
+        message.setId(id);
+        message.setQos(qos);
+        return message;
+    }
+}
@@ -13,13 +13,47 @@
  */
 package com.github.christophersmith.summer.mqtt.paho.service;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.IntSupplier;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.AdditionalMatchers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
 
+import com.github.christophersmith.summer.mqtt.core.MqttBatchPublishResult;
 import com.github.christophersmith.summer.mqtt.core.MqttClientConnectionType;
+import com.github.christophersmith.summer.mqtt.core.MqttDuplicateKeyExtractor;
+import com.github.christophersmith.summer.mqtt.core.MqttInFlightOverflowStrategy;
+import com.github.christophersmith.summer.mqtt.core.MqttInboundPayloadMode;
+import com.github.christophersmith.summer.mqtt.core.MqttQualityOfService;
+import com.github.christophersmith.summer.mqtt.core.converter.MqttPayloadConverter;
+import com.github.christophersmith.summer.mqtt.core.metrics.MqttClientMetrics;
+import com.github.christophersmith.summer.mqtt.core.metrics.SimpleMqttClientMetrics;
+import com.github.christophersmith.summer.mqtt.core.service.MqttClientListener;
+import com.github.christophersmith.summer.mqtt.core.util.MqttHeaderHelper;
 import com.github.christophersmith.summer.mqtt.paho.service.util.BrokerHelper;
+import com.github.christophersmith.summer.mqtt.paho.spool.MappedOutboundSpool;
 
 public class PahoAsyncMqttClientServiceTest
 {
@@ -28,6 +62,8 @@ public class PahoAsyncMqttClientServiceTest
     private static final String EXCEPTION_MESSAGE_CLIENT_ID  = "'clientId' must be set!";
     @Rule
     public ExpectedException    thrown                       = ExpectedException.none();
+    @Rule
+    public TemporaryFolder      temporaryFolder              = new TemporaryFolder();
 
     @Test
     public void testConstructionBlankServerUri() throws MqttException
@@ -73,4 +109,527 @@ public class PahoAsyncMqttClientServiceTest
         new PahoAsyncMqttClientService(BrokerHelper.getBrokerUri(), BrokerHelper.getClientId(),
             null, null);
     }
+
+    @Test
+    public void testDeliveryLatencyHistogram() throws MqttException
+    {
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(
+            BrokerHelper.getBrokerUri(), BrokerHelper.getClientId(),
+            MqttClientConnectionType.PUBLISHER, null);
+        final PublishFuture future = new PublishFuture(MessageBuilder.withPayload("Test").build(),
+            "Test", "Test".getBytes(), MqttQualityOfService.QOS_1.getLevelIdentifier(), false,
+            null, PublishFuture.LOWEST_PRIORITY);
+        future.submittedNanoseconds = System.nanoTime();
+        final IMqttDeliveryToken token = Mockito.mock(IMqttDeliveryToken.class);
+        Mockito.when(token.getUserContext()).thenReturn(future);
+        service.deliveryComplete(token);
+        Assert.assertEquals(1, service.getDeliveryLatencyHistogram(MqttQualityOfService.QOS_1)
+            .snapshot().getCount());
+        Assert.assertEquals(0, service.getDeliveryLatencyHistogram(MqttQualityOfService.QOS_0)
+            .snapshot().getCount());
+        service.close();
+    }
+
+    @Test
+    public void testMqttClientMetrics() throws Exception
+    {
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(
+            BrokerHelper.getBrokerUri(), BrokerHelper.getClientId(),
+            MqttClientConnectionType.PUBSUB, null);
+        final SimpleMqttClientMetrics metrics = new SimpleMqttClientMetrics();
+        service.setMqttClientMetrics(metrics);
+        Assert.assertTrue(metrics.getGaugeValues().containsKey(MqttClientMetrics.GAUGE_IN_FLIGHT));
+        final PublishFuture future = new PublishFuture(MessageBuilder.withPayload("Test").build(),
+            "Test", "Test".getBytes(), MqttQualityOfService.QOS_1.getLevelIdentifier(), false,
+            null, PublishFuture.LOWEST_PRIORITY);
+        future.submittedNanoseconds = System.nanoTime();
+        final IMqttDeliveryToken token = Mockito.mock(IMqttDeliveryToken.class);
+        Mockito.when(token.getUserContext()).thenReturn(future);
+        service.deliveryComplete(token);
+        service.messageArrived("Test", new MqttMessage("Test".getBytes()));
+        Assert.assertTrue(service
+            .publishAsync(MessageBuilder.withPayload("Test").build())
+            .isCompletedExceptionally());
+        Assert.assertEquals(1, metrics.getDeliveredCount());
+        Assert.assertEquals(1, metrics.getReceivedCount());
+        Assert.assertEquals(4, metrics.getBytesIn());
+        Assert.assertEquals(1, metrics.getPublishFailedCount());
+        service.close();
+        Assert.assertEquals(0, metrics.getGaugeValue(MqttClientMetrics.GAUGE_IN_FLIGHT));
+    }
+
+    @Test
+    public void testInboundPayloadMode() throws Exception
+    {
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(
+            BrokerHelper.getBrokerUri(), BrokerHelper.getClientId(),
+            MqttClientConnectionType.PUBSUB, null);
+        final List<Message<?>> messages = new ArrayList<Message<?>>();
+        final ExecutorSubscribableChannel inboundMessageChannel = new ExecutorSubscribableChannel();
+        inboundMessageChannel.subscribe(messages::add);
+        service.setInboundMessageChannel(inboundMessageChannel);
+        final MqttMessage message = new MqttMessage("Test".getBytes());
+        service.messageArrived("Test", message);
+        Assert.assertNotSame(message.getPayload(), messages.get(0).getPayload());
+        Assert.assertArrayEquals(message.getPayload(), (byte[]) messages.get(0).getPayload());
+        service.getMqttClientConfiguration().setInboundPayloadMode(MqttInboundPayloadMode.SHARED);
+        service.messageArrived("Test", message);
+        Assert.assertSame(message.getPayload(), messages.get(1).getPayload());
+        service.getMqttClientConfiguration()
+            .setInboundPayloadMode(MqttInboundPayloadMode.READ_ONLY_BUFFER);
+        service.messageArrived("Test", message);
+        final ByteBuffer buffer = (ByteBuffer) messages.get(2).getPayload();
+        Assert.assertTrue(buffer.isReadOnly());
+        Assert.assertEquals(ByteBuffer.wrap(message.getPayload()), buffer);
+        service.close();
+    }
+
+    @Test
+    public void testSubscribeMessageChannel() throws Exception
+    {
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(
+            BrokerHelper.getBrokerUri(), BrokerHelper.getClientId(),
+            MqttClientConnectionType.PUBSUB, null);
+        final List<Message<?>> inboundMessages = new ArrayList<Message<?>>();
+        final List<Message<?>> routedMessages = new ArrayList<Message<?>>();
+        final ExecutorSubscribableChannel inboundMessageChannel = new ExecutorSubscribableChannel();
+        inboundMessageChannel.subscribe(inboundMessages::add);
+        final ExecutorSubscribableChannel routedMessageChannel = new ExecutorSubscribableChannel();
+        routedMessageChannel.subscribe(routedMessages::add);
+        service.setInboundMessageChannel(inboundMessageChannel);
+        service.subscribe("devices/+/status", routedMessageChannel);
+        Assert.assertEquals(1, service.getTopicSubscriptions().size());
+        service.messageArrived("devices/1/status", new MqttMessage("Test".getBytes()));
+        service.messageArrived("devices/1/position", new MqttMessage("Test".getBytes()));
+        Assert.assertEquals(1, routedMessages.size());
+        Assert.assertEquals(1, inboundMessages.size());
+        service.unsubscribe("devices/+/status");
+        service.messageArrived("devices/1/status", new MqttMessage("Test".getBytes()));
+        Assert.assertEquals(1, routedMessages.size());
+        Assert.assertEquals(2, inboundMessages.size());
+        service.close();
+    }
+
+    @Test
+    public void testBatchedTopicFilter() throws Exception
+    {
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(
+            BrokerHelper.getBrokerUri(), BrokerHelper.getClientId(),
+            MqttClientConnectionType.PUBSUB, null);
+        final List<Message<?>> messages = new ArrayList<Message<?>>();
+        final ExecutorSubscribableChannel inboundMessageChannel = new ExecutorSubscribableChannel();
+        inboundMessageChannel.subscribe(messages::add);
+        service.setInboundMessageChannel(inboundMessageChannel);
+        service.getMqttClientConfiguration().addBatchedTopicFilter("devices/+/status");
+        service.getMqttClientConfiguration().setInboundBatchMaxMessages(2);
+        service.getMqttClientConfiguration().setInboundBatchLingerMilliseconds(60000);
+        service.messageArrived("devices/1/status", new MqttMessage("Test".getBytes()));
+        service.messageArrived("devices/1/position", new MqttMessage("Test".getBytes()));
+        service.messageArrived("devices/2/status", new MqttMessage("Test".getBytes()));
+        service.messageArrived("devices/3/status", new MqttMessage("Test".getBytes()));
+        Assert.assertEquals(2, messages.size());
+        Assert.assertEquals("devices/1/position",
+            MqttHeaderHelper.getTopicHeaderValue(messages.get(0)));
+        Assert.assertEquals(2, ((List<?>) messages.get(1).getPayload()).size());
+        service.close();
+        Assert.assertEquals(3, messages.size());
+        Assert.assertEquals("devices/+/status",
+            messages.get(2).getHeaders().get(MqttHeaderHelper.TOPIC_FILTER));
+    }
+
+    @Test
+    public void testBatchedTopicFilterDispatchedOnClose() throws Exception
+    {
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(
+            BrokerHelper.getBrokerUri(), BrokerHelper.getClientId(),
+            MqttClientConnectionType.PUBSUB, null);
+        final List<Message<?>> messages = new ArrayList<Message<?>>();
+        final ExecutorSubscribableChannel inboundMessageChannel = new ExecutorSubscribableChannel();
+        inboundMessageChannel.subscribe(message ->
+        {
+            // holds the only worker, so the batched messages are still queued when closing
+            if ("devices/1/position".equals(MqttHeaderHelper.getTopicHeaderValue(message)))
+            {
+                try
+                {
+                    Thread.sleep(200);
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            messages.add(message);
+        });
+        service.setInboundMessageChannel(inboundMessageChannel);
+        service.getMqttClientConfiguration().setInboundDispatchThreads(1);
+        service.getMqttClientConfiguration().addBatchedTopicFilter("devices/+/status");
+        service.getMqttClientConfiguration().setInboundBatchMaxMessages(100);
+        service.getMqttClientConfiguration().setInboundBatchLingerMilliseconds(60000);
+        service.messageArrived("devices/1/position", new MqttMessage("Test".getBytes()));
+        for (int i = 0; i < 10; i++)
+        {
+            service.messageArrived("devices/1/status", new MqttMessage("Test".getBytes()));
+        }
+        service.close();
+        Assert.assertEquals(2, messages.size());
+        Assert.assertEquals(10, ((List<?>) messages.get(1).getPayload()).size());
+    }
+
+    @Test
+    public void testCloseFailure() throws Exception
+    {
+        final MqttAsyncClient mqttClient = createConnectedMqttClient();
+        Mockito.doThrow(new MqttException(MqttException.REASON_CODE_CLIENT_EXCEPTION))
+            .when(mqttClient).close();
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(mqttClient,
+            MqttClientConnectionType.PUBSUB, null);
+        final MqttClientMetrics metrics = Mockito.mock(MqttClientMetrics.class);
+        service.setMqttClientMetrics(metrics);
+        final List<Message<?>> messages = new ArrayList<Message<?>>();
+        final ExecutorSubscribableChannel inboundMessageChannel = new ExecutorSubscribableChannel();
+        inboundMessageChannel.subscribe(messages::add);
+        service.setInboundMessageChannel(inboundMessageChannel);
+        service.getMqttClientConfiguration().addBatchedTopicFilter("devices/+/status");
+        service.getMqttClientConfiguration().setInboundBatchLingerMilliseconds(60000);
+        service.messageArrived("devices/1/status", new MqttMessage("Test".getBytes()));
+        service.close();
+        // the batch is still sent, and the gauges removed, when the MQTT Client fails to close
+        Assert.assertEquals(1, messages.size());
+        Mockito.verify(metrics).unregisterGauge(
+            ArgumentMatchers.eq(MqttClientMetrics.GAUGE_IN_FLIGHT),
+            ArgumentMatchers.any(IntSupplier.class));
+    }
+
+    @Test
+    public void testPublishAsyncCallerFuture() throws Exception
+    {
+        final MqttAsyncClient mqttClient = createConnectedMqttClient();
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(mqttClient,
+            MqttClientConnectionType.PUBLISHER, null);
+        final CompletableFuture<Integer> future = service.publishAsync(createConflatedMessage("1"));
+        final ArgumentCaptor<Object> userContext = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(mqttClient).publish(ArgumentMatchers.anyString(),
+            ArgumentMatchers.any(byte[].class), ArgumentMatchers.anyInt(),
+            ArgumentMatchers.anyBoolean(), userContext.capture(),
+            ArgumentMatchers.any(IMqttActionListener.class));
+        // cancelling the returned future leaves the one the delivery callbacks complete alone
+        future.cancel(true);
+        final PublishFuture publishFuture = (PublishFuture) userContext.getValue();
+        Assert.assertNotSame(future, publishFuture);
+        Assert.assertFalse(publishFuture.isDone());
+        publishFuture.complete(7);
+        Assert.assertTrue(future.isCancelled());
+        service.close();
+    }
+
+    @Test
+    public void testPublishAsyncUnexpectedFailure() throws Exception
+    {
+        final MqttAsyncClient mqttClient = createConnectedMqttClient();
+        Mockito.when(mqttClient.publish(ArgumentMatchers.anyString(),
+            ArgumentMatchers.any(byte[].class), ArgumentMatchers.anyInt(),
+            ArgumentMatchers.anyBoolean(), ArgumentMatchers.any(),
+            ArgumentMatchers.any(IMqttActionListener.class)))
+            .thenThrow(new IllegalStateException("Test"));
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(mqttClient,
+            MqttClientConnectionType.PUBLISHER, null);
+        final CompletableFuture<Integer> future = service.publishAsync(createConflatedMessage("1"));
+        Assert.assertTrue(future.isCompletedExceptionally());
+        Assert.assertEquals(0, service.getInFlightCount());
+        try
+        {
+            future.get();
+            Assert.fail("The future should have failed.");
+        }
+        catch (ExecutionException ex)
+        {
+            Assert.assertTrue(ex.getCause() instanceof MessagingException);
+            Assert.assertTrue(ex.getCause().getCause() instanceof IllegalStateException);
+        }
+        service.close();
+    }
+
+    @Test
+    public void testThrowingPayloadConverter() throws Exception
+    {
+        final MqttAsyncClient mqttClient = createConnectedMqttClient();
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(mqttClient,
+            MqttClientConnectionType.PUBLISHER, null);
+        final SimpleMqttClientMetrics metrics = new SimpleMqttClientMetrics();
+        service.setMqttClientMetrics(metrics);
+        service.getMqttClientConfiguration()
+            .addPayloadConverter(new MqttPayloadConverter<Integer>()
+            {
+                @Override
+                public Class<Integer> getPayloadType()
+                {
+                    return Integer.class;
+                }
+
+                @Override
+                public byte[] toBytes(final Integer payload)
+                {
+                    throw new IllegalArgumentException("Test");
+                }
+            });
+        final Message<Integer> message = MessageBuilder.withPayload(1)
+            .setHeader(MqttHeaderHelper.TOPIC, "sensors/1").setHeader(MqttHeaderHelper.QOS, 0)
+            .build();
+        final CompletableFuture<Integer> future = service.publishAsync(message);
+        Assert.assertTrue(future.isCompletedExceptionally());
+        try
+        {
+            future.get();
+            Assert.fail("The future should have failed.");
+        }
+        catch (ExecutionException ex)
+        {
+            Assert.assertTrue(ex.getCause() instanceof MessagingException);
+            Assert.assertTrue(ex.getCause().getCause() instanceof IllegalArgumentException);
+        }
+        Assert.assertEquals(1, metrics.getPublishFailedCount());
+        // the rest of the batch is still published
+        final MqttBatchPublishResult result = service
+            .publishAll(Arrays.<Message<?>> asList(message, createConflatedMessage("1")));
+        Assert.assertTrue(result.getResults().get(0).isCompletedExceptionally());
+        Assert.assertFalse(result.getResults().get(1).isCompletedExceptionally());
+        Assert.assertEquals(1, result.getFailedCount());
+        Assert.assertEquals(2, metrics.getPublishFailedCount());
+        Mockito.verify(mqttClient, Mockito.times(1)).publish(ArgumentMatchers.anyString(),
+            ArgumentMatchers.any(byte[].class), ArgumentMatchers.anyInt(),
+            ArgumentMatchers.anyBoolean(), ArgumentMatchers.any(),
+            ArgumentMatchers.any(IMqttActionListener.class));
+        service.close();
+    }
+
+    @Test
+    public void testClosePendingMessages() throws Exception
+    {
+        final MqttAsyncClient mqttClient = createConnectedMqttClient();
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(mqttClient,
+            MqttClientConnectionType.PUBLISHER, null);
+        service.getMqttClientConfiguration().setMaxInFlightMessages(1);
+        service.getMqttClientConfiguration()
+            .setInFlightOverflowStrategy(MqttInFlightOverflowStrategy.QUEUE);
+        final CompletableFuture<Integer> submitted = service
+            .publishAsync(createConflatedMessage("1"));
+        final CompletableFuture<Integer> pending = service
+            .publishAsync(createConflatedMessage("2"));
+        Assert.assertEquals(1, service.getPendingCount());
+        service.close();
+        Assert.assertFalse(submitted.isDone());
+        Assert.assertTrue(pending.isCompletedExceptionally());
+        Assert.assertEquals(0, service.getPendingCount());
+    }
+
+    @Test
+    public void testSpoolReplayTransientFailure() throws Exception
+    {
+        final MqttAsyncClient mqttClient = createConnectedMqttClient();
+        final IMqttDeliveryToken token = Mockito.mock(IMqttDeliveryToken.class);
+        final MqttException exception = new MqttException(MqttException.REASON_CODE_MAX_INFLIGHT);
+        Mockito.when(mqttClient.publish(ArgumentMatchers.anyString(),
+            ArgumentMatchers.any(byte[].class), ArgumentMatchers.anyInt(),
+            ArgumentMatchers.anyBoolean(), ArgumentMatchers.any(),
+            ArgumentMatchers.any(IMqttActionListener.class))).thenThrow(exception, exception)
+            .thenReturn(token);
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(mqttClient,
+            MqttClientConnectionType.PUBLISHER, null);
+        final SimpleMqttClientMetrics metrics = new SimpleMqttClientMetrics();
+        service.setMqttClientMetrics(metrics);
+        final List<String> calls = new ArrayList<String>();
+        service.addMqttClientListener(new MqttClientListener()
+        {
+            @Override
+            public void onPublished(String clientId, int messageIdentifier, String correlationId)
+            {
+                calls.add("published");
+            }
+
+            @Override
+            public void onPublishFailure(String clientId, MessagingException exception)
+            {
+                calls.add("failed");
+            }
+        });
+        final MappedOutboundSpool spool = new MappedOutboundSpool(temporaryFolder.getRoot(), 4096,
+            4096 * 4);
+        spool.append("devices/1/status", "Test".getBytes(), 1, false, null);
+        service.setOutboundSpool(spool);
+        Mockito.verify(mqttClient, Mockito.timeout(5000).times(3)).publish(
+            ArgumentMatchers.anyString(), ArgumentMatchers.any(byte[].class),
+            ArgumentMatchers.anyInt(), ArgumentMatchers.anyBoolean(), ArgumentMatchers.any(),
+            ArgumentMatchers.any(IMqttActionListener.class));
+        service.close();
+        // the retries while the in-flight window was full are neither counted nor published
+        Assert.assertEquals(0, metrics.getPublishFailedCount());
+        Assert.assertEquals(1, metrics.getPublishedCount());
+        Assert.assertEquals(Arrays.asList("published"), calls);
+    }
+
+    @Test
+    public void testDuplicateSuppression() throws Exception
+    {
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(
+            BrokerHelper.getBrokerUri(), BrokerHelper.getClientId(),
+            MqttClientConnectionType.PUBSUB, null);
+        final List<Message<?>> messages = new ArrayList<Message<?>>();
+        final ExecutorSubscribableChannel inboundMessageChannel = new ExecutorSubscribableChannel();
+        inboundMessageChannel.subscribe(messages::add);
+        service.setInboundMessageChannel(inboundMessageChannel);
+        service.getMqttClientConfiguration()
+            .setDuplicateKeyExtractor(MqttDuplicateKeyExtractor.MESSAGE_ID);
+        service.messageArrived("Test", createMessage(1, 1));
+        service.messageArrived("Test", new RedeliveredMqttMessage(createMessage(1, 1)));
+        service.messageArrived("Test", createMessage(2, 1));
+        service.messageArrived("Test", createMessage(0, 0));
+        service.messageArrived("Test", createMessage(0, 0));
+        Assert.assertEquals(4, messages.size());
+        Assert.assertEquals(1, service.getDuplicateCount());
+        service.close();
+    }
+
+    @Test
+    public void testDuplicateSuppressionReusedMessageId() throws Exception
+    {
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(
+            BrokerHelper.getBrokerUri(), BrokerHelper.getClientId(),
+            MqttClientConnectionType.PUBSUB, null);
+        final List<Message<?>> messages = new ArrayList<Message<?>>();
+        final ExecutorSubscribableChannel inboundMessageChannel = new ExecutorSubscribableChannel();
+        inboundMessageChannel.subscribe(messages::add);
+        service.setInboundMessageChannel(inboundMessageChannel);
+        service.getMqttClientConfiguration()
+            .setDuplicateKeyExtractor(MqttDuplicateKeyExtractor.MESSAGE_ID);
+        // the Broker reuses the Message ID for new messages once the previous one is acknowledged
+        service.messageArrived("Test", createMessage(1, 1));
+        service.messageArrived("Test", createMessage(1, 1));
+        service.messageArrived("Test", createMessage(1, 1));
+        Assert.assertEquals(3, messages.size());
+        Assert.assertEquals(0, service.getDuplicateCount());
+        // a redelivery of the last one is still dropped
+        service.messageArrived("Test", new RedeliveredMqttMessage(createMessage(1, 1)));
+        Assert.assertEquals(3, messages.size());
+        Assert.assertEquals(1, service.getDuplicateCount());
+        service.close();
+    }
+
+    @Test
+    public void testThrowingDuplicateKeyExtractor() throws Exception
+    {
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(
+            BrokerHelper.getBrokerUri(), BrokerHelper.getClientId(),
+            MqttClientConnectionType.PUBSUB, null);
+        final List<Message<?>> messages = new ArrayList<Message<?>>();
+        final ExecutorSubscribableChannel inboundMessageChannel = new ExecutorSubscribableChannel();
+        inboundMessageChannel.subscribe(messages::add);
+        service.setInboundMessageChannel(inboundMessageChannel);
+        service.getMqttClientConfiguration()
+            .setDuplicateKeyExtractor((topic, messageId, payload) ->
+            {
+                throw new IllegalStateException("Test");
+            });
+        // an exception thrown back to the MQTT Client would close the connection
+        service.messageArrived("Test", createMessage(1, 1));
+        service.messageArrived("Test", createMessage(2, 0));
+        service.messageArrived("Test", new RedeliveredMqttMessage(createMessage(1, 1)));
+        // a message without a key is sent on, as it can't be recognized as a duplicate
+        Assert.assertEquals(3, messages.size());
+        Assert.assertEquals(0, service.getDuplicateCount());
+        service.close();
+    }
+
+    @Test
+    public void testConflationLastValueWins() throws Exception
+    {
+        final MqttAsyncClient mqttClient = createConnectedMqttClient();
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(mqttClient,
+            MqttClientConnectionType.PUBLISHER, null);
+        service.getMqttClientConfiguration().addConflatedTopicFilter("sensors/#");
+        service.getMqttClientConfiguration().setConflationIntervalMilliseconds(60000);
+        final CompletableFuture<Integer> first = service
+            .publishAsync(createConflatedMessage("1"));
+        final CompletableFuture<Integer> second = service
+            .publishAsync(createConflatedMessage("2"));
+        final MqttBatchPublishResult result = service.publishAll(
+            Arrays.asList(createConflatedMessage("3"), createConflatedMessage("4")));
+        Assert.assertTrue(first.isCompletedExceptionally());
+        Assert.assertTrue(second.isCompletedExceptionally());
+        Assert.assertTrue(result.getResults().get(0).isCompletedExceptionally());
+        Assert.assertFalse(result.getResults().get(1).isDone());
+        Assert.assertEquals(0, result.getFailedCount());
+        Assert.assertEquals(1, service.getConflatedPendingCount());
+        Assert.assertEquals(3, service.getConflatedCount());
+        Mockito.verify(mqttClient, Mockito.never()).publish(ArgumentMatchers.anyString(),
+            ArgumentMatchers.any(byte[].class), ArgumentMatchers.anyInt(),
+            ArgumentMatchers.anyBoolean(), ArgumentMatchers.any(),
+            ArgumentMatchers.any(IMqttActionListener.class));
+        service.close();
+    }
+
+    @Test
+    public void testConflationFlush() throws Exception
+    {
+        final MqttAsyncClient mqttClient = createConnectedMqttClient();
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(mqttClient,
+            MqttClientConnectionType.PUBLISHER, null);
+        service.getMqttClientConfiguration().addConflatedTopicFilter("sensors/#");
+        service.getMqttClientConfiguration().setConflationIntervalMilliseconds(10);
+        service.publishAsync(createConflatedMessage("1"));
+        service.publishAsync(createConflatedMessage("2"));
+        Mockito.verify(mqttClient, Mockito.timeout(5000)).publish(
+            ArgumentMatchers.eq("sensors/1"), AdditionalMatchers.aryEq("2".getBytes()),
+            ArgumentMatchers.eq(0), ArgumentMatchers.eq(false), ArgumentMatchers.any(),
+            ArgumentMatchers.any(IMqttActionListener.class));
+        Mockito.verify(mqttClient, Mockito.times(1)).publish(ArgumentMatchers.anyString(),
+            ArgumentMatchers.any(byte[].class), ArgumentMatchers.anyInt(),
+            ArgumentMatchers.anyBoolean(), ArgumentMatchers.any(),
+            ArgumentMatchers.any(IMqttActionListener.class));
+        Assert.assertEquals(0, service.getConflatedPendingCount());
+        service.close();
+    }
+
+    private MqttAsyncClient createConnectedMqttClient() throws MqttException
+    {
+        final MqttAsyncClient mqttClient = Mockito.mock(MqttAsyncClient.class);
+        Mockito.when(mqttClient.getClientId()).thenReturn(BrokerHelper.getClientId());
+        Mockito.when(mqttClient.isConnected()).thenReturn(true);
+        Mockito.when(mqttClient.disconnect()).thenReturn(Mockito.mock(IMqttToken.class));
+        final IMqttDeliveryToken token = Mockito.mock(IMqttDeliveryToken.class);
+        Mockito.when(mqttClient.publish(ArgumentMatchers.anyString(),
+            ArgumentMatchers.any(byte[].class), ArgumentMatchers.anyInt(),
+            ArgumentMatchers.anyBoolean(), ArgumentMatchers.any(),
+            ArgumentMatchers.any(IMqttActionListener.class))).thenReturn(token);
+        return mqttClient;
+    }
+
+    private Message<String> createConflatedMessage(final String payload)
+    {
+        return MessageBuilder.withPayload(payload).setHeader(MqttHeaderHelper.TOPIC, "sensors/1")
+            .setHeader(MqttHeaderHelper.QOS, 0).build();
+    }
+
+    private MqttMessage createMessage(final int id, final int qos)
+    {
+        final MqttMessage message = new MqttMessage("Test".getBytes());
+        message.setId(id);
+        message.setQos(qos);
+        return message;
+    }
+
+    /**
+     * A message as the MQTT Client receives it when the Broker redelivers it, with the DUP flag
+     * set.
+     */
+    private static final class RedeliveredMqttMessage extends MqttMessage
+    {
+        private RedeliveredMqttMessage(final MqttMessage message)
+        {
+            super(message.getPayload());
+            setId(message.getId());
+            setQos(message.getQos());
+            setDuplicate(true);
+        }
+    }
 }
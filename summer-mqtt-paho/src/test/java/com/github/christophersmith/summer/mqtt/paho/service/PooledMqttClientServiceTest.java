@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import com.github.christophersmith.summer.mqtt.core.MqttBatchPublishResult;
+import com.github.christophersmith.summer.mqtt.core.MqttClientConnectionType;
+import com.github.christophersmith.summer.mqtt.core.MqttPoolRoutingStrategy;
+import com.github.christophersmith.summer.mqtt.core.event.MqttMessagePublishFailureEvent;
+import com.github.christophersmith.summer.mqtt.core.event.MqttStatusEvent;
+import com.github.christophersmith.summer.mqtt.core.util.MqttHeaderHelper;
+import com.github.christophersmith.summer.mqtt.paho.service.util.BrokerHelper;
+
+public class PooledMqttClientServiceTest
+{
+    private static final String     VALUE_CLIENT_ID = "pool";
+    @Rule
+    public ExpectedException        thrown          = ExpectedException.none();
+    private final List<Object>      events          = Collections
+        .synchronizedList(new ArrayList<Object>());
+    private PooledMqttClientService service;
+
+    @After
+    public void after()
+    {
+        if (service != null)
+        {
+            service.close();
+        }
+    }
+
+    @Test
+    public void testConstruction() throws MqttException
+    {
+        service = new PooledMqttClientService(BrokerHelper.getBrokerUri(), VALUE_CLIENT_ID,
+            MqttClientConnectionType.PUBSUB, 3);
+        Assert.assertEquals(VALUE_CLIENT_ID, service.getClientId());
+        Assert.assertEquals(MqttClientConnectionType.PUBSUB, service.getConnectionType());
+        Assert.assertEquals(3, service.getConnections().size());
+        Assert.assertEquals("pool-0", service.getConnections().get(0).getClientId());
+        Assert.assertEquals("pool-2", service.getConnections().get(2).getClientId());
+        Assert.assertEquals(MqttClientConnectionType.PUBSUB,
+            service.getConnections().get(0).getConnectionType());
+        Assert.assertEquals(MqttClientConnectionType.PUBLISHER,
+            service.getConnections().get(1).getConnectionType());
+        Assert.assertFalse(service.isConnected());
+        service.subscribe("devices/#");
+        Assert.assertEquals(1, service.getTopicSubscriptions().size());
+        Assert.assertTrue(service.getConnections().get(1).getTopicSubscriptions().isEmpty());
+    }
+
+    @Test
+    public void testConstructionSubscriber() throws MqttException
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'connectionType' must be PUBLISHER or PUBSUB!");
+        new PooledMqttClientService(BrokerHelper.getBrokerUri(), VALUE_CLIENT_ID,
+            MqttClientConnectionType.SUBSCRIBER, 2);
+    }
+
+    @Test
+    public void testConstructionPoolSizeZero() throws MqttException
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'poolSize' must be greater than 0!");
+        new PooledMqttClientService(BrokerHelper.getBrokerUri(), VALUE_CLIENT_ID,
+            MqttClientConnectionType.PUBLISHER, 0);
+    }
+
+    @Test
+    public void testTopicHashRouting() throws MqttException
+    {
+        service = new PooledMqttClientService(BrokerHelper.getBrokerUri(), VALUE_CLIENT_ID,
+            MqttClientConnectionType.PUBLISHER, 4);
+        final List<PahoAsyncMqttClientService> used = new ArrayList<PahoAsyncMqttClientService>();
+        for (int i = 0; i < 32; i++)
+        {
+            final PahoAsyncMqttClientService connection = service
+                .route(createMessage("devices/" + i, null));
+            Assert.assertSame(connection, service.route(createMessage("devices/" + i, "key")));
+            if (!used.contains(connection))
+            {
+                used.add(connection);
+            }
+        }
+        Assert.assertEquals(4, used.size());
+    }
+
+    @Test
+    public void testRoutingKeyRouting() throws MqttException
+    {
+        service = new PooledMqttClientService(BrokerHelper.getBrokerUri(), VALUE_CLIENT_ID,
+            MqttClientConnectionType.PUBLISHER, 4);
+        service.setRoutingStrategy(MqttPoolRoutingStrategy.ROUTING_KEY);
+        final PahoAsyncMqttClientService connection = service
+            .route(createMessage("devices/1", "device-1"));
+        for (int i = 0; i < 32; i++)
+        {
+            Assert.assertSame(connection, service.route(createMessage("devices/" + i, "device-1")));
+        }
+        // messages without a Routing Key are routed by their Topic
+        final PahoAsyncMqttClientService keyless = service.route(createMessage("devices/2", null));
+        service.setRoutingStrategy(MqttPoolRoutingStrategy.TOPIC_HASH);
+        Assert.assertSame(keyless, service.route(createMessage("devices/2", null)));
+    }
+
+    @Test
+    public void testPublishAllWhileDisconnected() throws MqttException
+    {
+        service = new PooledMqttClientService(BrokerHelper.getBrokerUri(), VALUE_CLIENT_ID,
+            MqttClientConnectionType.PUBLISHER, 3);
+        service.setApplicationEventPublisher(new ApplicationEventPublisher()
+        {
+            @Override
+            public void publishEvent(final ApplicationEvent event)
+            {
+                events.add(event);
+            }
+
+            @Override
+            public void publishEvent(final Object event)
+            {
+                events.add(event);
+            }
+        });
+        final List<Message<?>> messages = new ArrayList<Message<?>>();
+        for (int i = 0; i < 10; i++)
+        {
+            messages.add(createMessage("devices/" + i, null));
+        }
+        final MqttBatchPublishResult result = service.publishAll(messages);
+        Assert.assertEquals(10, result.getMessageCount());
+        Assert.assertEquals(10, result.getFailedCount());
+        Assert.assertFalse(events.isEmpty());
+        for (final Object event : events)
+        {
+            Assert.assertTrue(event instanceof MqttMessagePublishFailureEvent);
+            Assert.assertTrue(Arrays.asList("pool-0", "pool-1", "pool-2")
+                .contains(((MqttStatusEvent) event).getClientId()));
+        }
+        // the Connection Lost Event of a connection isn't passed on while the pool is disconnected
+        events.clear();
+        service.getConnections().get(1).connectionLost(new IllegalStateException());
+        Assert.assertTrue(events.isEmpty());
+    }
+
+    private Message<String> createMessage(final String topic, final String routingKey)
+    {
+        final MessageBuilder<String> builder = MessageBuilder.withPayload("Test")
+            .setHeader(MqttHeaderHelper.TOPIC, topic);
+        if (routingKey != null)
+        {
+            builder.setHeader(MqttHeaderHelper.ROUTING_KEY, routingKey);
+        }
+        return builder.build();
+    }
+}
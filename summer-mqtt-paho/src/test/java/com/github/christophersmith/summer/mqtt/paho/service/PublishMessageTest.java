@@ -13,15 +13,23 @@
  */
 package com.github.christophersmith.summer.mqtt.paho.service;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.support.StaticApplicationContext;
 import org.springframework.messaging.Message;
@@ -29,6 +37,7 @@ import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.util.StringUtils;
 
+import com.github.christophersmith.summer.mqtt.core.MqttBatchPublishResult;
 import com.github.christophersmith.summer.mqtt.core.MqttClientConnectionType;
 import com.github.christophersmith.summer.mqtt.core.event.MqttMessageDeliveredEvent;
 import com.github.christophersmith.summer.mqtt.core.event.MqttMessagePublishFailureEvent;
@@ -36,6 +45,7 @@ import com.github.christophersmith.summer.mqtt.core.event.MqttMessagePublishedEv
 import com.github.christophersmith.summer.mqtt.core.event.MqttMessageStatusEvent;
 import com.github.christophersmith.summer.mqtt.core.util.MqttHeaderHelper;
 import com.github.christophersmith.summer.mqtt.paho.service.util.BrokerHelper;
+import com.github.christophersmith.summer.mqtt.paho.spool.MappedOutboundSpool;
 
 public class PublishMessageTest implements ApplicationListener<MqttMessageStatusEvent>
 {
@@ -47,6 +57,8 @@ public class PublishMessageTest implements ApplicationListener<MqttMessageStatus
     @Rule
     public ExpectedException                                  thrown                                     = ExpectedException
         .none();
+    @Rule
+    public TemporaryFolder                                    temporaryFolder                            = new TemporaryFolder();
 
     @Test
     public void testSubcriberCannotPublish() throws MqttException
@@ -138,6 +150,185 @@ public class PublishMessageTest implements ApplicationListener<MqttMessageStatus
         service.close();
     }
 
+    @Test
+    public void testPublishAsyncSubscriberCannotPublish() throws MqttException
+    {
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(
+            BrokerHelper.getBrokerUri(), BrokerHelper.getClientId(),
+            MqttClientConnectionType.SUBSCRIBER, null);
+        final CompletableFuture<Integer> future = service
+            .publishAsync(MessageBuilder.withPayload(VALUE_TEST).build());
+        Assert.assertTrue(future.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testPublishAsyncNullMessage() throws MqttException
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'message' must be set!");
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(
+            BrokerHelper.getBrokerUri(), BrokerHelper.getClientId(),
+            MqttClientConnectionType.PUBLISHER, null);
+        service.publishAsync(null);
+    }
+
+    @Test
+    public void testPublishAsyncClientNotConnected()
+        throws MqttException, InterruptedException, ExecutionException
+    {
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(
+            BrokerHelper.getBrokerUri(), BrokerHelper.getClientId(),
+            MqttClientConnectionType.PUBLISHER, null);
+        final CompletableFuture<Integer> future = service
+            .publishAsync(MessageBuilder.withPayload(VALUE_TEST)
+                .setHeader(MqttHeaderHelper.TOPIC,
+                    String.format("client/%s", BrokerHelper.getClientId()))
+                .build());
+        thrown.expect(ExecutionException.class);
+        thrown.expectMessage(String.format("Client ID %s is disconnected. Could not send message.",
+            BrokerHelper.getClientId()));
+        future.get();
+    }
+
+    @Test
+    public void testPublishAsyncSpooledWhileDisconnected() throws MqttException, IOException
+    {
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(
+            BrokerHelper.getBrokerUri(), BrokerHelper.getClientId(),
+            MqttClientConnectionType.PUBLISHER, null);
+        final MappedOutboundSpool spool = new MappedOutboundSpool(temporaryFolder.getRoot(), 4096,
+            4096 * 4);
+        service.setOutboundSpool(spool);
+        final CompletableFuture<Integer> future = service
+            .publishAsync(MessageBuilder.withPayload(VALUE_TEST)
+                .setHeader(MqttHeaderHelper.TOPIC,
+                    String.format("client/%s", BrokerHelper.getClientId()))
+                .build());
+        service.handleMessage(MessageBuilder.withPayload(VALUE_TEST)
+            .setHeader(MqttHeaderHelper.TOPIC,
+                String.format("client/%s", BrokerHelper.getClientId()))
+            .build());
+        Assert.assertFalse(future.isDone());
+        Assert.assertEquals(2, spool.getMessageCount());
+        Assert.assertEquals(VALUE_TEST, new String(spool.peek().getPayload()));
+        service.close();
+        Assert.assertTrue(future.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testPublishAsyncSpooledMessageThatCannotBeSent()
+        throws MqttException, IOException, InterruptedException, ExecutionException,
+        TimeoutException
+    {
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(
+            BrokerHelper.getBrokerUri(), BrokerHelper.getClientId(),
+            MqttClientConnectionType.PUBLISHER, null);
+        final MappedOutboundSpool spool = new MappedOutboundSpool(temporaryFolder.getRoot(), 4096,
+            4096 * 4);
+        service.setOutboundSpool(spool);
+        // Paho rejects a Topic with wildcards, which no retry can change
+        final CompletableFuture<Integer> rejected = service
+            .publishAsync(MessageBuilder.withPayload(VALUE_TEST)
+                .setHeader(MqttHeaderHelper.TOPIC,
+                    String.format("client/%s/+", BrokerHelper.getClientId()))
+                .setHeader(MqttHeaderHelper.QOS, 1).build());
+        final CompletableFuture<Integer> delivered = service
+            .publishAsync(MessageBuilder.withPayload(VALUE_TEST)
+                .setHeader(MqttHeaderHelper.TOPIC,
+                    String.format("client/%s", BrokerHelper.getClientId()))
+                .setHeader(MqttHeaderHelper.QOS, 1).build());
+        Assert.assertEquals(2, spool.getMessageCount());
+        service.start();
+        Assert.assertNotNull(delivered.get(5, TimeUnit.SECONDS));
+        Assert.assertTrue(rejected.isCompletedExceptionally());
+        Assert.assertTrue(spool.isEmpty());
+        service.stop();
+        service.close();
+    }
+
+    @Test
+    public void testPublishAsyncDelivered()
+        throws MqttException, InterruptedException, ExecutionException, TimeoutException
+    {
+        final StaticApplicationContext applicationContext = new StaticApplicationContext();
+        applicationContext.addApplicationListener(this);
+        applicationContext.refresh();
+        applicationContext.start();
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(
+            BrokerHelper.getBrokerUri(), BrokerHelper.getClientId(),
+            MqttClientConnectionType.PUBLISHER, null);
+        service.setApplicationEventPublisher(applicationContext);
+        service.start();
+        final String correlationIdentifier = UUID.randomUUID().toString();
+        final Integer messageIdentifier = service.publishAsync(MessageBuilder
+            .withPayload(VALUE_TEST)
+            .setHeader(MqttHeaderHelper.TOPIC,
+                String.format("client/%s", BrokerHelper.getClientId()))
+            .setHeader(MqttHeaderHelper.QOS, 1)
+            .setHeader(MqttHeaderHelper.CORRELATION_ID, correlationIdentifier).build())
+            .get(5, TimeUnit.SECONDS);
+        Assert.assertTrue(publishedMessages.containsKey(correlationIdentifier));
+        Assert.assertEquals(messageIdentifier.intValue(),
+            publishedMessages.get(correlationIdentifier).getMessageIdentifier());
+        service.stop();
+        service.close();
+    }
+
+    @Test
+    public void testPublishAllNullMessages() throws MqttException
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'messages' must be set!");
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(
+            BrokerHelper.getBrokerUri(), BrokerHelper.getClientId(),
+            MqttClientConnectionType.PUBLISHER, null);
+        service.publishAll(null);
+    }
+
+    @Test
+    public void testPublishAllClientNotConnected() throws MqttException
+    {
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(
+            BrokerHelper.getBrokerUri(), BrokerHelper.getClientId(),
+            MqttClientConnectionType.PUBLISHER, null);
+        final List<Message<?>> messages = new ArrayList<Message<?>>();
+        messages.add(MessageBuilder.withPayload(VALUE_TEST).build());
+        messages.add(MessageBuilder.withPayload(VALUE_TEST).build());
+        final MqttBatchPublishResult result = service.publishAll(messages);
+        Assert.assertEquals(2, result.getMessageCount());
+        Assert.assertEquals(0, result.getSubmittedCount());
+        Assert.assertEquals(2, result.getFailedCount());
+        for (final CompletableFuture<Integer> future : result.getResults())
+        {
+            Assert.assertTrue(future.isCompletedExceptionally());
+        }
+    }
+
+    @Test
+    public void testPublishAllDelivered() throws MqttException
+    {
+        final PahoAsyncMqttClientService service = new PahoAsyncMqttClientService(
+            BrokerHelper.getBrokerUri(), BrokerHelper.getClientId(),
+            MqttClientConnectionType.PUBLISHER, null);
+        service.start();
+        final List<Message<?>> messages = new ArrayList<Message<?>>();
+        for (int i = 0; i < 5; i++)
+        {
+            messages.add(MessageBuilder.withPayload(VALUE_TEST)
+                .setHeader(MqttHeaderHelper.TOPIC,
+                    String.format("client/%s", BrokerHelper.getClientId()))
+                .setHeader(MqttHeaderHelper.QOS, 1).build());
+        }
+        messages.add(MessageBuilder.withPayload(VALUE_TEST).build());
+        final MqttBatchPublishResult result = service.publishAll(messages);
+        Assert.assertEquals(5, result.getSubmittedCount());
+        Assert.assertEquals(1, result.getFailedCount());
+        result.allCompleted().join();
+        Assert.assertTrue(result.getResults().get(5).isCompletedExceptionally());
+        service.stop();
+        service.close();
+    }
+
     @Override
     public void onApplicationEvent(final MqttMessageStatusEvent event)
     {
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.christophersmith.summer.mqtt.core.MqttClientConfiguration;
+import com.github.christophersmith.summer.mqtt.core.MqttRateLimit;
+import com.github.christophersmith.summer.mqtt.core.MqttRateLimitBehavior;
+
+public class RateLimiterTest
+{
+    private static final String VALUE_TOPIC = "devices/1/status";
+
+    @Test
+    public void testUnlimited() throws InterruptedException
+    {
+        final RateLimiter rateLimiter = new RateLimiter();
+        final MqttClientConfiguration configuration = new MqttClientConfiguration();
+        for (int i = 0; i < 1000; i++)
+        {
+            Assert.assertEquals(RateLimiter.Permit.GRANTED,
+                rateLimiter.acquire(VALUE_TOPIC, 0, configuration));
+        }
+        Assert.assertEquals(0, rateLimiter.getWaitedCount());
+    }
+
+    @Test
+    public void testReject() throws InterruptedException
+    {
+        final RateLimiter rateLimiter = new RateLimiter();
+        final MqttClientConfiguration configuration = new MqttClientConfiguration();
+        configuration.setClientRateLimit(new MqttRateLimit(0.01, 3));
+        configuration.setRateLimitBehavior(MqttRateLimitBehavior.REJECT);
+        for (int i = 0; i < 3; i++)
+        {
+            Assert.assertEquals(RateLimiter.Permit.GRANTED,
+                rateLimiter.acquire(VALUE_TOPIC, 1, configuration));
+        }
+        Assert.assertEquals(RateLimiter.Permit.REJECTED,
+            rateLimiter.acquire(VALUE_TOPIC, 1, configuration));
+        Assert.assertEquals(1, rateLimiter.getRejectedCount());
+        // a replaced limit starts with a full burst
+        configuration.setClientRateLimit(new MqttRateLimit(0.01, 1));
+        Assert.assertEquals(RateLimiter.Permit.GRANTED,
+            rateLimiter.acquire(VALUE_TOPIC, 1, configuration));
+        Assert.assertEquals(RateLimiter.Permit.REJECTED,
+            rateLimiter.acquire(VALUE_TOPIC, 1, configuration));
+    }
+
+    @Test
+    public void testDropQualityOfServiceZero() throws InterruptedException
+    {
+        final RateLimiter rateLimiter = new RateLimiter();
+        final MqttClientConfiguration configuration = new MqttClientConfiguration();
+        configuration.setClientRateLimit(new MqttRateLimit(0.01, 1));
+        configuration.setRateLimitBehavior(MqttRateLimitBehavior.DROP_QOS_0);
+        configuration.setRateLimitWaitMilliseconds(0);
+        Assert.assertEquals(RateLimiter.Permit.GRANTED,
+            rateLimiter.acquire(VALUE_TOPIC, 0, configuration));
+        Assert.assertEquals(RateLimiter.Permit.DROPPED,
+            rateLimiter.acquire(VALUE_TOPIC, 0, configuration));
+        // QoS 1 messages wait instead, which fails as the wait time is exceeded
+        Assert.assertEquals(RateLimiter.Permit.REJECTED,
+            rateLimiter.acquire(VALUE_TOPIC, 1, configuration));
+        Assert.assertEquals(1, rateLimiter.getDroppedCount());
+        Assert.assertEquals(1, rateLimiter.getRejectedCount());
+    }
+
+    @Test
+    public void testWait() throws InterruptedException
+    {
+        final RateLimiter rateLimiter = new RateLimiter();
+        final MqttClientConfiguration configuration = new MqttClientConfiguration();
+        configuration.setClientRateLimit(new MqttRateLimit(20, 1));
+        final long start = System.nanoTime();
+        for (int i = 0; i < 3; i++)
+        {
+            Assert.assertEquals(RateLimiter.Permit.GRANTED,
+                rateLimiter.acquire(VALUE_TOPIC, 1, configuration));
+        }
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+        Assert.assertEquals(2, rateLimiter.getWaitedCount());
+    }
+
+    @Test
+    public void testTopicRateLimit() throws InterruptedException
+    {
+        final RateLimiter rateLimiter = new RateLimiter();
+        final MqttClientConfiguration configuration = new MqttClientConfiguration();
+        configuration.addTopicRateLimit("devices/+/status", new MqttRateLimit(0.01, 2));
+        configuration.setClientRateLimit(new MqttRateLimit(0.01, 3));
+        configuration.setRateLimitBehavior(MqttRateLimitBehavior.REJECT);
+        // the Topic Filter bucket is shared by every Topic it matches
+        Assert.assertEquals(RateLimiter.Permit.GRANTED,
+            rateLimiter.acquire("devices/1/status", 1, configuration));
+        Assert.assertEquals(RateLimiter.Permit.GRANTED,
+            rateLimiter.acquire("devices/2/status", 1, configuration));
+        Assert.assertEquals(RateLimiter.Permit.REJECTED,
+            rateLimiter.acquire("devices/3/status", 1, configuration));
+        // the rejected message gave its client permit back
+        Assert.assertEquals(RateLimiter.Permit.GRANTED,
+            rateLimiter.acquire("devices/1/position", 1, configuration));
+        Assert.assertEquals(RateLimiter.Permit.REJECTED,
+            rateLimiter.acquire("devices/1/position", 1, configuration));
+    }
+
+    @Test
+    public void testTokenBucket()
+    {
+        final RateLimiter.TokenBucket bucket = new RateLimiter.TokenBucket(
+            new MqttRateLimit(1000, 2), 0);
+        final long interval = TimeUnit.MILLISECONDS.toNanos(1);
+        Assert.assertTrue(bucket.tryAcquire(0));
+        Assert.assertTrue(bucket.tryAcquire(0));
+        Assert.assertFalse(bucket.tryAcquire(0));
+        Assert.assertTrue(bucket.tryAcquire(interval));
+        Assert.assertFalse(bucket.tryAcquire(interval));
+        Assert.assertEquals(interval, bucket.reserve(interval));
+        Assert.assertEquals(2 * interval, bucket.reserve(interval));
+        bucket.refund();
+        Assert.assertEquals(2 * interval, bucket.reserve(interval));
+    }
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class ReceivedMessageSampleTest
+{
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void testMessagesPerSecond()
+    {
+        final Map<String, Long> previousCounts = new LinkedHashMap<String, Long>();
+        previousCounts.put("group-0", 10L);
+        previousCounts.put("group-1", 50L);
+        final Map<String, Long> counts = new LinkedHashMap<String, Long>();
+        counts.put("group-0", 30L);
+        counts.put("group-1", 4L);
+        counts.put("group-2", 6L);
+        final ReceivedMessageSample previousSample = new ReceivedMessageSample(previousCounts, 0);
+        final ReceivedMessageSample sample = new ReceivedMessageSample(counts,
+            TimeUnit.SECONDS.toNanos(2));
+        final Map<String, Double> messagesPerSecond = sample.getMessagesPerSecond(previousSample);
+        Assert.assertEquals(10, messagesPerSecond.get("group-0"), 0);
+        // a replaced member is counted from 0
+        Assert.assertEquals(2, messagesPerSecond.get("group-1"), 0);
+        Assert.assertEquals(3, messagesPerSecond.get("group-2"), 0);
+        Assert.assertEquals(30L, sample.getReceivedMessageCounts().get("group-0").longValue());
+        Assert.assertEquals(TimeUnit.SECONDS.toNanos(2), sample.getNanoTime());
+    }
+
+    @Test
+    public void testNullReceivedMessageCounts()
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'receivedMessageCounts' must be set!");
+        new ReceivedMessageSample(null, 0);
+    }
+
+    @Test
+    public void testNullPreviousSample()
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'previousSample' must be set!");
+        new ReceivedMessageSample(Collections.<String, Long> emptyMap(), 0)
+            .getMessagesPerSecond(null);
+    }
+}
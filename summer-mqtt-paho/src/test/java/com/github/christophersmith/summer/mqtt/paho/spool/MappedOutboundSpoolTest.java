@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Christopher Smith - https://github.com/christophersmith
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.christophersmith.summer.mqtt.paho.spool;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedOutboundSpoolTest
+{
+    private static final String VALUE_TOPIC          = "test/spool";
+    private static final String VALUE_CORRELATION_ID = "Correlation";
+    private static final int    SEGMENT_SIZE         = 4096;
+
+    @Rule
+    public ExpectedException    thrown               = ExpectedException.none();
+    @Rule
+    public TemporaryFolder      temporaryFolder      = new TemporaryFolder();
+
+    @Test
+    public void testInvalidSegmentSize() throws IOException
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'segmentSize' must be at least 4096 bytes!");
+
+        new MappedOutboundSpool(temporaryFolder.getRoot(), 1024, SEGMENT_SIZE * 4);
+    }
+
+    @Test
+    public void testInvalidMaximumSize() throws IOException
+    {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("'maximumSize' must allow for at least two segments!");
+
+        new MappedOutboundSpool(temporaryFolder.getRoot(), SEGMENT_SIZE, SEGMENT_SIZE);
+    }
+
+    @Test
+    public void testAppendPeekConsume() throws IOException
+    {
+        try (MappedOutboundSpool spool = new MappedOutboundSpool(temporaryFolder.getRoot(),
+            SEGMENT_SIZE, SEGMENT_SIZE * 4))
+        {
+            Assert.assertTrue(spool.isEmpty());
+            Assert.assertNull(spool.peek());
+            Assert.assertTrue(spool.append(VALUE_TOPIC, payload(1), 1, true,
+                VALUE_CORRELATION_ID) >= 0);
+            Assert.assertTrue(spool.append(VALUE_TOPIC, payload(2), 2, false, null) >= 0);
+            Assert.assertEquals(2, spool.getMessageCount());
+            SpooledMessage message = spool.peek();
+            Assert.assertEquals(VALUE_TOPIC, message.getTopic());
+            Assert.assertArrayEquals(payload(1), message.getPayload());
+            Assert.assertEquals(1, message.getLevelIdentifier());
+            Assert.assertTrue(message.isRetained());
+            Assert.assertEquals(VALUE_CORRELATION_ID, message.getCorrelationId());
+            Assert.assertEquals(message.getPosition(), spool.peek().getPosition());
+            spool.consume(message);
+            message = spool.peek();
+            Assert.assertArrayEquals(payload(2), message.getPayload());
+            Assert.assertEquals(2, message.getLevelIdentifier());
+            Assert.assertFalse(message.isRetained());
+            Assert.assertNull(message.getCorrelationId());
+            spool.consume(message);
+            Assert.assertTrue(spool.isEmpty());
+            Assert.assertNull(spool.peek());
+        }
+    }
+
+    @Test
+    public void testConsumeOutOfOrder() throws IOException
+    {
+        try (MappedOutboundSpool spool = new MappedOutboundSpool(temporaryFolder.getRoot(),
+            SEGMENT_SIZE, SEGMENT_SIZE * 4))
+        {
+            spool.append(VALUE_TOPIC, payload(1), 0, false, null);
+            final SpooledMessage first = spool.peek();
+            spool.consume(first);
+            spool.append(VALUE_TOPIC, payload(2), 0, false, null);
+
+            thrown.expect(IllegalArgumentException.class);
+            thrown.expectMessage("'message' must be the oldest message in the spool!");
+
+            spool.consume(first);
+        }
+    }
+
+    @Test
+    public void testRecovery() throws IOException
+    {
+        final File directory = temporaryFolder.getRoot();
+        try (MappedOutboundSpool spool = new MappedOutboundSpool(directory, SEGMENT_SIZE,
+            SEGMENT_SIZE * 4))
+        {
+            for (int i = 0; i < 50; i++)
+            {
+                spool.append(VALUE_TOPIC, payload(i), 0, false, null);
+            }
+            for (int i = 0; i < 20; i++)
+            {
+                spool.consume(spool.peek());
+            }
+        }
+        try (MappedOutboundSpool spool = new MappedOutboundSpool(directory, SEGMENT_SIZE,
+            SEGMENT_SIZE * 4))
+        {
+            Assert.assertEquals(30, spool.getMessageCount());
+            for (int i = 20; i < 50; i++)
+            {
+                final SpooledMessage message = spool.peek();
+                Assert.assertArrayEquals(payload(i), message.getPayload());
+                spool.consume(message);
+            }
+            Assert.assertTrue(spool.isEmpty());
+            Assert.assertTrue(spool.append(VALUE_TOPIC, payload(50), 0, false, null) >= 0);
+            Assert.assertArrayEquals(payload(50), spool.peek().getPayload());
+        }
+    }
+
+    @Test
+    public void testSizeCapAndRecycling() throws IOException
+    {
+        try (MappedOutboundSpool spool = new MappedOutboundSpool(temporaryFolder.getRoot(),
+            SEGMENT_SIZE, SEGMENT_SIZE * 2))
+        {
+            final byte[] payload = new byte[1000];
+            int appended = 0;
+            while (spool.append(VALUE_TOPIC, payload, 0, false, null) >= 0)
+            {
+                appended++;
+            }
+            Assert.assertEquals(8, appended);
+            Assert.assertEquals(2, spool.getSegmentCount());
+            for (int i = 0; i < 4; i++)
+            {
+                spool.consume(spool.peek());
+            }
+            Assert.assertTrue(spool.append(VALUE_TOPIC, payload, 0, false, null) >= 0);
+            Assert.assertEquals(2, spool.getSegmentCount());
+            Assert.assertEquals(5, spool.getMessageCount());
+            Assert.assertEquals(-1, spool.append(VALUE_TOPIC, new byte[SEGMENT_SIZE], 0, false,
+                null));
+        }
+    }
+
+    private static byte[] payload(final int value)
+    {
+        return String.format("Payload %s", value).getBytes(StandardCharsets.UTF_8);
+    }
+}